@@ -18,14 +18,16 @@ package io.github.hidroh.materialistic;
 
 import android.accounts.AccountManager;
 import android.content.Context;
+import android.text.TextUtils;
 import android.util.Log;
 
+import java.io.File;
 import java.io.IOException;
-import java.net.HttpCookie;
-import java.util.ArrayList;
+import java.net.HttpURLConnection;
 import java.util.HashMap;
-import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Named;
 import javax.inject.Singleton;
@@ -42,10 +44,15 @@ import io.github.hidroh.materialistic.data.FeedbackClient;
 import io.github.hidroh.materialistic.data.HackerNewsClient;
 import io.github.hidroh.materialistic.data.ItemManager;
 import io.github.hidroh.materialistic.data.ItemSyncService;
+import io.github.hidroh.materialistic.data.LocalReadabilityClient;
+import io.github.hidroh.materialistic.data.LocalSearchClient;
+import io.github.hidroh.materialistic.data.PersistentCookieJar;
 import io.github.hidroh.materialistic.data.ReadabilityClient;
 import io.github.hidroh.materialistic.data.RestServiceFactory;
 import io.github.hidroh.materialistic.data.SessionManager;
+import io.github.hidroh.materialistic.data.UpdateTracker;
 import io.github.hidroh.materialistic.data.UserManager;
+import io.github.hidroh.materialistic.appwidget.WidgetProvider;
 import io.github.hidroh.materialistic.appwidget.WidgetService;
 import io.github.hidroh.materialistic.widget.FavoriteRecyclerViewAdapter;
 import io.github.hidroh.materialistic.widget.MultiPageItemRecyclerViewAdapter;
@@ -57,12 +64,12 @@ import io.github.hidroh.materialistic.widget.ThreadPreviewRecyclerViewAdapter;
 import okhttp3.Cache;
 import okhttp3.CacheControl;
 import okhttp3.Call;
-import okhttp3.Cookie;
-import okhttp3.HttpUrl;
 import okhttp3.Interceptor;
+import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
 import okhttp3.logging.HttpLoggingInterceptor;
 
 @Module(
@@ -92,6 +99,7 @@ import okhttp3.logging.HttpLoggingInterceptor;
                 ListFragment.class,
                 WebFragment.class,
                 ReadabilityFragment.class,
+                ReadabilityTextFragment.class,
                 ReleaseNotesActivity.class,
                 StoryRecyclerViewAdapter.class,
                 FavoriteRecyclerViewAdapter.class,
@@ -100,13 +108,15 @@ import okhttp3.logging.HttpLoggingInterceptor;
                 SubmissionRecyclerViewAdapter.class,
                 ThreadPreviewRecyclerViewAdapter.class,
                 ItemSyncService.class,
-                WidgetService.class
+                WidgetService.class,
+                WidgetProvider.class
         },
         library = true
 )
 public class ActivityModule {
     public static final String ALGOLIA = "algolia";
     public static final String POPULAR = "popular";
+    public static final String LOCAL = "local";
     public static final String HN = "hn";
     private static final String TAG_OK_HTTP = "OkHttp";
     private static final long CACHE_SIZE = 20 * 1024 * 1024; // 20 MB
@@ -137,6 +147,11 @@ public class ActivityModule {
         return client;
     }
 
+    @Provides @Singleton @Named(LOCAL)
+    public ItemManager provideLocalSearchClient(LocalSearchClient client) {
+        return client;
+    }
+
     @Provides @Singleton
     public UserManager provideUserManager(HackerNewsClient client) {
         return client;
@@ -148,7 +163,7 @@ public class ActivityModule {
     }
 
     @Provides @Singleton
-    public ReadabilityClient provideReadabilityClient(ReadabilityClient.Impl client) {
+    public ReadabilityClient provideReadabilityClient(LocalReadabilityClient client) {
         return client;
     }
 
@@ -167,6 +182,11 @@ public class ActivityModule {
         return new RestServiceFactory.Impl(callFactory);
     }
 
+    @Provides @Singleton
+    public UpdateTracker provideUpdateTracker(Context context, RestServiceFactory factory) {
+        return new UpdateTracker(context, factory);
+    }
+
     @Provides @Singleton
     public ActionViewResolver provideActionViewResolver() {
         return new ActionViewResolver();
@@ -178,19 +198,31 @@ public class ActivityModule {
     }
 
     @Provides @Singleton
-    public UserServices provideUserServices(Call.Factory callFactory) {
-        return new UserServicesClient(callFactory);
+    public UserServices provideUserServices(Context context, Call.Factory callFactory) {
+        return new UserServicesClient(context, callFactory);
     }
 
     @Provides @Singleton
     public Call.Factory provideCallFactory(Context context) {
+        return createCallFactory(context, context.getApplicationContext().getCacheDir());
+    }
+
+    /**
+     * Creates network client with HTTP cache in given directory. As HTTP cache is not safe to
+     * be shared across processes, each process should have its own cache directory.
+     * @param context   context
+     * @param cacheDir  HTTP cache directory
+     * @return  network client
+     */
+    static Call.Factory createCallFactory(Context context, File cacheDir) {
         return new OkHttpClient.Builder()
-                .cache(new Cache(context.getApplicationContext().getCacheDir(), CACHE_SIZE))
+                .cache(new Cache(cacheDir, CACHE_SIZE))
                 .addNetworkInterceptor(new CacheOverrideNetworkInterceptor())
+                .addInterceptor(new ConditionalRequestInterceptor())
                 .addInterceptor(new ConnectionAwareInterceptor(context))
                 .addInterceptor(new LoggingInterceptor())
                 .followRedirects(false)
-                .cookieJar(new CookieJar())
+                .cookieJar(PersistentCookieJar.getInstance(context))
                 .build();
     }
 
@@ -235,7 +267,7 @@ public class ActivityModule {
         public Response intercept(Chain chain) throws IOException {
             Request request = chain.request();
             boolean forceCache = CACHE_ENABLED_HOSTS.containsKey(request.url().host()) &&
-                    !AppUtils.hasConnection(mContext);
+                    !Application.getConnectivityMonitor(mContext).isConnected();
             return chain.proceed(forceCache ?
                     request.newBuilder()
                             .cacheControl(CacheControl.FORCE_CACHE)
@@ -244,22 +276,82 @@ public class ActivityModule {
         }
     }
 
+    /**
+     * Overrides freshness of responses from cache enabled hosts, leaving their validators
+     * (ETag, Last-Modified) intact so that stale responses can be revalidated
+     * with a conditional request instead of being downloaded again
+     */
     public static class CacheOverrideNetworkInterceptor implements Interceptor {
+        private static final String HEADER_FIREBASE_ETAG = "X-Firebase-ETag";
 
         @Override
         public Response intercept(Chain chain) throws IOException {
             Request request = chain.request();
+            String host = request.url().host();
+            if (!ConnectionAwareInterceptor.CACHE_ENABLED_HOSTS.containsKey(host)) {
+                return chain.proceed(request);
+            }
+            if (TextUtils.equals(host, HackerNewsClient.HOST)) {
+                // Firebase only returns ETag upon request
+                request = request.newBuilder()
+                        .header(HEADER_FIREBASE_ETAG, Boolean.TRUE.toString())
+                        .build();
+            }
             Response response = chain.proceed(request);
-            if (!ConnectionAwareInterceptor.CACHE_ENABLED_HOSTS
-                    .containsKey(request.url().host())) {
-                return response;
-            } else {
-                return response.newBuilder()
-                        .header("Cache-Control",
-                                ConnectionAwareInterceptor.CACHE_ENABLED_HOSTS
-                                        .get(request.url().host()))
+            if (!response.isSuccessful() &&
+                    response.code() != HttpURLConnection.HTTP_NOT_MODIFIED) {
+                return response; // never extend lifetime of errors
+            }
+            return response.newBuilder()
+                    .header("Cache-Control",
+                            ConnectionAwareInterceptor.CACHE_ENABLED_HOSTS.get(host))
+                    .build();
+        }
+    }
+
+    /**
+     * Tracks bytes saved by responses revalidated with a 304, and passes the 304 through
+     * without body to requests opted in via {@link RestServiceFactory#HEADER_ALLOW_NOT_MODIFIED},
+     * so that callers which already hold the content can skip parsing it again
+     */
+    static class ConditionalRequestInterceptor implements Interceptor {
+        private final AtomicLong mBytesSaved = new AtomicLong();
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Request request = chain.request();
+            boolean allowNotModified = request.header(
+                    RestServiceFactory.HEADER_ALLOW_NOT_MODIFIED) != null;
+            if (allowNotModified) {
+                request = request.newBuilder()
+                        .removeHeader(RestServiceFactory.HEADER_ALLOW_NOT_MODIFIED)
                         .build();
             }
+            Response response = chain.proceed(request);
+            if (response.networkResponse() == null || response.cacheResponse() == null ||
+                    response.networkResponse().code() != HttpURLConnection.HTTP_NOT_MODIFIED) {
+                return response;
+            }
+            long saved = Math.max(0, response.body().contentLength());
+            long total = mBytesSaved.addAndGet(saved);
+            if (BuildConfig.DEBUG) {
+                Log.d(TAG_OK_HTTP, String.format(Locale.US,
+                        "%s not modified, %d bytes saved (%d total)", request.url(), saved, total));
+            }
+            if (!allowNotModified) {
+                return response;
+            }
+            MediaType contentType = response.body().contentType();
+            response.body().close();
+            return response.newBuilder()
+                    .code(HttpURLConnection.HTTP_NOT_MODIFIED)
+                    .message("Not Modified")
+                    .body(ResponseBody.create(contentType, new byte[0]))
+                    .build();
+        }
+
+        long getBytesSaved() {
+            return mBytesSaved.get();
         }
     }
 
@@ -275,31 +367,4 @@ public class ActivityModule {
             return debugInterceptor.intercept(chain);
         }
     }
-
-    static class CookieJar implements okhttp3.CookieJar {
-
-        private final HashMap<HttpUrl, List<Cookie>> cookieStore = new HashMap<>();
-
-        @Override
-        public void saveFromResponse(HttpUrl url, List<Cookie> cookies) {
-            if (cookies == null) {
-                return;
-            }
-            // accept original server
-            ArrayList<Cookie> originalCookies = new ArrayList<>();
-            //noinspection Convert2streamapi
-            for (Cookie cookie : cookies) {
-                if (HttpCookie.domainMatches(cookie.domain(), url.host())) {
-                    originalCookies.add(cookie);
-                }
-            }
-            cookieStore.put(url, originalCookies);
-        }
-
-        @Override
-        public List<Cookie> loadForRequest(HttpUrl url) {
-            List<Cookie> cookies = cookieStore.get(url);
-            return cookies != null ? cookies : new ArrayList<>();
-        }
-    }
 }
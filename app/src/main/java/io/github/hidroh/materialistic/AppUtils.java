@@ -115,6 +115,15 @@ public class AppUtils {
 
     public static void setTextWithLinks(TextView textView, String htmlText) {
         setHtmlText(textView, htmlText);
+        setLinkTouchListener(textView);
+    }
+
+    public static void setTextWithLinks(TextView textView, CharSequence text) {
+        textView.setText(text);
+        setLinkTouchListener(textView);
+    }
+
+    private static void setLinkTouchListener(TextView textView) {
         // TODO https://code.google.com/p/android/issues/detail?id=191430
         //noinspection Convert2Lambda
         textView.setOnTouchListener(new View.OnTouchListener() {
@@ -158,11 +167,12 @@ public class AppUtils {
         textView.setText(TextUtils.isEmpty(htmlText) ? null : trim(Html.fromHtml(htmlText)));
     }
 
-    static Intent makeEmailIntent(String subject, String text) {
-        final Intent intent = new Intent(Intent.ACTION_SENDTO);
-        intent.setData(Uri.parse("mailto:"));
+    static Intent makeShareFileIntent(String subject, Uri uri, String mimeType) {
+        final Intent intent = new Intent(Intent.ACTION_SEND);
+        intent.setType(mimeType);
         intent.putExtra(Intent.EXTRA_SUBJECT, subject);
-        intent.putExtra(Intent.EXTRA_TEXT, text);
+        intent.putExtra(Intent.EXTRA_STREAM, uri);
+        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
         return intent;
     }
 
@@ -34,12 +34,28 @@ public class Application extends android.app.Application {
     public static Typeface TYPE_FACE = null;
     private RefWatcher mRefWatcher;
     private ObjectGraph mApplicationGraph;
+    private ConnectivityMonitor mConnectivityMonitor;
 
     public static RefWatcher getRefWatcher(Context context) {
         Application application = (Application) context.getApplicationContext();
         return application.mRefWatcher;
     }
 
+    /**
+     * Gets connectivity monitor of current process, which starts monitoring upon first request
+     * @param context   an instance of {@link Context}
+     * @return  connectivity monitor
+     */
+    public static ConnectivityMonitor getConnectivityMonitor(Context context) {
+        Application application = (Application) context.getApplicationContext();
+        synchronized (application) {
+            if (application.mConnectivityMonitor == null) {
+                application.mConnectivityMonitor = new ConnectivityMonitor(application);
+            }
+            return application.mConnectivityMonitor;
+        }
+    }
+
     public static Account createSyncAccount() {
         return new Account(SYNC_ACCOUNT_NAME, SYNC_ACCOUNT_TYPE);
     }
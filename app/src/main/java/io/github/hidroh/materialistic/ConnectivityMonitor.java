@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.support.annotation.NonNull;
+import android.support.annotation.UiThread;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Process wide holder of current connectivity state, updated from connectivity broadcasts,
+ * so that callers do not have to query {@link ConnectivityManager} every time they need it,
+ * e.g. for every request. Listeners are notified of changes on main thread, and can use them
+ * to switch policies for work that is already in flight.
+ * @see Application#getConnectivityMonitor(Context)
+ */
+public class ConnectivityMonitor {
+
+    /**
+     * Callback interface for connectivity changes
+     */
+    public interface Listener {
+        /**
+         * Fired on main thread when connectivity state has changed
+         * @param monitor   monitor holding new connectivity state
+         */
+        @UiThread
+        void onConnectivityChanged(@NonNull ConnectivityMonitor monitor);
+    }
+
+    private final ConnectivityManager mConnectivityManager;
+    private final List<Listener> mListeners = new CopyOnWriteArrayList<>();
+    private volatile boolean mConnected;
+    private volatile boolean mOnWiFi;
+    private volatile boolean mMetered;
+
+    ConnectivityMonitor(Context context) {
+        mConnectivityManager = (ConnectivityManager) context.getSystemService(
+                Context.CONNECTIVITY_SERVICE);
+        update();
+        context.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                if (update()) {
+                    for (Listener listener : mListeners) {
+                        listener.onConnectivityChanged(ConnectivityMonitor.this);
+                    }
+                }
+            }
+        }, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+    }
+
+    /**
+     * Checks if there is an active network connection, or one being established
+     * @return  true if connected or connecting, false otherwise
+     */
+    public boolean isConnected() {
+        return mConnected;
+    }
+
+    /**
+     * Checks if active network connection is over Wi-Fi
+     * @return  true if connected or connecting over Wi-Fi, false otherwise
+     */
+    public boolean isOnWiFi() {
+        return mOnWiFi;
+    }
+
+    /**
+     * Checks if active network connection may incur data charges, which is assumed for all
+     * networks other than Wi-Fi and Ethernet
+     * @return  true if connected or connecting over metered network, false otherwise
+     */
+    public boolean isMetered() {
+        return mMetered;
+    }
+
+    public void addListener(@NonNull Listener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeListener(@NonNull Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    private boolean update() {
+        NetworkInfo activeNetwork = mConnectivityManager.getActiveNetworkInfo();
+        boolean connected = activeNetwork != null && activeNetwork.isConnectedOrConnecting();
+        boolean onWiFi = connected && activeNetwork.getType() == ConnectivityManager.TYPE_WIFI;
+        boolean metered = connected && !onWiFi &&
+                activeNetwork.getType() != ConnectivityManager.TYPE_ETHERNET;
+        boolean changed = connected != mConnected || onWiFi != mOnWiFi || metered != mMetered;
+        mConnected = connected;
+        mOnWiFi = onWiFi;
+        mMetered = metered;
+        return changed;
+    }
+}
@@ -16,16 +16,17 @@
 
 package io.github.hidroh.materialistic;
 
+import android.app.Activity;
 import android.app.ProgressDialog;
 import android.app.SearchManager;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
+import android.database.ContentObserver;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.annotation.Nullable;
-import android.support.v4.app.LoaderManager;
-import android.support.v4.content.Loader;
 import android.support.v4.content.LocalBroadcastManager;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.view.ActionMode;
@@ -38,33 +39,46 @@ import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
-
-import java.util.ArrayList;
+import android.widget.Toast;
 
 import javax.inject.Inject;
 
-import io.github.hidroh.materialistic.data.Favorite;
 import io.github.hidroh.materialistic.data.FavoriteManager;
+import io.github.hidroh.materialistic.data.FavoritePager;
 import io.github.hidroh.materialistic.data.MaterialisticProvider;
 import io.github.hidroh.materialistic.widget.FavoriteRecyclerViewAdapter;
 import io.github.hidroh.materialistic.widget.ListRecyclerViewAdapter;
 
 public class FavoriteFragment extends BaseListFragment
-        implements LoaderManager.LoaderCallbacks<Cursor>,
+        implements FavoritePager.Callbacks,
         FavoriteRecyclerViewAdapter.ActionModeDelegate {
     public static final String EXTRA_FILTER = FavoriteFragment.class.getName() + ".EXTRA_FILTER";
     private static final String STATE_FILTER = "state:filter";
     private static final String STATE_SEARCH_VIEW_EXPANDED = "state:searchViewExpanded";
+    private static final int REQUEST_IMPORT = 1;
 
     private final BroadcastReceiver mBroadcastReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
-            ArrayList<Favorite> favorites =
-                    intent.getParcelableArrayListExtra(FavoriteManager.ACTION_GET_EXTRA_DATA);
-            export(favorites);
+            if (FavoriteManager.ACTION_EXPORT.equals(intent.getAction())) {
+                export(intent.getParcelableExtra(FavoriteManager.ACTION_EXPORT_EXTRA_DATA),
+                        intent.getStringExtra(FavoriteManager.ACTION_EXPORT_EXTRA_TYPE));
+            } else {
+                onImportProgress(intent.getIntExtra(FavoriteManager.ACTION_IMPORT_EXTRA_COUNT, -1),
+                        intent.getBooleanExtra(FavoriteManager.ACTION_IMPORT_EXTRA_DONE, true));
+            }
+        }
+    };
+    private final ContentObserver mObserver = new ContentObserver(new Handler()) {
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            if (mPager != null) {
+                mPager.reload();
+            }
         }
     };
     private final FavoriteRecyclerViewAdapter mAdapter = new FavoriteRecyclerViewAdapter(this);
+    private FavoritePager mPager;
     private ProgressDialog mProgressDialog;
     private ActionMode mActionMode;
     private String mFilter;
@@ -79,7 +93,12 @@ public class FavoriteFragment extends BaseListFragment
     public void onAttach(final Context context) {
         super.onAttach(context);
         LocalBroadcastManager.getInstance(context).registerReceiver(mBroadcastReceiver,
-                FavoriteManager.makeGetIntentFilter());
+                FavoriteManager.makeExportIntentFilter());
+        LocalBroadcastManager.getInstance(context).registerReceiver(mBroadcastReceiver,
+                FavoriteManager.makeImportIntentFilter());
+        mPager = new FavoritePager(context.getContentResolver(), this);
+        context.getContentResolver().registerContentObserver(MaterialisticProvider.URI_FAVORITE,
+                true, mObserver);
     }
 
     @Override
@@ -115,13 +134,14 @@ public class FavoriteFragment extends BaseListFragment
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
         super.onActivityCreated(savedInstanceState);
-        getLoaderManager().restartLoader(FavoriteManager.LOADER, null, this);
+        mPager.setQuery(mFilter);
     }
 
     @Override
     protected void createOptionsMenu(final Menu menu, MenuInflater inflater) {
         inflater.inflate(R.menu.menu_search, menu);
         createSearchView(menu.findItem(R.id.menu_search));
+        inflater.inflate(R.menu.menu_favorite_import, menu);
         if (mAdapter.getItemCount() > 0) {
             inflater.inflate(R.menu.menu_favorite, menu);
             super.createOptionsMenu(menu, inflater);
@@ -144,13 +164,32 @@ public class FavoriteFragment extends BaseListFragment
             clear();
             return true;
         }
-        if (item.getItemId() == R.id.menu_email) {
-            startExport();
+        if (item.getItemId() == R.id.menu_export_html) {
+            startExport(FavoriteManager.FORMAT_HTML);
+            return true;
+        }
+        if (item.getItemId() == R.id.menu_export_json) {
+            startExport(FavoriteManager.FORMAT_JSON_LINES);
+            return true;
+        }
+        if (item.getItemId() == R.id.menu_import) {
+            startImport();
             return true;
         }
         return super.onOptionsItemSelected(item);
     }
 
+    @Override
+    public void onActivityResult(int requestCode, int resultCode, Intent data) {
+        if (requestCode == REQUEST_IMPORT && resultCode == Activity.RESULT_OK &&
+                data != null && data.getData() != null) {
+            showProgress(getString(R.string.importing, 0));
+            mFavoriteManager.importFrom(getActivity(), data.getData());
+            return;
+        }
+        super.onActivityResult(requestCode, resultCode, data);
+    }
+
     @Override
     public void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
@@ -162,6 +201,9 @@ public class FavoriteFragment extends BaseListFragment
     public void onDetach() {
         super.onDetach();
         LocalBroadcastManager.getInstance(getActivity()).unregisterReceiver(mBroadcastReceiver);
+        getActivity().getContentResolver().unregisterContentObserver(mObserver);
+        mPager.close();
+        mPager = null;
         mRecyclerView.setAdapter(null); // detach adapter
         if (mActionMode != null) {
             mActionMode.finish();
@@ -169,21 +211,17 @@ public class FavoriteFragment extends BaseListFragment
     }
 
     @Override
-    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-        if (!TextUtils.isEmpty(mFilter)) {
-            return new FavoriteManager.CursorLoader(getActivity(), mFilter);
+    public void onReset() {
+        mAdapter.setPager(mPager);
+        if (!isDetached()) {
+            toggleEmptyView(mAdapter.getItemCount() == 0, mFilter);
+            getActivity().supportInvalidateOptionsMenu();
         }
-        return new FavoriteManager.CursorLoader(getActivity());
-    }
-
-    @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        swapCursor(data == null ? null : new FavoriteManager.Cursor(data));
     }
 
     @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
-        swapCursor(null);
+    public void onPageLoaded(int start, int count) {
+        mAdapter.notifyItemRangeChanged(start, count);
     }
 
     /**
@@ -193,7 +231,7 @@ public class FavoriteFragment extends BaseListFragment
     public void filter(String query) {
         mSearchViewExpanded = false;
         mFilter = query;
-        getLoaderManager().restartLoader(FavoriteManager.LOADER, null, this);
+        mPager.setQuery(query);
     }
 
     @Override
@@ -222,18 +260,6 @@ public class FavoriteFragment extends BaseListFragment
         mActionMode = null;
     }
 
-    private void swapCursor(FavoriteManager.Cursor cursor) {
-        if (cursor != null) {
-            cursor.setNotificationUri(getContext().getContentResolver(),
-                    MaterialisticProvider.URI_FAVORITE);
-        }
-        mAdapter.setCursor(cursor);
-        if (!isDetached()) {
-            toggleEmptyView(mAdapter.getItemCount() == 0, mFilter);
-            getActivity().supportInvalidateOptionsMenu();
-        }
-    }
-
     private void toggleEmptyView(boolean isEmpty, String filter) {
         if (isEmpty) {
             if (TextUtils.isEmpty(filter)) {
@@ -280,29 +306,54 @@ public class FavoriteFragment extends BaseListFragment
                 .create().show();
     }
 
-    private void startExport() {
-        if (mProgressDialog == null) {
-            mProgressDialog = ProgressDialog.show(getActivity(), null,
-                    getString(R.string.preparing), true, true);
-        } else {
-            mProgressDialog.show();
-        }
-        mFavoriteManager.get(getActivity(), mFilter);
+    private void startExport(int format) {
+        showProgress(getString(R.string.preparing));
+        mFavoriteManager.export(getActivity(), mFilter, format);
     }
 
-    private void export(ArrayList<Favorite> favorites) {
+    private void export(Uri uri, String mimeType) {
         if (mProgressDialog != null) {
             mProgressDialog.dismiss();
         }
-        final Intent intent = AppUtils.makeEmailIntent(
-                getString(R.string.favorite_email_subject),
-                makeEmailContent(favorites));
+        if (uri == null) {
+            return;
+        }
+        final Intent intent = AppUtils.makeShareFileIntent(
+                getString(R.string.favorite_email_subject), uri, mimeType);
         if (intent.resolveActivity(getActivity().getPackageManager()) != null) {
             startActivity(intent);
         }
     }
 
-    private String makeEmailContent(ArrayList<Favorite> favorites) {
-        return TextUtils.join("\n\n", favorites);
+    private void startImport() {
+        Intent intent = new Intent(Intent.ACTION_GET_CONTENT)
+                .setType("*/*")
+                .addCategory(Intent.CATEGORY_OPENABLE);
+        if (intent.resolveActivity(getActivity().getPackageManager()) != null) {
+            startActivityForResult(intent, REQUEST_IMPORT);
+        }
+    }
+
+    private void onImportProgress(int count, boolean done) {
+        if (!done) {
+            showProgress(getString(R.string.importing, count));
+            return;
+        }
+        if (mProgressDialog != null) {
+            mProgressDialog.dismiss();
+        }
+        Toast.makeText(getActivity(), count < 0 ? getString(R.string.import_failed) :
+                        getResources().getQuantityString(R.plurals.imported, count, count),
+                Toast.LENGTH_SHORT)
+                .show();
+    }
+
+    private void showProgress(String message) {
+        if (mProgressDialog == null) {
+            mProgressDialog = ProgressDialog.show(getActivity(), null, message, true, true);
+        } else {
+            mProgressDialog.setMessage(message);
+            mProgressDialog.show();
+        }
     }
 }
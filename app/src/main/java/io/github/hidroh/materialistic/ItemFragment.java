@@ -18,12 +18,14 @@ package io.github.hidroh.materialistic;
 
 import android.content.Context;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.annotation.Nullable;
 import android.support.v4.app.DialogFragment;
 import android.support.v4.app.Fragment;
 import android.support.v4.widget.SwipeRefreshLayout;
 import android.support.v7.widget.RecyclerView;
 import android.text.TextUtils;
+import android.text.format.DateUtils;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -41,6 +43,7 @@ import javax.inject.Named;
 import io.github.hidroh.materialistic.data.Item;
 import io.github.hidroh.materialistic.data.ItemManager;
 import io.github.hidroh.materialistic.data.ResponseListener;
+import io.github.hidroh.materialistic.data.UpdateTracker;
 import io.github.hidroh.materialistic.data.WebItem;
 import io.github.hidroh.materialistic.widget.CommentItemDecoration;
 import io.github.hidroh.materialistic.widget.ItemRecyclerViewAdapter;
@@ -52,6 +55,7 @@ public class ItemFragment extends LazyLoadFragment implements Scrollable {
 
     public static final String EXTRA_ITEM = ItemFragment.class.getName() + ".EXTRA_ITEM";
     public static final String EXTRA_CACHE_MODE = ItemFragment.class.getName() + ".EXTRA_CACHE_MODE";
+    static final long LIVE_INTERVAL_MILLIS = DateUtils.MINUTE_IN_MILLIS / 2;
     private static final String STATE_ITEM = "state:item";
     private static final String STATE_ITEM_ID = "state:itemId";
     private static final String STATE_ADAPTER_ITEMS = "state:adapterItems";
@@ -61,6 +65,7 @@ public class ItemFragment extends LazyLoadFragment implements Scrollable {
     private Item mItem;
     private String mItemId;
     @Inject @Named(ActivityModule.HN) ItemManager mItemManager;
+    @Inject UpdateTracker mUpdateTracker;
     private SwipeRefreshLayout mSwipeRefreshLayout;
     private SinglePageItemRecyclerViewAdapter.SavedState mAdapterItems;
     private ItemRecyclerViewAdapter mAdapter;
@@ -68,6 +73,9 @@ public class ItemFragment extends LazyLoadFragment implements Scrollable {
     private @ItemManager.CacheMode int mCacheMode = ItemManager.MODE_DEFAULT;
     private final Preferences.Observable mPreferenceObservable = new Preferences.Observable();
     private CommentItemDecoration mItemDecoration;
+    private final Handler mHandler = new Handler();
+    private final Runnable mLiveTask = this::refreshLive;
+    private boolean mStarted;
 
     @Override
     public void onAttach(Context context) {
@@ -134,6 +142,22 @@ public class ItemFragment extends LazyLoadFragment implements Scrollable {
                 VolumeNavigationDelegate.RecyclerViewHelper.SCROLL_ITEM);
     }
 
+    @Override
+    public void onStart() {
+        super.onStart();
+        mUpdateTracker.start();
+        mStarted = true;
+        scheduleLive();
+    }
+
+    @Override
+    public void onStop() {
+        mStarted = false;
+        mHandler.removeCallbacks(mLiveTask);
+        mUpdateTracker.stop();
+        super.onStop();
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         if (item.getItemId() == R.id.menu_comments) {
@@ -222,6 +246,32 @@ public class ItemFragment extends LazyLoadFragment implements Scrollable {
         mAdapter.setCacheMode(mCacheMode);
         mAdapter.initDisplayOptions(getActivity());
         mRecyclerView.setAdapter(mAdapter);
+        scheduleLive();
+    }
+
+    /**
+     * Schedules next revalidation of displayed thread while in foreground. Only single page
+     * display can merge new comments in place, multiple pages still need a manual refresh.
+     */
+    private void scheduleLive() {
+        mHandler.removeCallbacks(mLiveTask);
+        if (mStarted && mAdapter instanceof SinglePageItemRecyclerViewAdapter) {
+            mHandler.postDelayed(mLiveTask, LIVE_INTERVAL_MILLIS);
+        }
+    }
+
+    private void refreshLive() {
+        // conditional request, only transfers thread root if it has changed
+        mItemManager.getItem(mItemId, ItemManager.MODE_NETWORK, new LiveResponseListener(this));
+    }
+
+    private void onLiveItemLoaded(@Nullable Item item) {
+        if (item != null && mItem != null &&
+                mAdapter instanceof SinglePageItemRecyclerViewAdapter) {
+            mItem.populate(item);
+            ((SinglePageItemRecyclerViewAdapter) mAdapter).mergeKids(mItem);
+        }
+        scheduleLive();
     }
 
     private void onPreferenceChanged(int key, boolean contextChanged) {
@@ -263,4 +313,26 @@ public class ItemFragment extends LazyLoadFragment implements Scrollable {
             }
         }
     }
+
+    private static class LiveResponseListener implements ResponseListener<Item> {
+        private final WeakReference<ItemFragment> mItemFragment;
+
+        LiveResponseListener(ItemFragment itemFragment) {
+            mItemFragment = new WeakReference<>(itemFragment);
+        }
+
+        @Override
+        public void onResponse(@Nullable Item response) {
+            if (mItemFragment.get() != null && mItemFragment.get().isAttached()) {
+                mItemFragment.get().onLiveItemLoaded(response);
+            }
+        }
+
+        @Override
+        public void onError(String errorMessage) {
+            if (mItemFragment.get() != null && mItemFragment.get().isAttached()) {
+                mItemFragment.get().onLiveItemLoaded(null);
+            }
+        }
+    }
 }
@@ -16,14 +16,28 @@
 
 package io.github.hidroh.materialistic;
 
+import android.content.Context;
 import android.os.Bundle;
 
 /**
- * Base fragment that controls load timing depends on WIFI and visibility
+ * Base fragment that controls load timing depends on WIFI and visibility.
+ * Fragments that are waiting to become visible load eagerly as soon as WIFI becomes available.
  */
 public abstract class LazyLoadFragment extends BaseFragment {
     private static final String STATE_EAGER_LOAD = "state:eagerLoad";
     private boolean mEagerLoad, mVisible, mActivityCreated;
+    private final ConnectivityMonitor.Listener mConnectivityListener = monitor -> {
+        if (!mEagerLoad && !mVisible && shouldEagerLoad(monitor)) {
+            mEagerLoad = true;
+            eagerLoad();
+        }
+    };
+
+    @Override
+    public void onAttach(Context context) {
+        super.onAttach(context);
+        Application.getConnectivityMonitor(context).addListener(mConnectivityListener);
+    }
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
@@ -31,7 +45,7 @@ public abstract class LazyLoadFragment extends BaseFragment {
         if (savedInstanceState != null) {
             mEagerLoad = savedInstanceState.getBoolean(STATE_EAGER_LOAD);
         } else {
-            mEagerLoad = !Preferences.shouldLazyLoad(getActivity()) && AppUtils.isOnWiFi(getContext());
+            mEagerLoad = shouldEagerLoad(Application.getConnectivityMonitor(getContext()));
         }
     }
 
@@ -59,6 +73,7 @@ public abstract class LazyLoadFragment extends BaseFragment {
 
     @Override
     public void onDetach() {
+        Application.getConnectivityMonitor(getContext()).removeListener(mConnectivityListener);
         super.onDetach();
         mActivityCreated = false;
     }
@@ -68,6 +83,10 @@ public abstract class LazyLoadFragment extends BaseFragment {
      */
     protected abstract void load();
 
+    private boolean shouldEagerLoad(ConnectivityMonitor monitor) {
+        return !Preferences.shouldLazyLoad(getActivity()) && monitor.isOnWiFi();
+    }
+
     final void eagerLoad() {
         if (mActivityCreated && (mEagerLoad || mVisible)) {
             load();
@@ -20,6 +20,7 @@ import android.content.Context;
 import android.os.Bundle;
 import android.support.annotation.Nullable;
 import android.support.v4.widget.SwipeRefreshLayout;
+import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.text.TextUtils;
 import android.view.LayoutInflater;
@@ -36,9 +37,13 @@ import javax.inject.Named;
 
 import io.github.hidroh.materialistic.data.AlgoliaClient;
 import io.github.hidroh.materialistic.data.AlgoliaPopularClient;
+import io.github.hidroh.materialistic.data.ConditionalResponseListener;
 import io.github.hidroh.materialistic.data.Item;
 import io.github.hidroh.materialistic.data.ItemManager;
+import io.github.hidroh.materialistic.data.LocalSearchClient;
+import io.github.hidroh.materialistic.data.PagedItemManager;
 import io.github.hidroh.materialistic.data.ResponseListener;
+import io.github.hidroh.materialistic.data.UpdateTracker;
 import io.github.hidroh.materialistic.widget.ListRecyclerViewAdapter;
 import io.github.hidroh.materialistic.widget.StoryRecyclerViewAdapter;
 
@@ -48,18 +53,24 @@ public class ListFragment extends BaseListFragment {
     public static final String EXTRA_FILTER = ListFragment.class.getName() + ".EXTRA_FILTER";
     private static final String STATE_FILTER = "state:filter";
     private static final String STATE_CACHE_MODE = "state:cacheMode";
+    private static final int PREFETCH_DISTANCE = 10;
     private final Preferences.Observable mPreferenceObservable = new Preferences.Observable();
     private final StoryRecyclerViewAdapter mAdapter = new StoryRecyclerViewAdapter();
     private SwipeRefreshLayout mSwipeRefreshLayout;
     @Inject @Named(ActivityModule.HN) ItemManager mHnItemManager;
     @Inject @Named(ActivityModule.ALGOLIA) ItemManager mAlgoliaItemManager;
     @Inject @Named(ActivityModule.POPULAR) ItemManager mPopularItemManager;
+    @Inject @Named(ActivityModule.LOCAL) ItemManager mLocalItemManager;
+    @Inject UpdateTracker mUpdateTracker;
     private ItemManager mItemManager;
     private View mErrorView;
     private View mEmptyView;
     private RefreshCallback mRefreshCallback;
     private String mFilter;
     private int mCacheMode = ItemManager.MODE_DEFAULT;
+    private boolean mHasMore = true;
+    private boolean mLoadingMore;
+    private int mListVersion;
 
     public interface RefreshCallback {
         void onRefreshed();
@@ -118,9 +129,21 @@ public class ListFragment extends BaseListFragment {
             mItemManager = mAlgoliaItemManager;
         } else if (TextUtils.equals(managerClassName, AlgoliaPopularClient.class.getName())) {
             mItemManager = mPopularItemManager;
+        } else if (TextUtils.equals(managerClassName, LocalSearchClient.class.getName())) {
+            mItemManager = mLocalItemManager;
         } else {
             mItemManager = mHnItemManager;
         }
+        if (mItemManager instanceof PagedItemManager) {
+            mRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+                @Override
+                public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                    if (dy > 0) {
+                        loadMore();
+                    }
+                }
+            });
+        }
         if (mAdapter.getItems() != null) {
             mAdapter.notifyDataSetChanged();
         } else {
@@ -128,6 +151,18 @@ public class ListFragment extends BaseListFragment {
         }
     }
 
+    @Override
+    public void onStart() {
+        super.onStart();
+        mUpdateTracker.start();
+    }
+
+    @Override
+    public void onStop() {
+        mUpdateTracker.stop();
+        super.onStop();
+    }
+
     @Override
     public void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
@@ -166,6 +201,38 @@ public class ListFragment extends BaseListFragment {
         mItemManager.getStories(mFilter, mCacheMode, new ListResponseListener(this));
     }
 
+    /**
+     * Prefetches next page if list has been scrolled near its end
+     */
+    private void loadMore() {
+        if (!isAttached() || mLoadingMore || !mHasMore || mAdapter.getItems() == null) {
+            return;
+        }
+        int lastVisible = ((LinearLayoutManager) mRecyclerView.getLayoutManager())
+                .findLastVisibleItemPosition();
+        if (lastVisible < mAdapter.getItemCount() - PREFETCH_DISTANCE) {
+            return;
+        }
+        mLoadingMore = true;
+        ((PagedItemManager) mItemManager).getStories(mFilter, mCacheMode,
+                mAdapter.getItems().size(), new PageResponseListener(this, mListVersion));
+    }
+
+    private void onPageLoaded(Item[] items, int listVersion) {
+        if (!isAttached() || listVersion != mListVersion) {
+            return;
+        }
+        mLoadingMore = false;
+        if (items == null) {
+            return; // retry upon next scroll
+        }
+        if (items.length == 0) {
+            mHasMore = false;
+        } else {
+            mAdapter.addItems(items);
+        }
+    }
+
     private void onItemsLoaded(Item[] items) {
         if (!isAttached()) {
             return;
@@ -182,6 +249,9 @@ public class ListFragment extends BaseListFragment {
                         Toast.LENGTH_SHORT).show();
             }
         } else {
+            mListVersion++; // list replaced, invalidate pages in flight
+            mLoadingMore = false;
+            mHasMore = true;
             mAdapter.setItems(new ArrayList<>(Arrays.asList(items)));
             if (items.length == 0) {
                 mEmptyView.setVisibility(View.VISIBLE);
@@ -195,10 +265,30 @@ public class ListFragment extends BaseListFragment {
             if (mRefreshCallback != null) {
                 mRefreshCallback.onRefreshed();
             }
+            if (mItemManager instanceof PagedItemManager) {
+                // first page may not fill the screen, in which case there is nothing to scroll
+                mRecyclerView.post(this::loadMore);
+            }
+        }
+    }
+
+    private void onItemsNotModified() {
+        if (!isAttached()) {
+            return;
+        }
+        if (mAdapter.getItems() == null) {
+            // nothing to keep, load the just revalidated list from cache
+            mItemManager.getStories(mFilter, ItemManager.MODE_CACHE,
+                    new ListResponseListener(this));
+            return;
+        }
+        mSwipeRefreshLayout.setRefreshing(false);
+        if (mRefreshCallback != null) {
+            mRefreshCallback.onRefreshed();
         }
     }
 
-    private static class ListResponseListener implements ResponseListener<Item[]> {
+    private static class ListResponseListener implements ConditionalResponseListener<Item[]> {
         private final WeakReference<ListFragment> mListFragment;
 
         public ListResponseListener(ListFragment listFragment) {
@@ -217,5 +307,36 @@ public class ListFragment extends BaseListFragment {
                 mListFragment.get().onItemsLoaded(null);
             }
         }
+
+        @Override
+        public void onNotModified() {
+            if (mListFragment.get() != null && mListFragment.get().isAttached()) {
+                mListFragment.get().onItemsNotModified();
+            }
+        }
+    }
+
+    private static class PageResponseListener implements ResponseListener<Item[]> {
+        private final WeakReference<ListFragment> mListFragment;
+        private final int mListVersion;
+
+        PageResponseListener(ListFragment listFragment, int listVersion) {
+            mListFragment = new WeakReference<>(listFragment);
+            mListVersion = listVersion;
+        }
+
+        @Override
+        public void onResponse(@Nullable Item[] response) {
+            if (mListFragment.get() != null) {
+                mListFragment.get().onPageLoaded(response, mListVersion);
+            }
+        }
+
+        @Override
+        public void onError(String errorMessage) {
+            if (mListFragment.get() != null) {
+                mListFragment.get().onPageLoaded(null, mListVersion);
+            }
+        }
     }
 }
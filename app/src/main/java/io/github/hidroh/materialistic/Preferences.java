@@ -182,6 +182,10 @@ public class Preferences {
         return getFloatFromString(context, R.string.pref_readability_line_height, 1.0f);
     }
 
+    public static boolean isReadabilityNative(Context context) {
+        return get(context, R.string.pref_readability_native, true);
+    }
+
     static boolean shouldLazyLoad(Context context) {
         return get(context, R.string.pref_lazy_load, true);
     }
@@ -403,12 +407,23 @@ public class Preferences {
             return get(context, R.string.pref_offline_notification, false);
         }
 
-        private static boolean isWifiOnly(Context context) {
+        public static boolean isWifiOnly(Context context) {
             String wifiValue = context.getString(R.string.offline_data_wifi);
             return TextUtils.equals(wifiValue, get(context, R.string.pref_offline_data, wifiValue));
         }
     }
 
+    public static class Widget {
+
+        public static boolean isUnmeteredOnly(Context context) {
+            return get(context, R.string.pref_widget_unmetered_only, false);
+        }
+
+        public static boolean isBatterySaverEnabled(Context context) {
+            return get(context, R.string.pref_widget_battery_saver, true);
+        }
+    }
+
     static class Observable {
         private static Set<String> CONTEXT_KEYS;
         private final Map<String, Integer> mSubscribedKeys = new HashMap<>();
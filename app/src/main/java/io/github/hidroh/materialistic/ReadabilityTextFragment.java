@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic;
+
+import android.content.Context;
+import android.os.AsyncTask;
+import android.os.Bundle;
+import android.support.annotation.Nullable;
+import android.support.v4.app.DialogFragment;
+import android.support.v4.app.Fragment;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.text.TextUtils;
+import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuInflater;
+import android.view.MenuItem;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import io.github.hidroh.materialistic.data.ReadabilityClient;
+import io.github.hidroh.materialistic.data.WebItem;
+import io.github.hidroh.materialistic.widget.HtmlParagraphParser;
+import io.github.hidroh.materialistic.widget.ReadabilityRecyclerViewAdapter;
+
+/**
+ * Shows readability content as native text paragraphs instead of a web page, which is
+ * much cheaper to start and to keep in memory than a WebView
+ */
+public class ReadabilityTextFragment extends LazyLoadFragment implements Scrollable {
+    public static final String EXTRA_ITEM = ReadabilityTextFragment.class.getName() + ".EXTRA_ITEM";
+    private static final String STATE_CONTENT = "state:content";
+    @Inject ReadabilityClient mReadabilityClient;
+    private final Preferences.Observable mPreferenceObservable = new Preferences.Observable();
+    private RecyclerView mRecyclerView;
+    private View mProgress;
+    private View mEmptyView;
+    private VolumeNavigationDelegate.RecyclerViewHelper mScrollableHelper;
+    private ReadabilityRecyclerViewAdapter mAdapter;
+    private String mContent;
+
+    @Override
+    public void onAttach(Context context) {
+        super.onAttach(context);
+        mPreferenceObservable.subscribe(context, (key, contextChanged) -> {
+            if (!contextChanged) {
+                setTextAppearance();
+            }
+        },
+                R.string.pref_readability_font,
+                R.string.pref_readability_line_height,
+                R.string.pref_readability_text_size);
+    }
+
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        if (savedInstanceState != null) {
+            mContent = savedInstanceState.getString(STATE_CONTENT);
+        }
+    }
+
+    @Override
+    public View onCreateView(LayoutInflater inflater, @Nullable ViewGroup container,
+                             @Nullable Bundle savedInstanceState) {
+        View view = getLayoutInflater(savedInstanceState)
+                .inflate(R.layout.fragment_readability, container, false);
+        mRecyclerView = (RecyclerView) view.findViewById(R.id.recycler_view);
+        mRecyclerView.setLayoutManager(new LinearLayoutManager(getActivity()));
+        mProgress = view.findViewById(R.id.progress);
+        mEmptyView = view.findViewById(R.id.empty_readability);
+        return view;
+    }
+
+    @Override
+    public void onViewCreated(View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        setHasOptionsMenu(true);
+        mScrollableHelper = new VolumeNavigationDelegate.RecyclerViewHelper(mRecyclerView,
+                VolumeNavigationDelegate.RecyclerViewHelper.SCROLL_PAGE);
+    }
+
+    @Override
+    protected void createOptionsMenu(Menu menu, MenuInflater inflater) {
+        inflater.inflate(R.menu.menu_font_options, menu);
+    }
+
+    @Override
+    protected void prepareOptionsMenu(Menu menu) {
+        menu.findItem(R.id.menu_font_options).setVisible(!TextUtils.isEmpty(mContent));
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.menu_font_options) {
+            Bundle args = new Bundle();
+            args.putInt(PopupSettingsFragment.EXTRA_XML_PREFERENCES, R.xml.preferences_readability);
+            ((DialogFragment) Fragment.instantiate(getActivity(),
+                    PopupSettingsFragment.class.getName(), args))
+                    .show(getFragmentManager(), PopupSettingsFragment.class.getName());
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    @Override
+    public void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_CONTENT, mContent);
+    }
+
+    @Override
+    public void onDetach() {
+        super.onDetach();
+        mPreferenceObservable.unsubscribe(getActivity());
+    }
+
+    @Override
+    public void scrollToTop() {
+        mScrollableHelper.scrollToTop();
+    }
+
+    @Override
+    public boolean scrollToNext() {
+        return mScrollableHelper.scrollToNext();
+    }
+
+    @Override
+    public boolean scrollToPrevious() {
+        return mScrollableHelper.scrollToPrevious();
+    }
+
+    @Override
+    protected void load() {
+        if (mAdapter != null) {
+            return;
+        }
+        if (!TextUtils.isEmpty(mContent)) {
+            render(mContent);
+            return;
+        }
+        WebItem item = getArguments().getParcelable(EXTRA_ITEM);
+        if (item == null) {
+            return;
+        }
+        mReadabilityClient.parse(item.getId(), item.getUrl(), new ReadabilityCallback(this));
+    }
+
+    private void onParsed(String content) {
+        mContent = content;
+        getActivity().supportInvalidateOptionsMenu();
+        if (TextUtils.isEmpty(content)) {
+            mProgress.setVisibility(View.GONE);
+            mEmptyView.setVisibility(View.VISIBLE);
+        } else {
+            render(content);
+        }
+    }
+
+    private void render(String content) {
+        new ParseTask(this, getResources().getDimensionPixelSize(R.dimen.activity_horizontal_margin))
+                .execute(content);
+    }
+
+    private void onRendered(List<CharSequence> paragraphs) {
+        mProgress.setVisibility(View.GONE);
+        mAdapter = new ReadabilityRecyclerViewAdapter(paragraphs);
+        setTextAppearance();
+        mRecyclerView.setAdapter(mAdapter);
+    }
+
+    private void setTextAppearance() {
+        if (mAdapter == null) {
+            return;
+        }
+        mAdapter.setTextAppearance(
+                FontCache.getInstance().get(getActivity(),
+                        Preferences.Theme.getReadabilityTypeface(getActivity())),
+                AppUtils.getDimension(getActivity(),
+                        Preferences.Theme.resolvePreferredReadabilityTextSize(getActivity()),
+                        R.attr.contentTextSize),
+                Preferences.getReadabilityLineHeight(getActivity()));
+    }
+
+    private static class ReadabilityCallback implements ReadabilityClient.Callback {
+        private final WeakReference<ReadabilityTextFragment> mReadabilityTextFragment;
+
+        ReadabilityCallback(ReadabilityTextFragment readabilityTextFragment) {
+            mReadabilityTextFragment = new WeakReference<>(readabilityTextFragment);
+        }
+
+        @Override
+        public void onResponse(String content) {
+            if (mReadabilityTextFragment.get() != null &&
+                    mReadabilityTextFragment.get().isAttached()) {
+                mReadabilityTextFragment.get().onParsed(content);
+            }
+        }
+    }
+
+    private static class ParseTask extends AsyncTask<String, Void, List<CharSequence>> {
+        private final WeakReference<ReadabilityTextFragment> mReadabilityTextFragment;
+        private final int mIndent;
+
+        ParseTask(ReadabilityTextFragment readabilityTextFragment, int indent) {
+            mReadabilityTextFragment = new WeakReference<>(readabilityTextFragment);
+            mIndent = indent;
+        }
+
+        @Override
+        protected List<CharSequence> doInBackground(String... params) {
+            return HtmlParagraphParser.parse(params[0], mIndent);
+        }
+
+        @Override
+        protected void onPostExecute(List<CharSequence> paragraphs) {
+            if (mReadabilityTextFragment.get() != null &&
+                    mReadabilityTextFragment.get().isAttached()) {
+                mReadabilityTextFragment.get().onRendered(paragraphs);
+            }
+        }
+    }
+}
@@ -18,52 +18,105 @@ package io.github.hidroh.materialistic;
 
 import android.app.SearchManager;
 import android.os.Bundle;
+import android.os.Handler;
 import android.provider.SearchRecentSuggestions;
 import android.support.v4.app.Fragment;
+import android.support.v7.widget.SearchView;
 import android.text.TextUtils;
 import android.view.Menu;
 import android.view.MenuItem;
 
 import io.github.hidroh.materialistic.data.AlgoliaClient;
 import io.github.hidroh.materialistic.data.HackerNewsClient;
+import io.github.hidroh.materialistic.data.LocalSearchClient;
 import io.github.hidroh.materialistic.data.SearchRecentSuggestionsProvider;
 
 public class SearchActivity extends BaseListActivity {
 
+    static final long SEARCH_DELAY_MILLIS = 300;
     private static final int MAX_RECENT_SUGGESTIONS = 10;
+    private static final String STATE_QUERY = "state:query";
+    private static final String STATE_OFFLINE = "state:offline";
+    private final Handler mHandler = new Handler();
     private String mQuery;
+    private String mPendingQuery;
+    private boolean mOffline;
+    private boolean mConnected;
+    private final Runnable mSearchRunnable = () -> search(mPendingQuery);
+    private final ConnectivityMonitor.Listener mConnectivityListener =
+            this::onConnectivityChanged;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
-        if (getIntent().hasExtra(SearchManager.QUERY)) {
-            mQuery = getIntent().getStringExtra(SearchManager.QUERY);
+        mConnected = Application.getConnectivityMonitor(this).isConnected();
+        if (savedInstanceState != null) {
+            mQuery = savedInstanceState.getString(STATE_QUERY);
+            mOffline = savedInstanceState.getBoolean(STATE_OFFLINE);
+        } else {
+            if (getIntent().hasExtra(SearchManager.QUERY)) {
+                mQuery = getIntent().getStringExtra(SearchManager.QUERY);
+            }
+            mOffline = !mConnected;
         }
         super.onCreate(savedInstanceState);
         if (!TextUtils.isEmpty(mQuery)) {
             getSupportActionBar().setSubtitle(mQuery);
-            SearchRecentSuggestions suggestions = new SearchRecentSuggestions(this,
-                    SearchRecentSuggestionsProvider.PROVIDER_AUTHORITY,
-                    SearchRecentSuggestionsProvider.MODE) {
-                @Override
-                public void saveRecentQuery(String queryString, String line2) {
-                    truncateHistory(getContentResolver(), MAX_RECENT_SUGGESTIONS - 1);
-                    super.saveRecentQuery(queryString, line2);
-                }
-            };
-            suggestions.saveRecentQuery(mQuery, null);
+            if (savedInstanceState == null) {
+                saveRecentQuery(mQuery);
+            }
         }
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        ConnectivityMonitor monitor = Application.getConnectivityMonitor(this);
+        monitor.addListener(mConnectivityListener);
+        onConnectivityChanged(monitor); // catch up with changes while stopped
+    }
+
+    @Override
+    protected void onStop() {
+        Application.getConnectivityMonitor(this).removeListener(mConnectivityListener);
+        super.onStop();
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.menu_sort, menu);
-        return super.onCreateOptionsMenu(menu);
+        boolean result = super.onCreateOptionsMenu(menu);
+        SearchView searchView = (SearchView) mActionViewResolver.getActionView(
+                menu.findItem(R.id.menu_search));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                mHandler.removeCallbacks(mSearchRunnable);
+                search(query);
+                saveRecentQuery(query);
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                // search as user types, once typing pauses
+                mHandler.removeCallbacks(mSearchRunnable);
+                if (!TextUtils.isEmpty(newText) && !TextUtils.isEmpty(newText.trim())) {
+                    mPendingQuery = newText;
+                    mHandler.postDelayed(mSearchRunnable, SEARCH_DELAY_MILLIS);
+                }
+                return true;
+            }
+        });
+        return result;
     }
 
     @Override
     public boolean onPrepareOptionsMenu(Menu menu) {
         menu.findItem(AlgoliaClient.sSortByTime ? R.id.menu_sort_recent : R.id.menu_sort_popular)
                 .setChecked(true);
+        menu.findItem(R.id.menu_sort).setVisible(!mOffline); // saved content is ranked by match
+        menu.findItem(R.id.menu_search_offline).setChecked(mOffline);
         return super.onPrepareOptionsMenu(menu);
     }
 
@@ -74,9 +127,26 @@ public class SearchActivity extends BaseListActivity {
             sort(item.getItemId() == R.id.menu_sort_recent);
             return true;
         }
+        if (item.getItemId() == R.id.menu_search_offline) {
+            setOffline(!mOffline);
+            return true;
+        }
         return super.onOptionsItemSelected(item);
     }
 
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_QUERY, mQuery);
+        outState.putBoolean(STATE_OFFLINE, mOffline);
+    }
+
+    @Override
+    protected void onDestroy() {
+        mHandler.removeCallbacks(mSearchRunnable);
+        super.onDestroy();
+    }
+
     @Override
     protected String getDefaultTitle() {
         return getString(R.string.title_activity_search);
@@ -88,12 +158,72 @@ public class SearchActivity extends BaseListActivity {
         args.putString(ListFragment.EXTRA_FILTER, mQuery);
         if (TextUtils.isEmpty(mQuery)) {
             args.putString(ListFragment.EXTRA_ITEM_MANAGER, HackerNewsClient.class.getName());
+        } else if (mOffline) {
+            args.putString(ListFragment.EXTRA_ITEM_MANAGER, LocalSearchClient.class.getName());
         } else {
             args.putString(ListFragment.EXTRA_ITEM_MANAGER, AlgoliaClient.class.getName());
         }
         return Fragment.instantiate(this, ListFragment.class.getName(), args);
     }
 
+    private void search(String query) {
+        query = query.trim();
+        if (TextUtils.isEmpty(query) || TextUtils.equals(query, mQuery)) {
+            return;
+        }
+        boolean wasEmpty = TextUtils.isEmpty(mQuery);
+        mQuery = query;
+        getSupportActionBar().setSubtitle(mQuery);
+        ListFragment listFragment = (ListFragment) getSupportFragmentManager()
+                .findFragmentByTag(LIST_FRAGMENT_TAG);
+        if (wasEmpty || listFragment == null) {
+            // list was not backed by search, replace it
+            getSupportFragmentManager()
+                    .beginTransaction()
+                    .replace(android.R.id.list, instantiateListFragment(), LIST_FRAGMENT_TAG)
+                    .commit();
+        } else {
+            listFragment.filter(mQuery);
+        }
+    }
+
+    private void saveRecentQuery(String query) {
+        SearchRecentSuggestions suggestions = new SearchRecentSuggestions(this,
+                SearchRecentSuggestionsProvider.PROVIDER_AUTHORITY,
+                SearchRecentSuggestionsProvider.MODE) {
+            @Override
+            public void saveRecentQuery(String queryString, String line2) {
+                truncateHistory(getContentResolver(), MAX_RECENT_SUGGESTIONS - 1);
+                super.saveRecentQuery(queryString, line2);
+            }
+        };
+        suggestions.saveRecentQuery(query, null);
+    }
+
+    private void onConnectivityChanged(ConnectivityMonitor monitor) {
+        // only follow connection being lost or restored, so that offline toggle set by user
+        // is kept otherwise, e.g. when switching networks
+        if (monitor.isConnected() == mConnected) {
+            return;
+        }
+        mConnected = monitor.isConnected();
+        if (mOffline == mConnected) {
+            setOffline(!mConnected);
+        }
+    }
+
+    private void setOffline(boolean offline) {
+        mOffline = offline;
+        supportInvalidateOptionsMenu();
+        if (!TextUtils.isEmpty(mQuery)) {
+            // switch search backend
+            getSupportFragmentManager()
+                    .beginTransaction()
+                    .replace(android.R.id.list, instantiateListFragment(), LIST_FRAGMENT_TAG)
+                    .commit();
+        }
+    }
+
     private void sort(boolean byTime) {
         if (AlgoliaClient.sSortByTime == byTime) {
             return;
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic;
+
+import android.content.Context;
+
+import java.io.File;
+
+import javax.inject.Singleton;
+
+import dagger.Module;
+import dagger.Provides;
+import okhttp3.Call;
+
+/**
+ * Overrides {@link ActivityModule} for sync process, so that its network client does not share
+ * HTTP cache with UI process, as HTTP cache is not safe to be shared across processes.
+ * Synced items are shared with UI process via item store instead.
+ */
+@Module(
+        library = true,
+        complete = false,
+        overrides = true
+)
+public class SyncModule {
+    private static final String CACHE_DIR = "sync";
+
+    @Provides @Singleton
+    public Call.Factory provideCallFactory(Context context) {
+        return ActivityModule.createCallFactory(context,
+                new File(context.getApplicationContext().getCacheDir(), CACHE_DIR));
+    }
+}
@@ -39,14 +39,17 @@ import javax.inject.Named;
 
 import io.github.hidroh.materialistic.data.ItemManager;
 import io.github.hidroh.materialistic.data.ResponseListener;
+import io.github.hidroh.materialistic.data.SubmissionPager;
 import io.github.hidroh.materialistic.data.UserManager;
 import io.github.hidroh.materialistic.widget.CommentItemDecoration;
 import io.github.hidroh.materialistic.widget.SnappyLinearLayoutManager;
 import io.github.hidroh.materialistic.widget.SubmissionRecyclerViewAdapter;
 
-public class UserActivity extends InjectableActivity implements Scrollable {
+public class UserActivity extends InjectableActivity implements Scrollable,
+        SubmissionPager.Callbacks {
     public static final String EXTRA_USERNAME = UserActivity.class.getName() + ".EXTRA_USERNAME";
     private static final String STATE_USER = "state:user";
+    private static final String STATE_FILTER = "state:filter";
     private static final String PARAM_ID = "id";
     @Inject UserManager mUserManager;
     @Inject @Named(ActivityModule.HN) ItemManager mItemManger;
@@ -54,6 +57,9 @@ public class UserActivity extends InjectableActivity implements Scrollable {
     private VolumeNavigationDelegate.RecyclerViewHelper mScrollableHelper;
     private String mUsername;
     private UserManager.User mUser;
+    private SubmissionPager mPager;
+    private SubmissionRecyclerViewAdapter mAdapter;
+    private @SubmissionPager.Filter int mFilter = SubmissionPager.FILTER_ALL;
     private TextView mInfo;
     private TextView mAbout;
     private RecyclerView mRecyclerView;
@@ -111,7 +117,10 @@ public class UserActivity extends InjectableActivity implements Scrollable {
         mTabLayout.setOnTabSelectedListener(new TabLayout.OnTabSelectedListener() {
             @Override
             public void onTabSelected(TabLayout.Tab tab) {
-                // no op
+                if (mPager != null && tab.getTag() != null) {
+                    //noinspection WrongConstant
+                    mPager.setFilter((Integer) tab.getTag());
+                }
             }
 
             @Override
@@ -132,6 +141,8 @@ public class UserActivity extends InjectableActivity implements Scrollable {
                 VolumeNavigationDelegate.RecyclerViewHelper.SCROLL_ITEM);
         if (savedInstanceState != null) {
             mUser = savedInstanceState.getParcelable(STATE_USER);
+            //noinspection WrongConstant
+            mFilter = savedInstanceState.getInt(STATE_FILTER, SubmissionPager.FILTER_ALL);
         }
         if (mUser == null) {
             load();
@@ -155,6 +166,9 @@ public class UserActivity extends InjectableActivity implements Scrollable {
     protected void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
         outState.putParcelable(STATE_USER, mUser);
+        if (mPager != null) {
+            outState.putInt(STATE_FILTER, mPager.getFilter());
+        }
     }
 
     @Override
@@ -163,6 +177,14 @@ public class UserActivity extends InjectableActivity implements Scrollable {
         mVolumeNavigationDelegate.detach(this);
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (mPager != null) {
+            mPager.close();
+        }
+    }
+
     @Override
     public boolean onKeyDown(int keyCode, KeyEvent event) {
         mVolumeNavigationDelegate.setScrollable(this, null);
@@ -202,6 +224,21 @@ public class UserActivity extends InjectableActivity implements Scrollable {
         return true;
     }
 
+    @Override
+    public void onReset() {
+        mAdapter.notifyDataSetChanged();
+    }
+
+    @Override
+    public void onItemsLoaded(int start, int count) {
+        mAdapter.notifyItemRangeChanged(start, count);
+    }
+
+    @Override
+    public void onItemsInserted(int start, int count) {
+        mAdapter.notifyItemRangeInserted(start, count);
+    }
+
     private void load() {
         mUserManager.getUser(mUsername, new UserResponseListener(this));
     }
@@ -230,10 +267,20 @@ public class UserActivity extends InjectableActivity implements Scrollable {
         } else {
             AppUtils.setTextWithLinks(mAbout, mUser.getAbout());
         }
-        int count = mUser.getItems().length;
+        int count = mUser.getSubmitted().length;
+        mPager = new SubmissionPager(mItemManger, mUser.getSubmitted(), this);
+        mAdapter = new SubmissionRecyclerViewAdapter(mItemManger, mPager);
+        mPager.setFilter(mFilter);
+        mTabLayout.addTab(mTabLayout.newTab()
+                .setText(getResources().getQuantityString(R.plurals.submissions_count, count, count))
+                .setTag(SubmissionPager.FILTER_ALL), mFilter == SubmissionPager.FILTER_ALL);
+        mTabLayout.addTab(mTabLayout.newTab()
+                .setText(R.string.stories)
+                .setTag(SubmissionPager.FILTER_STORIES), mFilter == SubmissionPager.FILTER_STORIES);
         mTabLayout.addTab(mTabLayout.newTab()
-                .setText(getResources().getQuantityString(R.plurals.submissions_count, count, count)));
-        mRecyclerView.setAdapter(new SubmissionRecyclerViewAdapter(mItemManger, mUser.getItems()));
+                .setText(R.string.comments)
+                .setTag(SubmissionPager.FILTER_COMMENTS), mFilter == SubmissionPager.FILTER_COMMENTS);
+        mRecyclerView.setAdapter(mAdapter);
         mRecyclerView.setLayoutFrozen(mBottomSheetBehavior.getState() !=
                 BottomSheetBehavior.STATE_EXPANDED);
     }
@@ -17,8 +17,10 @@
 package io.github.hidroh.materialistic.accounts;
 
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.os.Handler;
 import android.os.Looper;
+import android.support.annotation.Nullable;
 import android.support.annotation.WorkerThread;
 import android.support.v4.util.Pair;
 import android.text.TextUtils;
@@ -43,6 +45,7 @@ import okhttp3.ResponseBody;
 public class UserServicesClient implements UserServices {
     private static final String BASE_WEB_URL = "https://news.ycombinator.com";
     private static final String LOGIN_PATH = "login";
+    private static final String ITEM_PATH = "item";
     private static final String VOTE_PATH = "vote";
     private static final String COMMENT_PATH = "comment";
     private static final String SUBMIT_PATH = "submit";
@@ -51,10 +54,14 @@ public class UserServicesClient implements UserServices {
     private static final String LOGIN_PARAM_PW = "pw";
     private static final String LOGIN_PARAM_CREATING = "creating";
     private static final String LOGIN_PARAM_GOTO = "goto";
-    private static final String VOTE_PARAM_FOR = "for";
-    private static final String VOTE_PARAM_WHENCE = "whence";
-    private static final String VOTE_PARAM_DIR = "dir";
+    private static final String ITEM_PARAM_ID = "id";
+    private static final String VOTE_PARAM_ID = "id";
+    private static final String VOTE_PARAM_HOW = "how";
+    private static final String VOTE_PARAM_AUTH = "auth";
+    private static final String VOTE_PARAM_GOTO = "goto";
     private static final String COMMENT_PARAM_PARENT = "parent";
+    private static final String COMMENT_PARAM_GOTO = "goto";
+    private static final String COMMENT_PARAM_HMAC = "hmac";
     private static final String COMMENT_PARAM_TEXT = "text";
     private static final String SUBMIT_PARAM_TITLE = "title";
     private static final String SUBMIT_PARAM_URL = "url";
@@ -68,33 +75,42 @@ public class UserServicesClient implements UserServices {
     private static final String DEFAULT_SUBMIT_REDIRECT = "newest";
     private static final String REGEX_INPUT = "<\\s*input[^>]*>";
     private static final String REGEX_VALUE = "value[^\"]*\"([^\"]*)\"";
+    private static final String REGEX_VOTE_HREF =
+            "href\\s*=\\s*['\"](" + VOTE_PATH + "\\?[^'\"]*)['\"]";
+    private static final String REGEX_LOGIN_HREF = "href\\s*=\\s*['\"]" + LOGIN_PATH + "\\?";
     private static final String HEADER_LOCATION = "location";
+    private static final String SP_NAME = "UserSession";
+    private static final String PREF_USERNAME = "username";
     private final Handler mUiHandler = new Handler(Looper.getMainLooper());
     private final Call.Factory mCallFactory;
+    private final SharedPreferences mPreferences;
 
     @Inject
-    public UserServicesClient(Call.Factory callFactory) {
+    public UserServicesClient(Context context, Call.Factory callFactory) {
         mCallFactory = callFactory;
+        mPreferences = context.getApplicationContext()
+                .getSharedPreferences(SP_NAME, Context.MODE_PRIVATE);
     }
 
     @Override
     public void login(final String username, final String password, boolean createAccount,
                       final Callback callback) {
-        FormBody.Builder formBuilder = new FormBody.Builder()
-                .add(LOGIN_PARAM_ACCT, username)
-                .add(LOGIN_PARAM_PW, password)
-                .add(LOGIN_PARAM_GOTO, DEFAULT_REDIRECT);
-        if (createAccount) {
-            formBuilder.add(LOGIN_PARAM_CREATING, CREATING_TRUE);
-        }
-        mCallFactory.newCall(new Request.Builder()
-                .url(HttpUrl.parse(BASE_WEB_URL)
-                        .newBuilder()
-                        .addPathSegment(LOGIN_PATH)
-                        .build())
-                .post(formBuilder.build())
-                .build())
-                .enqueue(wrap(callback));
+        mCallFactory.newCall(createLoginRequest(username, password, createAccount))
+                .enqueue(new okhttp3.Callback() {
+                    @Override
+                    public void onFailure(Call call, IOException e) {
+                        postError(callback);
+                    }
+
+                    @Override
+                    public void onResponse(Call call, Response response) throws IOException {
+                        boolean successful = isLoggedIn(response);
+                        if (successful) {
+                            setSession(username);
+                        }
+                        postResult(callback, successful);
+                    }
+                });
     }
 
     @Override
@@ -105,20 +121,30 @@ public class UserServicesClient implements UserServices {
             return;
         }
         Toast.makeText(context, R.string.sending, Toast.LENGTH_SHORT).show();
-        mCallFactory.newCall(new Request.Builder()
-                .url(HttpUrl.parse(BASE_WEB_URL)
-                        .newBuilder()
-                        .addPathSegment(VOTE_PATH)
-                        .build())
-                .post(new FormBody.Builder()
-                        .add(LOGIN_PARAM_ACCT, credentials.first)
-                        .add(LOGIN_PARAM_PW, credentials.second)
-                        .add(VOTE_PARAM_FOR, itemId)
-                        .add(VOTE_PARAM_DIR, VOTE_DIR_UP)
-                        .add(VOTE_PARAM_WHENCE, DEFAULT_REDIRECT)
-                        .build())
-                .build())
-                .enqueue(wrap(callback));
+        /**
+         * The flow:
+         * GET /item with session cookie, see executeItemAction()
+         * GET /vote with id, how, goto and auth token from item page upvote link
+         *  if item page has no upvote link with auth token, e.g. own item, considered failed
+         *  if 302, considered successful
+         *  if 200 or anything else, considered failed
+         */
+        executeItemAction(credentials, itemId, callback, itemPage -> {
+            String auth = getVoteAuth(itemPage, itemId);
+            if (TextUtils.isEmpty(auth)) {
+                return null;
+            }
+            return new Request.Builder()
+                    .url(HttpUrl.parse(BASE_WEB_URL)
+                            .newBuilder()
+                            .addPathSegment(VOTE_PATH)
+                            .addQueryParameter(VOTE_PARAM_ID, itemId)
+                            .addQueryParameter(VOTE_PARAM_HOW, VOTE_DIR_UP)
+                            .addQueryParameter(VOTE_PARAM_AUTH, auth)
+                            .addQueryParameter(VOTE_PARAM_GOTO, DEFAULT_REDIRECT)
+                            .build())
+                    .build();
+        });
     }
 
     @Override
@@ -128,19 +154,34 @@ public class UserServicesClient implements UserServices {
             callback.onDone(false);
             return;
         }
-        mCallFactory.newCall(new Request.Builder()
-                .url(HttpUrl.parse(BASE_WEB_URL)
-                        .newBuilder()
-                        .addPathSegment(COMMENT_PATH)
-                        .build())
-                .post(new FormBody.Builder()
-                        .add(LOGIN_PARAM_ACCT, credentials.first)
-                        .add(LOGIN_PARAM_PW, credentials.second)
-                        .add(COMMENT_PARAM_PARENT, parentId)
-                        .add(COMMENT_PARAM_TEXT, text)
-                        .build())
-                .build())
-                .enqueue(wrap(callback));
+        /**
+         * The flow:
+         * GET /item with session cookie, see executeItemAction()
+         * POST /comment with parent, goto, text and hmac token from item page reply form
+         *  if item page has no reply form with hmac token, e.g. dead item, considered failed
+         *  if 302, considered successful
+         *  if 200 or anything else, considered failed
+         */
+        executeItemAction(credentials, parentId, callback, itemPage -> {
+            String hmac = getInputValue(itemPage, COMMENT_PARAM_HMAC);
+            if (TextUtils.isEmpty(hmac)) {
+                return null;
+            }
+            String redirect = getInputValue(itemPage, COMMENT_PARAM_GOTO);
+            return new Request.Builder()
+                    .url(HttpUrl.parse(BASE_WEB_URL)
+                            .newBuilder()
+                            .addPathSegment(COMMENT_PATH)
+                            .build())
+                    .post(new FormBody.Builder()
+                            .add(COMMENT_PARAM_PARENT, parentId)
+                            .add(COMMENT_PARAM_GOTO, TextUtils.isEmpty(redirect) ?
+                                    ITEM_PATH + "?" + ITEM_PARAM_ID + "=" + parentId : redirect)
+                            .add(COMMENT_PARAM_HMAC, hmac)
+                            .add(COMMENT_PARAM_TEXT, text)
+                            .build())
+                    .build();
+        });
     }
 
     @Override
@@ -153,25 +194,21 @@ public class UserServicesClient implements UserServices {
         }
         /**
          * The flow:
-         * POST /submit with acc, pw
-         *  if 302 to /login, considered failed
+         * GET /submit with session cookie, logging in first if there is no session
+         *  if 302 to /login, session has expired, login and retry once
+         *  if 302 again, considered failed
          * POST /r with fnid, fnop, title, url or text
          *  if 302 to /newest, considered successful
          *  if 302 to /x, considered error, maybe duplicate or invalid input
          *  if 200 or anything else, considered error
          */
-        // fetch submit page with given credentials
-        mCallFactory.newCall(new Request.Builder()
+        // fetch submit page with current session
+        execute(credentials, new Request.Builder()
                 .url(HttpUrl.parse(BASE_WEB_URL)
                         .newBuilder()
                         .addPathSegment(SUBMIT_PATH)
                         .build())
-                .post(new FormBody.Builder()
-                        .add(LOGIN_PARAM_ACCT, credentials.first)
-                        .add(LOGIN_PARAM_PW, credentials.second)
-                        .build())
-                .build())
-                .enqueue(new okhttp3.Callback() {
+                .build(), callback, new okhttp3.Callback() {
                     @Override
                     public void onFailure(Call call, IOException e) {
                         postError(callback);
@@ -241,6 +278,166 @@ public class UserServicesClient implements UserServices {
                 });
     }
 
+    /**
+     * Fetches page of given item with session cookie of given user, and sends action request
+     * created from per item tokens in that page, which are only present for a logged in user.
+     * If the page is served as logged out, i.e. session has expired without a redirect to login
+     * page, logs in with given credentials and fetches the page again, once.
+     * @param credentials   user credentials, only sent if login is needed
+     * @param itemId        ID of item to act on
+     * @param callback      callback to notify of result
+     * @param actionFactory factory to create action request from item page
+     */
+    private void executeItemAction(final Pair<String, String> credentials, String itemId,
+                                   final Callback callback, final ActionFactory actionFactory) {
+        Request itemRequest = new Request.Builder()
+                .url(HttpUrl.parse(BASE_WEB_URL)
+                        .newBuilder()
+                        .addPathSegment(ITEM_PATH)
+                        .addQueryParameter(ITEM_PARAM_ID, itemId)
+                        .build())
+                .build();
+        execute(credentials, itemRequest, callback,
+                createItemPageCallback(credentials, itemRequest, callback, actionFactory, true));
+    }
+
+    private okhttp3.Callback createItemPageCallback(final Pair<String, String> credentials,
+                                                    final Request itemRequest,
+                                                    final Callback callback,
+                                                    final ActionFactory actionFactory,
+                                                    final boolean canLogin) {
+        return new okhttp3.Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                postError(callback);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                ResponseBody body = response.body();
+                if (!response.isSuccessful()) {
+                    if (body != null) {
+                        body.close();
+                    }
+                    if (isLoginRedirect(response)) {
+                        // still redirected to login page right after login
+                        postResult(callback, false);
+                    } else {
+                        postError(callback);
+                    }
+                    return;
+                }
+                String itemPage = body.string();
+                body.close();
+                Request action = actionFactory.create(itemPage);
+                if (action != null) {
+                    mCallFactory.newCall(action).enqueue(wrap(callback));
+                } else if (canLogin && isLoggedOut(itemPage)) {
+                    setSession(null);
+                    loginAndExecute(credentials, itemRequest, callback, createItemPageCallback(
+                            credentials, itemRequest, callback, actionFactory, false));
+                } else {
+                    postResult(callback, false);
+                }
+            }
+        };
+    }
+
+    /**
+     * Sends given request with session cookie of given user, logging in first if there is no
+     * session for this user, or again if the session has expired, i.e. request is redirected
+     * to login page
+     * @param credentials       user credentials, only sent if login is needed
+     * @param request           request to send
+     * @param callback          callback to notify of login failure
+     * @param responseCallback  callback to handle response of given request
+     */
+    private void execute(final Pair<String, String> credentials, final Request request,
+                         final Callback callback, final okhttp3.Callback responseCallback) {
+        if (!TextUtils.equals(mPreferences.getString(PREF_USERNAME, null), credentials.first)) {
+            loginAndExecute(credentials, request, callback, responseCallback);
+            return;
+        }
+        mCallFactory.newCall(request).enqueue(new okhttp3.Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                responseCallback.onFailure(call, e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                if (!isLoginRedirect(response)) {
+                    responseCallback.onResponse(call, response);
+                    return;
+                }
+                response.body().close();
+                setSession(null);
+                loginAndExecute(credentials, request, callback, responseCallback);
+            }
+        });
+    }
+
+    private void loginAndExecute(final Pair<String, String> credentials, final Request request,
+                                 final Callback callback, final okhttp3.Callback responseCallback) {
+        mCallFactory.newCall(createLoginRequest(credentials.first, credentials.second, false))
+                .enqueue(new okhttp3.Callback() {
+                    @Override
+                    public void onFailure(Call call, IOException e) {
+                        postError(callback);
+                    }
+
+                    @Override
+                    public void onResponse(Call call, Response response) throws IOException {
+                        if (!isLoggedIn(response)) {
+                            postResult(callback, false);
+                            return;
+                        }
+                        setSession(credentials.first);
+                        mCallFactory.newCall(request).enqueue(responseCallback);
+                    }
+                });
+    }
+
+    private Request createLoginRequest(String username, String password, boolean createAccount) {
+        FormBody.Builder formBuilder = new FormBody.Builder()
+                .add(LOGIN_PARAM_ACCT, username)
+                .add(LOGIN_PARAM_PW, password)
+                .add(LOGIN_PARAM_GOTO, DEFAULT_REDIRECT);
+        if (createAccount) {
+            formBuilder.add(LOGIN_PARAM_CREATING, CREATING_TRUE);
+        }
+        return new Request.Builder()
+                .url(HttpUrl.parse(BASE_WEB_URL)
+                        .newBuilder()
+                        .addPathSegment(LOGIN_PATH)
+                        .build())
+                .post(formBuilder.build())
+                .build();
+    }
+
+    private void setSession(String username) {
+        mPreferences.edit().putString(PREF_USERNAME, username).apply();
+    }
+
+    private boolean isLoggedIn(Response response) {
+        // redirect = successful login
+        return response.code() == HttpURLConnection.HTTP_MOVED_TEMP;
+    }
+
+    private boolean isLoginRedirect(Response response) {
+        if (response.code() != HttpURLConnection.HTTP_MOVED_TEMP) {
+            return false;
+        }
+        String location = response.header(HEADER_LOCATION);
+        HttpUrl url = TextUtils.isEmpty(location) ? null : response.request().url().resolve(location);
+        return url != null && url.pathSegments().size() == 1 &&
+                TextUtils.equals(url.pathSegments().get(0), LOGIN_PATH);
+    }
+
+    private boolean isLoggedOut(String html) {
+        return Pattern.compile(REGEX_LOGIN_HREF).matcher(html).find();
+    }
+
     private okhttp3.Callback wrap(final Callback callback) {
         return new okhttp3.Callback() {
             @Override
@@ -250,8 +447,9 @@ public class UserServicesClient implements UserServices {
 
             @Override
             public void onResponse(Call call, Response response) throws IOException {
-                // redirect = successful submit
-                postResult(callback, response.code() == HttpURLConnection.HTTP_MOVED_TEMP);
+                // redirect = successful submit, unless redirected to login page
+                postResult(callback, response.code() == HttpURLConnection.HTTP_MOVED_TEMP &&
+                        !isLoginRedirect(response));
             }
         };
     }
@@ -277,4 +475,28 @@ public class UserServicesClient implements UserServices {
         }
         return null;
     }
+
+    @Nullable
+    private String getVoteAuth(String html, String itemId) {
+        // extract href="vote?id=...&amp;how=up&amp;auth=...&amp;goto=..."
+        Matcher matcher = Pattern.compile(REGEX_VOTE_HREF).matcher(html);
+        HttpUrl baseUrl = HttpUrl.parse(BASE_WEB_URL);
+        while (matcher.find()) {
+            HttpUrl url = baseUrl.resolve(matcher.group(1).replace("&amp;", "&"));
+            if (url != null &&
+                    TextUtils.equals(url.queryParameter(VOTE_PARAM_ID), itemId) &&
+                    TextUtils.equals(url.queryParameter(VOTE_PARAM_HOW), VOTE_DIR_UP)) {
+                return url.queryParameter(VOTE_PARAM_AUTH);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates action request from per item tokens in item page
+     */
+    private interface ActionFactory {
+        @Nullable
+        Request create(String itemPage);
+    }
 }
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.appwidget;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.format.DateUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import io.github.hidroh.materialistic.data.Item;
+
+/**
+ * Process wide snapshots of widget stories per section, so that all widgets showing the same
+ * section share a single fetch. A snapshot is either a story list offered by
+ * {@link WidgetRefreshCoordinator} that is yet to be hydrated, or stories hydrated by one of
+ * the widgets. Snapshots are only shared for {@link #MAX_AGE_MILLIS}, which covers widgets
+ * refreshed together.
+ */
+class SharedStories {
+    static final long MAX_AGE_MILLIS = DateUtils.MINUTE_IN_MILLIS;
+    private static SharedStories sInstance;
+    private final Map<String, Snapshot> mSnapshots = new HashMap<>();
+    private final Map<String, Object> mLocks = new HashMap<>();
+
+    static synchronized SharedStories getInstance() {
+        if (sInstance == null) {
+            sInstance = new SharedStories();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Gets lock to hold while fetching stories for given section, so that other widgets
+     * of the same section wait for and reuse its result instead of fetching again
+     * @param fetchMode section fetch mode
+     * @return  section lock
+     */
+    @NonNull
+    synchronized Object getLock(@NonNull String fetchMode) {
+        Object lock = mLocks.get(fetchMode);
+        if (lock == null) {
+            lock = new Object();
+            mLocks.put(fetchMode, lock);
+        }
+        return lock;
+    }
+
+    /**
+     * Offers freshly fetched, not yet hydrated stories for given section
+     * @param fetchMode section fetch mode
+     * @param stories   fetched stories
+     */
+    synchronized void offer(@NonNull String fetchMode, @NonNull Item[] stories) {
+        mSnapshots.put(fetchMode, new Snapshot(stories, false));
+    }
+
+    /**
+     * Gets fresh stories offered for given section, if any
+     * @param fetchMode section fetch mode
+     * @return  offered stories, or null
+     */
+    @Nullable
+    synchronized Item[] getOffered(@NonNull String fetchMode) {
+        Snapshot snapshot = getFresh(fetchMode);
+        return snapshot != null && !snapshot.hydrated ? snapshot.items : null;
+    }
+
+    /**
+     * Stores hydrated stories for given section
+     * @param fetchMode section fetch mode
+     * @param items     hydrated stories
+     */
+    synchronized void put(@NonNull String fetchMode, @NonNull Item[] items) {
+        mSnapshots.put(fetchMode, new Snapshot(items, true));
+    }
+
+    /**
+     * Gets fresh hydrated stories for given section, if any
+     * @param fetchMode section fetch mode
+     * @return  hydrated stories, or null
+     */
+    @Nullable
+    synchronized Item[] get(@NonNull String fetchMode) {
+        Snapshot snapshot = getFresh(fetchMode);
+        return snapshot != null && snapshot.hydrated ? snapshot.items : null;
+    }
+
+    /**
+     * Drops snapshot for given section, e.g. upon explicit refresh
+     * @param fetchMode section fetch mode
+     */
+    synchronized void invalidate(@NonNull String fetchMode) {
+        mSnapshots.remove(fetchMode);
+    }
+
+    private Snapshot getFresh(String fetchMode) {
+        Snapshot snapshot = mSnapshots.get(fetchMode);
+        if (snapshot != null &&
+                SystemClock.elapsedRealtime() - snapshot.timestamp > MAX_AGE_MILLIS) {
+            mSnapshots.remove(fetchMode);
+            return null;
+        }
+        return snapshot;
+    }
+
+    private static class Snapshot {
+        private final Item[] items;
+        private final boolean hydrated;
+        private final long timestamp = SystemClock.elapsedRealtime();
+
+        Snapshot(Item[] items, boolean hydrated) {
+            this.items = items;
+            this.hydrated = hydrated;
+        }
+    }
+}
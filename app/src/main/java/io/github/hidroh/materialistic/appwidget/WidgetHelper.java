@@ -27,6 +27,7 @@ import android.net.Uri;
 import android.os.Build;
 import android.support.annotation.LayoutRes;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.annotation.StringRes;
 import android.text.TextUtils;
 import android.text.format.DateUtils;
@@ -38,29 +39,44 @@ import io.github.hidroh.materialistic.BestActivity;
 import io.github.hidroh.materialistic.ListActivity;
 import io.github.hidroh.materialistic.NewActivity;
 import io.github.hidroh.materialistic.R;
+import io.github.hidroh.materialistic.data.ItemManager;
 
 import static android.content.Context.ALARM_SERVICE;
 import static android.content.Context.MODE_PRIVATE;
 
 class WidgetHelper {
     private static final String SP_NAME = "WidgetConfiguration_%1$d";
-    private static final int DEFAULT_FREQUENCY_HOUR = 6;
     private final Context mContext;
     private final AppWidgetManager mAppWidgetManager;
     private final AlarmManager mAlarmManager;
+    private final WidgetRefreshCoordinator mRefreshCoordinator;
 
     WidgetHelper(Context context) {
         mContext = context;
         mAppWidgetManager = AppWidgetManager.getInstance(context);
         mAlarmManager = (AlarmManager) context.getSystemService(ALARM_SERVICE);
+        mRefreshCoordinator = new WidgetRefreshCoordinator(context);
     }
 
     static String getConfigName(int appWidgetId) {
         return String.format(Locale.US, SP_NAME, appWidgetId);
     }
 
+    @NonNull
+    static String getFetchMode(Context context, @Nullable String section) {
+        if (TextUtils.equals(section, context.getString(R.string.pref_widget_section_value_best))) {
+            return ItemManager.BEST_FETCH_MODE;
+        } else if (TextUtils.equals(section, context.getString(R.string.pref_widget_section_value_new))) {
+            return ItemManager.NEW_FETCH_MODE;
+        } else {
+            return ItemManager.TOP_FETCH_MODE;
+        }
+    }
+
     void configure(int appWidgetId) {
-        scheduleUpdate(appWidgetId);
+        // drop per widget alarm set by older versions, refreshes are now scheduled per section
+        mAlarmManager.cancel(createRefreshPendingIntent(appWidgetId));
+        mRefreshCoordinator.schedule(getFetchMode(appWidgetId));
         update(appWidgetId);
     }
 
@@ -74,29 +90,29 @@ class WidgetHelper {
         mAppWidgetManager.updateAppWidget(appWidgetId, remoteViews);
     }
 
-    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    /**
+     * Refreshes given widget upon explicit request, bypassing stories shared by its section
+     * @param appWidgetId   widget ID
+     */
     void refresh(int appWidgetId) {
+        SharedStories.getInstance().invalidate(getFetchMode(appWidgetId));
+        notifyDataChanged(appWidgetId);
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    void notifyDataChanged(int appWidgetId) {
         mAppWidgetManager.notifyAppWidgetViewDataChanged(appWidgetId, android.R.id.list);
         update(appWidgetId);
     }
 
     void remove(int appWidgetId) {
-        cancelScheduledUpdate(appWidgetId);
+        String fetchMode = getFetchMode(appWidgetId);
         clearConfig(appWidgetId);
+        mRefreshCoordinator.onRemoved(appWidgetId, fetchMode);
     }
 
-    private void scheduleUpdate(int appWidgetId) {
-        String frequency = getConfig(appWidgetId, R.string.pref_widget_frequency);
-        long frequencyHourMillis = DateUtils.HOUR_IN_MILLIS * (TextUtils.isEmpty(frequency) ?
-                DEFAULT_FREQUENCY_HOUR : Integer.valueOf(frequency));
-        mAlarmManager.setInexactRepeating(AlarmManager.RTC,
-                System.currentTimeMillis() + frequencyHourMillis,
-                frequencyHourMillis,
-                createRefreshPendingIntent(appWidgetId));
-
-    }
-    private void cancelScheduledUpdate(int appWidgetId) {
-        mAlarmManager.cancel(createRefreshPendingIntent(appWidgetId));
+    private String getFetchMode(int appWidgetId) {
+        return getFetchMode(mContext, getConfig(appWidgetId, R.string.pref_widget_section));
     }
 
     private String getConfig(int appWidgetId, @StringRes int key) {
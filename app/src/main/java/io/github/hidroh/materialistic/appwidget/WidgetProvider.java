@@ -24,12 +24,22 @@ import android.os.Build;
 import android.text.TextUtils;
 import android.widget.Toast;
 
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import io.github.hidroh.materialistic.ActivityModule;
+import io.github.hidroh.materialistic.Application;
 import io.github.hidroh.materialistic.BuildConfig;
 import io.github.hidroh.materialistic.R;
+import io.github.hidroh.materialistic.data.ItemManager;
 
 public class WidgetProvider extends AppWidgetProvider {
 
     static final String ACTION_REFRESH_WIDGET = BuildConfig.APPLICATION_ID + ".ACTION_REFRESH_WIDGET";
+    static final String ACTION_REFRESH_SECTION = BuildConfig.APPLICATION_ID + ".ACTION_REFRESH_SECTION";
+    static final String EXTRA_FETCH_MODE = "extra:fetchMode";
+    @Inject @Named(ActivityModule.HN)
+    ItemManager mItemManager;
 
     @Override
     public void onReceive(Context context, Intent intent) {
@@ -41,6 +51,15 @@ public class WidgetProvider extends AppWidgetProvider {
             int appWidgetId = intent.getIntExtra(AppWidgetManager.EXTRA_APPWIDGET_ID,
                     AppWidgetManager.INVALID_APPWIDGET_ID);
             new WidgetHelper(context).refresh(appWidgetId);
+        } else if (TextUtils.equals(intent.getAction(), ACTION_REFRESH_SECTION)) {
+            String fetchMode = intent.getStringExtra(EXTRA_FETCH_MODE);
+            if (!TextUtils.isEmpty(fetchMode)) {
+                ((Application) context.getApplicationContext())
+                        .getApplicationGraph()
+                        .plus(new ActivityModule(context.getApplicationContext()))
+                        .inject(this);
+                new WidgetRefreshCoordinator(context).refresh(fetchMode, mItemManager, goAsync());
+            }
         } else if (TextUtils.equals(intent.getAction(), AppWidgetManager.ACTION_APPWIDGET_UPDATE)) {
             int[] appWidgetIds = intent.getIntArrayExtra(AppWidgetManager.EXTRA_APPWIDGET_IDS);
             if (appWidgetIds != null) {
@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.appwidget;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.os.BatteryManager;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.StringRes;
+import android.text.TextUtils;
+import android.text.format.DateUtils;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import io.github.hidroh.materialistic.Application;
+import io.github.hidroh.materialistic.BuildConfig;
+import io.github.hidroh.materialistic.Preferences;
+import io.github.hidroh.materialistic.R;
+import io.github.hidroh.materialistic.data.ConditionalResponseListener;
+import io.github.hidroh.materialistic.data.Item;
+import io.github.hidroh.materialistic.data.ItemManager;
+
+import static android.content.Context.ALARM_SERVICE;
+import static android.content.Context.MODE_PRIVATE;
+
+/**
+ * Coordinates scheduled refreshes of all widgets. Widgets showing the same section share a
+ * single alarm, due after the shortest update frequency among them, and a single fetch via
+ * {@link SharedStories}. A scheduled refresh first revalidates section stories, and only
+ * refreshes widgets if they have changed, as told by HTTP validators or a hash of displayed
+ * story IDs. Each refresh without change doubles the interval, up to {@link #MAX_BACKOFF}
+ * times. Alarms do not wake up device, and refreshes are skipped on metered networks or
+ * low battery according to settings.
+ */
+class WidgetRefreshCoordinator {
+    static final int MAX_BACKOFF = 3;
+    static final int LOW_BATTERY_PERCENT = 15;
+    private static final String SP_NAME = "WidgetRefresh";
+    private static final String PREF_HASH = "hash_%1$s";
+    private static final String PREF_BACKOFF = "backoff_%1$s";
+    private static final int DEFAULT_FREQUENCY_HOUR = 6;
+    private final Context mContext;
+    private final AppWidgetManager mAppWidgetManager;
+    private final AlarmManager mAlarmManager;
+    private final SharedPreferences mPreferences;
+
+    WidgetRefreshCoordinator(Context context) {
+        mContext = context.getApplicationContext();
+        mAppWidgetManager = AppWidgetManager.getInstance(mContext);
+        mAlarmManager = (AlarmManager) mContext.getSystemService(ALARM_SERVICE);
+        mPreferences = mContext.getSharedPreferences(SP_NAME, MODE_PRIVATE);
+    }
+
+    /**
+     * Schedules next refresh of given section, or cancels it if no widget shows it
+     * @param fetchMode section fetch mode
+     */
+    void schedule(@NonNull String fetchMode) {
+        schedule(fetchMode, AppWidgetManager.INVALID_APPWIDGET_ID);
+    }
+
+    /**
+     * Reschedules refresh of given section after a widget has been removed from it
+     * @param appWidgetId   removed widget ID
+     * @param fetchMode     section fetch mode of removed widget
+     */
+    void onRemoved(int appWidgetId, @NonNull String fetchMode) {
+        schedule(fetchMode, appWidgetId);
+    }
+
+    /**
+     * Runs scheduled refresh of given section, then schedules the next one
+     * @param fetchMode     section fetch mode
+     * @param itemManager   data repository to revalidate stories against
+     * @param result        pending broadcast result to finish when done, if any
+     */
+    void refresh(@NonNull String fetchMode, @NonNull ItemManager itemManager,
+                 @Nullable BroadcastReceiver.PendingResult result) {
+        if (getAppWidgetIds(fetchMode, AppWidgetManager.INVALID_APPWIDGET_ID).length == 0 ||
+                shouldSkip()) {
+            onRefreshed(fetchMode, result);
+            return;
+        }
+        itemManager.getStories(fetchMode, ItemManager.MODE_NETWORK,
+                new StoriesResponseListener(this, fetchMode, result));
+    }
+
+    private void schedule(String fetchMode, int excludedAppWidgetId) {
+        PendingIntent pendingIntent = createRefreshPendingIntent(fetchMode);
+        int[] appWidgetIds = getAppWidgetIds(fetchMode, excludedAppWidgetId);
+        if (appWidgetIds.length == 0) {
+            mAlarmManager.cancel(pendingIntent);
+            mPreferences.edit()
+                    .remove(getKey(PREF_HASH, fetchMode))
+                    .remove(getKey(PREF_BACKOFF, fetchMode))
+                    .apply();
+            return;
+        }
+        long intervalMillis = Long.MAX_VALUE;
+        for (int appWidgetId : appWidgetIds) {
+            String frequency = getConfig(appWidgetId, R.string.pref_widget_frequency);
+            intervalMillis = Math.min(intervalMillis, DateUtils.HOUR_IN_MILLIS *
+                    (TextUtils.isEmpty(frequency) ?
+                            DEFAULT_FREQUENCY_HOUR : Integer.valueOf(frequency)));
+        }
+        intervalMillis <<= mPreferences.getInt(getKey(PREF_BACKOFF, fetchMode), 0);
+        mAlarmManager.set(AlarmManager.RTC, System.currentTimeMillis() + intervalMillis,
+                pendingIntent);
+    }
+
+    private void onStoriesLoaded(String fetchMode, @Nullable Item[] stories,
+                                 @Nullable BroadcastReceiver.PendingResult result) {
+        if (stories == null || stories.length == 0) { // failed, retry at same interval
+            onRefreshed(fetchMode, result);
+            return;
+        }
+        long[] ids = new long[Math.min(stories.length,
+                WidgetService.ListRemoteViewsFactory.MAX_ITEMS)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = stories[i].getLongId();
+        }
+        int hash = Arrays.hashCode(ids);
+        String hashKey = getKey(PREF_HASH, fetchMode);
+        if (mPreferences.contains(hashKey) && mPreferences.getInt(hashKey, 0) == hash) {
+            onNotModified(fetchMode, result);
+            return;
+        }
+        mPreferences.edit()
+                .putInt(hashKey, hash)
+                .putInt(getKey(PREF_BACKOFF, fetchMode), 0)
+                .apply();
+        SharedStories.getInstance().offer(fetchMode, stories);
+        WidgetHelper widgetHelper = new WidgetHelper(mContext);
+        for (int appWidgetId : getAppWidgetIds(fetchMode, AppWidgetManager.INVALID_APPWIDGET_ID)) {
+            widgetHelper.notifyDataChanged(appWidgetId);
+        }
+        onRefreshed(fetchMode, result);
+    }
+
+    private void onNotModified(String fetchMode, @Nullable BroadcastReceiver.PendingResult result) {
+        String backoffKey = getKey(PREF_BACKOFF, fetchMode);
+        mPreferences.edit()
+                .putInt(backoffKey,
+                        Math.min(mPreferences.getInt(backoffKey, 0) + 1, MAX_BACKOFF))
+                .apply();
+        onRefreshed(fetchMode, result);
+    }
+
+    private void onRefreshed(String fetchMode, @Nullable BroadcastReceiver.PendingResult result) {
+        schedule(fetchMode);
+        if (result != null) {
+            result.finish();
+        }
+    }
+
+    private int[] getAppWidgetIds(String fetchMode, int excludedAppWidgetId) {
+        int[] appWidgetIds = mAppWidgetManager.getAppWidgetIds(
+                new ComponentName(mContext, WidgetProvider.class));
+        int count = 0;
+        for (int appWidgetId : appWidgetIds) {
+            if (appWidgetId != excludedAppWidgetId && TextUtils.equals(fetchMode,
+                    WidgetHelper.getFetchMode(mContext,
+                            getConfig(appWidgetId, R.string.pref_widget_section)))) {
+                appWidgetIds[count++] = appWidgetId;
+            }
+        }
+        return Arrays.copyOf(appWidgetIds, count);
+    }
+
+    private boolean shouldSkip() {
+        return (Preferences.Widget.isUnmeteredOnly(mContext) &&
+                Application.getConnectivityMonitor(mContext).isMetered()) ||
+                (Preferences.Widget.isBatterySaverEnabled(mContext) && isBatteryLow());
+    }
+
+    private boolean isBatteryLow() {
+        Intent battery = mContext.registerReceiver(null,
+                new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery == null || battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0) {
+            return false;
+        }
+        int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        return level >= 0 && scale > 0 && level * 100 / scale <= LOW_BATTERY_PERCENT;
+    }
+
+    private String getConfig(int appWidgetId, @StringRes int key) {
+        return mContext.getSharedPreferences(WidgetHelper.getConfigName(appWidgetId), MODE_PRIVATE)
+                .getString(mContext.getString(key), null);
+    }
+
+    private PendingIntent createRefreshPendingIntent(String fetchMode) {
+        // extras do not tell pending intents apart, so sections are told apart by data
+        return PendingIntent.getBroadcast(mContext, 0,
+                new Intent(mContext, WidgetProvider.class)
+                        .setAction(WidgetProvider.ACTION_REFRESH_SECTION)
+                        .setData(Uri.fromParts(BuildConfig.APPLICATION_ID, fetchMode, null))
+                        .putExtra(WidgetProvider.EXTRA_FETCH_MODE, fetchMode),
+                PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+
+    private static String getKey(String format, String fetchMode) {
+        return String.format(Locale.US, format, fetchMode);
+    }
+
+    private static class StoriesResponseListener implements ConditionalResponseListener<Item[]> {
+        private final WidgetRefreshCoordinator mCoordinator;
+        private final String mFetchMode;
+        private final BroadcastReceiver.PendingResult mResult;
+
+        StoriesResponseListener(WidgetRefreshCoordinator coordinator, String fetchMode,
+                                BroadcastReceiver.PendingResult result) {
+            mCoordinator = coordinator;
+            mFetchMode = fetchMode;
+            mResult = result;
+        }
+
+        @Override
+        public void onNotModified() {
+            mCoordinator.onNotModified(mFetchMode, mResult);
+        }
+
+        @Override
+        public void onResponse(@Nullable Item[] response) {
+            mCoordinator.onStoriesLoaded(mFetchMode, response, mResult);
+        }
+
+        @Override
+        public void onError(String errorMessage) {
+            mCoordinator.onStoriesLoaded(mFetchMode, null, mResult);
+        }
+    }
+}
@@ -21,16 +21,30 @@ import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.support.annotation.WorkerThread;
 import android.support.v4.content.ContextCompat;
 import android.text.SpannableString;
 import android.text.SpannableStringBuilder;
 import android.text.Spanned;
-import android.text.TextUtils;
 import android.text.style.ForegroundColorSpan;
 import android.widget.RemoteViews;
 import android.widget.RemoteViewsService;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -65,47 +79,70 @@ public class WidgetService extends RemoteViewsService {
                 intent.getBooleanExtra(EXTRA_LIGHT_THEME, false));
     }
 
+    /**
+     * Factory of widget rows. All rows are hydrated in parallel upon {@link #onDataSetChanged()}
+     * within {@link #NETWORK_TIMEOUT_MILLIS}, then rows that could not be fetched from network
+     * fall back to cached data within {@link #CACHE_TIMEOUT_MILLIS}, so that a refresh never
+     * waits for sequential round trips, and still shows content while offline.
+     * {@link #getViewAt(int)} only binds hydrated rows and does no I/O. Widgets showing the same
+     * section share fetched rows via {@link SharedStories}.
+     */
     static class ListRemoteViewsFactory implements RemoteViewsFactory {
 
         private static final String HOST_ITEM = "item";
         private static final String SCORE = "%1$dp";
         private static final String COMMENT = "%1$dc";
         private static final String SUBTITLE_SEPARATOR = " - ";
-        private static final int MAX_ITEMS = 10;
+        static final int MAX_ITEMS = 10;
+        static final long NETWORK_TIMEOUT_MILLIS = 10000;
+        static final long CACHE_TIMEOUT_MILLIS = 2000;
         private final Context mContext;
         private final ItemManager mItemManager;
         private final String mFetchMode;
         private final boolean mLightTheme;
+        private final SharedStories mSharedStories;
+        private ExecutorService mExecutor;
         private Item[] mItems;
 
         ListRemoteViewsFactory(Context context, ItemManager itemManager, String section, boolean lightTheme) {
+            this(context, itemManager, section, lightTheme, SharedStories.getInstance());
+        }
+
+        @VisibleForTesting
+        ListRemoteViewsFactory(Context context, ItemManager itemManager, String section,
+                               boolean lightTheme, SharedStories sharedStories) {
             mContext = context;
             mItemManager = itemManager;
             mLightTheme = lightTheme;
-            if (TextUtils.equals(section,
-                    context.getString(R.string.pref_widget_section_value_best))) {
-                mFetchMode = ItemManager.BEST_FETCH_MODE;
-            } else if (TextUtils.equals(section,
-                    context.getString(R.string.pref_widget_section_value_new))) {
-                mFetchMode = ItemManager.NEW_FETCH_MODE;
-            } else {
-                mFetchMode = ItemManager.TOP_FETCH_MODE;
-            }
+            mFetchMode = WidgetHelper.getFetchMode(context, section);
+            mSharedStories = sharedStories;
         }
 
         @Override
         public void onCreate() {
-            // no op
+            mExecutor = Executors.newFixedThreadPool(MAX_ITEMS, r -> new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                r.run();
+            }, "widget"));
         }
 
+        @WorkerThread
         @Override
         public void onDataSetChanged() {
-            mItems = mItemManager.getStories(mFetchMode, ItemManager.MODE_NETWORK);
+            synchronized (mSharedStories.getLock(mFetchMode)) {
+                Item[] items = mSharedStories.get(mFetchMode);
+                if (items == null) {
+                    items = load();
+                }
+                if (items != null) { // otherwise keep showing previous rows
+                    mItems = items;
+                }
+            }
         }
 
         @Override
         public void onDestroy() {
-            // no op
+            mExecutor.shutdownNow();
         }
 
         @Override
@@ -118,16 +155,8 @@ public class WidgetService extends RemoteViewsService {
             RemoteViews remoteViews = new RemoteViews(mContext.getPackageName(),
                     mLightTheme ? R.layout.item_widget_light : R.layout.item_widget);
             Item item = getItem(position);
-            if (item == null) {
-                return remoteViews;
-            }
             if (!isItemAvailable(item)) {
-                Item remoteItem = mItemManager.getItem(item.getId(), ItemManager.MODE_NETWORK);
-                if (remoteItem != null) {
-                    item.populate(remoteItem);
-                } else {
-                    return remoteViews;
-                }
+                return remoteViews;
             }
             remoteViews.setTextViewText(R.id.title, item.getDisplayedTitle());
             remoteViews.setTextViewText(R.id.score, new SpannableStringBuilder()
@@ -168,10 +197,76 @@ public class WidgetService extends RemoteViewsService {
             return mItems != null && position < mItems.length ? mItems[position] : null;
         }
 
+        @WorkerThread
+        @Nullable
+        private Item[] load() {
+            Item[] stories = mSharedStories.getOffered(mFetchMode);
+            if (stories == null || stories.length == 0) {
+                stories = mItemManager.getStories(mFetchMode, ItemManager.MODE_NETWORK);
+            }
+            if (stories == null || stories.length == 0) {
+                stories = mItemManager.getStories(mFetchMode, ItemManager.MODE_CACHE);
+            }
+            if (stories == null || stories.length == 0) {
+                return null;
+            }
+            Item[] items = Arrays.copyOf(stories, Math.min(stories.length, MAX_ITEMS));
+            hydrate(items, ItemManager.MODE_NETWORK, NETWORK_TIMEOUT_MILLIS);
+            hydrate(items, ItemManager.MODE_CACHE, CACHE_TIMEOUT_MILLIS);
+            mSharedStories.put(mFetchMode, items);
+            return items;
+        }
+
         private boolean isItemAvailable(Item item) {
             return item != null && item.getLocalRevision() > 0;
         }
 
+        /**
+         * Fetches given items that are not yet available in parallel, and populates those
+         * fetched within given timeout. Populating happens on calling thread, as fetches that
+         * time out are cancelled but may still complete in background.
+         * @param items         items to hydrate
+         * @param cacheMode     cache mode to fetch items with
+         * @param timeoutMillis max time to wait for all fetches
+         */
+        @WorkerThread
+        private void hydrate(@NonNull Item[] items, @ItemManager.CacheMode int cacheMode,
+                             long timeoutMillis) {
+            List<Item> pending = new ArrayList<>();
+            List<Callable<Item>> tasks = new ArrayList<>();
+            for (Item item : items) {
+                if (!isItemAvailable(item)) {
+                    pending.add(item);
+                    tasks.add(() -> mItemManager.getItem(item.getId(), cacheMode));
+                }
+            }
+            if (tasks.isEmpty()) {
+                return;
+            }
+            List<Future<Item>> futures;
+            try {
+                futures = mExecutor.invokeAll(tasks, timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                Item remoteItem = getResult(futures.get(i));
+                if (remoteItem != null) {
+                    pending.get(i).populate(remoteItem);
+                }
+            }
+        }
+
+        @Nullable
+        private Item getResult(Future<Item> future) {
+            try {
+                return future.isCancelled() ? null : future.get();
+            } catch (InterruptedException | ExecutionException | CancellationException e) {
+                return null;
+            }
+        }
+
         private SpannableString getSpan(int value, String format) {
             String text = String.format(Locale.US, format, value);
             SpannableString spannable = new SpannableString(text);
@@ -16,7 +16,18 @@
 
 package io.github.hidroh.materialistic.data;
 
+import android.content.ContentResolver;
 import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -27,29 +38,52 @@ import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
 import retrofit2.http.GET;
+import retrofit2.http.Header;
 import retrofit2.http.Query;
 
-public class AlgoliaClient implements ItemManager {
+public class AlgoliaClient implements PagedItemManager {
 
     public static boolean sSortByTime = true;
     public static final String HOST = "hn.algolia.com";
     private static final String BASE_API_URL = "https://" + HOST + "/api/v1/";
+    // retrieve enough attributes to display stories without fetching them individually
+    private static final String QUERY_PARAMS = "tags=story" +
+            "&attributesToRetrieve=objectID,title,url,author,story_text," +
+            "points,num_comments,created_at_i" +
+            "&attributesToHighlight=none";
+    private static final int QUERY_CACHE_SIZE = 20;
+    static final long LATENCY_BUDGET_MILLIS = 400;
+    static final int FIRST_PAGE_SIZE = 20;
+    static final int PAGE_SIZE = 50;
     protected RestService mRestService;
     @Inject @Named(ActivityModule.HN) ItemManager mHackerNewsClient;
+    private final ContentResolver mContentResolver;
+    private final QueryCache mQueryCache = new QueryCache(QUERY_CACHE_SIZE);
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private Call<AlgoliaHits> mCall;
+    private Call<AlgoliaHits> mPageCall;
+    private Runnable mPartialResponse;
 
     @Inject
     public AlgoliaClient(Context context, RestServiceFactory factory) {
         mRestService = factory.create(BASE_API_URL, RestService.class);
+        mContentResolver = context.getContentResolver();
         sSortByTime = Preferences.isSortByRecent(context);
     }
 
     @Override
     public void getStories(String filter, @CacheMode int cacheMode,
                            final ResponseListener<Item[]> listener) {
+        getStories(filter, cacheMode, 0, listener);
+    }
+
+    @Override
+    public void getStories(String filter, @CacheMode int cacheMode, int offset,
+                           ResponseListener<Item[]> listener) {
         if (listener == null) {
             return;
         }
-        search(filter, new Callback<AlgoliaHits>() {
+        search(filter, cacheMode, offset, new Callback<AlgoliaHits>() {
             @Override
             public void onResponse(Call<AlgoliaHits> call, Response<AlgoliaHits> response) {
                 AlgoliaHits algoliaHits = response.body();
@@ -58,18 +92,19 @@ public class AlgoliaClient implements ItemManager {
                     return;
                 }
                 Hit[] hits = algoliaHits.hits;
-                Item[] stories = new Item[hits == null ? 0 : hits.length];
+                HackerNewsItem[] stories = new HackerNewsItem[hits == null ? 0 : hits.length];
                 for (int i = 0; i < stories.length; i++) {
-                    HackerNewsItem item = new HackerNewsItem(
-                            Long.parseLong(hits[i].objectID));
-                    item.rank = i + 1;
-                    stories[i] = item;
+                    stories[i] = hits[i].toItem();
+                    stories[i].rank = offset + i + 1;
                 }
-                listener.onResponse(stories);
+                new ItemStatusTask(mContentResolver, listener).execute(stories);
             }
 
             @Override
             public void onFailure(Call<AlgoliaHits> call, Throwable t) {
+                if (call != null && call.isCanceled()) {
+                    return; // superseded by a newer search
+                }
                 listener.onError(t != null ? t.getMessage() : "");
             }
         });
@@ -90,33 +125,228 @@ public class AlgoliaClient implements ItemManager {
         return null; // not applicable
     }
 
-    protected void search(String filter, Callback<AlgoliaHits> callback) {
-        // TODO add ETag header
-        Call<AlgoliaHits> call;
-        if (sSortByTime) {
-            call = mRestService.searchByDate(filter);
+    /**
+     * Searches for stories matching given query, page by page. First page is kept small so
+     * that it renders sooner, and is answered from query cache if possible. Otherwise any
+     * search in flight is cancelled, as it has been superseded. If network does not respond
+     * within {@link #LATENCY_BUDGET_MILLIS}, partial results filtered from a cached broader query
+     * are delivered first, to be followed by complete results.
+     * Subsequent pages are always retrieved from network (or HTTP cache), and extend cached
+     * results of their query, so that they can become exhaustive for refinement. Pages are not
+     * served while first page is pending, as listed hits may be partial.
+     * @param filter    search query
+     * @param cacheMode cache mode
+     * @param offset    number of hits retrieved so far
+     * @param callback  callback to be notified on response, possibly twice for first page
+     */
+    protected void search(String filter, @CacheMode int cacheMode, int offset,
+                          @NonNull Callback<AlgoliaHits> callback) {
+        if (offset > 0) {
+            searchPage(filter, offset, callback);
+            return;
+        }
+        cancel();
+        final boolean sortByTime = sSortByTime;
+        if (cacheMode == MODE_NETWORK) {
+            mQueryCache.remove(filter, sortByTime);
         } else {
-            call = mRestService.search(filter);
+            AlgoliaHits cached = mQueryCache.get(filter, sortByTime);
+            if (cached != null) {
+                callback.onResponse(null, Response.success(cached));
+                return;
+            }
+            AlgoliaHits partial = mQueryCache.getPartial(filter, sortByTime);
+            if (partial != null) {
+                mPartialResponse = () -> callback.onResponse(null, Response.success(partial));
+                mHandler.postDelayed(mPartialResponse, LATENCY_BUDGET_MILLIS);
+            }
+        }
+        // once stale, cached results are revalidated with their ETag if any
+        final Call<AlgoliaHits> searchCall = sortByTime ?
+                mRestService.searchByDate(filter, 0, FIRST_PAGE_SIZE) :
+                mRestService.search(filter, 0, FIRST_PAGE_SIZE);
+        mCall = searchCall;
+        searchCall.enqueue(new Callback<AlgoliaHits>() {
+            @Override
+            public void onResponse(Call<AlgoliaHits> call, Response<AlgoliaHits> response) {
+                if (searchCall != mCall) {
+                    return; // superseded by a newer search, drop late response
+                }
+                mHandler.removeCallbacks(mPartialResponse);
+                mCall = null;
+                if (response.body() != null) {
+                    mQueryCache.put(filter, sortByTime, response.body());
+                }
+                callback.onResponse(call, response);
+            }
+
+            @Override
+            public void onFailure(Call<AlgoliaHits> call, Throwable t) {
+                if (searchCall != mCall) {
+                    return; // superseded by a newer search
+                }
+                mHandler.removeCallbacks(mPartialResponse);
+                mCall = null;
+                callback.onFailure(call, t);
+            }
+        });
+    }
+
+    private void searchPage(String filter, int offset, Callback<AlgoliaHits> callback) {
+        if (mCall != null) {
+            // offset may be that of partial hits, which complete first page will replace
+            callback.onFailure(null, new IOException("First page pending"));
+            return;
+        }
+        if (mPageCall != null) {
+            mPageCall.cancel();
+        }
+        final boolean sortByTime = sSortByTime;
+        mPageCall = sortByTime ?
+                mRestService.searchByDate(filter, offset, PAGE_SIZE) :
+                mRestService.search(filter, offset, PAGE_SIZE);
+        mPageCall.enqueue(new Callback<AlgoliaHits>() {
+            @Override
+            public void onResponse(Call<AlgoliaHits> call, Response<AlgoliaHits> response) {
+                if (call == mPageCall) {
+                    mPageCall = null;
+                }
+                if (response.body() != null) {
+                    mQueryCache.append(filter, sortByTime, offset, response.body());
+                }
+                callback.onResponse(call, response);
+            }
+
+            @Override
+            public void onFailure(Call<AlgoliaHits> call, Throwable t) {
+                if (call == mPageCall) {
+                    mPageCall = null;
+                }
+                callback.onFailure(call, t);
+            }
+        });
+    }
+
+    private void cancel() {
+        mHandler.removeCallbacks(mPartialResponse);
+        mPartialResponse = null;
+        if (mCall != null) {
+            mCall.cancel();
+            mCall = null;
+        }
+        if (mPageCall != null) {
+            mPageCall.cancel();
+            mPageCall = null;
         }
-        call.enqueue(callback);
     }
 
     interface RestService {
-        @GET("search_by_date?hitsPerPage=100&tags=story&attributesToRetrieve=objectID&attributesToHighlight=none")
-        Call<AlgoliaHits> searchByDate(@Query("query") String query);
+        @GET("search_by_date?" + QUERY_PARAMS)
+        Call<AlgoliaHits> searchByDate(@Query("query") String query,
+                                       @Query("offset") int offset,
+                                       @Query("length") int length);
 
-        @GET("search?hitsPerPage=100&tags=story&attributesToRetrieve=objectID&attributesToHighlight=none")
-        Call<AlgoliaHits> search(@Query("query") String query);
+        @GET("search?" + QUERY_PARAMS)
+        Call<AlgoliaHits> search(@Query("query") String query,
+                                 @Query("offset") int offset,
+                                 @Query("length") int length);
 
-        @GET("search?hitsPerPage=100&tags=story&attributesToRetrieve=objectID&attributesToHighlight=none")
-        Call<AlgoliaHits> searchByMinTimestamp(@Query("numericFilters") String timestampSeconds);
+        @GET("search?" + QUERY_PARAMS)
+        Call<AlgoliaHits> searchByMinTimestamp(@Query("numericFilters") String timestampSeconds,
+                                               @Query("offset") int offset,
+                                               @Query("length") int length,
+                                               @Header("Cache-Control") String cacheControl);
     }
 
     protected static class AlgoliaHits {
         Hit[] hits;
+        int nbHits;
+
+        /**
+         * Checks if all matching hits have been retrieved
+         * @return  true if exhaustive, false otherwise
+         */
+        boolean isExhaustive() {
+            return hits != null && nbHits <= hits.length;
+        }
     }
 
-    private static class Hit {
+    static class Hit {
         String objectID;
+        String title;
+        String url;
+        String author;
+        String story_text;
+        int points;
+        int num_comments;
+        long created_at_i;
+
+        /**
+         * Creates a story from hit attributes, ready to be displayed without being fetched
+         * @return  displayable story
+         */
+        HackerNewsItem toItem() {
+            HackerNewsItem item = new HackerNewsItem(Long.parseLong(objectID),
+                    Item.STORY_TYPE, author, created_at_i, story_text, url, title,
+                    points, num_comments, 0, null, false, false);
+            item.setLocalRevision(1);
+            return item;
+        }
+    }
+
+    /**
+     * Looks up viewed and favorite statuses of given stories in a single query per status,
+     * before delivering them
+     */
+    private static class ItemStatusTask extends AsyncTask<HackerNewsItem, Void, HackerNewsItem[]> {
+        private final ContentResolver mContentResolver;
+        private final ResponseListener<Item[]> mListener;
+
+        ItemStatusTask(ContentResolver contentResolver, ResponseListener<Item[]> listener) {
+            mContentResolver = contentResolver;
+            mListener = listener;
+        }
+
+        @Override
+        protected HackerNewsItem[] doInBackground(HackerNewsItem... items) {
+            if (items.length == 0) {
+                return items;
+            }
+            String[] itemIds = new String[items.length];
+            StringBuilder placeholders = new StringBuilder();
+            for (int i = 0; i < items.length; i++) {
+                itemIds[i] = items[i].getId();
+                placeholders.append(i == 0 ? "?" : ",?");
+            }
+            String selection = " IN (" + placeholders + ")";
+            Set<String> viewed = query(MaterialisticProvider.URI_VIEWED,
+                    MaterialisticProvider.ViewedEntry.COLUMN_NAME_ITEM_ID, selection, itemIds);
+            Set<String> favorites = query(MaterialisticProvider.URI_FAVORITE,
+                    MaterialisticProvider.FavoriteEntry.COLUMN_NAME_ITEM_ID, selection, itemIds);
+            for (HackerNewsItem item : items) {
+                item.setIsViewed(viewed.contains(item.getId()));
+                item.setFavorite(favorites.contains(item.getId()));
+            }
+            return items;
+        }
+
+        @Override
+        protected void onPostExecute(HackerNewsItem[] items) {
+            mListener.onResponse(items);
+        }
+
+        private Set<String> query(Uri uri, String column, String selection, String[] itemIds) {
+            Set<String> result = new HashSet<>();
+            Cursor cursor = mContentResolver.query(uri, new String[]{column},
+                    column + selection, itemIds, null);
+            if (cursor == null) {
+                return result;
+            }
+            while (cursor.moveToNext()) {
+                result.add(cursor.getString(0));
+            }
+            cursor.close();
+            return result;
+        }
     }
 }
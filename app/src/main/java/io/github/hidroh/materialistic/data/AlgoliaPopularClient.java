@@ -17,7 +17,10 @@
 package io.github.hidroh.materialistic.data;
 
 import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.annotation.StringDef;
+import android.support.annotation.VisibleForTesting;
 import android.text.format.DateUtils;
 
 import java.lang.annotation.Retention;
@@ -25,11 +28,17 @@ import java.lang.annotation.RetentionPolicy;
 
 import javax.inject.Inject;
 
+import retrofit2.Call;
 import retrofit2.Callback;
+import retrofit2.Response;
 
 public class AlgoliaPopularClient extends AlgoliaClient {
 
     private static final String MIN_CREATED_AT = "created_at_i>";
+    private static final String CACHE_CONTROL_REVALIDATE = "max-age=0";
+    private static final String CACHE_CONTROL_ONLY_IF_CACHED = "only-if-cached";
+    private static final String CACHE_CONTROL_ONLY_IF_CACHED_STALE =
+            "only-if-cached, max-stale=" + Integer.MAX_VALUE;
 
     @Inject
     public AlgoliaPopularClient(Context context, RestServiceFactory factory) {
@@ -50,24 +59,145 @@ public class AlgoliaPopularClient extends AlgoliaClient {
     public static final String PAST_YEAR = "past_year";
 
     @Override
-    protected void search(@Range String filter, Callback<AlgoliaHits> callback) {
-        long timestamp = System.currentTimeMillis();
-        switch (filter) {
+    protected void search(@Range String filter, @CacheMode int cacheMode, int offset,
+                          @NonNull Callback<AlgoliaHits> callback) {
+        long now = System.currentTimeMillis();
+        String numericFilters = MIN_CREATED_AT + getLowerBound(filter, now);
+        if (offset > 0) {
+            mRestService.searchByMinTimestamp(numericFilters, offset, PAGE_SIZE, null)
+                    .enqueue(callback);
+        } else if (cacheMode == MODE_NETWORK) {
+            mRestService.searchByMinTimestamp(numericFilters, 0, FIRST_PAGE_SIZE,
+                    CACHE_CONTROL_REVALIDATE)
+                    .enqueue(callback);
+        } else {
+            new BucketSearch(numericFilters,
+                    MIN_CREATED_AT + getLowerBound(filter, now - getBucketMillis(filter)),
+                    callback).start();
+        }
+    }
+
+    /**
+     * Gets lower bound of creation time for given range, quantised to start of its bucket,
+     * so that request URL, and hence HTTP cache key, stays stable until bucket rolls over
+     * @param range         popular range
+     * @param nowMillis     current time in milliseconds
+     * @return  lower bound in seconds
+     */
+    @VisibleForTesting
+    static long getLowerBound(@Range String range, long nowMillis) {
+        long bucketMillis = getBucketMillis(range);
+        long lowerBound = nowMillis - getRangeMillis(range);
+        return lowerBound / bucketMillis * bucketMillis / 1000;
+    }
+
+    private static long getRangeMillis(@Range String range) {
+        switch (range) {
             case LAST_24H:
             default:
-                timestamp -= DateUtils.DAY_IN_MILLIS;
-                break;
+                return DateUtils.DAY_IN_MILLIS;
             case PAST_WEEK:
-                timestamp -= DateUtils.WEEK_IN_MILLIS;
-                break;
+                return DateUtils.WEEK_IN_MILLIS;
             case PAST_MONTH:
-                timestamp -= DateUtils.WEEK_IN_MILLIS * 4;
-                break;
+                return DateUtils.WEEK_IN_MILLIS * 4;
             case PAST_YEAR:
-                timestamp -= DateUtils.YEAR_IN_MILLIS;
-                break;
+                return DateUtils.YEAR_IN_MILLIS;
         }
-        mRestService.searchByMinTimestamp(MIN_CREATED_AT + timestamp / 1000)
-                .enqueue(callback);
+    }
+
+    private static long getBucketMillis(@Range String range) {
+        switch (range) {
+            case LAST_24H:
+            default:
+                return DateUtils.HOUR_IN_MILLIS;
+            case PAST_WEEK:
+                return DateUtils.HOUR_IN_MILLIS * 6;
+            case PAST_MONTH:
+            case PAST_YEAR:
+                return DateUtils.DAY_IN_MILLIS;
+        }
+    }
+
+    /**
+     * Searches first page of current bucket, serving it from HTTP cache if fresh. Otherwise
+     * stale results of current bucket, or of previous bucket if current one has just rolled
+     * over, are served from HTTP cache while current bucket is refreshed from network.
+     */
+    private class BucketSearch {
+        private final String mCurrentBucket;
+        private final String mPreviousBucket;
+        private final Callback<AlgoliaHits> mCallback;
+        private boolean mHasStaleResponse;
+
+        BucketSearch(String currentBucket, String previousBucket, Callback<AlgoliaHits> callback) {
+            mCurrentBucket = currentBucket;
+            mPreviousBucket = previousBucket;
+            mCallback = callback;
+        }
+
+        void start() {
+            searchCache(mCurrentBucket, CACHE_CONTROL_ONLY_IF_CACHED, response -> {
+                if (response != null) {
+                    mCallback.onResponse(null, response);
+                } else {
+                    searchStale(mCurrentBucket, () ->
+                            searchStale(mPreviousBucket, this::refresh));
+                }
+            });
+        }
+
+        private void searchStale(String bucket, Runnable onMiss) {
+            searchCache(bucket, CACHE_CONTROL_ONLY_IF_CACHED_STALE, response -> {
+                if (response != null) {
+                    mHasStaleResponse = true;
+                    mCallback.onResponse(null, response);
+                    refresh();
+                } else {
+                    onMiss.run();
+                }
+            });
+        }
+
+        private void refresh() {
+            mRestService.searchByMinTimestamp(mCurrentBucket, 0, FIRST_PAGE_SIZE, null)
+                    .enqueue(new Callback<AlgoliaHits>() {
+                        @Override
+                        public void onResponse(Call<AlgoliaHits> call,
+                                               Response<AlgoliaHits> response) {
+                            if (response.isSuccessful() || !mHasStaleResponse) {
+                                mCallback.onResponse(call, response);
+                            }
+                        }
+
+                        @Override
+                        public void onFailure(Call<AlgoliaHits> call, Throwable t) {
+                            if (!mHasStaleResponse) {
+                                mCallback.onFailure(call, t);
+                            }
+                        }
+                    });
+        }
+
+        private void searchCache(String bucket, String cacheControl,
+                                 CachedResponseListener listener) {
+            mRestService.searchByMinTimestamp(bucket, 0, FIRST_PAGE_SIZE, cacheControl)
+                    .enqueue(new Callback<AlgoliaHits>() {
+                        @Override
+                        public void onResponse(Call<AlgoliaHits> call,
+                                               Response<AlgoliaHits> response) {
+                            // unsatisfiable cache-only requests get 504
+                            listener.onResponse(response.isSuccessful() ? response : null);
+                        }
+
+                        @Override
+                        public void onFailure(Call<AlgoliaHits> call, Throwable t) {
+                            listener.onResponse(null);
+                        }
+                    });
+        }
+    }
+
+    private interface CachedResponseListener {
+        void onResponse(@Nullable Response<AlgoliaHits> response);
     }
 }
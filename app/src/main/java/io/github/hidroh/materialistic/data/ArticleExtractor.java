@@ -0,0 +1,472 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts main article content from an HTML page, based on the content scoring heuristics
+ * popularized by Arc90's readability: paragraphs score their parent and grandparent by text
+ * length and number of commas, candidates are weighted by tag, class and id names and
+ * penalized by link density, then the best candidate is merged with its related siblings.
+ * Markup is consumed as a stream of {@link HtmlTokenizer} events, keeping only a light tree
+ * of elements that may hold content: unlikely subtrees such as navigation, asides, forms or
+ * comments are dropped as soon as their start tag is seen.
+ */
+class ArticleExtractor implements HtmlTokenizer.Handler {
+    private static final int MIN_PARAGRAPH_LENGTH = 25;
+    private static final int MIN_CONTENT_LENGTH = 250;
+    private static final int MAX_DEPTH = 256;
+    private static final Set<String> VOID_TAGS = new HashSet<>(Arrays.asList(
+            "area", "base", "br", "col", "embed", "hr", "img", "input", "link", "meta",
+            "param", "source", "track", "wbr"));
+    private static final Set<String> SKIPPED_TAGS = new HashSet<>(Arrays.asList(
+            "head", "script", "style", "noscript", "nav", "header", "footer", "aside", "form",
+            "button", "select", "textarea", "iframe", "object", "embed", "svg", "canvas",
+            "template", "menu"));
+    private static final Set<String> BLOCK_TAGS = new HashSet<>(Arrays.asList(
+            "address", "article", "blockquote", "dd", "div", "dl", "dt", "figure", "h1", "h2",
+            "h3", "h4", "h5", "h6", "hr", "li", "main", "ol", "p", "pre", "section", "table",
+            "ul"));
+    private static final Set<String> PARAGRAPH_TAGS = new HashSet<>(Arrays.asList(
+            "p", "pre", "td"));
+    private static final Set<String> CONTAINER_TAGS = new HashSet<>(Arrays.asList(
+            "article", "div", "main", "section"));
+    private static final Set<String> OUTPUT_TAGS = new HashSet<>(Arrays.asList(
+            "a", "b", "blockquote", "br", "code", "dd", "dl", "dt", "em", "figcaption",
+            "figure", "h1", "h2", "h3", "h4", "h5", "h6", "hr", "i", "img", "li", "ol", "p",
+            "pre", "s", "strong", "sub", "sup", "table", "tbody", "td", "th", "thead", "tr",
+            "u", "ul"));
+    private static final Pattern UNLIKELY_CANDIDATES = Pattern.compile(
+            "banner|breadcrumb|combx|comment|community|cover-wrap|disqus|extra|foot|header|" +
+            "legends|menu|related|remark|replies|rss|shoutbox|sidebar|skyscraper|social|" +
+            "sponsor|ad-break|agegate|pagination|pager|popup|yom-remote|share|promo",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern MAYBE_CANDIDATES = Pattern.compile(
+            "and|article|body|column|main|shadow|content|post|entry|story|text",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern POSITIVE = Pattern.compile(
+            "article|body|content|entry|hentry|h-entry|main|page|pagination|post|text|blog|story",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern NEGATIVE = Pattern.compile(
+            "hidden|banner|combx|comment|com-|contact|foot|footer|footnote|masthead|media|meta|" +
+            "outbrain|promo|related|scroll|share|shoutbox|sidebar|skyscraper|sponsor|" +
+            "shopping|tags|tool|widget",
+            Pattern.CASE_INSENSITIVE);
+
+    private final URI mBaseUri;
+    private final Node mRoot = new Node(null, "body", null);
+    private final ArrayList<Node> mStack = new ArrayList<>();
+    private final ArrayList<Node> mParagraphs = new ArrayList<>();
+    private int mSkipDepth;
+
+    /**
+     * Extracts article content from given markup
+     * @param reader    markup reader
+     * @param baseUrl   page URL, used to resolve relative links and images
+     * @return  HTML fragment of article content, or null if no article content can be found
+     * @throws IOException if reader fails
+     */
+    @Nullable
+    static String extract(@NonNull Reader reader, @Nullable String baseUrl) throws IOException {
+        ArticleExtractor extractor = new ArticleExtractor(baseUrl);
+        new HtmlTokenizer(reader, extractor).tokenize();
+        return extractor.getContent();
+    }
+
+    private ArticleExtractor(String baseUrl) {
+        URI baseUri = null;
+        if (baseUrl != null) {
+            try {
+                baseUri = new URI(baseUrl);
+            } catch (URISyntaxException e) {
+                // no op
+            }
+        }
+        mBaseUri = baseUri;
+        mStack.add(mRoot);
+    }
+
+    @Override
+    public void onStartTag(@NonNull String name, @NonNull Map<String, String> attributes) {
+        if (name.equals("html") || name.equals("body")) {
+            return;
+        }
+        boolean isVoid = VOID_TAGS.contains(name);
+        if (mSkipDepth > 0) {
+            if (!isVoid) {
+                mSkipDepth++;
+            }
+            return;
+        }
+        if (shouldSkip(name, attributes)) {
+            if (!isVoid) {
+                mSkipDepth = 1;
+            }
+            return;
+        }
+        Node parent = current();
+        if (BLOCK_TAGS.contains(name)) {
+            // block elements implicitly close an open paragraph, list items close siblings
+            if (parent.tag.equals("p") || (name.equals("li") && parent.tag.equals("li"))) {
+                close(mStack.size() - 1);
+                parent = current();
+            }
+            parent.hasBlockChild = true;
+        }
+        Node node = new Node(parent, name, attributes);
+        parent.children.add(node);
+        if (!isVoid && mStack.size() < MAX_DEPTH) {
+            mStack.add(node);
+        }
+    }
+
+    @Override
+    public void onEndTag(@NonNull String name) {
+        if (mSkipDepth > 0) {
+            mSkipDepth--;
+            return;
+        }
+        for (int i = mStack.size() - 1; i > 0; i--) {
+            if (mStack.get(i).tag.equals(name)) {
+                close(i);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void onText(@NonNull String text) {
+        if (mSkipDepth > 0) {
+            return;
+        }
+        Node node = current();
+        node.children.add(text);
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                length++;
+                if (c == ',') {
+                    node.commas++;
+                }
+            }
+        }
+        node.textLength += length;
+    }
+
+    private boolean shouldSkip(String name, Map<String, String> attributes) {
+        if (SKIPPED_TAGS.contains(name)) {
+            return true;
+        }
+        if (attributes.containsKey("hidden") || "true".equals(attributes.get("aria-hidden"))) {
+            return true;
+        }
+        if (name.equals("article") || name.equals("main") || name.equals("a")) {
+            return false;
+        }
+        String classAndId = getClassAndId(attributes);
+        return classAndId != null &&
+                UNLIKELY_CANDIDATES.matcher(classAndId).find() &&
+                !MAYBE_CANDIDATES.matcher(classAndId).find();
+    }
+
+    private Node current() {
+        return mStack.get(mStack.size() - 1);
+    }
+
+    /**
+     * Closes all elements from top of stack down to given stack index, propagating their
+     * text statistics to their parents
+     */
+    private void close(int index) {
+        for (int i = mStack.size() - 1; i >= index; i--) {
+            Node node = mStack.remove(i);
+            if (node.tag.equals("a")) {
+                node.linkLength = node.textLength;
+            }
+            if (PARAGRAPH_TAGS.contains(node.tag) ||
+                    node.tag.equals("div") && !node.hasBlockChild) {
+                mParagraphs.add(node);
+            }
+            node.parent.textLength += node.textLength;
+            node.parent.linkLength += node.linkLength;
+            node.parent.commas += node.commas;
+        }
+    }
+
+    private String getContent() {
+        close(1);
+        Node top = findTopCandidate();
+        if (top == null || top.textLength < MIN_CONTENT_LENGTH) {
+            return null;
+        }
+        StringBuilder content = new StringBuilder("<div>");
+        if (top.parent == null) {
+            write(top, content);
+        } else {
+            double threshold = Math.max(10, top.score * 0.2);
+            for (Object child : top.parent.children) {
+                if (child instanceof Node && isRelated(top, (Node) child, threshold)) {
+                    write((Node) child, content);
+                }
+            }
+        }
+        return content.append("</div>").toString();
+    }
+
+    private Node findTopCandidate() {
+        ArrayList<Node> candidates = new ArrayList<>();
+        for (Node paragraph : mParagraphs) {
+            if (paragraph.parent == null || paragraph.textLength < MIN_PARAGRAPH_LENGTH) {
+                continue;
+            }
+            double score = 1 + paragraph.commas + Math.min(paragraph.textLength / 100, 3);
+            Node parent = paragraph.parent;
+            score(parent, score, candidates);
+            if (parent.parent != null) {
+                score(parent.parent, score / 2, candidates);
+            }
+        }
+        Node top = null;
+        for (Node candidate : candidates) {
+            candidate.score *= 1 - candidate.getLinkDensity();
+            if (top == null || candidate.score > top.score) {
+                top = candidate;
+            }
+        }
+        return top != null ? top : mRoot;
+    }
+
+    private void score(Node node, double score, List<Node> candidates) {
+        if (!node.scored) {
+            node.scored = true;
+            node.score = getInitialScore(node);
+            candidates.add(node);
+        }
+        node.score += score;
+    }
+
+    private double getInitialScore(Node node) {
+        double score;
+        switch (node.tag) {
+            case "div":
+            case "article":
+            case "main":
+                score = 5;
+                break;
+            case "pre":
+            case "td":
+            case "blockquote":
+                score = 3;
+                break;
+            case "address":
+            case "ol":
+            case "ul":
+            case "dl":
+            case "dd":
+            case "dt":
+            case "li":
+                score = -3;
+                break;
+            case "h1":
+            case "h2":
+            case "h3":
+            case "h4":
+            case "h5":
+            case "h6":
+            case "th":
+                score = -5;
+                break;
+            default:
+                score = 0;
+                break;
+        }
+        return score + getClassWeight(node.attributes);
+    }
+
+    private boolean isRelated(Node top, Node sibling, double threshold) {
+        if (sibling == top) {
+            return true;
+        }
+        double bonus = 0;
+        String classAndId = getClassAndId(top.attributes);
+        if (classAndId != null && classAndId.equals(getClassAndId(sibling.attributes))) {
+            bonus = top.score * 0.2;
+        }
+        if (sibling.scored && sibling.score + bonus >= threshold) {
+            return true;
+        }
+        if (sibling.tag.equals("p")) {
+            double linkDensity = sibling.getLinkDensity();
+            return sibling.textLength > 80 && linkDensity < 0.25 ||
+                    sibling.textLength > 0 && linkDensity == 0 && sibling.endsSentence();
+        }
+        return false;
+    }
+
+    private void write(Node node, StringBuilder out) {
+        if (node.getLinkDensity() > 0.5 && getClassWeight(node.attributes) < 0) {
+            return; // e.g. tag lists or share links within article
+        }
+        String tag = CONTAINER_TAGS.contains(node.tag) ? "div" :
+                OUTPUT_TAGS.contains(node.tag) ? node.tag : null;
+        if (tag != null) {
+            out.append('<').append(tag);
+            if (tag.equals("a")) {
+                writeUrlAttribute(node, "href", out);
+            } else if (tag.equals("img")) {
+                writeUrlAttribute(node, "src", out);
+                writeAttribute("alt", node.attributes.get("alt"), out);
+            }
+            out.append('>');
+            if (VOID_TAGS.contains(tag)) {
+                return;
+            }
+        }
+        for (Object child : node.children) {
+            if (child instanceof Node) {
+                write((Node) child, out);
+            } else {
+                writeText((String) child, out);
+            }
+        }
+        if (tag != null) {
+            out.append("</").append(tag).append('>');
+        }
+    }
+
+    private void writeUrlAttribute(Node node, String name, StringBuilder out) {
+        String value = node.attributes.get(name);
+        if (value != null && mBaseUri != null) {
+            try {
+                value = mBaseUri.resolve(value.trim()).toString();
+            } catch (IllegalArgumentException e) {
+                // keep as is
+            }
+        }
+        writeAttribute(name, value, out);
+    }
+
+    private static void writeAttribute(String name, String value, StringBuilder out) {
+        if (value == null) {
+            return;
+        }
+        out.append(' ').append(name).append("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.append("&quot;");
+            } else if (c == '<') {
+                out.append("&lt;");
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    private static void writeText(String text, StringBuilder out) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '<') {
+                out.append("&lt;");
+            } else if (c == '>') {
+                out.append("&gt;");
+            } else {
+                out.append(c);
+            }
+        }
+    }
+
+    private static int getClassWeight(Map<String, String> attributes) {
+        if (attributes == null) {
+            return 0;
+        }
+        int weight = 0;
+        for (String name : new String[]{"class", "id"}) {
+            String value = attributes.get(name);
+            if (value == null || value.isEmpty()) {
+                continue;
+            }
+            if (NEGATIVE.matcher(value).find()) {
+                weight -= 25;
+            }
+            if (POSITIVE.matcher(value).find()) {
+                weight += 25;
+            }
+        }
+        return weight;
+    }
+
+    private static String getClassAndId(Map<String, String> attributes) {
+        if (attributes == null) {
+            return null;
+        }
+        String className = attributes.get("class"), id = attributes.get("id");
+        if (className == null && id == null) {
+            return null;
+        }
+        return (className != null ? className : "") + " " + (id != null ? id : "");
+    }
+
+    private static class Node {
+        private final Node parent;
+        private final String tag;
+        private final Map<String, String> attributes;
+        private final List<Object> children = new ArrayList<>(); // nodes or text
+        private int textLength, linkLength, commas;
+        private boolean hasBlockChild, scored;
+        private double score;
+
+        Node(Node parent, String tag, Map<String, String> attributes) {
+            this.parent = parent;
+            this.tag = tag;
+            this.attributes = attributes;
+        }
+
+        double getLinkDensity() {
+            return textLength == 0 ? 0 : (double) linkLength / textLength;
+        }
+
+        boolean endsSentence() {
+            for (int i = children.size() - 1; i >= 0; i--) {
+                Object child = children.get(i);
+                if (child instanceof String) {
+                    String text = ((String) child).trim();
+                    if (!text.isEmpty()) {
+                        return text.endsWith(".");
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}
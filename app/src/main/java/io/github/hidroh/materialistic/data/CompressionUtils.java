@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Helpers to store text content compressed with deflate
+ */
+final class CompressionUtils {
+    private static final String CHARSET = "UTF-8";
+    private static final int BUFFER_SIZE = 8192;
+    private static final int EXPECTED_RATIO = 4; // typical for HTML
+
+    private CompressionUtils() {}
+
+    /**
+     * Compresses given text
+     * @param text  text to compress
+     * @return  compressed UTF-8 bytes of given text
+     */
+    @NonNull
+    static byte[] compress(@NonNull String text) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(text.length() / EXPECTED_RATIO);
+        // deflater holds native memory until ended, which closing stream does not do for
+        // a deflater that it has not created
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            DeflaterOutputStream out = new DeflaterOutputStream(bytes, deflater);
+            out.write(text.getBytes(CHARSET));
+            out.close();
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e); // UTF-8 is always supported
+        } catch (IOException e) {
+            // in memory stream never fails, do not return truncated output if it somehow does
+            throw new IllegalStateException(e);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decompresses text compressed by {@link #compress(String)}, streaming inflated bytes
+     * straight into decoded text without buffering them in full
+     * @param compressed    compressed bytes
+     * @return  decompressed text, or null if given bytes are corrupted
+     */
+    @Nullable
+    static String decompress(@NonNull byte[] compressed) {
+        StringBuilder text = new StringBuilder(compressed.length * EXPECTED_RATIO);
+        char[] buffer = new char[BUFFER_SIZE];
+        Reader reader = null;
+        try {
+            reader = new InputStreamReader(new InflaterInputStream(
+                    new ByteArrayInputStream(compressed)), CHARSET);
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                text.append(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            return null;
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    // no op
+                }
+            }
+        }
+        return text.toString();
+    }
+}
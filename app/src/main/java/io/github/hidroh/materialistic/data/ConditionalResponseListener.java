@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+/**
+ * Callback interface for requests revalidated against a response that has already been
+ * delivered to this listener, e.g. refreshing a displayed list
+ * @param <T> response type
+ */
+public interface ConditionalResponseListener<T> extends ResponseListener<T> {
+    /**
+     * Fired instead of {@link #onResponse(Object)} when server confirms that
+     * previously delivered response has not been modified
+     */
+    void onNotModified();
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.Html;
+import android.text.TextUtils;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Streams {@link Favorite} to and from archive files, one favorite at a time so that memory use
+ * does not grow with archive size. Two formats are supported:
+ * JSON Lines, with one favorite object per line, which round-trips losslessly, and
+ * Netscape bookmark file, which browsers can import and export, with one bookmark per line.
+ * A reader accepts either format, or a mix of both, line by line.
+ */
+class FavoriteArchive {
+    static final int FORMAT_JSON_LINES = 0;
+    static final int FORMAT_HTML = 1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String JSON_ID = "id";
+    private static final String JSON_URL = "url";
+    private static final String JSON_TITLE = "title";
+    private static final String JSON_TIME = "time";
+    private static final String HTML_HEADER = "<!DOCTYPE NETSCAPE-Bookmark-file-1>\n" +
+            "<META HTTP-EQUIV=\"Content-Type\" CONTENT=\"text/html; charset=UTF-8\">\n" +
+            "<TITLE>Bookmarks</TITLE>\n" +
+            "<H1>Bookmarks</H1>\n" +
+            "<DL><p>\n";
+    private static final String HTML_FOOTER = "</DL><p>\n";
+    private static final String HTML_BOOKMARK = "    <DT><A HREF=\"%1$s\" ADD_DATE=\"%2$d\" ITEM_ID=\"%3$s\">%4$s</A>\n";
+    private static final Pattern HTML_ANCHOR = Pattern.compile("<A\\s([^>]*)>(.*?)</A>",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern HTML_ATTRIBUTE = Pattern.compile("([\\w-]+)\\s*=\\s*\"([^\"]*)\"");
+    private static final Pattern HN_ITEM_URL = Pattern.compile(
+            Pattern.quote(HackerNewsClient.BASE_WEB_URL + "/item?id=") + "(\\d+)");
+
+    static String getExtension(int format) {
+        return format == FORMAT_HTML ? ".html" : ".jsonl";
+    }
+
+    static String getMimeType(int format) {
+        return format == FORMAT_HTML ? "text/html" : "application/x-ndjson";
+    }
+
+    private static String encode(@Nullable String text) {
+        return TextUtils.isEmpty(text) ? "" : TextUtils.htmlEncode(text);
+    }
+
+    /**
+     * Writes favorites to an output stream in given format
+     */
+    static class Writer implements Closeable {
+        private final java.io.Writer mWriter;
+        private final int mFormat;
+
+        Writer(@NonNull OutputStream out, int format) throws IOException {
+            mWriter = new BufferedWriter(new OutputStreamWriter(out, UTF_8));
+            mFormat = format;
+            if (format == FORMAT_HTML) {
+                mWriter.write(HTML_HEADER);
+            }
+        }
+
+        void write(@NonNull Favorite favorite) throws IOException {
+            if (mFormat == FORMAT_HTML) {
+                mWriter.write(String.format(Locale.US, HTML_BOOKMARK,
+                        encode(favorite.getUrl()),
+                        favorite.getTime() / 1000,
+                        favorite.getId(),
+                        encode(favorite.getDisplayedTitle())));
+            } else {
+                JsonWriter json = new JsonWriter(mWriter); // not closed, as it closes writer
+                json.beginObject()
+                        .name(JSON_ID).value(favorite.getId())
+                        .name(JSON_URL).value(favorite.getUrl())
+                        .name(JSON_TITLE).value(favorite.getDisplayedTitle())
+                        .name(JSON_TIME).value(favorite.getTime())
+                        .endObject()
+                        .flush();
+                mWriter.write('\n');
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (mFormat == FORMAT_HTML) {
+                mWriter.write(HTML_FOOTER);
+            }
+            mWriter.close();
+        }
+    }
+
+    /**
+     * Reads favorites from an input stream in any supported format
+     */
+    static class Reader implements Closeable {
+        private final BufferedReader mReader;
+
+        Reader(@NonNull InputStream in) {
+            mReader = new BufferedReader(new InputStreamReader(in, UTF_8));
+        }
+
+        /**
+         * Reads next favorite, skipping lines that do not contain one
+         * @return  next favorite, or null if end of stream has been reached
+         * @throws IOException if stream cannot be read
+         */
+        @Nullable
+        Favorite read() throws IOException {
+            String line;
+            while ((line = mReader.readLine()) != null) {
+                line = line.trim();
+                Favorite favorite = line.startsWith("{") ? parseJson(line) : parseHtml(line);
+                if (favorite != null) {
+                    return favorite;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            mReader.close();
+        }
+
+        @Nullable
+        private Favorite parseJson(String line) {
+            String id = null, url = null, title = null;
+            long time = System.currentTimeMillis();
+            JsonReader json = new JsonReader(new StringReader(line));
+            try {
+                json.beginObject();
+                while (json.hasNext()) {
+                    switch (json.nextName()) {
+                        case JSON_ID:
+                            id = nextString(json);
+                            break;
+                        case JSON_URL:
+                            url = nextString(json);
+                            break;
+                        case JSON_TITLE:
+                            title = nextString(json);
+                            break;
+                        case JSON_TIME:
+                            time = json.nextLong();
+                            break;
+                        default:
+                            json.skipValue();
+                            break;
+                    }
+                }
+            } catch (IOException | IllegalStateException | NumberFormatException e) {
+                return null; // malformed line
+            }
+            return create(id, url, title, time);
+        }
+
+        @Nullable
+        private Favorite parseHtml(String line) {
+            Matcher anchor = HTML_ANCHOR.matcher(line);
+            if (!anchor.find()) {
+                return null;
+            }
+            String id = null, url = null;
+            long time = System.currentTimeMillis();
+            Matcher attribute = HTML_ATTRIBUTE.matcher(anchor.group(1));
+            while (attribute.find()) {
+                String value = Html.fromHtml(attribute.group(2)).toString();
+                switch (attribute.group(1).toUpperCase(Locale.US)) {
+                    case "HREF":
+                        url = value;
+                        break;
+                    case "ITEM_ID":
+                        id = value;
+                        break;
+                    case "ADD_DATE":
+                        try {
+                            time = Long.parseLong(value) * 1000;
+                        } catch (NumberFormatException e) {
+                            // keep current time
+                        }
+                        break;
+                }
+            }
+            if (id == null && url != null) { // bookmarked item page, e.g. from browser
+                Matcher itemUrl = HN_ITEM_URL.matcher(url);
+                id = itemUrl.find() ? itemUrl.group(1) : null;
+            }
+            return create(id, url, Html.fromHtml(anchor.group(2)).toString(), time);
+        }
+
+        @Nullable
+        private String nextString(JsonReader json) throws IOException {
+            if (json.peek() == JsonToken.NULL) {
+                json.nextNull();
+                return null;
+            }
+            return json.nextString();
+        }
+
+        @Nullable
+        private Favorite create(String id, String url, String title, long time) {
+            if (TextUtils.isEmpty(id) || !TextUtils.isDigitsOnly(id)) {
+                return null; // not an item
+            }
+            if (TextUtils.isEmpty(url)) {
+                url = String.format(HackerNewsClient.WEB_ITEM_PATH, id);
+            }
+            return new Favorite(id, url, title, time);
+        }
+    }
+}
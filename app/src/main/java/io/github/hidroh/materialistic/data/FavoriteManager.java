@@ -17,18 +17,24 @@
 package io.github.hidroh.materialistic.data;
 
 import android.content.AsyncQueryHandler;
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.OperationApplicationException;
 import android.database.CursorWrapper;
 import android.net.Uri;
 import android.os.AsyncTask;
+import android.os.RemoteException;
 import android.support.annotation.NonNull;
 import android.support.v4.content.LocalBroadcastManager;
 import android.text.TextUtils;
 
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 
@@ -37,47 +43,65 @@ import java.util.Collection;
  */
 public class FavoriteManager {
 
-    public static final int LOADER = 0;
+    public static final int FORMAT_JSON_LINES = FavoriteArchive.FORMAT_JSON_LINES;
+    public static final int FORMAT_HTML = FavoriteArchive.FORMAT_HTML;
     /**
-     * {@link android.content.Intent#getAction()} for broadcasting getting favorites matching query
+     * {@link android.content.Intent#getAction()} for broadcasting exporting favorites matching query
      */
-    public static final String ACTION_GET = FavoriteManager.class.getName() + ".ACTION_GET";
+    public static final String ACTION_EXPORT = FavoriteManager.class.getName() + ".ACTION_EXPORT";
     /**
-     * {@link android.os.Bundle} key for {@link #ACTION_GET} that contains {@link ArrayList} of
-     * {@link Favorite}
+     * {@link android.os.Bundle} key for {@link #ACTION_EXPORT} that contains {@link Uri} of
+     * exported file, or null if export failed
      */
-    public static final String ACTION_GET_EXTRA_DATA = ACTION_GET + ".EXTRA_DATA";
+    public static final String ACTION_EXPORT_EXTRA_DATA = ACTION_EXPORT + ".EXTRA_DATA";
+    /**
+     * {@link android.os.Bundle} key for {@link #ACTION_EXPORT} that contains MIME type of
+     * exported file
+     */
+    public static final String ACTION_EXPORT_EXTRA_TYPE = ACTION_EXPORT + ".EXTRA_TYPE";
+    /**
+     * {@link android.content.Intent#getAction()} for broadcasting importing favorites progress
+     */
+    public static final String ACTION_IMPORT = FavoriteManager.class.getName() + ".ACTION_IMPORT";
+    /**
+     * {@link android.os.Bundle} key for {@link #ACTION_IMPORT} that contains number of favorites
+     * imported so far, or -1 if import failed
+     */
+    public static final String ACTION_IMPORT_EXTRA_COUNT = ACTION_IMPORT + ".EXTRA_COUNT";
+    /**
+     * {@link android.os.Bundle} key for {@link #ACTION_IMPORT} that indicates if import has
+     * completed
+     */
+    public static final String ACTION_IMPORT_EXTRA_DONE = ACTION_IMPORT + ".EXTRA_DONE";
+    static final int IMPORT_BATCH_SIZE = 100;
+    private static final String EXPORT_FILE_NAME = "favorites";
     private static final String URI_PATH_ADD = "add";
     private static final String URI_PATH_REMOVE = "remove";
     private static final String URI_PATH_CLEAR = "clear";
+    private static final String URI_PATH_IMPORT = "import";
+    private static final String SQL_WHERE_NONE = "0";
 
     /**
-     * Gets all favorites matched given query, a {@link #ACTION_GET} broadcast will be sent upon
-     * completion
+     * Exports all favorites matched given query to a file in given format, streaming them
+     * row by row, a {@link #ACTION_EXPORT} broadcast will be sent upon completion
      * @param context   an instance of {@link android.content.Context}
-     * @param query     query to filter stories to be retrieved
-     * @see #makeGetIntentFilter()
+     * @param query     query to filter stories to be exported
+     * @param format    {@link #FORMAT_JSON_LINES} or {@link #FORMAT_HTML}
+     * @see #makeExportIntentFilter()
      */
-    public void get(Context context, String query) {
-        final String selection;
-        final String[] selectionArgs;
-        if (TextUtils.isEmpty(query)) {
-            selection = null;
-            selectionArgs = null;
-
-        } else {
-            selection = MaterialisticProvider.FavoriteEntry.COLUMN_NAME_TITLE + " LIKE ?";
-            selectionArgs = new String[]{"%" + query + "%"};
-        }
+    public void export(Context context, String query, int format) {
+        new ExportTask(context, format).execute(query);
+    }
 
-        final LocalBroadcastManager broadcastManager = LocalBroadcastManager.getInstance(context);
-        new FavoriteHandler(context.getContentResolver(), new FavoriteCallback() {
-            @Override
-            void onQueryComplete(ArrayList<Favorite> favorites) {
-                broadcastManager.sendBroadcast(makeGetBroadcastIntent(favorites));
-            }
-        }).startQuery(0, null, MaterialisticProvider.URI_FAVORITE,
-                null, selection, selectionArgs, null);
+    /**
+     * Imports favorites from given file in any supported format, in batched transactions,
+     * {@link #ACTION_IMPORT} broadcasts will be sent upon progress and completion
+     * @param context   an instance of {@link android.content.Context}
+     * @param uri       content URI of file to import
+     * @see #makeImportIntentFilter()
+     */
+    public void importFrom(Context context, Uri uri) {
+        new ImportTask(context).execute(uri);
     }
 
     /**
@@ -86,17 +110,9 @@ public class FavoriteManager {
      * @param story     story to be added as favorite
      */
     public void add(Context context, WebItem story) {
-        final ContentValues contentValues = new ContentValues();
-        contentValues.put(MaterialisticProvider.FavoriteEntry.COLUMN_NAME_ITEM_ID, story.getId());
-        contentValues.put(MaterialisticProvider.FavoriteEntry.COLUMN_NAME_URL, story.getUrl());
-        contentValues.put(MaterialisticProvider.FavoriteEntry.COLUMN_NAME_TITLE, story.getDisplayedTitle());
-        contentValues.put(MaterialisticProvider.FavoriteEntry.COLUMN_NAME_TIME,
-                story instanceof Favorite ?
-                        String.valueOf(((Favorite) story).getTime()) :
-                        String.valueOf(System.currentTimeMillis()));
         ContentResolver cr = context.getContentResolver();
         new FavoriteHandler(cr).startInsert(0, story.getId(),
-                MaterialisticProvider.URI_FAVORITE, contentValues);
+                MaterialisticProvider.URI_FAVORITE, toContentValues(story));
         cr.notifyChange(buildAdded().appendPath(story.getId()).build(), null);
         ItemSyncAdapter.initSync(context, story.getId());
     }
@@ -108,15 +124,8 @@ public class FavoriteManager {
      * @param query     query to filter stories to be cleared
      */
     public void clear(Context context, String query) {
-        final String selection;
-        final String[] selectionArgs;
-        if (TextUtils.isEmpty(query)) {
-            selection = null;
-            selectionArgs = null;
-        } else {
-            selection = MaterialisticProvider.FavoriteEntry.COLUMN_NAME_TITLE + " LIKE ?";
-            selectionArgs = new String[]{"%" + query + "%"};
-        }
+        final String selection = buildSelection(query);
+        final String[] selectionArgs = buildSelectionArgs(query);
         ContentResolver cr = context.getContentResolver();
         new FavoriteHandler(cr).startDelete(0, null, MaterialisticProvider.URI_FAVORITE,
                 selection, selectionArgs);
@@ -194,12 +203,21 @@ public class FavoriteManager {
     }
 
     /**
-     * Creates an intent filter for get action broadcast
-     * @return get intent filter
-     * @see #get(android.content.Context, String)
+     * Creates an intent filter for export action broadcast
+     * @return export intent filter
+     * @see #export(Context, String, int)
      */
-    public static IntentFilter makeGetIntentFilter() {
-        return new IntentFilter(ACTION_GET);
+    public static IntentFilter makeExportIntentFilter() {
+        return new IntentFilter(ACTION_EXPORT);
+    }
+
+    /**
+     * Creates an intent filter for import action broadcast
+     * @return import intent filter
+     * @see #importFrom(Context, Uri)
+     */
+    public static IntentFilter makeImportIntentFilter() {
+        return new IntentFilter(ACTION_IMPORT);
     }
 
     public static boolean isAdded(Uri uri) {
@@ -214,6 +232,10 @@ public class FavoriteManager {
         return uri.toString().startsWith(buildCleared().toString());
     }
 
+    public static boolean isImported(Uri uri) {
+        return uri.toString().startsWith(buildImported().toString());
+    }
+
     private static Uri.Builder buildAdded() {
         return MaterialisticProvider.URI_FAVORITE.buildUpon().appendPath(URI_PATH_ADD);
     }
@@ -226,51 +248,77 @@ public class FavoriteManager {
         return MaterialisticProvider.URI_FAVORITE.buildUpon().appendPath(URI_PATH_CLEAR);
     }
 
-    private static Intent makeGetBroadcastIntent(ArrayList<Favorite> favorites) {
-        final Intent intent = new Intent(ACTION_GET);
-        intent.putExtra(ACTION_GET_EXTRA_DATA, favorites);
-        return intent;
+    private static Uri.Builder buildImported() {
+        return MaterialisticProvider.URI_FAVORITE.buildUpon().appendPath(URI_PATH_IMPORT);
+    }
+
+    private static ContentValues toContentValues(WebItem story) {
+        final ContentValues contentValues = new ContentValues();
+        contentValues.put(MaterialisticProvider.FavoriteEntry.COLUMN_NAME_ITEM_ID, story.getId());
+        contentValues.put(MaterialisticProvider.FavoriteEntry.COLUMN_NAME_URL, story.getUrl());
+        contentValues.put(MaterialisticProvider.FavoriteEntry.COLUMN_NAME_TITLE, story.getDisplayedTitle());
+        contentValues.put(MaterialisticProvider.FavoriteEntry.COLUMN_NAME_TIME,
+                story instanceof Favorite ?
+                        String.valueOf(((Favorite) story).getTime()) :
+                        String.valueOf(System.currentTimeMillis()));
+        return contentValues;
     }
 
     /**
-     * A cursor wrapper to retrieve associated {@link Favorite}
+     * Builds selection of favorites with title matching given query via full-text index.
+     * Queries without searchable words match nothing.
+     * @param query query to filter, or null to select all
+     * @return  selection
      */
-    public static class Cursor extends CursorWrapper {
-        public Cursor(android.database.Cursor cursor) {
-            super(cursor);
+    static String buildSelection(String query) {
+        if (TextUtils.isEmpty(query)) {
+            return null;
         }
+        return MaterialisticProvider.buildMatchQuery(query) == null ?
+                SQL_WHERE_NONE : MaterialisticProvider.SQL_WHERE_FAVORITE_MATCH;
+    }
 
-        public Favorite getFavorite() {
-            final String itemId = getString(getColumnIndexOrThrow(MaterialisticProvider.FavoriteEntry.COLUMN_NAME_ITEM_ID));
-            final String url = getString(getColumnIndexOrThrow(MaterialisticProvider.FavoriteEntry.COLUMN_NAME_URL));
-            final String title = getString(getColumnIndexOrThrow(MaterialisticProvider.FavoriteEntry.COLUMN_NAME_TITLE));
-            final String time = getString(getColumnIndexOrThrow(MaterialisticProvider.FavoriteEntry.COLUMN_NAME_TIME));
-            return new Favorite(itemId, url, title, Long.valueOf(time));
-        }
+    static String[] buildSelectionArgs(String query) {
+        String matchQuery = MaterialisticProvider.buildMatchQuery(query);
+        return matchQuery == null ? null : new String[]{matchQuery};
+    }
+
+    private static Intent makeExportBroadcastIntent(Uri uri, String mimeType) {
+        final Intent intent = new Intent(ACTION_EXPORT);
+        intent.putExtra(ACTION_EXPORT_EXTRA_DATA, uri);
+        intent.putExtra(ACTION_EXPORT_EXTRA_TYPE, mimeType);
+        return intent;
+    }
+
+    private static Intent makeImportBroadcastIntent(int count, boolean done) {
+        final Intent intent = new Intent(ACTION_IMPORT);
+        intent.putExtra(ACTION_IMPORT_EXTRA_COUNT, count);
+        intent.putExtra(ACTION_IMPORT_EXTRA_DONE, done);
+        return intent;
     }
 
     /**
-     * A {@link android.support.v4.content.CursorLoader} to query {@link Favorite}
+     * A cursor wrapper to retrieve associated {@link Favorite}.
+     * Column indices are looked up once, upon first retrieval.
      */
-    public static class CursorLoader extends android.support.v4.content.CursorLoader {
-        /**
-         * Constructs a cursor loader to query all {@link Favorite}
-         * @param context    an instance of {@link android.content.Context}
-         */
-        public CursorLoader(Context context) {
-            super(context, MaterialisticProvider.URI_FAVORITE, null, null, null, null);
+    public static class Cursor extends CursorWrapper {
+        private int mItemIdColumn = -1, mUrlColumn, mTitleColumn, mTimeColumn;
+
+        public Cursor(android.database.Cursor cursor) {
+            super(cursor);
         }
 
-        /**
-         * Constructs a cursor loader to query {@link Favorite}
-         * with title matching given query
-         * @param context   an instance of {@link android.content.Context}
-         * @param query     query to filter
-         */
-        public CursorLoader(Context context, String query) {
-            super(context, MaterialisticProvider.URI_FAVORITE, null,
-                    MaterialisticProvider.FavoriteEntry.COLUMN_NAME_TITLE + " LIKE ?",
-                    new String[]{"%" + query + "%"}, null);
+        public Favorite getFavorite() {
+            if (mItemIdColumn < 0) {
+                mItemIdColumn = getColumnIndexOrThrow(MaterialisticProvider.FavoriteEntry.COLUMN_NAME_ITEM_ID);
+                mUrlColumn = getColumnIndexOrThrow(MaterialisticProvider.FavoriteEntry.COLUMN_NAME_URL);
+                mTitleColumn = getColumnIndexOrThrow(MaterialisticProvider.FavoriteEntry.COLUMN_NAME_TITLE);
+                mTimeColumn = getColumnIndexOrThrow(MaterialisticProvider.FavoriteEntry.COLUMN_NAME_TIME);
+            }
+            return new Favorite(getString(mItemIdColumn),
+                    getString(mUrlColumn),
+                    getString(mTitleColumn),
+                    Long.valueOf(getString(mTimeColumn)));
         }
     }
 
@@ -303,28 +351,133 @@ public class FavoriteManager {
                 mCallback = null;
                 return;
             }
-            // cookie represents itemId
-            if (cookie != null) {
-                mCallback.onCheckComplete(cursor.getCount() > 0);
-            } else {
-                ArrayList<Favorite> favorites = new ArrayList<>(cursor.getCount());
-                Cursor favoriteCursor = new Cursor(cursor);
-                boolean any = favoriteCursor.moveToFirst();
-                if (any) {
-                    do {
-                        favorites.add(favoriteCursor.getFavorite());
-                    } while (favoriteCursor.moveToNext());
-
-                }
-                mCallback.onQueryComplete(favorites);
-            }
+            mCallback.onCheckComplete(cursor.getCount() > 0);
             cursor.close();
             mCallback = null;
         }
     }
 
     private static abstract class FavoriteCallback {
-        void onQueryComplete(ArrayList<Favorite> favorites) {}
         void onCheckComplete(boolean isFavorite) {}
     }
+
+    /**
+     * Streams favorites from a cursor into an export file, so that only one cursor window
+     * is held in memory regardless of number of favorites
+     */
+    private static class ExportTask extends AsyncTask<String, Void, Uri> {
+        private final Context mContext;
+        private final int mFormat;
+
+        ExportTask(Context context, int format) {
+            mContext = context.getApplicationContext();
+            mFormat = format;
+        }
+
+        @Override
+        protected Uri doInBackground(String... params) {
+            String fileName = EXPORT_FILE_NAME + FavoriteArchive.getExtension(mFormat);
+            android.database.Cursor cursor = mContext.getContentResolver().query(
+                    MaterialisticProvider.URI_FAVORITE, null,
+                    buildSelection(params[0]), buildSelectionArgs(params[0]), null);
+            if (cursor == null) {
+                return null;
+            }
+            Cursor favoriteCursor = new Cursor(cursor);
+            try {
+                FavoriteArchive.Writer writer = new FavoriteArchive.Writer(new FileOutputStream(
+                        MaterialisticProvider.getExportFile(mContext, fileName)), mFormat);
+                try {
+                    while (favoriteCursor.moveToNext()) {
+                        writer.write(favoriteCursor.getFavorite());
+                    }
+                } finally {
+                    writer.close();
+                }
+            } catch (IOException e) {
+                return null;
+            } finally {
+                favoriteCursor.close();
+            }
+            return MaterialisticProvider.URI_EXPORT.buildUpon().appendPath(fileName).build();
+        }
+
+        @Override
+        protected void onPostExecute(Uri uri) {
+            LocalBroadcastManager.getInstance(mContext).sendBroadcast(
+                    makeExportBroadcastIntent(uri, FavoriteArchive.getMimeType(mFormat)));
+        }
+    }
+
+    /**
+     * Reads favorites from an import file one at a time, inserting them in batches of
+     * {@link #IMPORT_BATCH_SIZE} per transaction, so that only one batch is held in memory
+     * regardless of file size. Imported favorites are not synced for offline reading.
+     */
+    private static class ImportTask extends AsyncTask<Uri, Integer, Integer> {
+        private final Context mContext;
+
+        ImportTask(Context context) {
+            mContext = context.getApplicationContext();
+        }
+
+        @Override
+        protected Integer doInBackground(Uri... params) {
+            ContentResolver cr = mContext.getContentResolver();
+            ArrayList<ContentProviderOperation> operations = new ArrayList<>(IMPORT_BATCH_SIZE);
+            int count = 0;
+            try {
+                InputStream in = cr.openInputStream(params[0]);
+                if (in == null) {
+                    return -1;
+                }
+                FavoriteArchive.Reader reader = new FavoriteArchive.Reader(in);
+                try {
+                    Favorite favorite;
+                    while ((favorite = reader.read()) != null) {
+                        operations.add(ContentProviderOperation
+                                .newInsert(MaterialisticProvider.URI_FAVORITE)
+                                .withValues(toContentValues(favorite))
+                                .build());
+                        if (operations.size() >= IMPORT_BATCH_SIZE) {
+                            count += applyBatch(cr, operations);
+                            publishProgress(count);
+                        }
+                    }
+                    count += applyBatch(cr, operations);
+                } finally {
+                    reader.close();
+                }
+            } catch (IOException | RemoteException | OperationApplicationException e) {
+                count = count > 0 ? count : -1;
+            }
+            if (count > 0) {
+                cr.notifyChange(buildImported().build(), null);
+            }
+            return count;
+        }
+
+        @Override
+        protected void onProgressUpdate(Integer... values) {
+            LocalBroadcastManager.getInstance(mContext).sendBroadcast(
+                    makeImportBroadcastIntent(values[0], false));
+        }
+
+        @Override
+        protected void onPostExecute(Integer count) {
+            LocalBroadcastManager.getInstance(mContext).sendBroadcast(
+                    makeImportBroadcastIntent(count, true));
+        }
+
+        private int applyBatch(ContentResolver cr, ArrayList<ContentProviderOperation> operations)
+                throws RemoteException, OperationApplicationException {
+            int size = operations.size();
+            if (size == 0) {
+                return 0;
+            }
+            cr.applyBatch(MaterialisticProvider.PROVIDER_AUTHORITY, operations);
+            operations.clear();
+            return size;
+        }
+    }
 }
@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import android.content.AsyncQueryHandler;
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+
+/**
+ * Windowed view of favorites matching a query, in {@link MaterialisticProvider#SQL_ORDER_FAVORITE}
+ * order. Favorites are loaded asynchronously in pages of {@link #PAGE_SIZE} as they are
+ * requested, and at most {@link #MAX_PAGES} pages are held at any time, so memory use does not
+ * grow with number of favorites. A page that follows a previously loaded page is queried from
+ * the last (time, ID) key of that page, which seeks straight to it via time index, instead of
+ * skipping all preceding rows.
+ */
+public class FavoritePager {
+    static final int PAGE_SIZE = 50;
+    static final int MAX_PAGES = 4;
+    private static final int TOKEN_COUNT = -1;
+    private static final String[] PROJECTION_COUNT = new String[]{"COUNT(*)"};
+    private static final String SQL_WHERE_AFTER =
+            "(" + MaterialisticProvider.FavoriteEntry.COLUMN_NAME_TIME + " < ? OR (" +
+                    MaterialisticProvider.FavoriteEntry.COLUMN_NAME_TIME + " = ? AND " +
+                    MaterialisticProvider.FavoriteEntry._ID + " < ?))";
+
+    /**
+     * Callback interface for paging events
+     */
+    public interface Callbacks {
+        /**
+         * Fired when favorites have been (re)loaded, with possibly different count
+         */
+        void onReset();
+
+        /**
+         * Fired when a page of favorites has been loaded
+         * @param start  position of first favorite in page
+         * @param count  number of favorites in page
+         */
+        void onPageLoaded(int start, int count);
+    }
+
+    private final PagerHandler mHandler;
+    private final SparseArray<Favorite[]> mPages = new SparseArray<>();
+    private final SparseArray<String[]> mPageEndKeys = new SparseArray<>();
+    private final SparseBooleanArray mPendingPages = new SparseBooleanArray();
+    private Callbacks mCallbacks;
+    private String mSelection;
+    private String[] mSelectionArgs;
+    private int mCount;
+    private int mReloadCount = -1;
+    private int mLastPage;
+    private int mGeneration;
+
+    public FavoritePager(@NonNull ContentResolver contentResolver, @NonNull Callbacks callbacks) {
+        mHandler = new PagerHandler(contentResolver, this);
+        mCallbacks = callbacks;
+    }
+
+    /**
+     * Filters favorites by given query and reloads
+     * @param query query to filter, or null to select all
+     */
+    public void setQuery(@Nullable String query) {
+        mSelection = FavoriteManager.buildSelection(query);
+        mSelectionArgs = FavoriteManager.buildSelectionArgs(query);
+        mLastPage = 0;
+        reload();
+    }
+
+    /**
+     * Reloads favorites around last requested position. Currently loaded favorites remain
+     * available until reload completes, upon which {@link Callbacks#onReset()} is fired.
+     */
+    public void reload() {
+        mGeneration++;
+        mHandler.startQuery(TOKEN_COUNT, mGeneration, MaterialisticProvider.URI_FAVORITE,
+                PROJECTION_COUNT, mSelection, mSelectionArgs, null);
+    }
+
+    /**
+     * Gets total number of favorites
+     * @return  number of favorites
+     */
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Gets favorite at given position if its page has been loaded
+     * @param position  favorite position
+     * @return  favorite, or null if not loaded
+     * @see #load(int)
+     */
+    @Nullable
+    public Favorite get(int position) {
+        Favorite[] page = mPages.get(position / PAGE_SIZE);
+        int offset = position % PAGE_SIZE;
+        return page == null || offset >= page.length ? null : page[offset];
+    }
+
+    /**
+     * Loads page of favorite at given position if not yet loaded, as well as adjacent page
+     * if given position is close to page boundary
+     * @param position  favorite position
+     */
+    public void load(int position) {
+        if (position < 0 || position >= mCount) {
+            return;
+        }
+        int page = position / PAGE_SIZE;
+        mLastPage = page;
+        loadPage(page);
+        int offset = position % PAGE_SIZE;
+        if (offset >= PAGE_SIZE * 3 / 4 && (page + 1) * PAGE_SIZE < mCount) {
+            loadPage(page + 1);
+        } else if (offset < PAGE_SIZE / 4 && page > 0) {
+            loadPage(page - 1);
+        }
+    }
+
+    /**
+     * Releases loaded favorites and drops pending results
+     */
+    public void close() {
+        mGeneration++;
+        mCallbacks = null;
+        mPages.clear();
+        mPageEndKeys.clear();
+        mPendingPages.clear();
+    }
+
+    private void loadPage(int page) {
+        if (mPages.get(page) != null || mPendingPages.get(page)) {
+            return;
+        }
+        mPendingPages.put(page, true);
+        startPageQuery(page);
+    }
+
+    private void startPageQuery(int page) {
+        String[] afterKey = page > 0 ? mPageEndKeys.get(page - 1) : null;
+        String selection = mSelection;
+        String[] selectionArgs = mSelectionArgs;
+        String limit;
+        if (page == 0) {
+            limit = String.valueOf(PAGE_SIZE);
+        } else if (afterKey != null) {
+            selection = TextUtils.isEmpty(mSelection) ?
+                    SQL_WHERE_AFTER : mSelection + " AND " + SQL_WHERE_AFTER;
+            selectionArgs = concat(mSelectionArgs, afterKey);
+            limit = String.valueOf(PAGE_SIZE);
+        } else { // no key to seek from, e.g. page requested after reload or scroll jump
+            limit = page * PAGE_SIZE + "," + PAGE_SIZE;
+        }
+        mHandler.startQuery(page, mGeneration, MaterialisticProvider.URI_FAVORITE.buildUpon()
+                        .appendQueryParameter(MaterialisticProvider.QUERY_PARAMETER_LIMIT, limit)
+                        .build(),
+                null, selection, selectionArgs, null);
+    }
+
+    private void onCountLoaded(int generation, int count) {
+        if (generation != mGeneration) {
+            return;
+        }
+        mReloadCount = count;
+        mPendingPages.clear();
+        mPageEndKeys.clear();
+        if (count == 0) {
+            swap(0, null);
+            return;
+        }
+        // positions may have shifted, so reload last requested page by offset
+        mLastPage = Math.min(mLastPage, (count - 1) / PAGE_SIZE);
+        mPendingPages.put(mLastPage, true);
+        startPageQuery(mLastPage);
+    }
+
+    private void onPageLoaded(int generation, int page, @Nullable Cursor cursor) {
+        if (generation != mGeneration || !mPendingPages.get(page)) {
+            return;
+        }
+        mPendingPages.delete(page);
+        if (cursor == null) {
+            return;
+        }
+        FavoriteManager.Cursor favoriteCursor = new FavoriteManager.Cursor(cursor);
+        Favorite[] favorites = new Favorite[favoriteCursor.getCount()];
+        int i = 0;
+        while (favoriteCursor.moveToNext()) {
+            favorites[i++] = favoriteCursor.getFavorite();
+        }
+        if (favoriteCursor.moveToLast()) {
+            String time = favoriteCursor.getString(favoriteCursor.getColumnIndexOrThrow(
+                    MaterialisticProvider.FavoriteEntry.COLUMN_NAME_TIME));
+            String id = favoriteCursor.getString(favoriteCursor.getColumnIndexOrThrow(
+                    MaterialisticProvider.FavoriteEntry._ID));
+            mPageEndKeys.put(page, new String[]{time, time, id});
+        }
+        if (mReloadCount >= 0) { // first page after reload, swap in all at once
+            swap(page, favorites);
+            return;
+        }
+        mPages.put(page, favorites);
+        evict(page);
+        if (mCallbacks != null) {
+            mCallbacks.onPageLoaded(page * PAGE_SIZE, favorites.length);
+        }
+    }
+
+    private void swap(int page, @Nullable Favorite[] favorites) {
+        mCount = mReloadCount;
+        mReloadCount = -1;
+        mPages.clear();
+        if (favorites != null) {
+            mPages.put(page, favorites);
+        }
+        if (mCallbacks != null) {
+            mCallbacks.onReset();
+        }
+    }
+
+    private void evict(int page) {
+        while (mPages.size() > MAX_PAGES) {
+            int farthest = 0;
+            for (int i = 1; i < mPages.size(); i++) {
+                if (Math.abs(mPages.keyAt(i) - page) > Math.abs(mPages.keyAt(farthest) - page)) {
+                    farthest = i;
+                }
+            }
+            mPages.removeAt(farthest);
+        }
+    }
+
+    private static String[] concat(@Nullable String[] first, @NonNull String[] second) {
+        if (first == null) {
+            return second;
+        }
+        String[] result = new String[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    private static class PagerHandler extends AsyncQueryHandler {
+        private final FavoritePager mPager;
+
+        PagerHandler(ContentResolver cr, FavoritePager pager) {
+            super(cr);
+            mPager = pager;
+        }
+
+        @Override
+        protected void onQueryComplete(int token, Object cookie, Cursor cursor) {
+            int generation = (Integer) cookie;
+            if (token != TOKEN_COUNT) {
+                mPager.onPageLoaded(generation, token, cursor);
+            } else if (cursor != null) {
+                mPager.onCountLoaded(generation, cursor.moveToFirst() ? cursor.getInt(0) : 0);
+            }
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+}
@@ -18,10 +18,16 @@ package io.github.hidroh.materialistic.data;
 
 import android.content.ContentResolver;
 import android.content.Context;
-import android.os.AsyncTask;
+import android.os.Process;
 import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
 
 import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
@@ -29,30 +35,53 @@ import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
 import retrofit2.http.GET;
+import retrofit2.http.Header;
 import retrofit2.http.Headers;
 import retrofit2.http.Path;
 
 /**
- * Client to retrieve Hacker News content asynchronously
+ * Client to retrieve Hacker News content asynchronously.
+ * Items are read and written through {@link ItemStore}, so that they remain available offline
+ * regardless of HTTP cache eviction. Item store lookups run on a small dedicated thread pool
+ * shared by all instances, so that item loads do not queue up behind each other or behind
+ * other background tasks.
  */
 public class HackerNewsClient implements ItemManager, UserManager {
     public static final String HOST = "hacker-news.firebaseio.com";
     public static final String BASE_WEB_URL = "https://news.ycombinator.com";
     public static final String WEB_ITEM_PATH = BASE_WEB_URL + "/item?id=%s";
     static final String BASE_API_URL = "https://" + HOST + "/v0/";
+    // same as RestServiceFactory.CACHE_CONTROL_MAX_AGE_30M
+    private static final long ITEM_MAX_AGE_MILLIS = 30 * 60 * 1000;
+    private static final int STORE_THREADS = 3;
+    private static final long STORE_KEEP_ALIVE_SECONDS = 30;
+    private static final Executor STORE_EXECUTOR = createStoreExecutor();
     private final RestService mRestService;
     private final SessionManager mSessionManager;
     private final FavoriteManager mFavoriteManager;
     private final ContentResolver mContentResolver;
+    private final ItemStore mItemStore;
+    private final Executor mStoreExecutor;
+    private final Executor mMainThreadExecutor = new RestServiceFactory.MainThreadExecutor();
 
     @Inject
     public HackerNewsClient(Context context, RestServiceFactory factory,
                             SessionManager sessionManager,
                             FavoriteManager favoriteManager) {
+        this(context, factory, sessionManager, favoriteManager, STORE_EXECUTOR);
+    }
+
+    @VisibleForTesting
+    HackerNewsClient(Context context, RestServiceFactory factory,
+                     SessionManager sessionManager,
+                     FavoriteManager favoriteManager,
+                     Executor storeExecutor) {
         mRestService = factory.create(BASE_API_URL, RestService.class);
         mSessionManager = sessionManager;
         mFavoriteManager = favoriteManager;
         mContentResolver = context.getApplicationContext().getContentResolver();
+        mItemStore = new ItemStore(mContentResolver);
+        mStoreExecutor = storeExecutor;
     }
 
     @Override
@@ -61,10 +90,16 @@ public class HackerNewsClient implements ItemManager, UserManager {
         if (listener == null) {
             return;
         }
-        getStoriesCall(filter, cacheMode).enqueue(new Callback<int[]>() {
+        // only a listener that holds last response can make use of a bodiless 304
+        boolean allowNotModified = listener instanceof ConditionalResponseListener;
+        getStoriesCall(filter, cacheMode, allowNotModified).enqueue(new Callback<int[]>() {
             @Override
             public void onResponse(Call<int[]> call, Response<int[]> response) {
-                listener.onResponse(toItems(response.body()));
+                if (allowNotModified && response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    ((ConditionalResponseListener) listener).onNotModified();
+                } else {
+                    listener.onResponse(toItems(response.body()));
+                }
             }
 
             @Override
@@ -80,7 +115,7 @@ public class HackerNewsClient implements ItemManager, UserManager {
         if (listener == null) {
             return;
         }
-        final ItemCallbackWrapper wrapper = new ItemCallbackWrapper(listener);
+        final ItemCallbackWrapper wrapper = new ItemCallbackWrapper(itemId, mItemStore, listener);
         if (mSessionManager != null) {
             mSessionManager.isViewed(mContentResolver, itemId, wrapper);
         }
@@ -90,32 +125,34 @@ public class HackerNewsClient implements ItemManager, UserManager {
         switch (cacheMode) {
             case MODE_DEFAULT:
             default:
-                mRestService.item(itemId).enqueue(wrapper);
+                // serve recently stored item if any, fallback to default fetching otherwise
+                mStoreExecutor.execute(() -> {
+                    HackerNewsItem item = mItemStore.get(itemId, ITEM_MAX_AGE_MILLIS);
+                    mMainThreadExecutor.execute(() -> {
+                        if (item != null) {
+                            wrapper.onResponse(null, Response.success(item));
+                        } else {
+                            mRestService.item(itemId).enqueue(wrapper);
+                        }
+                    });
+                });
                 break;
             case MODE_NETWORK:
                 mRestService.networkItem(itemId).enqueue(wrapper);
                 break;
             case MODE_CACHE:
-                // try fetching from cache first, fallback to default fetching if no results
-                new AsyncTask<String, Void, Response<HackerNewsItem>>() {
-                    @Override
-                    protected Response<HackerNewsItem> doInBackground(String... params) {
-                        try {
-                            return mRestService.cachedItem(params[0]).execute();
-                        } catch (IOException e) {
-                            return null;
-                        }
-                    }
-
-                    @Override
-                    protected void onPostExecute(Response<HackerNewsItem> response) {
+                // try fetching from item store then cache first,
+                // fallback to default fetching if no results
+                mStoreExecutor.execute(() -> {
+                    Response<HackerNewsItem> response = getFromCache(itemId);
+                    mMainThreadExecutor.execute(() -> {
                         if (response != null) {
                             wrapper.onResponse(null, response);
                         } else {
                             mRestService.item(itemId).enqueue(wrapper);
                         }
-                    }
-                }.execute(itemId);
+                    });
+                });
                 break;
         }
     }
@@ -123,7 +160,7 @@ public class HackerNewsClient implements ItemManager, UserManager {
     @Override
     public Item[] getStories(String filter, @CacheMode int cacheMode) {
         try {
-            return toItems(getStoriesCall(filter, cacheMode).execute().body());
+            return toItems(getStoriesCall(filter, cacheMode, false).execute().body());
         } catch (IOException e) {
             return new Item[0];
         }
@@ -132,10 +169,19 @@ public class HackerNewsClient implements ItemManager, UserManager {
     @Override
     public Item getItem(String itemId, @CacheMode int cacheMode) {
         Call<HackerNewsItem> call;
+        HackerNewsItem item;
         switch (cacheMode) {
             case MODE_DEFAULT:
-            case MODE_CACHE:
             default:
+                if ((item = mItemStore.get(itemId, ITEM_MAX_AGE_MILLIS)) != null) {
+                    return item;
+                }
+                call = mRestService.item(itemId);
+                break;
+            case MODE_CACHE:
+                if ((item = mItemStore.get(itemId)) != null) {
+                    return item;
+                }
                 call = mRestService.item(itemId);
                 break;
             case MODE_NETWORK:
@@ -143,10 +189,15 @@ public class HackerNewsClient implements ItemManager, UserManager {
                 break;
         }
         try {
-            return call.execute().body();
+            item = call.execute().body();
         } catch (IOException e) {
             return null;
         }
+        if (item != null) {
+            mItemStore.put(itemId, item);
+            mItemStore.flush();
+        }
+        return item;
     }
 
     @Override
@@ -158,13 +209,7 @@ public class HackerNewsClient implements ItemManager, UserManager {
                 .enqueue(new Callback<UserItem>() {
                     @Override
                     public void onResponse(Call<UserItem> call, Response<UserItem> response) {
-                        UserItem user = response.body();
-                        if (user == null) {
-                            listener.onResponse(null);
-                            return;
-                        }
-                        user.setSubmittedItems(toItems(user.getSubmitted()));
-                        listener.onResponse(user);
+                        listener.onResponse(response.body());
                     }
 
                     @Override
@@ -175,32 +220,34 @@ public class HackerNewsClient implements ItemManager, UserManager {
     }
 
     @NonNull
-    private Call<int[]> getStoriesCall(@FetchMode String filter, @CacheMode int cacheMode) {
+    private Call<int[]> getStoriesCall(@FetchMode String filter, @CacheMode int cacheMode,
+                                       boolean allowNotModified) {
+        String notModified = allowNotModified ? Boolean.TRUE.toString() : null;
         Call<int[]> call;
         switch (filter) {
             case NEW_FETCH_MODE:
                 call = cacheMode == MODE_NETWORK ?
-                        mRestService.networkNewStories() : mRestService.newStories();
+                        mRestService.networkNewStories(notModified) : mRestService.newStories();
                 break;
             case SHOW_FETCH_MODE:
                 call = cacheMode == MODE_NETWORK ?
-                        mRestService.networkShowStories() : mRestService.showStories();
+                        mRestService.networkShowStories(notModified) : mRestService.showStories();
                 break;
             case ASK_FETCH_MODE:
                 call = cacheMode == MODE_NETWORK ?
-                        mRestService.networkAskStories() : mRestService.askStories();
+                        mRestService.networkAskStories(notModified) : mRestService.askStories();
                 break;
             case JOBS_FETCH_MODE:
                 call = cacheMode == MODE_NETWORK ?
-                        mRestService.networkJobStories() : mRestService.jobStories();
+                        mRestService.networkJobStories(notModified) : mRestService.jobStories();
                 break;
             case BEST_FETCH_MODE:
                 call = cacheMode == MODE_NETWORK ?
-                        mRestService.networkBestStories() : mRestService.bestStories();
+                        mRestService.networkBestStories(notModified) : mRestService.bestStories();
                 break;
             default:
                 call = cacheMode == MODE_NETWORK ?
-                        mRestService.networkTopStories() : mRestService.topStories();
+                        mRestService.networkTopStories(notModified) : mRestService.topStories();
                 break;
         }
         return call;
@@ -219,6 +266,35 @@ public class HackerNewsClient implements ItemManager, UserManager {
         return items;
     }
 
+    /**
+     * Gets item from item store, or HTTP cache if not stored, blocking
+     * @param itemId    item ID
+     * @return  cached response, or null if not cached
+     */
+    private Response<HackerNewsItem> getFromCache(String itemId) {
+        HackerNewsItem item = mItemStore.get(itemId);
+        if (item != null) {
+            return Response.success(item);
+        }
+        try {
+            return mRestService.cachedItem(itemId).execute();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static Executor createStoreExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(STORE_THREADS, STORE_THREADS,
+                STORE_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> new Thread(() -> {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }, "item-store"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     interface RestService {
         @Headers(RestServiceFactory.CACHE_CONTROL_MAX_AGE_30M)
         @GET("topstories.json")
@@ -244,35 +320,41 @@ public class HackerNewsClient implements ItemManager, UserManager {
         @GET("beststories.json")
         Call<int[]> bestStories();
 
-        @Headers(RestServiceFactory.CACHE_CONTROL_FORCE_NETWORK)
+        @Headers(RestServiceFactory.CACHE_CONTROL_REVALIDATE)
         @GET("topstories.json")
-        Call<int[]> networkTopStories();
+        Call<int[]> networkTopStories(
+                @Header(RestServiceFactory.HEADER_ALLOW_NOT_MODIFIED) String allowNotModified);
 
-        @Headers(RestServiceFactory.CACHE_CONTROL_FORCE_NETWORK)
+        @Headers(RestServiceFactory.CACHE_CONTROL_REVALIDATE)
         @GET("newstories.json")
-        Call<int[]> networkNewStories();
+        Call<int[]> networkNewStories(
+                @Header(RestServiceFactory.HEADER_ALLOW_NOT_MODIFIED) String allowNotModified);
 
-        @Headers(RestServiceFactory.CACHE_CONTROL_FORCE_NETWORK)
+        @Headers(RestServiceFactory.CACHE_CONTROL_REVALIDATE)
         @GET("showstories.json")
-        Call<int[]> networkShowStories();
+        Call<int[]> networkShowStories(
+                @Header(RestServiceFactory.HEADER_ALLOW_NOT_MODIFIED) String allowNotModified);
 
-        @Headers(RestServiceFactory.CACHE_CONTROL_FORCE_NETWORK)
+        @Headers(RestServiceFactory.CACHE_CONTROL_REVALIDATE)
         @GET("askstories.json")
-        Call<int[]> networkAskStories();
+        Call<int[]> networkAskStories(
+                @Header(RestServiceFactory.HEADER_ALLOW_NOT_MODIFIED) String allowNotModified);
 
-        @Headers(RestServiceFactory.CACHE_CONTROL_FORCE_NETWORK)
+        @Headers(RestServiceFactory.CACHE_CONTROL_REVALIDATE)
         @GET("jobstories.json")
-        Call<int[]> networkJobStories();
+        Call<int[]> networkJobStories(
+                @Header(RestServiceFactory.HEADER_ALLOW_NOT_MODIFIED) String allowNotModified);
 
-        @Headers(RestServiceFactory.CACHE_CONTROL_FORCE_NETWORK)
+        @Headers(RestServiceFactory.CACHE_CONTROL_REVALIDATE)
         @GET("beststories.json")
-        Call<int[]> networkBestStories();
+        Call<int[]> networkBestStories(
+                @Header(RestServiceFactory.HEADER_ALLOW_NOT_MODIFIED) String allowNotModified);
 
         @Headers(RestServiceFactory.CACHE_CONTROL_MAX_AGE_30M)
         @GET("item/{itemId}.json")
         Call<HackerNewsItem> item(@Path("itemId") String itemId);
 
-        @Headers(RestServiceFactory.CACHE_CONTROL_FORCE_NETWORK)
+        @Headers(RestServiceFactory.CACHE_CONTROL_REVALIDATE)
         @GET("item/{itemId}.json")
         Call<HackerNewsItem> networkItem(@Path("itemId") String itemId);
 
@@ -282,10 +364,16 @@ public class HackerNewsClient implements ItemManager, UserManager {
 
         @GET("user/{userId}.json")
         Call<UserItem> user(@Path("userId") String userId);
+
+        @Headers(RestServiceFactory.CACHE_CONTROL_REVALIDATE)
+        @GET("updates.json")
+        Call<UpdateTracker.Updates> updates();
     }
 
     private static class ItemCallbackWrapper implements SessionManager.OperationCallbacks,
             FavoriteManager.OperationCallbacks, Callback<HackerNewsItem> {
+        private final String itemId;
+        private final ItemStore itemStore;
         private final ResponseListener<Item> responseListener;
         private Boolean isViewed;
         private Boolean isFavorite;
@@ -294,7 +382,10 @@ public class HackerNewsClient implements ItemManager, UserManager {
         private boolean hasError;
         private boolean hasResponse;
 
-        private ItemCallbackWrapper(@NonNull ResponseListener<Item> responseListener) {
+        private ItemCallbackWrapper(@NonNull String itemId, @NonNull ItemStore itemStore,
+                                    @NonNull ResponseListener<Item> responseListener) {
+            this.itemId = itemId;
+            this.itemStore = itemStore;
             this.responseListener = responseListener;
         }
 
@@ -312,7 +403,13 @@ public class HackerNewsClient implements ItemManager, UserManager {
 
         @Override
         public void onResponse(Call<HackerNewsItem> call, Response<HackerNewsItem> response) {
-            this.item = response.body();
+            HackerNewsItem item = response.body();
+            // only network responses are new to local storage, others are served from it or
+            // from OkHttp cache
+            if (item != null && response.raw().networkResponse() != null) {
+                itemStore.putAsync(itemId, item);
+            }
+            this.item = item;
             this.hasResponse = true;
             done();
         }
@@ -30,6 +30,9 @@ import android.text.TextUtils;
 import android.text.format.DateUtils;
 import android.text.style.StrikethroughSpan;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import io.github.hidroh.materialistic.AppUtils;
 import io.github.hidroh.materialistic.BuildConfig;
 import io.github.hidroh.materialistic.R;
@@ -96,6 +99,27 @@ class HackerNewsItem implements Item {
         this.id = id;
     }
 
+    /**
+     * Constructs an item from its API fields, e.g. as persisted by {@link ItemStore}
+     */
+    HackerNewsItem(long id, String type, String by, long time, String text, String url,
+                   String title, int score, int descendants, long parent, long[] kids,
+                   boolean deleted, boolean dead) {
+        this(id);
+        this.type = type;
+        this.by = by;
+        this.time = time;
+        this.text = text;
+        this.url = url;
+        this.title = title;
+        this.score = score;
+        this.descendants = descendants;
+        this.parent = parent;
+        this.kids = kids;
+        this.deleted = deleted;
+        this.dead = dead;
+    }
+
     private HackerNewsItem(long id, int level) {
         this(id);
         this.level = level;
@@ -136,6 +160,7 @@ class HackerNewsItem implements Item {
         time = info.getTime();
         by = info.getBy();
         kids = info.getKids();
+        retainKidItems();
         url = info.getRawUrl();
         text = info.getText();
         type = info.getRawType();
@@ -151,6 +176,30 @@ class HackerNewsItem implements Item {
         localRevision = 1;
     }
 
+    /**
+     * Rebuilds kid items after kids have changed, reusing existing kid items so that their
+     * loaded content and view state survive a refresh
+     */
+    private void retainKidItems() {
+        if (kidItems == null) {
+            return; // will be lazily created
+        }
+        Map<Long, HackerNewsItem> existing = new HashMap<>(kidItems.length);
+        for (HackerNewsItem kidItem : kidItems) {
+            existing.put(kidItem.id, kidItem);
+        }
+        kidItems = null;
+        HackerNewsItem[] updated = getKidItems();
+        for (int i = 0; i < updated.length; i++) {
+            HackerNewsItem kidItem = existing.get(updated[i].id);
+            if (kidItem != null) {
+                kidItem.rank = i + 1;
+                updated[i] = kidItem;
+            }
+        }
+        kidItems = updated;
+    }
+
     @Override
     public String getRawType() {
         return type;
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A lenient, streaming HTML tokenizer, that reads markup in chunks and reports tags and text
+ * to a {@link Handler} as they are encountered, without building a document in memory.
+ * Comments, doctypes and processing instructions are dropped, as well as contents of
+ * script and style elements. Text is reported verbatim, with character references intact.
+ */
+public class HtmlTokenizer {
+    private static final int BUFFER_SIZE = 8192;
+    private static final int EOF = -1;
+
+    /**
+     * Callback interface for tokenizer events
+     */
+    public interface Handler {
+        /**
+         * Fired upon a start tag
+         * @param name          lower case tag name
+         * @param attributes    attributes, keyed by lower case attribute name
+         */
+        void onStartTag(@NonNull String name, @NonNull Map<String, String> attributes);
+
+        /**
+         * Fired upon an end tag
+         * @param name  lower case tag name
+         */
+        void onEndTag(@NonNull String name);
+
+        /**
+         * Fired upon a run of text between tags
+         * @param text  text, as it appears in markup
+         */
+        void onText(@NonNull String text);
+    }
+
+    private final Reader mReader;
+    private final Handler mHandler;
+    private final char[] mBuffer = new char[BUFFER_SIZE];
+    private final StringBuilder mText = new StringBuilder();
+    private final StringBuilder mToken = new StringBuilder();
+    private int mPosition, mLimit;
+
+    public HtmlTokenizer(@NonNull Reader reader, @NonNull Handler handler) {
+        mReader = reader;
+        mHandler = handler;
+    }
+
+    /**
+     * Tokenizes markup until end of stream. Caller is responsible for closing reader.
+     * @throws IOException if reader fails
+     */
+    public void tokenize() throws IOException {
+        int c;
+        while ((c = read()) != EOF) {
+            if (c != '<') {
+                mText.append((char) c);
+                continue;
+            }
+            int next = peek();
+            if (isLetter(next)) {
+                flushText();
+                readStartTag();
+            } else if (next == '/') {
+                flushText();
+                read();
+                readEndTag();
+            } else if (next == '!' || next == '?') {
+                flushText();
+                readDeclaration();
+            } else {
+                mText.append('<'); // stray
+            }
+        }
+        flushText();
+    }
+
+    private void readStartTag() throws IOException {
+        String name = readName();
+        Map<String, String> attributes = new HashMap<>();
+        int c;
+        while ((c = skipWhitespace()) != EOF && c != '>') {
+            if (c == '/') {
+                read(); // self closing, elements are closed based on their names
+                continue;
+            }
+            String attribute = readName();
+            if (attribute.isEmpty()) {
+                read(); // unexpected character
+                continue;
+            }
+            String value = "";
+            if (skipWhitespace() == '=') {
+                read();
+                value = readAttributeValue();
+            }
+            if (!attributes.containsKey(attribute)) {
+                attributes.put(attribute, value);
+            }
+        }
+        read(); // '>'
+        mHandler.onStartTag(name, attributes);
+        if (name.equals("script") || name.equals("style")) {
+            skipRawText(name);
+            mHandler.onEndTag(name);
+        }
+    }
+
+    private void readEndTag() throws IOException {
+        String name = readName();
+        int c;
+        while ((c = read()) != EOF && c != '>') {
+            // ignore anything else
+        }
+        if (!name.isEmpty()) {
+            mHandler.onEndTag(name);
+        }
+    }
+
+    private void readDeclaration() throws IOException {
+        read(); // '!' or '?'
+        if (peek() == '-') {
+            read();
+            if (peek() == '-') {
+                read();
+                skipComment();
+                return;
+            }
+        }
+        int c;
+        while ((c = read()) != EOF && c != '>') {
+            // skip doctype, cdata or processing instruction
+        }
+    }
+
+    private void skipComment() throws IOException {
+        int dashes = 0, c;
+        while ((c = read()) != EOF) {
+            if (c == '>' && dashes >= 2) {
+                return;
+            }
+            dashes = c == '-' ? dashes + 1 : 0;
+        }
+    }
+
+    private void skipRawText(String name) throws IOException {
+        // look for '</' followed by element name, case insensitively
+        int matched = 0, c;
+        while ((c = read()) != EOF) {
+            if (matched == 0) {
+                matched = c == '<' ? 1 : 0;
+            } else if (matched == 1) {
+                matched = c == '/' ? 2 : c == '<' ? 1 : 0;
+            } else if (Character.toLowerCase((char) c) == name.charAt(matched - 2)) {
+                if (++matched - 2 == name.length()) {
+                    while ((c = read()) != EOF && c != '>') {
+                        // skip to end of tag
+                    }
+                    return;
+                }
+            } else {
+                matched = c == '<' ? 1 : 0;
+            }
+        }
+    }
+
+    private String readName() throws IOException {
+        mToken.setLength(0);
+        int c;
+        while ((c = peek()) != EOF && !isWhitespace(c) && c != '>' && c != '/' && c != '=') {
+            mToken.append((char) c);
+            read();
+        }
+        return mToken.toString().toLowerCase(Locale.US);
+    }
+
+    private String readAttributeValue() throws IOException {
+        mToken.setLength(0);
+        int quote = skipWhitespace(), c;
+        if (quote == '"' || quote == '\'') {
+            read();
+            while ((c = read()) != EOF && c != quote) {
+                mToken.append((char) c);
+            }
+        } else {
+            while ((c = peek()) != EOF && !isWhitespace(c) && c != '>') {
+                mToken.append((char) c);
+                read();
+            }
+        }
+        return mToken.toString();
+    }
+
+    private int skipWhitespace() throws IOException {
+        int c;
+        while ((c = peek()) != EOF && isWhitespace(c)) {
+            read();
+        }
+        return c;
+    }
+
+    private void flushText() {
+        if (mText.length() > 0) {
+            mHandler.onText(mText.toString());
+            mText.setLength(0);
+        }
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        if (c != EOF) {
+            mPosition++;
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (mPosition == mLimit) {
+            mLimit = mReader.read(mBuffer, 0, BUFFER_SIZE);
+            mPosition = 0;
+            if (mLimit <= 0) {
+                mLimit = 0;
+                return EOF;
+            }
+        }
+        return mBuffer[mPosition];
+    }
+
+    private static boolean isLetter(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f';
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import android.content.AsyncQueryHandler;
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.os.RemoteException;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.support.annotation.WorkerThread;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Persistent store of items, backed by {@link MaterialisticProvider#URI_ITEM}.
+ * As the provider lives in main process, items written by sync process are safely visible
+ * to UI process and vice versa, unlike OkHttp cache which is not multi-process safe.
+ * Writes are buffered and committed in batches within a single transaction.
+ * Item kids are stored in a compact binary form, see {@link #encodeKids(long[])}.
+ * Storing an item that has not changed leaves its last modified time as is.
+ * Least recently modified items are evicted by provider beyond a fixed number of entries,
+ * except for favorites and their synced comments, which are pinned.
+ */
+class ItemStore {
+    static final int BATCH_SIZE = 50;
+
+    private final ContentResolver mContentResolver;
+    private final ArrayList<ContentProviderOperation> mPendingOperations = new ArrayList<>();
+
+    ItemStore(ContentResolver contentResolver) {
+        mContentResolver = contentResolver;
+    }
+
+    /**
+     * Gets stored item with given ID
+     * @param itemId    item ID
+     * @return  stored item, or null if not available
+     */
+    @WorkerThread
+    @Nullable
+    HackerNewsItem get(@NonNull String itemId) {
+        return get(itemId, Long.MAX_VALUE);
+    }
+
+    /**
+     * Gets stored item with given ID, if it has been stored within given max age
+     * @param itemId        item ID
+     * @param maxAgeMillis  max age of stored item in milliseconds
+     * @return  stored item, or null if not available or too old
+     */
+    @WorkerThread
+    @Nullable
+    HackerNewsItem get(@NonNull String itemId, long maxAgeMillis) {
+        long minLastModified = maxAgeMillis == Long.MAX_VALUE ?
+                0 : System.currentTimeMillis() - maxAgeMillis;
+        Cursor cursor = mContentResolver.query(MaterialisticProvider.URI_ITEM,
+                null, MaterialisticProvider.ItemEntry.COLUMN_NAME_ITEM_ID + " = ? AND " +
+                        MaterialisticProvider.ItemEntry.COLUMN_NAME_LAST_MODIFIED + " >= ?",
+                new String[]{itemId, String.valueOf(minLastModified)}, null);
+        if (cursor == null) {
+            return null;
+        }
+        ItemCursor itemCursor = new ItemCursor(cursor);
+        HackerNewsItem item = itemCursor.moveToFirst() ? itemCursor.getItem() : null;
+        itemCursor.close();
+        return item;
+    }
+
+    /**
+     * Checks if item with given ID is stored, i.e. it has been stored and not evicted since
+     * @param itemId    item ID
+     * @return  true if stored, false otherwise
+     */
+    @WorkerThread
+    boolean contains(@NonNull String itemId) {
+        Cursor cursor = mContentResolver.query(MaterialisticProvider.URI_ITEM,
+                new String[]{MaterialisticProvider.ItemEntry._ID},
+                MaterialisticProvider.ItemEntry.COLUMN_NAME_ITEM_ID + " = ?",
+                new String[]{itemId}, null);
+        if (cursor == null) {
+            return false;
+        }
+        boolean contains = cursor.getCount() > 0;
+        cursor.close();
+        return contains;
+    }
+
+    /**
+     * Stores given item, replacing any previous version.
+     * Changes are only committed when a batch is full or upon {@link #flush()}.
+     * @param itemId    item ID
+     * @param item      item to store
+     */
+    synchronized void put(@NonNull String itemId, @NonNull HackerNewsItem item) {
+        mPendingOperations.add(ContentProviderOperation
+                .newInsert(MaterialisticProvider.URI_ITEM)
+                .withValues(toContentValues(itemId, item))
+                .build());
+        if (mPendingOperations.size() >= BATCH_SIZE) {
+            flush();
+        }
+    }
+
+    /**
+     * Stores given item asynchronously, replacing any previous version
+     * @param itemId    item ID
+     * @param item      item to store
+     */
+    void putAsync(@NonNull String itemId, @NonNull HackerNewsItem item) {
+        new AsyncQueryHandler(mContentResolver) {}.startInsert(0, itemId,
+                MaterialisticProvider.URI_ITEM, toContentValues(itemId, item));
+    }
+
+    /**
+     * Commits all pending changes in a single transaction
+     */
+    @WorkerThread
+    synchronized void flush() {
+        if (mPendingOperations.isEmpty()) {
+            return;
+        }
+        try {
+            mContentResolver.applyBatch(MaterialisticProvider.PROVIDER_AUTHORITY,
+                    mPendingOperations);
+        } catch (RemoteException | OperationApplicationException e) {
+            // no op
+        }
+        mPendingOperations.clear();
+    }
+
+    private static ContentValues toContentValues(@NonNull String itemId,
+                                                 @NonNull HackerNewsItem item) {
+        ContentValues cv = new ContentValues();
+        cv.put(MaterialisticProvider.ItemEntry.COLUMN_NAME_ITEM_ID, itemId);
+        cv.put(MaterialisticProvider.ItemEntry.COLUMN_NAME_TYPE, item.getRawType());
+        cv.put(MaterialisticProvider.ItemEntry.COLUMN_NAME_BY, item.getBy());
+        cv.put(MaterialisticProvider.ItemEntry.COLUMN_NAME_TIME, item.getTime());
+        cv.put(MaterialisticProvider.ItemEntry.COLUMN_NAME_TEXT, item.getText());
+        cv.put(MaterialisticProvider.ItemEntry.COLUMN_NAME_URL, item.getRawUrl());
+        cv.put(MaterialisticProvider.ItemEntry.COLUMN_NAME_TITLE, item.getTitle());
+        cv.put(MaterialisticProvider.ItemEntry.COLUMN_NAME_SCORE, item.getScore());
+        cv.put(MaterialisticProvider.ItemEntry.COLUMN_NAME_DESCENDANTS, item.getDescendants());
+        cv.put(MaterialisticProvider.ItemEntry.COLUMN_NAME_PARENT, item.getParent());
+        cv.put(MaterialisticProvider.ItemEntry.COLUMN_NAME_KIDS, encodeKids(item.getKids()));
+        cv.put(MaterialisticProvider.ItemEntry.COLUMN_NAME_DELETED, item.isDeleted() ? 1 : 0);
+        cv.put(MaterialisticProvider.ItemEntry.COLUMN_NAME_DEAD, item.isDead() ? 1 : 0);
+        cv.put(MaterialisticProvider.ItemEntry.COLUMN_NAME_LAST_MODIFIED,
+                System.currentTimeMillis());
+        return cv;
+    }
+
+    /**
+     * Encodes given kid IDs as a sequence of zigzag varint deltas. Kids are ranked rather than
+     * sorted, but IDs of a thread are close to each other, so most deltas take 2-4 bytes
+     * instead of 8.
+     * @param kids  kid IDs
+     * @return  encoded kid IDs, or null if no kids
+     */
+    @VisibleForTesting
+    @Nullable
+    static byte[] encodeKids(@Nullable long[] kids) {
+        if (kids == null) {
+            return null;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(kids.length * 3);
+        long previous = 0;
+        for (long kid : kids) {
+            long delta = kid - previous;
+            long zigzag = (delta << 1) ^ (delta >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                out.write((int) ((zigzag & 0x7F) | 0x80));
+                zigzag >>>= 7;
+            }
+            out.write((int) zigzag);
+            previous = kid;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes kid IDs encoded by {@link #encodeKids(long[])}
+     * @param bytes encoded kid IDs
+     * @return  kid IDs, or null if no kids
+     */
+    @VisibleForTesting
+    @Nullable
+    static long[] decodeKids(@Nullable byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        long[] kids = new long[bytes.length]; // at least 1 byte per kid
+        int count = 0;
+        long previous = 0;
+        int i = 0;
+        while (i < bytes.length) {
+            long zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[i++];
+                zigzag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0 && i < bytes.length);
+            long delta = (zigzag >>> 1) ^ -(zigzag & 1);
+            previous += delta;
+            kids[count++] = previous;
+        }
+        return Arrays.copyOf(kids, count);
+    }
+
+    /**
+     * A cursor wrapper to retrieve associated {@link HackerNewsItem}
+     */
+    static class ItemCursor extends CursorWrapper {
+        ItemCursor(Cursor cursor) {
+            super(cursor);
+        }
+
+        HackerNewsItem getItem() {
+            return new HackerNewsItem(
+                    Long.parseLong(getString(getColumnIndexOrThrow(
+                            MaterialisticProvider.ItemEntry.COLUMN_NAME_ITEM_ID))),
+                    getString(getColumnIndexOrThrow(MaterialisticProvider.ItemEntry.COLUMN_NAME_TYPE)),
+                    getString(getColumnIndexOrThrow(MaterialisticProvider.ItemEntry.COLUMN_NAME_BY)),
+                    getLong(getColumnIndexOrThrow(MaterialisticProvider.ItemEntry.COLUMN_NAME_TIME)),
+                    getString(getColumnIndexOrThrow(MaterialisticProvider.ItemEntry.COLUMN_NAME_TEXT)),
+                    getString(getColumnIndexOrThrow(MaterialisticProvider.ItemEntry.COLUMN_NAME_URL)),
+                    getString(getColumnIndexOrThrow(MaterialisticProvider.ItemEntry.COLUMN_NAME_TITLE)),
+                    getInt(getColumnIndexOrThrow(MaterialisticProvider.ItemEntry.COLUMN_NAME_SCORE)),
+                    getInt(getColumnIndexOrThrow(MaterialisticProvider.ItemEntry.COLUMN_NAME_DESCENDANTS)),
+                    getLong(getColumnIndexOrThrow(MaterialisticProvider.ItemEntry.COLUMN_NAME_PARENT)),
+                    decodeKids(getBlob(getColumnIndexOrThrow(
+                            MaterialisticProvider.ItemEntry.COLUMN_NAME_KIDS))),
+                    getInt(getColumnIndexOrThrow(MaterialisticProvider.ItemEntry.COLUMN_NAME_DELETED)) == 1,
+                    getInt(getColumnIndexOrThrow(MaterialisticProvider.ItemEntry.COLUMN_NAME_DEAD)) == 1);
+        }
+    }
+}
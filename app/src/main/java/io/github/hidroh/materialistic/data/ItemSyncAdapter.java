@@ -17,49 +17,51 @@
 package io.github.hidroh.materialistic.data;
 
 import android.accounts.Account;
-import android.app.NotificationManager;
-import android.app.PendingIntent;
 import android.content.AbstractThreadedSyncAdapter;
 import android.content.ContentProviderClient;
 import android.content.ContentResolver;
 import android.content.Context;
-import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.SyncResult;
-import android.graphics.BitmapFactory;
-import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.Process;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.UiThread;
-import android.support.v4.app.NotificationCompat;
+import android.support.annotation.WorkerThread;
 import android.text.TextUtils;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import io.github.hidroh.materialistic.Application;
-import io.github.hidroh.materialistic.BuildConfig;
-import io.github.hidroh.materialistic.ItemActivity;
+import io.github.hidroh.materialistic.ConnectivityMonitor;
 import io.github.hidroh.materialistic.Preferences;
-import io.github.hidroh.materialistic.R;
 import retrofit2.Call;
-import retrofit2.Callback;
 
 /**
- * Simple sync adapter that triggers OkHttp requests so their responses become available in
- * cache for subsequent requests
+ * Simple sync adapter that fetches items into {@link ItemStore}, so that they become available
+ * offline to UI process.
+ * Sync work is split into pipeline stages: items and their comments are fetched by
+ * {@link SyncCrawler}, bounded by its own request limit, while readability and articles run on
+ * their own {@link SyncStage}s, so that a slow stage does not hold up the others. Both stages
+ * are fed from crawler via {@link SyncCrawler#defer(Runnable)}, so that a saturated stage
+ * slows down crawling instead of buffering work.
+ * Articles are archived by web views on UI thread, each article task holds its stage slot
+ * until page has finished loading or timed out. Sync does not wait for pending articles.
  */
 public class ItemSyncAdapter extends AbstractThreadedSyncAdapter {
 
     static final String SYNC_PREFERENCES_FILE = "_syncpreferences";
     private static final String EXTRA_ID = ItemSyncAdapter.class.getName() + ".EXTRA_ID";
-    private static final String NOTIFICATION_GROUP_KEY = "group";
-    private static final String HOST_ITEM = "item";
     private static final String EXTRA_CONNECTION_ENABLED = ItemSyncAdapter.class.getName() +
             ".EXTRA_CONNECTION_ENABLED";
     private static final String EXTRA_READABILITY_ENABLED = ItemSyncAdapter.class.getName() +
@@ -68,6 +70,15 @@ public class ItemSyncAdapter extends AbstractThreadedSyncAdapter {
             ".EXTRA_COMMENTS_ENABLED";
     private static final String EXTRA_NOTIFICATION_ENABLED = ItemSyncAdapter.class.getName() +
             ".EXTRA_NOTIFICATION_ENABLED";
+    private static final int MAX_DEPTH = 10;
+    private static final int MAX_ITEMS = 1000;
+    private static final int MAX_CONCURRENT_REQUESTS = 4;
+    private static final int READABILITY_THREADS = 2;
+    private static final int ARTICLE_THREADS = 2;
+    private static final long ARTICLE_TIMEOUT_SECONDS = 60;
+    private static final int STAGE_CAPACITY = 8;
+    // cached subtrees of older syncs may have been evicted, crawl them again in full
+    private static final long FINGERPRINT_MAX_AGE_MILLIS = 7 * 24 * 60 * 60 * 1000L;
 
     @UiThread
     static void initSync(Context context, @Nullable String itemId) {
@@ -94,134 +105,218 @@ public class ItemSyncAdapter extends AbstractThreadedSyncAdapter {
     private final HackerNewsClient.RestService mHnRestService;
     private final ReadabilityClient mReadabilityClient;
     private final SharedPreferences mSharedPreferences;
-    private final NotificationManager mNotificationManager;
-    private final NotificationCompat.Builder mNotificationBuilder;
-    private final Map<String, SyncProgress> mSyncProgresses = new HashMap<>();
-    private boolean mConnectionEnabled;
+    private final SyncJobQueue mJobQueue;
+    private final SyncFingerprints mFingerprints;
+    private final ItemStore mItemStore;
+    private final Map<String, RootState> mRootStates = new ConcurrentHashMap<>();
+    private final SyncNotificationScheduler mNotificationScheduler;
+    private final Map<String, SyncProgress> mSyncProgresses = new ConcurrentHashMap<>();
+    private final SyncCrawler mCrawler;
+    private final SyncStage mReadabilityStage;
+    private final SyncStage mArticleStage;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private volatile boolean mConnectionEnabled;
     private boolean mReadabilityEnabled;
     private boolean mCommentsEnabled;
     private boolean mNotificationEnabled;
+    private volatile boolean mSyncCancelled;
+    private final ConnectivityMonitor.Listener mConnectivityListener = monitor -> {
+        // cancelled items are deferred, to be synced again once connection allows
+        if (mConnectionEnabled && !isConnectionEnabled(monitor)) {
+            mConnectionEnabled = false;
+            mCrawler.cancel();
+        }
+    };
 
     ItemSyncAdapter(Context context, RestServiceFactory factory,
                            ReadabilityClient readabilityClient) {
         super(context, true);
         mSharedPreferences = context.getSharedPreferences(
                 context.getPackageName() + SYNC_PREFERENCES_FILE, Context.MODE_PRIVATE);
+        mJobQueue = new SyncJobQueue(context.getContentResolver());
+        mFingerprints = new SyncFingerprints(context.getContentResolver());
+        mItemStore = new ItemStore(context.getContentResolver());
         mHnRestService = factory.create(HackerNewsClient.BASE_API_URL,
                 HackerNewsClient.RestService.class, new BackgroundThreadExecutor());
         mReadabilityClient = readabilityClient;
-        mNotificationManager = (NotificationManager) context
-                .getSystemService(Context.NOTIFICATION_SERVICE);
-        mNotificationBuilder = new NotificationCompat.Builder(getContext())
-                .setLargeIcon(BitmapFactory.decodeResource(getContext().getResources(),
-                        R.mipmap.ic_launcher))
-                .setSmallIcon(R.drawable.ic_notification)
-                .setGroup(NOTIFICATION_GROUP_KEY)
-                .setCategory(NotificationCompat.CATEGORY_PROGRESS)
-                .setAutoCancel(true);
+        mNotificationScheduler = new SyncNotificationScheduler(context);
+        mCrawler = new SyncCrawler(new CrawlerCallbacks(), MAX_DEPTH, MAX_ITEMS,
+                MAX_CONCURRENT_REQUESTS);
+        mReadabilityStage = new SyncStage("sync-readability", READABILITY_THREADS,
+                STAGE_CAPACITY, mJobQueue::flush);
+        mArticleStage = new SyncStage("sync-article", ARTICLE_THREADS, STAGE_CAPACITY, null);
+        Application.getConnectivityMonitor(context).addListener(mConnectivityListener);
     }
 
     @Override
     public void onPerformSync(Account account, Bundle extras, String authority,
                               ContentProviderClient provider, SyncResult syncResult) {
-        // assume that connection wouldn't change until we finish syncing
+        // connection changes are monitored while crawling, see mConnectivityListener
         mConnectionEnabled = extras.getBoolean(EXTRA_CONNECTION_ENABLED);
         mReadabilityEnabled = extras.getBoolean(EXTRA_READABILITY_ENABLED);
         mCommentsEnabled = extras.getBoolean(EXTRA_COMMENTS_ENABLED);
         mNotificationEnabled = extras.getBoolean(EXTRA_NOTIFICATION_ENABLED);
+        mSyncCancelled = false;
         if (extras.containsKey(EXTRA_ID)) {
             String id = extras.getString(EXTRA_ID);
             mSyncProgresses.put(id, new SyncProgress(id));
-            sync(id, id);
+            sync(id, id, SyncJobQueue.PRIORITY_HIGH);
         } else {
             syncDeferredItems();
         }
+        // items pending network responses are still being crawled, and will keep feeding
+        // downstream stages after this returns
+        mReadabilityStage.awaitIdle();
+        mItemStore.flush();
+        mFingerprints.flush();
+        mJobQueue.flush();
+    }
+
+    @Override
+    public void onSyncCanceled() {
+        super.onSyncCanceled();
+        mSyncCancelled = true;
+        mCrawler.cancel();
     }
 
     private void syncDeferredItems() {
-        Set<String> itemIds = mSharedPreferences.getAll().keySet();
-        for (String itemId : itemIds) {
-            sync(itemId, null); // do not show notifications for deferred items
+        migrateDeferredItems();
+        List<SyncJobQueue.Job> jobs;
+        // leased jobs are not due again until they expire, so draining stops when
+        // all due jobs have been dispatched
+        while (mConnectionEnabled && !mSyncCancelled &&
+                !(jobs = mJobQueue.lease(SyncJobQueue.BATCH_SIZE)).isEmpty()) {
+            for (SyncJobQueue.Job job : jobs) {
+                sync(job);
+            }
         }
     }
 
-    private void sync(String itemId, final String progressId) {
-        if (!mConnectionEnabled) {
-            defer(itemId);
+    /**
+     * Moves items deferred to {@link #SYNC_PREFERENCES_FILE} by previous versions to job queue
+     */
+    private void migrateDeferredItems() {
+        Set<String> itemIds = mSharedPreferences.getAll().keySet();
+        if (itemIds.isEmpty()) {
             return;
         }
-        HackerNewsItem cachedItem;
-        if ((cachedItem = getFromCache(itemId)) != null) {
-            sync(cachedItem, progressId);
-        } else {
-            showNotification(progressId);
-            // TODO defer on low battery as well?
-            mHnRestService.networkItem(itemId).enqueue(new Callback<HackerNewsItem>() {
-                @Override
-                public void onResponse(Call<HackerNewsItem> call,
-                                       retrofit2.Response<HackerNewsItem> response) {
-                    HackerNewsItem item;
-                    if ((item = response.body()) != null) {
-                        sync(item, progressId);
+        for (String itemId : itemIds) {
+            mJobQueue.add(itemId, SyncJobQueue.TYPE_ITEM, null, SyncJobQueue.PRIORITY_DEFAULT);
+        }
+        mJobQueue.flush();
+        mSharedPreferences.edit().clear().apply();
+    }
+
+    private void sync(@NonNull SyncJobQueue.Job job) {
+        switch (job.type) {
+            case SyncJobQueue.TYPE_ITEM:
+            default:
+                sync(job.itemId, null, job.priority); // do not show notifications for deferred items
+                break;
+            case SyncJobQueue.TYPE_READABILITY:
+                mReadabilityStage.submit(() -> {
+                    if (!mReadabilityEnabled ||
+                            mReadabilityClient.parse(job.itemId, job.url) != null) {
+                        mJobQueue.complete(job.itemId, SyncJobQueue.TYPE_READABILITY);
                     }
-                }
+                });
+                break;
+            case SyncJobQueue.TYPE_ARTICLE:
+                // article job will be queued again if it cannot be saved now
+                mJobQueue.complete(job.itemId, SyncJobQueue.TYPE_ARTICLE);
+                mArticleStage.submit(() -> archive(job.itemId, job.url));
+                break;
+        }
+    }
 
-                @Override
-                public void onFailure(Call<HackerNewsItem> call, Throwable t) {
-                    notifyItem(progressId, itemId, null);
-                }
-            });
+    private void sync(String itemId, String progressId, int priority) {
+        if (!mConnectionEnabled) {
+            defer(itemId, priority);
+            return;
         }
+        RootState rootState = new RootState(mFingerprints.load(itemId), itemId);
+        mRootStates.put(itemId, rootState);
+        mCrawler.crawl(itemId, progressId, rootState.incremental);
     }
 
-    private void sync(@NonNull HackerNewsItem item, String progressId) {
-        mSharedPreferences.edit().remove(item.getId()).apply();
+    private boolean sync(@NonNull HackerNewsItem item, String progressId) {
         notifyItem(progressId, item.getId(), item);
         syncReadability(item);
         syncArticle(item);
-        syncChildren(item);
+        return mCommentsEnabled;
     }
 
     private void syncReadability(@NonNull HackerNewsItem item) {
         if (mReadabilityEnabled && item.isStoryType()) {
             final String itemId = item.getId();
-            mReadabilityClient.parse(itemId, item.getRawUrl());
-            notifyReadability(itemId);
+            final String url = item.getRawUrl();
+            // stage may block while saturated, so submit without holding crawler lock
+            mCrawler.defer(() -> mReadabilityStage.submit(() -> {
+                if (mReadabilityClient.parse(itemId, url) == null) {
+                    mJobQueue.add(itemId, SyncJobQueue.TYPE_READABILITY, url,
+                            SyncJobQueue.PRIORITY_LOW);
+                }
+                notifyReadability(itemId);
+            }));
         }
     }
 
     private void syncArticle(@NonNull HackerNewsItem item) {
-        if (item.isStoryType()) {
-            ItemSyncService.WebCacheReceiver.initSave(getContext(), item.getUrl());
+        if (item.isStoryType() && Preferences.Offline.isArticleEnabled(getContext())) {
+            final String itemId = item.getId();
+            final String url = item.getUrl();
+            // stage may block while saturated, so submit without holding crawler lock
+            mCrawler.defer(() -> mArticleStage.submit(() -> archive(itemId, url)));
         }
     }
 
-    private void syncChildren(@NonNull HackerNewsItem item) {
-        if (mCommentsEnabled && item.getKids() != null) {
-            for (long id : item.getKids()) {
-                sync(String.valueOf(id), item.getId());
-            }
+    @WorkerThread
+    private void archive(String itemId, String url) {
+        if (TextUtils.isEmpty(url)) {
+            return;
         }
+        CountDownLatch loaded = new CountDownLatch(1);
+        mMainHandler.post(() -> ItemSyncService.WebCacheReceiver.save(getContext(),
+                itemId, url, loaded::countDown));
+        try {
+            loaded.await(ARTICLE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean isConnectionEnabled(ConnectivityMonitor monitor) {
+        return monitor.isConnected() &&
+                (monitor.isOnWiFi() || !Preferences.Offline.isWifiOnly(getContext()));
     }
 
-    private void defer(String itemId) {
-        mSharedPreferences.edit().putBoolean(itemId, true).apply();
+    private void defer(String itemId, int priority) {
+        mJobQueue.add(itemId, SyncJobQueue.TYPE_ITEM, null, priority);
     }
 
     private HackerNewsItem getFromCache(String itemId) {
+        HackerNewsItem item = mItemStore.get(itemId);
+        if (item != null) {
+            return item;
+        }
+        // items cached over HTTP by previous versions are moved to store
         try {
-            return mHnRestService.cachedItem(itemId).execute().body();
+            item = mHnRestService.cachedItem(itemId).execute().body();
         } catch (IOException e) {
             return null;
         }
+        if (item != null) {
+            mItemStore.put(itemId, item);
+        }
+        return item;
     }
 
-    private boolean isNotificationEnabled(@Nullable String progressId) {
+    private synchronized boolean isNotificationEnabled(@Nullable String progressId) {
         return mNotificationEnabled && progressId != null &&
                 mSyncProgresses.containsKey(progressId);
     }
 
-    private void notifyItem(@Nullable String progressId, @NonNull String id,
+    private synchronized void notifyItem(@Nullable String progressId, @NonNull String id,
                             @Nullable HackerNewsItem item) {
         if (isNotificationEnabled(progressId)) {
             mSyncProgresses.get(progressId).finishItem(id, item,
@@ -231,43 +326,168 @@ public class ItemSyncAdapter extends AbstractThreadedSyncAdapter {
         }
     }
 
-    private void notifyReadability(@Nullable String progressId) {
+    private synchronized void notifyReadability(@Nullable String progressId) {
         if (isNotificationEnabled(progressId)) {
             mSyncProgresses.get(progressId).finishReadability();
             showNotification(progressId);
         }
     }
 
-    private void showNotification(String progressId) {
+    private synchronized void cancelNotification(@NonNull String progressId) {
+        if (mSyncProgresses.remove(progressId) != null) {
+            mNotificationScheduler.cancel(progressId);
+        }
+    }
+
+    private synchronized void showNotification(String progressId) {
         if (!isNotificationEnabled(progressId)) {
             return;
         }
         SyncProgress syncProgress = mSyncProgresses.get(progressId);
         if (syncProgress.getProgress() >= syncProgress.getMax()) {
             mSyncProgresses.remove(progressId);
-            mNotificationManager.cancel(Integer.valueOf(progressId));
+            mNotificationScheduler.cancel(progressId);
         } else {
-            mNotificationManager.notify(Integer.valueOf(progressId), mNotificationBuilder
-                    .setContentTitle(getContext().getString(R.string.download_in_progress))
-                    .setContentText(syncProgress.title)
-                    .setContentIntent(getItemActivity(progressId))
-                    .setProgress(syncProgress.getMax(), syncProgress.getProgress(), false)
-                    .setSortKey(progressId)
-                    .build());
+            mNotificationScheduler.update(progressId, syncProgress.title,
+                    syncProgress.getMax(), syncProgress.getProgress());
         }
     }
 
-    private PendingIntent getItemActivity(String itemId) {
-        return PendingIntent.getActivity(getContext(), 0,
-                new Intent(Intent.ACTION_VIEW)
-                        .setData(new Uri.Builder()
-                                .scheme(BuildConfig.APPLICATION_ID)
-                                .authority(HOST_ITEM)
-                                .path(itemId)
-                                .build())
-                        .putExtra(ItemActivity.EXTRA_CACHE_MODE, ItemManager.MODE_CACHE)
-                        .setFlags(Intent.FLAG_ACTIVITY_NEW_TASK),
-                PendingIntent.FLAG_ONE_SHOT);
+    private class CrawlerCallbacks implements SyncCrawler.Callbacks {
+
+        @Override
+        public HackerNewsItem getFromCache(@NonNull String itemId) {
+            return ItemSyncAdapter.this.getFromCache(itemId);
+        }
+
+        @Override
+        public boolean isRefresh(@NonNull SyncCrawler.Task task) {
+            RootState rootState = mRootStates.get(task.rootId);
+            // known items may have been evicted from store since, in which case crawl again
+            return rootState != null && rootState.isKnown(task.itemId) &&
+                    mItemStore.contains(task.itemId);
+        }
+
+        @Override
+        public boolean shouldRefresh(@NonNull SyncCrawler.Task task) {
+            RootState rootState = mRootStates.get(task.rootId);
+            return rootState != null && rootState.remaining > 0;
+        }
+
+        @NonNull
+        @Override
+        public Call<HackerNewsItem> getFromNetwork(@NonNull SyncCrawler.Task task) {
+            showNotification(task.progressId);
+            // TODO defer on low battery as well?
+            return mHnRestService.networkItem(task.itemId);
+        }
+
+        @Override
+        public boolean onItem(@NonNull SyncCrawler.Task task, @Nullable HackerNewsItem item) {
+            if (item == null) {
+                notifyItem(task.progressId, task.itemId, null);
+                return false;
+            }
+            if (task.depth == 0) {
+                mJobQueue.complete(task.itemId, SyncJobQueue.TYPE_ITEM);
+            }
+            RootState rootState = mRootStates.get(task.rootId);
+            if (rootState != null) {
+                rootState.onItem(task, item);
+                // root fingerprint is only recorded once its whole tree has been crawled
+                if (task.depth > 0) {
+                    mFingerprints.put(task.rootId, task.itemId, item);
+                }
+            }
+            if (task.isFromNetwork()) {
+                mItemStore.put(task.itemId, item);
+            }
+            return sync(item, task.progressId);
+        }
+
+        @Override
+        public void onSkipped(@NonNull SyncCrawler.Task task) {
+            notifyItem(task.progressId, task.itemId, null);
+        }
+
+        @Override
+        public void onTruncated(@NonNull String rootId) {
+            RootState rootState = mRootStates.get(rootId);
+            if (rootState != null) {
+                rootState.truncated = true;
+            }
+        }
+
+        @Override
+        public void onCancelled(@NonNull String rootId) {
+            // partially crawled tree should be crawled in full again
+            if (mRootStates.remove(rootId) != null) {
+                mFingerprints.remove(rootId);
+            }
+            defer(rootId, SyncJobQueue.PRIORITY_DEFAULT);
+            cancelNotification(rootId);
+        }
+
+        @Override
+        public void onIdle() {
+            // all remaining roots have been crawled without cancellation
+            for (Map.Entry<String, RootState> entry : mRootStates.entrySet()) {
+                if (entry.getValue().truncated) {
+                    mFingerprints.remove(entry.getKey());
+                } else if (entry.getValue().root != null) {
+                    mFingerprints.put(entry.getKey(), entry.getKey(), entry.getValue().root);
+                }
+            }
+            mRootStates.clear();
+            mItemStore.flush();
+            mFingerprints.flush();
+            mJobQueue.flush();
+        }
+    }
+
+    /**
+     * Incremental sync state of a root item. A root synced recently is refetched from network
+     * and compared against its fingerprint: new kids are crawled as usual, while kids synced
+     * before are only refreshed as long as the root descendant count suggests that some new
+     * items have not been found yet.
+     * Root fingerprint is only recorded once crawling has finished, and fingerprints of a root
+     * whose crawling has been cancelled or truncated are dropped, so that a partially crawled
+     * tree is never considered known.
+     */
+    private static class RootState {
+        private final Map<String, SyncFingerprints.Fingerprint> known;
+        private final boolean incremental;
+        private volatile int remaining;
+        private HackerNewsItem root;
+        private boolean truncated;
+
+        RootState(@NonNull Map<String, SyncFingerprints.Fingerprint> fingerprints,
+                  @NonNull String rootId) {
+            known = fingerprints;
+            SyncFingerprints.Fingerprint rootFingerprint = fingerprints.get(rootId);
+            incremental = rootFingerprint != null && System.currentTimeMillis() -
+                    rootFingerprint.lastSync < FINGERPRINT_MAX_AGE_MILLIS;
+        }
+
+        boolean isKnown(String itemId) {
+            return incremental && known.containsKey(itemId);
+        }
+
+        void onItem(@NonNull SyncCrawler.Task task, @NonNull HackerNewsItem item) {
+            if (task.depth == 0) {
+                root = item;
+            }
+            if (!incremental) {
+                return;
+            }
+            SyncFingerprints.Fingerprint fingerprint = known.get(task.itemId);
+            if (task.depth == 0) {
+                remaining = fingerprint.hasChanged(item) ?
+                        Math.max(0, item.getDescendants() - fingerprint.descendants) : 0;
+            } else if (fingerprint == null) {
+                remaining--;
+            }
+        }
     }
 
     static class SyncProgress {
@@ -322,7 +542,6 @@ public class ItemSyncAdapter extends AbstractThreadedSyncAdapter {
         }
     }
 
-
     static class BackgroundThreadExecutor implements Executor {
 
         @Override
@@ -17,12 +17,16 @@
 package io.github.hidroh.materialistic.data;
 
 import android.app.Service;
+import android.content.AsyncQueryHandler;
 import android.content.BroadcastReceiver;
+import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.os.IBinder;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.annotation.UiThread;
 import android.support.v4.content.LocalBroadcastManager;
 import android.text.TextUtils;
 import android.webkit.WebView;
@@ -32,6 +36,7 @@ import javax.inject.Inject;
 import io.github.hidroh.materialistic.ActivityModule;
 import io.github.hidroh.materialistic.Application;
 import io.github.hidroh.materialistic.Preferences;
+import io.github.hidroh.materialistic.SyncModule;
 import io.github.hidroh.materialistic.accounts.EmptyAccountAuthenticator;
 import io.github.hidroh.materialistic.widget.AdBlockWebViewClient;
 import io.github.hidroh.materialistic.widget.CacheableWebView;
@@ -49,7 +54,7 @@ public class ItemSyncService extends Service {
         super.onCreate();
         ((Application) getApplication())
                 .getApplicationGraph()
-                .plus(new ActivityModule(this)) // TODO split to network module
+                .plus(new ActivityModule(this), new SyncModule())
                 .inject(this);
         LocalBroadcastManager.getInstance(this).registerReceiver(mReceiver,
                 new IntentFilter(WebCacheReceiver.ACTION));
@@ -91,6 +96,7 @@ public class ItemSyncService extends Service {
     static class WebCacheReceiver extends BroadcastReceiver {
         static final String ACTION = "io.github.hidroh.materialistic.WEB_CACHE_REQUEST";
         static final String EXTRA_URL = WebCacheReceiver.class.getName() + ".EXTRA_URL";
+        static final String EXTRA_ITEM_ID = WebCacheReceiver.class.getName() + ".EXTRA_ITEM_ID";
 
         @Override
         public void onReceive(Context context, Intent intent) {
@@ -98,17 +104,65 @@ public class ItemSyncService extends Service {
             if (TextUtils.isEmpty(url)) {
                 return;
             }
-            if (Preferences.Offline.currentConnectionEnabled(context) &&
-                    Preferences.Offline.isArticleEnabled(context)) {
+            save(context, intent.getStringExtra(EXTRA_ITEM_ID), url, null);
+        }
+
+        /**
+         * Loads given URL into an offscreen web view to archive it, or defers it to be saved
+         * later if current connection does not allow
+         * @param context   an instance of {@link Context}
+         * @param itemId    optional ID of item that the URL belongs to, required for deferral
+         * @param url       URL to save
+         * @param onDone    optional callback to be fired once the page has finished loading,
+         *                  or immediately if it is not loaded
+         */
+        @UiThread
+        static void save(Context context, @Nullable String itemId, @NonNull String url,
+                         @Nullable Runnable onDone) {
+            if (!Preferences.Offline.isArticleEnabled(context)) {
+                notifyDone(onDone);
+                return;
+            }
+            if (Preferences.Offline.currentConnectionEnabled(context)) {
                 WebView webView = new CacheableWebView(context);
                 webView.setWebViewClient(new AdBlockWebViewClient(Preferences.adBlockEnabled(context)));
+                if (onDone != null) {
+                    webView.setWebChromeClient(new CacheableWebView.ArchiveClient() {
+                        @Override
+                        public void onProgressChanged(WebView view, int newProgress) {
+                            super.onProgressChanged(view, newProgress);
+                            if (newProgress == 100) {
+                                onDone.run();
+                            }
+                        }
+                    });
+                }
                 webView.loadUrl(url);
+            } else {
+                if (itemId != null) {
+                    defer(context, itemId, url);
+                }
+                notifyDone(onDone);
+            }
+        }
+
+        private static void notifyDone(@Nullable Runnable onDone) {
+            if (onDone != null) {
+                onDone.run();
             }
         }
 
-        static void initSave(Context context, String url) {
-            LocalBroadcastManager.getInstance(context)
-                    .sendBroadcast(new Intent(ACTION).putExtra(EXTRA_URL, url));
+        private static void defer(Context context, String itemId, String url) {
+            ContentValues contentValues = new ContentValues();
+            contentValues.put(MaterialisticProvider.SyncQueueEntry.COLUMN_NAME_ITEM_ID, itemId);
+            contentValues.put(MaterialisticProvider.SyncQueueEntry.COLUMN_NAME_TYPE,
+                    SyncJobQueue.TYPE_ARTICLE);
+            contentValues.put(MaterialisticProvider.SyncQueueEntry.COLUMN_NAME_URL, url);
+            contentValues.put(MaterialisticProvider.SyncQueueEntry.COLUMN_NAME_PRIORITY,
+                    SyncJobQueue.PRIORITY_LOW);
+            contentValues.put(MaterialisticProvider.SyncQueueEntry.COLUMN_NAME_NEXT_ATTEMPT, 0);
+            new AsyncQueryHandler(context.getContentResolver()) {}
+                    .startInsert(0, null, MaterialisticProvider.URI_SYNC_QUEUE, contentValues);
         }
     }
 }
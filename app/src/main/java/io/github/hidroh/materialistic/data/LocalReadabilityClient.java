@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import android.content.Context;
+import android.os.Process;
+import android.support.annotation.VisibleForTesting;
+import android.support.annotation.WorkerThread;
+import android.text.TextUtils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import javax.inject.Inject;
+
+import okhttp3.Call;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * {@link ReadabilityClient} that extracts article content on device, from article markup
+ * fetched via HTTP cache or network, see {@link ArticleExtractor}.
+ * Extraction runs on its own background executor, streaming response body through
+ * {@link HtmlTokenizer} without buffering the whole page.
+ */
+public class LocalReadabilityClient implements ReadabilityClient {
+    private static final int THREADS = 2;
+    private static final int MAX_REDIRECTS = 5;
+    private static final String HEADER_LOCATION = "Location";
+    private final Call.Factory mCallFactory;
+    private final ReadabilityStore mReadabilityStore;
+    private final Executor mExecutor;
+    private final Executor mMainThreadExecutor = new RestServiceFactory.MainThreadExecutor();
+
+    @Inject
+    public LocalReadabilityClient(Context context, Call.Factory callFactory) {
+        this(context, callFactory, Executors.newFixedThreadPool(THREADS, r -> new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            r.run();
+        }, "readability")));
+    }
+
+    @VisibleForTesting
+    LocalReadabilityClient(Context context, Call.Factory callFactory, Executor executor) {
+        mCallFactory = callFactory;
+        mReadabilityStore = new ReadabilityStore(context.getContentResolver());
+        mExecutor = executor;
+    }
+
+    @Override
+    public void parse(String itemId, String url, Callback callback) {
+        mExecutor.execute(() -> {
+            String content = parse(itemId, url);
+            mMainThreadExecutor.execute(() -> callback.onResponse(content));
+        });
+    }
+
+    @WorkerThread
+    @Override
+    public String parse(String itemId, String url) {
+        String content = mReadabilityStore.get(itemId);
+        if (content == null) {
+            try {
+                content = extract(url);
+                mReadabilityStore.put(itemId, content);
+            } catch (IOException e) {
+                // no op, try again next time
+            }
+        }
+        return TextUtils.equals(ReadabilityStore.EMPTY_CONTENT, content) ? null : content;
+    }
+
+    /**
+     * Extracts article content from given URL
+     * @param url   article URL
+     * @return  article content, or null if URL definitely has no article, e.g. not found or
+     * not HTML, in which case it should not be extracted again
+     * @throws IOException  if extraction fails but may succeed later
+     */
+    @WorkerThread
+    private String extract(String url) throws IOException {
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        if (httpUrl == null) {
+            return null;
+        }
+        Response response = null;
+        // shared client does not follow redirects, to keep login redirects visible
+        for (int i = 0; i <= MAX_REDIRECTS; i++) {
+            response = mCallFactory.newCall(new Request.Builder().url(httpUrl).build()).execute();
+            if (!response.isRedirect()) {
+                break;
+            }
+            String location = response.header(HEADER_LOCATION);
+            response.body().close();
+            response = null;
+            httpUrl = TextUtils.isEmpty(location) ? null : httpUrl.resolve(location);
+            if (httpUrl == null) {
+                throw new IOException("Redirect without valid location");
+            }
+        }
+        // redirect loops may be transient misconfiguration, do not treat as no article
+        if (response == null) {
+            throw new IOException("Too many redirects");
+        }
+        ResponseBody body = response.body();
+        try {
+            if (isNotFound(response.code())) {
+                return null;
+            }
+            // other failures, e.g. rate limiting or server errors, may be transient
+            if (!response.isSuccessful()) {
+                throw new IOException(response.message());
+            }
+            if (!isHtml(body.contentType())) {
+                return null;
+            }
+            Reader reader = body.charStream();
+            return ArticleExtractor.extract(reader, response.request().url().toString());
+        } finally {
+            body.close();
+        }
+    }
+
+    private boolean isNotFound(int code) {
+        return code == HttpURLConnection.HTTP_NOT_FOUND || code == HttpURLConnection.HTTP_GONE;
+    }
+
+    private boolean isHtml(MediaType mediaType) {
+        // assume markup if not specified
+        return mediaType == null || TextUtils.equals(mediaType.subtype(), "html") ||
+                TextUtils.equals(mediaType.subtype(), "xhtml+xml");
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import android.content.AsyncQueryHandler;
+import android.content.Context;
+import android.database.Cursor;
+import android.text.TextUtils;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import io.github.hidroh.materialistic.ActivityModule;
+
+/**
+ * {@link ItemManager} that searches stories stored on device, via full-text index of
+ * favorite titles, stored items and readability content, see
+ * {@link MaterialisticProvider#URI_SEARCH}. Stories are retrieved from
+ * {@link HackerNewsClient}, preferring stored versions so that search works offline.
+ */
+public class LocalSearchClient implements ItemManager {
+    static final int MAX_RESULTS = 100;
+    private static final int TOKEN_SEARCH = 1;
+    @Inject @Named(ActivityModule.HN) ItemManager mHackerNewsClient;
+    private final AsyncQueryHandler mQueryHandler;
+
+    @Inject
+    public LocalSearchClient(Context context) {
+        mQueryHandler = new AsyncQueryHandler(context.getContentResolver()) {
+            @SuppressWarnings("unchecked")
+            @Override
+            protected void onQueryComplete(int token, Object cookie, Cursor cursor) {
+                onSearchComplete((ResponseListener<Item[]>) cookie, cursor);
+            }
+        };
+    }
+
+    @Override
+    public void getStories(String filter, @CacheMode int cacheMode,
+                           ResponseListener<Item[]> listener) {
+        if (listener == null) {
+            return;
+        }
+        mQueryHandler.cancelOperation(TOKEN_SEARCH); // superseded by this search
+        String matchQuery = MaterialisticProvider.buildMatchQuery(filter);
+        if (TextUtils.isEmpty(matchQuery)) {
+            listener.onResponse(new Item[0]);
+            return;
+        }
+        mQueryHandler.startQuery(TOKEN_SEARCH, listener, MaterialisticProvider.URI_SEARCH
+                        .buildUpon()
+                        .appendQueryParameter(MaterialisticProvider.QUERY_PARAMETER_LIMIT,
+                                String.valueOf(MAX_RESULTS))
+                        .build(),
+                null, null, new String[]{matchQuery}, null);
+    }
+
+    @Override
+    public void getItem(String itemId, @CacheMode int cacheMode, ResponseListener<Item> listener) {
+        mHackerNewsClient.getItem(itemId, cacheMode == MODE_NETWORK ? MODE_NETWORK : MODE_CACHE,
+                listener);
+    }
+
+    @Override
+    public Item[] getStories(String filter, @CacheMode int cacheMode) {
+        return new Item[0]; // not applicable
+    }
+
+    @Override
+    public Item getItem(String itemId, @CacheMode int cacheMode) {
+        return null; // not applicable
+    }
+
+    private void onSearchComplete(ResponseListener<Item[]> listener, Cursor cursor) {
+        if (cursor == null) {
+            listener.onError(null);
+            return;
+        }
+        HackerNewsItem[] stories = new HackerNewsItem[cursor.getCount()];
+        int itemIdIndex = cursor.getColumnIndexOrThrow(
+                MaterialisticProvider.SearchEntry.COLUMN_NAME_ITEM_ID);
+        for (int i = 0; cursor.moveToNext(); i++) {
+            stories[i] = new HackerNewsItem(cursor.getLong(itemIdIndex));
+            stories[i].rank = i + 1;
+        }
+        cursor.close();
+        listener.onResponse(stories);
+    }
+}
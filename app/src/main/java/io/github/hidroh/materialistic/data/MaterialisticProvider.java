@@ -17,17 +17,35 @@
 package io.github.hidroh.materialistic.data;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
+import android.database.MatrixCursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.net.Uri;
+import android.os.ParcelFileDescriptor;
 import android.provider.BaseColumns;
+import android.provider.OpenableColumns;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.text.TextUtils;
 
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 public class MaterialisticProvider extends ContentProvider {
     static final String PROVIDER_AUTHORITY = "io.github.hidroh.materialistic.provider";
     private static final Uri BASE_URI = Uri.parse("content://" + PROVIDER_AUTHORITY);
@@ -40,8 +58,56 @@ public class MaterialisticProvider extends ContentProvider {
     public static final Uri URI_READABILITY = BASE_URI.buildUpon()
             .appendPath(ReadabilityEntry.TABLE_NAME)
             .build();
-    private static final String READABILITY_MAX_ENTRIES = "50";
+    static final Uri URI_SYNC_QUEUE = BASE_URI.buildUpon()
+            .appendPath(SyncQueueEntry.TABLE_NAME)
+            .build();
+    static final Uri URI_SYNC_FINGERPRINT = BASE_URI.buildUpon()
+            .appendPath(SyncFingerprintEntry.TABLE_NAME)
+            .build();
+    static final Uri URI_ITEM = BASE_URI.buildUpon()
+            .appendPath(ItemEntry.TABLE_NAME)
+            .build();
+    /**
+     * Ranked full-text search of stories, queried with a full-text query as the only selection
+     * argument, see {@link #buildMatchQuery(String)}
+     */
+    static final Uri URI_SEARCH = BASE_URI.buildUpon()
+            .appendPath(SearchEntry.TABLE_NAME)
+            .build();
+    /**
+     * Exported favorites files, one per path segment, readable by apps granted permission
+     * @see #getExportFile(Context, String)
+     */
+    public static final Uri URI_EXPORT = BASE_URI.buildUpon()
+            .appendPath(ExportEntry.PATH)
+            .build();
+    static final String QUERY_PARAMETER_LIMIT = "limit";
+    /**
+     * Selection of favorites whose title matches full-text query given as selection argument
+     * @see #buildMatchQuery(String)
+     */
+    static final String SQL_WHERE_FAVORITE_MATCH =
+            FavoriteEntry.COLUMN_NAME_ITEM_ID + " IN (SELECT CAST(" +
+                    SearchEntry.COLUMN_NAME_DOC_ID + " / " + SearchEntry.SOURCE_COUNT +
+                    " AS TEXT) FROM " + SearchEntry.TABLE_NAME +
+                    " WHERE " + SearchEntry.TABLE_NAME + " MATCH ? AND " +
+                    SearchEntry.COLUMN_NAME_DOC_ID + " % " + SearchEntry.SOURCE_COUNT +
+                    " = " + SearchEntry.SOURCE_FAVORITE + ")";
+    /**
+     * Order of favorites, most recent first. Row ID breaks ties so that the order is total,
+     * as required by keyset pagination.
+     */
+    static final String SQL_ORDER_FAVORITE =
+            FavoriteEntry.COLUMN_NAME_TIME + DbHelper.ORDER_DESC + DbHelper.COMMA_SEP +
+                    FavoriteEntry._ID + DbHelper.ORDER_DESC;
+    static final long READABILITY_MAX_BYTES = 2 * 1024 * 1024; // compressed, pinned not counted
+    private static final String ITEM_MAX_ENTRIES = "5000"; // pinned items not counted
+    private static final int ITEM_TRUNCATE_INTERVAL = 100; // number of inserts
+    private static final int SEARCH_MAX_DEPTH = 100; // max comment levels to reach story
+    private static final float SEARCH_WEIGHT_TITLE = 4f;
+    private static final float SEARCH_WEIGHT_CONTENT = 1f;
     private DbHelper mDbHelper;
+    private int mItemInsertCount;
 
     @Override
     public boolean onCreate() {
@@ -52,11 +118,12 @@ public class MaterialisticProvider extends ContentProvider {
     @Override
     public Cursor query(@NonNull Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
         SQLiteDatabase db = mDbHelper.getReadableDatabase();
-        if (URI_FAVORITE.equals(uri)) {
+        if (URI_FAVORITE.equals(uri.buildUpon().clearQuery().build())) {
             return db.query(FavoriteEntry.TABLE_NAME, projection,
                     selection, selectionArgs,
                     null, null,
-                    FavoriteEntry.COLUMN_NAME_TIME + DbHelper.ORDER_DESC);
+                    SQL_ORDER_FAVORITE,
+                    uri.getQueryParameter(QUERY_PARAMETER_LIMIT));
         } else if (URI_VIEWED.equals(uri)) {
             return db.query(ViewedEntry.TABLE_NAME, projection,
                     selection, selectionArgs,
@@ -67,6 +134,24 @@ public class MaterialisticProvider extends ContentProvider {
                     selection, selectionArgs,
                     null, null,
                     ReadabilityEntry.COLUMN_NAME_ITEM_ID + DbHelper.ORDER_DESC);
+        } else if (URI_SYNC_QUEUE.equals(uri.buildUpon().clearQuery().build())) {
+            return db.query(SyncQueueEntry.TABLE_NAME, projection,
+                    selection, selectionArgs,
+                    null, null,
+                    sortOrder,
+                    uri.getQueryParameter(QUERY_PARAMETER_LIMIT));
+        } else if (URI_SYNC_FINGERPRINT.equals(uri)) {
+            return db.query(SyncFingerprintEntry.TABLE_NAME, projection,
+                    selection, selectionArgs,
+                    null, null, null);
+        } else if (URI_ITEM.equals(uri)) {
+            return db.query(ItemEntry.TABLE_NAME, projection,
+                    selection, selectionArgs,
+                    null, null, null);
+        } else if (URI_SEARCH.equals(uri.buildUpon().clearQuery().build())) {
+            return querySearch(db, selectionArgs[0], uri.getQueryParameter(QUERY_PARAMETER_LIMIT));
+        } else if (getExportFile(uri) != null) {
+            return queryExport(getExportFile(uri), projection);
         }
         return null;
     }
@@ -79,19 +164,85 @@ public class MaterialisticProvider extends ContentProvider {
             return ViewedEntry.MIME_TYPE;
         } else if (URI_READABILITY.equals(uri)) {
             return ReadabilityEntry.MIME_TYPE;
+        } else if (URI_SYNC_QUEUE.equals(uri)) {
+            return SyncQueueEntry.MIME_TYPE;
+        } else if (URI_SYNC_FINGERPRINT.equals(uri)) {
+            return SyncFingerprintEntry.MIME_TYPE;
+        } else if (URI_ITEM.equals(uri)) {
+            return ItemEntry.MIME_TYPE;
+        } else if (URI_SEARCH.equals(uri)) {
+            return SearchEntry.MIME_TYPE;
+        } else if (getExportFile(uri) != null) {
+            return uri.getLastPathSegment().endsWith(
+                    FavoriteArchive.getExtension(FavoriteArchive.FORMAT_HTML)) ?
+                    FavoriteArchive.getMimeType(FavoriteArchive.FORMAT_HTML) :
+                    FavoriteArchive.getMimeType(FavoriteArchive.FORMAT_JSON_LINES);
         }
         return null;
     }
 
+    @Override
+    public ParcelFileDescriptor openFile(@NonNull Uri uri, @NonNull String mode)
+            throws FileNotFoundException {
+        File file = getExportFile(uri);
+        if (file == null) {
+            throw new FileNotFoundException(uri.toString());
+        }
+        return ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
+    }
+
+    /**
+     * Gets file to export favorites to, to be shared via {@link #URI_EXPORT}
+     * @param context   an instance of {@link Context}
+     * @param fileName  file name
+     * @return  export file, which may not exist yet
+     */
+    static File getExportFile(Context context, String fileName) {
+        File dir = new File(context.getCacheDir(), ExportEntry.PATH);
+        //noinspection ResultOfMethodCallIgnored
+        dir.mkdirs();
+        return new File(dir, fileName);
+    }
+
+    @Nullable
+    private File getExportFile(Uri uri) {
+        List<String> segments = uri.getPathSegments();
+        if (segments.size() != 2 || !ExportEntry.PATH.equals(segments.get(0)) ||
+                segments.get(1).contains(File.separator)) {
+            return null;
+        }
+        return getExportFile(getContext(), segments.get(1));
+    }
+
+    private Cursor queryExport(File file, @Nullable String[] projection) {
+        if (projection == null) {
+            projection = new String[]{OpenableColumns.DISPLAY_NAME, OpenableColumns.SIZE};
+        }
+        MatrixCursor cursor = new MatrixCursor(projection, 1);
+        Object[] row = new Object[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            if (OpenableColumns.DISPLAY_NAME.equals(projection[i])) {
+                row[i] = file.getName();
+            } else if (OpenableColumns.SIZE.equals(projection[i])) {
+                row[i] = file.length();
+            }
+        }
+        cursor.addRow(row);
+        return cursor;
+    }
+
     @Override
     public Uri insert(@NonNull Uri uri, ContentValues values) {
         SQLiteDatabase db = mDbHelper.getWritableDatabase();
         if (URI_FAVORITE.equals(uri)) {
-            int updated = update(uri, values, FavoriteEntry.COLUMN_NAME_ITEM_ID + " = ?",
-                    new String[]{values.getAsString(FavoriteEntry.COLUMN_NAME_ITEM_ID)});
-            long id = -1;
+            String selection = FavoriteEntry.COLUMN_NAME_ITEM_ID + " = ?";
+            String[] selectionArgs = {values.getAsString(FavoriteEntry.COLUMN_NAME_ITEM_ID)};
+            int updated = update(uri, values, selection, selectionArgs);
+            long id;
             if (updated == 0) {
                 id = db.insert(FavoriteEntry.TABLE_NAME, null, values);
+            } else {
+                id = getRowId(db, FavoriteEntry.TABLE_NAME, selection, selectionArgs);
             }
             return id == -1 ? null : ContentUris.withAppendedId(URI_FAVORITE, id);
         } else if (URI_VIEWED.equals(uri)) {
@@ -109,15 +260,112 @@ public class MaterialisticProvider extends ContentProvider {
             long id = -1;
             if (updated == 0) {
                 id = db.insert(ReadabilityEntry.TABLE_NAME, null, values);
-                db.delete(ReadabilityEntry.TABLE_NAME, DbHelper.SQL_WHERE_READABILITY_TRUNCATE, null);
+                indexReadability(db, values);
+                truncateReadability(db, id);
             }
 
             return id == -1 ? null : ContentUris.withAppendedId(URI_READABILITY, id);
+        } else if (URI_SYNC_QUEUE.equals(uri)) {
+            String selection = SyncQueueEntry.COLUMN_NAME_ITEM_ID + " = ? AND " +
+                    SyncQueueEntry.COLUMN_NAME_TYPE + " = ?";
+            String[] selectionArgs = {values.getAsString(SyncQueueEntry.COLUMN_NAME_ITEM_ID),
+                    values.getAsString(SyncQueueEntry.COLUMN_NAME_TYPE)};
+            int updated = update(uri, values, selection, selectionArgs);
+            long id;
+            if (updated == 0) {
+                id = db.insert(SyncQueueEntry.TABLE_NAME, null, values);
+            } else {
+                id = getRowId(db, SyncQueueEntry.TABLE_NAME, selection, selectionArgs);
+            }
+
+            return id == -1 ? null : ContentUris.withAppendedId(URI_SYNC_QUEUE, id);
+        } else if (URI_SYNC_FINGERPRINT.equals(uri)) {
+            String selection = SyncFingerprintEntry.COLUMN_NAME_ITEM_ID + " = ?";
+            String[] selectionArgs = {
+                    values.getAsString(SyncFingerprintEntry.COLUMN_NAME_ITEM_ID)};
+            int updated = update(uri, values, selection, selectionArgs);
+            long id;
+            if (updated == 0) {
+                id = db.insert(SyncFingerprintEntry.TABLE_NAME, null, values);
+            } else {
+                id = getRowId(db, SyncFingerprintEntry.TABLE_NAME, selection, selectionArgs);
+            }
+
+            return id == -1 ? null : ContentUris.withAppendedId(URI_SYNC_FINGERPRINT, id);
+        } else if (URI_ITEM.equals(uri)) {
+            String selection = ItemEntry.COLUMN_NAME_ITEM_ID + " = ?";
+            String[] selectionArgs = {values.getAsString(ItemEntry.COLUMN_NAME_ITEM_ID)};
+            // unchanged items are left as is, so that they keep their last modified time
+            long id = getUnchangedItemRowId(db, values, selection, selectionArgs);
+            if (id != -1) {
+                return ContentUris.withAppendedId(URI_ITEM, id);
+            }
+            int updated = update(uri, values, selection, selectionArgs);
+            if (updated == 0) {
+                id = db.insert(ItemEntry.TABLE_NAME, null, values);
+                if (++mItemInsertCount % ITEM_TRUNCATE_INTERVAL == 0) {
+                    db.delete(ItemEntry.TABLE_NAME, DbHelper.SQL_WHERE_ITEM_TRUNCATE, null);
+                }
+            } else {
+                id = getRowId(db, ItemEntry.TABLE_NAME, selection, selectionArgs);
+            }
+
+            return id == -1 ? null : ContentUris.withAppendedId(URI_ITEM, id);
         }
 
         return null;
     }
 
+    /**
+     * Gets ID of existing row that an insert has been applied to as an update, so that
+     * upserts report success, e.g. when applied in batch
+     */
+    private long getRowId(SQLiteDatabase db, String table, String selection,
+                          String[] selectionArgs) {
+        Cursor cursor = db.query(table, new String[]{BaseColumns._ID}, selection, selectionArgs,
+                null, null, null, "1");
+        long id = cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        cursor.close();
+        return id;
+    }
+
+    /**
+     * Gets ID of existing item row that has the same content as given values, regardless of
+     * its last modified time
+     * @return  row ID, or -1 if there is no such item or its content differs
+     */
+    private long getUnchangedItemRowId(SQLiteDatabase db, ContentValues values,
+                                       String selection, String[] selectionArgs) {
+        Cursor cursor = db.query(ItemEntry.TABLE_NAME, null, selection, selectionArgs,
+                null, null, null, "1");
+        long id = -1;
+        if (cursor.moveToFirst()) {
+            id = cursor.getLong(cursor.getColumnIndexOrThrow(ItemEntry._ID));
+            for (Map.Entry<String, Object> entry : values.valueSet()) {
+                if (ItemEntry.COLUMN_NAME_LAST_MODIFIED.equals(entry.getKey())) {
+                    continue;
+                }
+                int index = cursor.getColumnIndex(entry.getKey());
+                if (index < 0 || !isSameValue(cursor, index, entry.getValue())) {
+                    id = -1;
+                    break;
+                }
+            }
+        }
+        cursor.close();
+        return id;
+    }
+
+    private static boolean isSameValue(Cursor cursor, int index, Object value) {
+        if (cursor.isNull(index) || value == null) {
+            return cursor.isNull(index) && value == null;
+        }
+        if (value instanceof byte[]) {
+            return Arrays.equals(cursor.getBlob(index), (byte[]) value);
+        }
+        return TextUtils.equals(cursor.getString(index), String.valueOf(value));
+    }
+
     @Override
     public int delete(@NonNull Uri uri, String selection, String[] selectionArgs) {
         SQLiteDatabase db = mDbHelper.getWritableDatabase();
@@ -128,6 +376,12 @@ public class MaterialisticProvider extends ContentProvider {
             table = ViewedEntry.TABLE_NAME;
         } else if (URI_READABILITY.equals(uri)) {
             table = ReadabilityEntry.TABLE_NAME;
+        } else if (URI_SYNC_QUEUE.equals(uri)) {
+            table = SyncQueueEntry.TABLE_NAME;
+        } else if (URI_SYNC_FINGERPRINT.equals(uri)) {
+            table = SyncFingerprintEntry.TABLE_NAME;
+        } else if (URI_ITEM.equals(uri)) {
+            table = ItemEntry.TABLE_NAME;
         }
 
         if (TextUtils.isEmpty(table)) {
@@ -146,13 +400,211 @@ public class MaterialisticProvider extends ContentProvider {
             table = ViewedEntry.TABLE_NAME;
         } else if (URI_READABILITY.equals(uri)) {
             table = ReadabilityEntry.TABLE_NAME;
+        } else if (URI_SYNC_QUEUE.equals(uri)) {
+            table = SyncQueueEntry.TABLE_NAME;
+        } else if (URI_SYNC_FINGERPRINT.equals(uri)) {
+            table = SyncFingerprintEntry.TABLE_NAME;
+        } else if (URI_ITEM.equals(uri)) {
+            table = ItemEntry.TABLE_NAME;
         }
 
         if (TextUtils.isEmpty(table)) {
             return 0;
         }
 
-        return db.update(table, values, selection, selectionArgs);
+        int updated = db.update(table, values, selection, selectionArgs);
+        if (updated > 0 && URI_READABILITY.equals(uri)) {
+            indexReadability(db, values);
+        }
+        return updated;
+    }
+
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentProviderResult[] results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+            return results;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Builds full-text query that matches all words in given user query as prefixes,
+     * e.g. 'android studio' as 'android* studio*', so that it behaves like a substring filter
+     * while typing and user input cannot form full-text query operators
+     * @param query user query
+     * @return  full-text query, or null if given query has no searchable words
+     */
+    @Nullable
+    static String buildMatchQuery(@Nullable String query) {
+        if (TextUtils.isEmpty(query)) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        int start = -1;
+        for (int i = 0; i <= query.length(); i++) {
+            boolean wordChar = i < query.length() && Character.isLetterOrDigit(query.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                if (sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(query, start, i).append('*');
+                start = -1;
+            }
+        }
+        return sb.length() > 0 ? sb.toString() : null;
+    }
+
+    /**
+     * Finds stories with favorite title, item content or readability content matching given
+     * full-text query. Matched comments are counted towards their stories if those are
+     * stored. Stories are ranked by sum of their matches, weighted by match frequency and
+     * matched column.
+     * @param db            readable database
+     * @param matchQuery    full-text query
+     * @param limit         max number of stories, or null if unlimited
+     * @return  cursor of story IDs, by descending rank
+     * @see #buildMatchQuery(String)
+     */
+    private Cursor querySearch(SQLiteDatabase db, String matchQuery, @Nullable String limit) {
+        Cursor cursor = db.rawQuery(DbHelper.SQL_SELECT_SEARCH, new String[]{matchQuery});
+        Map<String, Float> ranks = new HashMap<>();
+        Map<String, String> roots = new HashMap<>();
+        while (cursor.moveToNext()) {
+            long docId = cursor.getLong(0);
+            String itemId = String.valueOf(docId / SearchEntry.SOURCE_COUNT);
+            if (docId % SearchEntry.SOURCE_COUNT == SearchEntry.SOURCE_ITEM) {
+                itemId = findRoot(db, itemId, roots);
+                if (itemId == null) {
+                    continue; // story not stored
+                }
+            }
+            Float rank = ranks.get(itemId);
+            ranks.put(itemId, (rank == null ? 0 : rank) + rank(cursor.getBlob(1)));
+        }
+        cursor.close();
+        List<Map.Entry<String, Float>> entries = new ArrayList<>(ranks.entrySet());
+        Collections.sort(entries, (lhs, rhs) -> Float.compare(rhs.getValue(), lhs.getValue()));
+        int count = TextUtils.isEmpty(limit) ?
+                entries.size() : Math.min(entries.size(), Integer.parseInt(limit));
+        MatrixCursor result = new MatrixCursor(new String[]{
+                SearchEntry.COLUMN_NAME_ITEM_ID, SearchEntry.COLUMN_NAME_RANK}, count);
+        for (int i = 0; i < count; i++) {
+            result.addRow(new Object[]{entries.get(i).getKey(), entries.get(i).getValue()});
+        }
+        return result;
+    }
+
+    /**
+     * Walks up stored items from given item to its story
+     * @param db        readable database
+     * @param itemId    item ID
+     * @param roots     previously found stories by item ID, shared between siblings
+     * @return  story ID, or null if some of its ancestors are not stored
+     */
+    @Nullable
+    private String findRoot(SQLiteDatabase db, String itemId, Map<String, String> roots) {
+        List<String> path = new ArrayList<>();
+        String root = null;
+        while (path.size() < SEARCH_MAX_DEPTH) {
+            if (roots.containsKey(itemId)) {
+                root = roots.get(itemId);
+                break;
+            }
+            path.add(itemId);
+            Cursor cursor = db.query(ItemEntry.TABLE_NAME, new String[]{ItemEntry.COLUMN_NAME_PARENT},
+                    ItemEntry.COLUMN_NAME_ITEM_ID + " = ?", new String[]{itemId},
+                    null, null, null);
+            long parent = cursor.moveToFirst() ? cursor.getLong(0) : -1;
+            cursor.close();
+            if (parent == 0) { // only stories have no parent
+                root = itemId;
+                break;
+            } else if (parent < 0) {
+                break;
+            }
+            itemId = String.valueOf(parent);
+        }
+        for (String id : path) {
+            roots.put(id, root);
+        }
+        return root;
+    }
+
+    /**
+     * Ranks a full-text match from its matchinfo blob: for each phrase and column, 3 integers
+     * of hits in this row, hits in all rows and rows with hits, after phrase and column counts
+     * @param matchInfo matchinfo blob
+     * @return  match rank
+     */
+    private static float rank(byte[] matchInfo) {
+        ByteBuffer buffer = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder());
+        int phrases = buffer.getInt(0), columns = buffer.getInt(4);
+        float rank = 0;
+        for (int phrase = 0; phrase < phrases; phrase++) {
+            for (int column = 0; column < columns; column++) {
+                int offset = (2 + 3 * (phrase * columns + column)) * 4;
+                int hits = buffer.getInt(offset), allHits = buffer.getInt(offset + 4);
+                if (hits > 0) {
+                    rank += (column == 0 ? SEARCH_WEIGHT_TITLE : SEARCH_WEIGHT_CONTENT) *
+                            hits / allHits;
+                }
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Indexes readability content being stored, which triggers cannot do as it is compressed
+     * @param db        writable database
+     * @param values    stored readability values
+     */
+    private void indexReadability(SQLiteDatabase db, ContentValues values) {
+        byte[] compressed = values.getAsByteArray(ReadabilityEntry.COLUMN_NAME_CONTENT);
+        String itemId = values.getAsString(ReadabilityEntry.COLUMN_NAME_ITEM_ID);
+        if (compressed == null || TextUtils.isEmpty(itemId)) {
+            return; // not a content update
+        }
+        DbHelper.indexReadability(db, itemId, CompressionUtils.decompress(compressed));
+    }
+
+    /**
+     * Evicts least recently accessed readability content until total content size is within
+     * {@link #READABILITY_MAX_BYTES}. Content of favorites is pinned and does not count towards
+     * budget, and content just inserted is never evicted.
+     * @param db            writable database
+     * @param insertedId    row ID of content just inserted
+     */
+    private void truncateReadability(SQLiteDatabase db, long insertedId) {
+        Cursor cursor = db.rawQuery(DbHelper.SQL_SELECT_READABILITY_SIZE, null);
+        long totalBytes = cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        cursor.close();
+        if (totalBytes <= READABILITY_MAX_BYTES) {
+            return;
+        }
+        cursor = db.query(ReadabilityEntry.TABLE_NAME,
+                new String[]{ReadabilityEntry._ID, ReadabilityEntry.COLUMN_NAME_SIZE},
+                DbHelper.SQL_WHERE_READABILITY_UNPINNED + " AND " + ReadabilityEntry._ID + " != ?",
+                new String[]{String.valueOf(insertedId)}, null, null,
+                ReadabilityEntry.COLUMN_NAME_LAST_ACCESS + DbHelper.ORDER_ASC);
+        ArrayList<String> evictedIds = new ArrayList<>();
+        while (totalBytes > READABILITY_MAX_BYTES && cursor.moveToNext()) {
+            evictedIds.add(cursor.getString(0));
+            totalBytes -= cursor.getLong(1);
+        }
+        cursor.close();
+        if (!evictedIds.isEmpty()) {
+            db.delete(ReadabilityEntry.TABLE_NAME, ReadabilityEntry._ID + " IN (" +
+                    TextUtils.join(DbHelper.COMMA_SEP, evictedIds) + ")", null);
+        }
     }
 
     interface FavoriteEntry extends BaseColumns {
@@ -164,6 +616,10 @@ public class MaterialisticProvider extends ContentProvider {
         String COLUMN_NAME_TIME = "time";
     }
 
+    interface ExportEntry {
+        String PATH = "export";
+    }
+
     interface ViewedEntry extends BaseColumns {
         String TABLE_NAME = "viewed";
         String MIME_TYPE = "vnd.android.cursor.dir/vnd." + PROVIDER_AUTHORITY + "." + TABLE_NAME;
@@ -175,16 +631,81 @@ public class MaterialisticProvider extends ContentProvider {
         String MIME_TYPE = "vnd.android.cursor.dir/vnd." + PROVIDER_AUTHORITY + "." + TABLE_NAME;
         String COLUMN_NAME_ITEM_ID = "itemid";
         String COLUMN_NAME_CONTENT = "content";
+        String COLUMN_NAME_SIZE = "size";
+        String COLUMN_NAME_LAST_ACCESS = "last_access";
+    }
+
+    interface SyncQueueEntry extends BaseColumns {
+        String TABLE_NAME = "sync_queue";
+        String MIME_TYPE = "vnd.android.cursor.dir/vnd." + PROVIDER_AUTHORITY + "." + TABLE_NAME;
+        String COLUMN_NAME_ITEM_ID = "itemid";
+        String COLUMN_NAME_TYPE = "type";
+        String COLUMN_NAME_URL = "url";
+        String COLUMN_NAME_PRIORITY = "priority";
+        String COLUMN_NAME_ATTEMPTS = "attempts";
+        String COLUMN_NAME_NEXT_ATTEMPT = "next_attempt";
+    }
+
+    interface SyncFingerprintEntry extends BaseColumns {
+        String TABLE_NAME = "sync_fingerprint";
+        String MIME_TYPE = "vnd.android.cursor.dir/vnd." + PROVIDER_AUTHORITY + "." + TABLE_NAME;
+        String COLUMN_NAME_ITEM_ID = "itemid";
+        String COLUMN_NAME_ROOT_ID = "rootid";
+        String COLUMN_NAME_DESCENDANTS = "descendants";
+        String COLUMN_NAME_KIDS_HASH = "kids_hash";
+        String COLUMN_NAME_LAST_SYNC = "last_sync";
+    }
+
+    interface ItemEntry extends BaseColumns {
+        String TABLE_NAME = "item";
+        String MIME_TYPE = "vnd.android.cursor.dir/vnd." + PROVIDER_AUTHORITY + "." + TABLE_NAME;
+        String COLUMN_NAME_ITEM_ID = "itemid";
+        String COLUMN_NAME_TYPE = "type";
+        String COLUMN_NAME_BY = "author";
+        String COLUMN_NAME_TIME = "time";
+        String COLUMN_NAME_TEXT = "text";
+        String COLUMN_NAME_URL = "url";
+        String COLUMN_NAME_TITLE = "title";
+        String COLUMN_NAME_SCORE = "score";
+        String COLUMN_NAME_DESCENDANTS = "descendants";
+        String COLUMN_NAME_PARENT = "parent";
+        String COLUMN_NAME_KIDS = "kids";
+        String COLUMN_NAME_DELETED = "deleted";
+        String COLUMN_NAME_DEAD = "dead";
+        String COLUMN_NAME_LAST_MODIFIED = "last_modified";
+    }
+
+    /**
+     * Full-text index of favorite titles, stored item titles and text and readability content,
+     * with one row per source of each item, whose docid is item ID * {@link #SOURCE_COUNT} +
+     * source. Favorites and items are kept in sync by triggers.
+     */
+    interface SearchEntry {
+        String TABLE_NAME = "search";
+        String MIME_TYPE = "vnd.android.cursor.dir/vnd." + PROVIDER_AUTHORITY + "." + TABLE_NAME;
+        String COLUMN_NAME_DOC_ID = "docid";
+        String COLUMN_NAME_TITLE = "title";
+        String COLUMN_NAME_CONTENT = "content";
+        // query result columns
+        String COLUMN_NAME_ITEM_ID = "itemid";
+        String COLUMN_NAME_RANK = "rank";
+        int SOURCE_FAVORITE = 0;
+        int SOURCE_ITEM = 1;
+        int SOURCE_READABILITY = 2;
+        int SOURCE_COUNT = 4; // leaves room for another source
     }
 
     private static class DbHelper extends SQLiteOpenHelper {
         private static final String DB_NAME = "Materialistic.db";
-        private static final int DB_VERSION = 3;
+        private static final int DB_VERSION = 10;
         private static final String TEXT_TYPE = " TEXT";
         private static final String INTEGER_TYPE = " INTEGER";
+        private static final String BLOB_TYPE = " BLOB";
         private static final String PRIMARY_KEY = " PRIMARY KEY";
+        private static final String DEFAULT_ZERO = " DEFAULT 0";
         private static final String COMMA_SEP = ",";
         private static final String ORDER_DESC = " DESC";
+        private static final String ORDER_ASC = " ASC";
         private static final String SQL_CREATE_FAVORITE_TABLE =
                 "CREATE TABLE " + FavoriteEntry.TABLE_NAME + " (" +
                         FavoriteEntry._ID +                 INTEGER_TYPE +  PRIMARY_KEY + COMMA_SEP +
@@ -193,6 +714,12 @@ public class MaterialisticProvider extends ContentProvider {
                         FavoriteEntry.COLUMN_NAME_TITLE +   TEXT_TYPE + COMMA_SEP +
                         FavoriteEntry.COLUMN_NAME_TIME +    TEXT_TYPE +
                 " )";
+        // time is stored as text, but as epoch millis of same length it sorts numerically
+        private static final String SQL_CREATE_FAVORITE_TIME_INDEX =
+                "CREATE INDEX " + FavoriteEntry.TABLE_NAME + "_time ON " +
+                        FavoriteEntry.TABLE_NAME + " (" +
+                        FavoriteEntry.COLUMN_NAME_TIME +
+                        " )";
         private static final String SQL_CREATE_VIEWED_TABLE =
                 "CREATE TABLE " + ViewedEntry.TABLE_NAME + " (" +
                         ViewedEntry._ID +                 INTEGER_TYPE +  PRIMARY_KEY + COMMA_SEP +
@@ -202,18 +729,192 @@ public class MaterialisticProvider extends ContentProvider {
                 "CREATE TABLE " + ReadabilityEntry.TABLE_NAME + " (" +
                         ReadabilityEntry._ID +                 INTEGER_TYPE +  PRIMARY_KEY + COMMA_SEP +
                         ReadabilityEntry.COLUMN_NAME_ITEM_ID + TEXT_TYPE + COMMA_SEP +
-                        ReadabilityEntry.COLUMN_NAME_CONTENT + TEXT_TYPE +
+                        ReadabilityEntry.COLUMN_NAME_CONTENT + BLOB_TYPE + COMMA_SEP +
+                        ReadabilityEntry.COLUMN_NAME_SIZE + INTEGER_TYPE + DEFAULT_ZERO + COMMA_SEP +
+                        ReadabilityEntry.COLUMN_NAME_LAST_ACCESS + INTEGER_TYPE + DEFAULT_ZERO +
+                        " )";
+        private static final String SQL_CREATE_SYNC_QUEUE_TABLE =
+                "CREATE TABLE " + SyncQueueEntry.TABLE_NAME + " (" +
+                        SyncQueueEntry._ID +                      INTEGER_TYPE + PRIMARY_KEY + COMMA_SEP +
+                        SyncQueueEntry.COLUMN_NAME_ITEM_ID +      TEXT_TYPE + COMMA_SEP +
+                        SyncQueueEntry.COLUMN_NAME_TYPE +         TEXT_TYPE + COMMA_SEP +
+                        SyncQueueEntry.COLUMN_NAME_URL +          TEXT_TYPE + COMMA_SEP +
+                        SyncQueueEntry.COLUMN_NAME_PRIORITY +     INTEGER_TYPE + DEFAULT_ZERO + COMMA_SEP +
+                        SyncQueueEntry.COLUMN_NAME_ATTEMPTS +     INTEGER_TYPE + DEFAULT_ZERO + COMMA_SEP +
+                        SyncQueueEntry.COLUMN_NAME_NEXT_ATTEMPT + INTEGER_TYPE + DEFAULT_ZERO +
+                        " )";
+        private static final String SQL_CREATE_SYNC_QUEUE_INDEX =
+                "CREATE UNIQUE INDEX " + SyncQueueEntry.TABLE_NAME + "_job ON " +
+                        SyncQueueEntry.TABLE_NAME + " (" +
+                        SyncQueueEntry.COLUMN_NAME_ITEM_ID + COMMA_SEP +
+                        SyncQueueEntry.COLUMN_NAME_TYPE +
+                        " )";
+        private static final String SQL_CREATE_SYNC_FINGERPRINT_TABLE =
+                "CREATE TABLE " + SyncFingerprintEntry.TABLE_NAME + " (" +
+                        SyncFingerprintEntry._ID +                  INTEGER_TYPE + PRIMARY_KEY + COMMA_SEP +
+                        SyncFingerprintEntry.COLUMN_NAME_ITEM_ID +  TEXT_TYPE + COMMA_SEP +
+                        SyncFingerprintEntry.COLUMN_NAME_ROOT_ID +  TEXT_TYPE + COMMA_SEP +
+                        SyncFingerprintEntry.COLUMN_NAME_DESCENDANTS + INTEGER_TYPE + COMMA_SEP +
+                        SyncFingerprintEntry.COLUMN_NAME_KIDS_HASH + INTEGER_TYPE + COMMA_SEP +
+                        SyncFingerprintEntry.COLUMN_NAME_LAST_SYNC + INTEGER_TYPE +
+                        " )";
+        private static final String SQL_CREATE_SYNC_FINGERPRINT_INDEX =
+                "CREATE UNIQUE INDEX " + SyncFingerprintEntry.TABLE_NAME + "_item ON " +
+                        SyncFingerprintEntry.TABLE_NAME + " (" +
+                        SyncFingerprintEntry.COLUMN_NAME_ITEM_ID +
+                        " )";
+        private static final String SQL_CREATE_SYNC_FINGERPRINT_ROOT_INDEX =
+                "CREATE INDEX " + SyncFingerprintEntry.TABLE_NAME + "_root ON " +
+                        SyncFingerprintEntry.TABLE_NAME + " (" +
+                        SyncFingerprintEntry.COLUMN_NAME_ROOT_ID +
+                        " )";
+        private static final String SQL_CREATE_ITEM_TABLE =
+                "CREATE TABLE " + ItemEntry.TABLE_NAME + " (" +
+                        ItemEntry._ID +                     INTEGER_TYPE + PRIMARY_KEY + COMMA_SEP +
+                        ItemEntry.COLUMN_NAME_ITEM_ID +     TEXT_TYPE + COMMA_SEP +
+                        ItemEntry.COLUMN_NAME_TYPE +        TEXT_TYPE + COMMA_SEP +
+                        ItemEntry.COLUMN_NAME_BY +          TEXT_TYPE + COMMA_SEP +
+                        ItemEntry.COLUMN_NAME_TIME +        INTEGER_TYPE + COMMA_SEP +
+                        ItemEntry.COLUMN_NAME_TEXT +        TEXT_TYPE + COMMA_SEP +
+                        ItemEntry.COLUMN_NAME_URL +         TEXT_TYPE + COMMA_SEP +
+                        ItemEntry.COLUMN_NAME_TITLE +       TEXT_TYPE + COMMA_SEP +
+                        ItemEntry.COLUMN_NAME_SCORE +       INTEGER_TYPE + COMMA_SEP +
+                        ItemEntry.COLUMN_NAME_DESCENDANTS + INTEGER_TYPE + COMMA_SEP +
+                        ItemEntry.COLUMN_NAME_PARENT +      INTEGER_TYPE + COMMA_SEP +
+                        ItemEntry.COLUMN_NAME_KIDS +        BLOB_TYPE + COMMA_SEP +
+                        ItemEntry.COLUMN_NAME_DELETED +     INTEGER_TYPE + DEFAULT_ZERO + COMMA_SEP +
+                        ItemEntry.COLUMN_NAME_DEAD +        INTEGER_TYPE + DEFAULT_ZERO + COMMA_SEP +
+                        ItemEntry.COLUMN_NAME_LAST_MODIFIED + INTEGER_TYPE +
+                        " )";
+        private static final String SQL_CREATE_ITEM_INDEX =
+                "CREATE UNIQUE INDEX " + ItemEntry.TABLE_NAME + "_item ON " +
+                        ItemEntry.TABLE_NAME + " (" +
+                        ItemEntry.COLUMN_NAME_ITEM_ID +
                         " )";
+        private static final String SQL_CREATE_ITEM_LAST_MODIFIED_INDEX =
+                "CREATE INDEX " + ItemEntry.TABLE_NAME + "_last_modified ON " +
+                        ItemEntry.TABLE_NAME + " (" +
+                        ItemEntry.COLUMN_NAME_LAST_MODIFIED +
+                        " )";
+        private static final String SQL_CREATE_SEARCH_TABLE =
+                "CREATE VIRTUAL TABLE " + SearchEntry.TABLE_NAME + " USING fts3(" +
+                        SearchEntry.COLUMN_NAME_TITLE + COMMA_SEP +
+                        SearchEntry.COLUMN_NAME_CONTENT +
+                        " )";
+        private static final String SQL_CREATE_FAVORITE_INSERT_TRIGGER =
+                "CREATE TRIGGER " + FavoriteEntry.TABLE_NAME + "_search_insert AFTER INSERT ON " +
+                        FavoriteEntry.TABLE_NAME + " BEGIN " +
+                        sqlIndex("new", FavoriteEntry.COLUMN_NAME_ITEM_ID,
+                                SearchEntry.SOURCE_FAVORITE,
+                                FavoriteEntry.COLUMN_NAME_TITLE, null) +
+                        " END";
+        private static final String SQL_CREATE_FAVORITE_UPDATE_TRIGGER =
+                "CREATE TRIGGER " + FavoriteEntry.TABLE_NAME + "_search_update AFTER UPDATE OF " +
+                        FavoriteEntry.COLUMN_NAME_ITEM_ID + COMMA_SEP +
+                        FavoriteEntry.COLUMN_NAME_TITLE + " ON " +
+                        FavoriteEntry.TABLE_NAME + " BEGIN " +
+                        sqlUnindex("old", FavoriteEntry.COLUMN_NAME_ITEM_ID,
+                                SearchEntry.SOURCE_FAVORITE) +
+                        sqlIndex("new", FavoriteEntry.COLUMN_NAME_ITEM_ID,
+                                SearchEntry.SOURCE_FAVORITE,
+                                FavoriteEntry.COLUMN_NAME_TITLE, null) +
+                        " END";
+        private static final String SQL_CREATE_FAVORITE_DELETE_TRIGGER =
+                "CREATE TRIGGER " + FavoriteEntry.TABLE_NAME + "_search_delete AFTER DELETE ON " +
+                        FavoriteEntry.TABLE_NAME + " BEGIN " +
+                        sqlUnindex("old", FavoriteEntry.COLUMN_NAME_ITEM_ID,
+                                SearchEntry.SOURCE_FAVORITE) +
+                        " END";
+        private static final String SQL_CREATE_ITEM_INSERT_TRIGGER =
+                "CREATE TRIGGER " + ItemEntry.TABLE_NAME + "_search_insert AFTER INSERT ON " +
+                        ItemEntry.TABLE_NAME + " BEGIN " +
+                        sqlIndex("new", ItemEntry.COLUMN_NAME_ITEM_ID,
+                                SearchEntry.SOURCE_ITEM,
+                                ItemEntry.COLUMN_NAME_TITLE, ItemEntry.COLUMN_NAME_TEXT) +
+                        " END";
+        private static final String SQL_CREATE_ITEM_UPDATE_TRIGGER =
+                "CREATE TRIGGER " + ItemEntry.TABLE_NAME + "_search_update AFTER UPDATE OF " +
+                        ItemEntry.COLUMN_NAME_ITEM_ID + COMMA_SEP +
+                        ItemEntry.COLUMN_NAME_TITLE + COMMA_SEP +
+                        ItemEntry.COLUMN_NAME_TEXT + " ON " +
+                        ItemEntry.TABLE_NAME + " BEGIN " +
+                        sqlUnindex("old", ItemEntry.COLUMN_NAME_ITEM_ID,
+                                SearchEntry.SOURCE_ITEM) +
+                        sqlIndex("new", ItemEntry.COLUMN_NAME_ITEM_ID,
+                                SearchEntry.SOURCE_ITEM,
+                                ItemEntry.COLUMN_NAME_TITLE, ItemEntry.COLUMN_NAME_TEXT) +
+                        " END";
+        private static final String SQL_CREATE_ITEM_DELETE_TRIGGER =
+                "CREATE TRIGGER " + ItemEntry.TABLE_NAME + "_search_delete AFTER DELETE ON " +
+                        ItemEntry.TABLE_NAME + " BEGIN " +
+                        sqlUnindex("old", ItemEntry.COLUMN_NAME_ITEM_ID,
+                                SearchEntry.SOURCE_ITEM) +
+                        " END";
+        // readability content is compressed, so it can only be unindexed by trigger
+        private static final String SQL_CREATE_READABILITY_DELETE_TRIGGER =
+                "CREATE TRIGGER " + ReadabilityEntry.TABLE_NAME + "_search_delete AFTER DELETE ON " +
+                        ReadabilityEntry.TABLE_NAME + " BEGIN " +
+                        sqlUnindex("old", ReadabilityEntry.COLUMN_NAME_ITEM_ID,
+                                SearchEntry.SOURCE_READABILITY) +
+                        " END";
+        private static final String SQL_INDEX_FAVORITES =
+                "INSERT INTO " + SearchEntry.TABLE_NAME + " (" +
+                        SearchEntry.COLUMN_NAME_DOC_ID + COMMA_SEP +
+                        SearchEntry.COLUMN_NAME_TITLE +
+                        ") SELECT " + sqlDocId(FavoriteEntry.COLUMN_NAME_ITEM_ID,
+                        SearchEntry.SOURCE_FAVORITE) + COMMA_SEP +
+                        FavoriteEntry.COLUMN_NAME_TITLE + " FROM " + FavoriteEntry.TABLE_NAME +
+                        " GROUP BY " + FavoriteEntry.COLUMN_NAME_ITEM_ID;
+        private static final String SQL_INDEX_ITEMS =
+                "INSERT INTO " + SearchEntry.TABLE_NAME + " (" +
+                        SearchEntry.COLUMN_NAME_DOC_ID + COMMA_SEP +
+                        SearchEntry.COLUMN_NAME_TITLE + COMMA_SEP +
+                        SearchEntry.COLUMN_NAME_CONTENT +
+                        ") SELECT " + sqlDocId(ItemEntry.COLUMN_NAME_ITEM_ID,
+                        SearchEntry.SOURCE_ITEM) + COMMA_SEP +
+                        ItemEntry.COLUMN_NAME_TITLE + COMMA_SEP +
+                        ItemEntry.COLUMN_NAME_TEXT + " FROM " + ItemEntry.TABLE_NAME;
+        private static final String SQL_SELECT_SEARCH =
+                "SELECT " + SearchEntry.COLUMN_NAME_DOC_ID + COMMA_SEP +
+                        "matchinfo(" + SearchEntry.TABLE_NAME + ")" +
+                        " FROM " + SearchEntry.TABLE_NAME +
+                        " WHERE " + SearchEntry.TABLE_NAME + " MATCH ?";
+        private static final String SQL_DROP_SEARCH_TABLE =
+                "DROP TABLE IF EXISTS " + SearchEntry.TABLE_NAME;
         private static final String SQL_DROP_FAVORITE_TABLE =
                 "DROP TABLE IF EXISTS " + FavoriteEntry.TABLE_NAME;
         private static final String SQL_DROP_VIEWED_TABLE =
                 "DROP TABLE IF EXISTS " + ViewedEntry.TABLE_NAME;
         private static final String SQL_DROP_READABILITY_TABLE =
                 "DROP TABLE IF EXISTS " + ReadabilityEntry.TABLE_NAME;
-        private static final String SQL_WHERE_READABILITY_TRUNCATE = ReadabilityEntry._ID + " IN " +
-                "(SELECT " + ReadabilityEntry._ID + " FROM " + ReadabilityEntry.TABLE_NAME +
-                " ORDER BY " + ReadabilityEntry._ID + " DESC" +
-                " LIMIT -1 OFFSET " + READABILITY_MAX_ENTRIES + ")";
+        private static final String SQL_DROP_SYNC_QUEUE_TABLE =
+                "DROP TABLE IF EXISTS " + SyncQueueEntry.TABLE_NAME;
+        private static final String SQL_DROP_SYNC_FINGERPRINT_TABLE =
+                "DROP TABLE IF EXISTS " + SyncFingerprintEntry.TABLE_NAME;
+        private static final String SQL_DROP_ITEM_TABLE =
+                "DROP TABLE IF EXISTS " + ItemEntry.TABLE_NAME;
+        private static final String SQL_RENAME_READABILITY_TABLE =
+                "ALTER TABLE " + ReadabilityEntry.TABLE_NAME + " RENAME TO " +
+                        ReadabilityEntry.TABLE_NAME + "_old";
+        private static final String SQL_DROP_OLD_READABILITY_TABLE =
+                "DROP TABLE IF EXISTS " + ReadabilityEntry.TABLE_NAME + "_old";
+        private static final String SQL_WHERE_READABILITY_UNPINNED =
+                ReadabilityEntry.COLUMN_NAME_ITEM_ID + " NOT IN " +
+                "(SELECT " + FavoriteEntry.COLUMN_NAME_ITEM_ID + " FROM " + FavoriteEntry.TABLE_NAME + ")";
+        private static final String SQL_SELECT_READABILITY_SIZE =
+                "SELECT SUM(" + ReadabilityEntry.COLUMN_NAME_SIZE + ") FROM " +
+                        ReadabilityEntry.TABLE_NAME + " WHERE " + SQL_WHERE_READABILITY_UNPINNED;
+        // favorites and comments synced under them are pinned
+        private static final String SQL_WHERE_ITEM_TRUNCATE = ItemEntry._ID + " IN " +
+                "(SELECT " + ItemEntry._ID + " FROM " + ItemEntry.TABLE_NAME +
+                " WHERE " + ItemEntry.COLUMN_NAME_ITEM_ID + " NOT IN " +
+                "(SELECT " + FavoriteEntry.COLUMN_NAME_ITEM_ID + " FROM " + FavoriteEntry.TABLE_NAME + ")" +
+                " AND " + ItemEntry.COLUMN_NAME_ITEM_ID + " NOT IN " +
+                "(SELECT " + SyncFingerprintEntry.COLUMN_NAME_ITEM_ID + " FROM " + SyncFingerprintEntry.TABLE_NAME +
+                " WHERE " + SyncFingerprintEntry.COLUMN_NAME_ROOT_ID + " IN " +
+                "(SELECT " + FavoriteEntry.COLUMN_NAME_ITEM_ID + " FROM " + FavoriteEntry.TABLE_NAME + "))" +
+                " ORDER BY " + ItemEntry.COLUMN_NAME_LAST_MODIFIED + " DESC" +
+                " LIMIT -1 OFFSET " + ITEM_MAX_ENTRIES + ")";
 
 
         private DbHelper(Context context) {
@@ -223,26 +924,174 @@ public class MaterialisticProvider extends ContentProvider {
         @Override
         public void onCreate(SQLiteDatabase db) {
             db.execSQL(SQL_CREATE_FAVORITE_TABLE);
+            db.execSQL(SQL_CREATE_FAVORITE_TIME_INDEX);
             db.execSQL(SQL_CREATE_VIEWED_TABLE);
             db.execSQL(SQL_CREATE_READABILITY_TABLE);
+            db.execSQL(SQL_CREATE_SYNC_QUEUE_TABLE);
+            db.execSQL(SQL_CREATE_SYNC_QUEUE_INDEX);
+            db.execSQL(SQL_CREATE_SYNC_FINGERPRINT_TABLE);
+            db.execSQL(SQL_CREATE_SYNC_FINGERPRINT_INDEX);
+            db.execSQL(SQL_CREATE_SYNC_FINGERPRINT_ROOT_INDEX);
+            db.execSQL(SQL_CREATE_ITEM_TABLE);
+            db.execSQL(SQL_CREATE_ITEM_INDEX);
+            db.execSQL(SQL_CREATE_ITEM_LAST_MODIFIED_INDEX);
+            createSearch(db);
         }
 
         @Override
         public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
             switch (oldVersion) {
-                case 2:
-                    db.execSQL(SQL_CREATE_READABILITY_TABLE);
-                    break;
                 case 1:
                     db.execSQL(SQL_CREATE_VIEWED_TABLE);
+                    // fall through
+                case 2:
+                    db.execSQL(SQL_CREATE_READABILITY_TABLE);
+                    // fall through
+                case 3:
+                    db.execSQL(SQL_CREATE_SYNC_QUEUE_TABLE);
+                    db.execSQL(SQL_CREATE_SYNC_QUEUE_INDEX);
+                    // fall through
+                case 4:
+                    db.execSQL(SQL_CREATE_SYNC_FINGERPRINT_TABLE);
+                    db.execSQL(SQL_CREATE_SYNC_FINGERPRINT_INDEX);
+                    db.execSQL(SQL_CREATE_SYNC_FINGERPRINT_ROOT_INDEX);
+                    // fall through
+                case 5:
+                    // fall through
+                case 6:
+                    // kids were stored as text, items can be fetched again
+                    db.execSQL(SQL_DROP_ITEM_TABLE);
+                    db.execSQL(SQL_CREATE_ITEM_TABLE);
+                    db.execSQL(SQL_CREATE_ITEM_INDEX);
+                    db.execSQL(SQL_CREATE_ITEM_LAST_MODIFIED_INDEX);
+                    // fall through
+                case 7:
+                    compressReadability(db);
+                    // fall through
+                case 8:
+                    createSearch(db);
+                    db.execSQL(SQL_INDEX_FAVORITES);
+                    db.execSQL(SQL_INDEX_ITEMS);
+                    indexReadability(db);
+                    // fall through
+                case 9:
+                    db.execSQL(SQL_CREATE_FAVORITE_TIME_INDEX);
                     break;
                 default:
                     db.execSQL(SQL_DROP_FAVORITE_TABLE);
                     db.execSQL(SQL_DROP_VIEWED_TABLE);
                     db.execSQL(SQL_DROP_READABILITY_TABLE);
+                    db.execSQL(SQL_DROP_SYNC_QUEUE_TABLE);
+                    db.execSQL(SQL_DROP_SYNC_FINGERPRINT_TABLE);
+                    db.execSQL(SQL_DROP_ITEM_TABLE);
+                    db.execSQL(SQL_DROP_OLD_READABILITY_TABLE);
+                    db.execSQL(SQL_DROP_SEARCH_TABLE);
                     onCreate(db);
                     break;
             }
         }
+
+        private void createSearch(SQLiteDatabase db) {
+            db.execSQL(SQL_CREATE_SEARCH_TABLE);
+            db.execSQL(SQL_CREATE_FAVORITE_INSERT_TRIGGER);
+            db.execSQL(SQL_CREATE_FAVORITE_UPDATE_TRIGGER);
+            db.execSQL(SQL_CREATE_FAVORITE_DELETE_TRIGGER);
+            db.execSQL(SQL_CREATE_ITEM_INSERT_TRIGGER);
+            db.execSQL(SQL_CREATE_ITEM_UPDATE_TRIGGER);
+            db.execSQL(SQL_CREATE_ITEM_DELETE_TRIGGER);
+            db.execSQL(SQL_CREATE_READABILITY_DELETE_TRIGGER);
+        }
+
+        /**
+         * Indexes all stored readability content
+         * @param db    writable database
+         */
+        private void indexReadability(SQLiteDatabase db) {
+            Cursor cursor = db.query(ReadabilityEntry.TABLE_NAME,
+                    new String[]{ReadabilityEntry.COLUMN_NAME_ITEM_ID,
+                            ReadabilityEntry.COLUMN_NAME_CONTENT},
+                    null, null, null, null, null);
+            while (cursor.moveToNext()) {
+                byte[] compressed = cursor.getBlob(1);
+                if (compressed != null) {
+                    indexReadability(db, cursor.getString(0),
+                            CompressionUtils.decompress(compressed));
+                }
+            }
+            cursor.close();
+        }
+
+        /**
+         * Replaces indexed readability content of given item, with markup stripped
+         * @param db        writable database
+         * @param itemId    item ID
+         * @param content   readability content, or null if it cannot be decompressed
+         */
+        private static void indexReadability(SQLiteDatabase db, String itemId,
+                                             @Nullable String content) {
+            long docId = Long.parseLong(itemId) * SearchEntry.SOURCE_COUNT +
+                    SearchEntry.SOURCE_READABILITY;
+            db.delete(SearchEntry.TABLE_NAME, SearchEntry.COLUMN_NAME_DOC_ID + " = " + docId, null);
+            // corrupted content must not fail a write or a migration, it is just not indexed
+            if (content == null || TextUtils.equals(content, ReadabilityStore.EMPTY_CONTENT)) {
+                return;
+            }
+            ContentValues values = new ContentValues();
+            values.put(SearchEntry.COLUMN_NAME_DOC_ID, docId);
+            values.put(SearchEntry.COLUMN_NAME_CONTENT, content.replaceAll("<[^>]*>", " "));
+            db.insert(SearchEntry.TABLE_NAME, null, values);
+        }
+
+        private static String sqlDocId(String itemIdColumn, int source) {
+            return "CAST(" + itemIdColumn + " AS INTEGER) * " + SearchEntry.SOURCE_COUNT +
+                    " + " + source;
+        }
+
+        private static String sqlIndex(String row, String itemIdColumn, int source,
+                                       String titleColumn, @Nullable String contentColumn) {
+            return "INSERT INTO " + SearchEntry.TABLE_NAME + " (" +
+                    SearchEntry.COLUMN_NAME_DOC_ID + COMMA_SEP +
+                    SearchEntry.COLUMN_NAME_TITLE + COMMA_SEP +
+                    SearchEntry.COLUMN_NAME_CONTENT +
+                    ") VALUES (" + sqlDocId(row + "." + itemIdColumn, source) + COMMA_SEP +
+                    row + "." + titleColumn + COMMA_SEP +
+                    (contentColumn == null ? "NULL" : row + "." + contentColumn) +
+                    ");";
+        }
+
+        private static String sqlUnindex(String row, String itemIdColumn, int source) {
+            return "DELETE FROM " + SearchEntry.TABLE_NAME +
+                    " WHERE " + SearchEntry.COLUMN_NAME_DOC_ID + " = " +
+                    sqlDocId(row + "." + itemIdColumn, source) + ";";
+        }
+
+        /**
+         * Migrates readability content stored as text to compressed blobs
+         * @param db    writable database
+         */
+        private void compressReadability(SQLiteDatabase db) {
+            db.execSQL(SQL_RENAME_READABILITY_TABLE);
+            db.execSQL(SQL_CREATE_READABILITY_TABLE);
+            Cursor cursor = db.query(ReadabilityEntry.TABLE_NAME + "_old",
+                    new String[]{ReadabilityEntry.COLUMN_NAME_ITEM_ID,
+                            ReadabilityEntry.COLUMN_NAME_CONTENT},
+                    null, null, null, null, null);
+            long now = System.currentTimeMillis();
+            while (cursor.moveToNext()) {
+                String content = cursor.getString(1);
+                if (content == null) {
+                    continue;
+                }
+                byte[] compressed = CompressionUtils.compress(content);
+                ContentValues values = new ContentValues();
+                values.put(ReadabilityEntry.COLUMN_NAME_ITEM_ID, cursor.getString(0));
+                values.put(ReadabilityEntry.COLUMN_NAME_CONTENT, compressed);
+                values.put(ReadabilityEntry.COLUMN_NAME_SIZE, compressed.length);
+                values.put(ReadabilityEntry.COLUMN_NAME_LAST_ACCESS, now);
+                db.insert(ReadabilityEntry.TABLE_NAME, null, values);
+            }
+            cursor.close();
+            db.execSQL(SQL_DROP_OLD_READABILITY_TABLE);
+        }
     }
 }
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+/**
+ * Data repository for {@link Item} that retrieves stories page by page.
+ * {@link #getStories(String, int, ResponseListener)} retrieves the first page.
+ */
+public interface PagedItemManager extends ItemManager {
+
+    /**
+     * Gets a page of stories, starting after given number of already retrieved stories.
+     * An empty page indicates that all stories have been retrieved.
+     * @param filter    filter of stories to fetch
+     * @param cacheMode cache mode
+     * @param offset    number of stories retrieved so far, which serves as paging cursor
+     * @param listener  callback to be notified on response
+     */
+    void getStories(String filter, @CacheMode int cacheMode, int offset,
+                    ResponseListener<Item[]> listener);
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.annotation.VisibleForTesting;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.Cookie;
+import okhttp3.CookieJar;
+import okhttp3.HttpUrl;
+
+/**
+ * Process wide cookie jar that indexes cookies by domain, so that a cookie is sent to every
+ * path and subdomain it applies to, not only to the URL that set it. Persistent cookies set by
+ * Hacker News, e.g. login session, are saved to {@link SharedPreferences} and survive process
+ * restarts, while session cookies and cookies of other hosts are only kept in memory.
+ * Expired cookies are dropped from storage upon loading.
+ */
+public class PersistentCookieJar implements CookieJar {
+    private static final String SP_NAME = "Cookies";
+    private static final String KEY_SEPARATOR = "\t";
+    private static final String PERSISTENT_HOST = HttpUrl.parse(HackerNewsClient.BASE_WEB_URL)
+            .host();
+    private static PersistentCookieJar sInstance;
+    private final SharedPreferences mPreferences;
+    private final Map<String, List<Cookie>> mCookies = new HashMap<>();
+
+    public static synchronized PersistentCookieJar getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new PersistentCookieJar(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    PersistentCookieJar(Context context) {
+        mPreferences = context.getSharedPreferences(SP_NAME, Context.MODE_PRIVATE);
+        long now = System.currentTimeMillis();
+        SharedPreferences.Editor editor = null;
+        for (Map.Entry<String, ?> entry : mPreferences.getAll().entrySet()) {
+            String domain = entry.getKey().split(KEY_SEPARATOR)[0];
+            HttpUrl url = HttpUrl.parse("https://" + domain + "/");
+            Cookie cookie = url != null ? Cookie.parse(url, String.valueOf(entry.getValue())) : null;
+            if (cookie != null && cookie.expiresAt() > now) {
+                getCookies(domain).add(cookie);
+            } else {
+                if (editor == null) {
+                    editor = mPreferences.edit();
+                }
+                editor.remove(entry.getKey());
+            }
+        }
+        if (editor != null) {
+            editor.apply();
+        }
+    }
+
+    @Override
+    public synchronized void saveFromResponse(HttpUrl url, List<Cookie> cookies) {
+        if (cookies == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        boolean persistable = PERSISTENT_HOST.equals(url.host());
+        SharedPreferences.Editor editor = null;
+        for (Cookie cookie : cookies) {
+            // a new cookie replaces existing one of same identity, an expired one removes it
+            Iterator<Cookie> iterator = getCookies(cookie.domain()).iterator();
+            while (iterator.hasNext()) {
+                if (isSameCookie(iterator.next(), cookie)) {
+                    iterator.remove();
+                }
+            }
+            boolean alive = cookie.expiresAt() > now;
+            if (alive) {
+                getCookies(cookie.domain()).add(cookie);
+            }
+            // only write through when stored cookie changes, most responses repeat it
+            String key = getKey(cookie);
+            String persisted = persistable && alive && cookie.persistent() ?
+                    cookie.toString() : null;
+            if (!TextUtils.equals(mPreferences.getString(key, null), persisted)) {
+                if (editor == null) {
+                    editor = mPreferences.edit();
+                }
+                if (persisted == null) {
+                    editor.remove(key);
+                } else {
+                    editor.putString(key, persisted);
+                }
+            }
+        }
+        if (editor != null) {
+            editor.apply();
+        }
+    }
+
+    @Override
+    public synchronized List<Cookie> loadForRequest(HttpUrl url) {
+        List<Cookie> matchedCookies = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        // cookies may apply to given host or any of its parent domains
+        String domain = url.host();
+        while (domain != null) {
+            List<Cookie> domainCookies = mCookies.get(domain);
+            if (domainCookies != null) {
+                for (Cookie cookie : domainCookies) {
+                    if (cookie.expiresAt() > now && cookie.matches(url)) {
+                        matchedCookies.add(cookie);
+                    }
+                }
+            }
+            int dot = domain.indexOf('.');
+            domain = dot >= 0 ? domain.substring(dot + 1) : null;
+        }
+        return matchedCookies;
+    }
+
+    private List<Cookie> getCookies(String domain) {
+        List<Cookie> cookies = mCookies.get(domain);
+        if (cookies == null) {
+            cookies = new ArrayList<>();
+            mCookies.put(domain, cookies);
+        }
+        return cookies;
+    }
+
+    private static String getKey(Cookie cookie) {
+        return cookie.domain() + KEY_SEPARATOR + cookie.path() + KEY_SEPARATOR + cookie.name() +
+                KEY_SEPARATOR + cookie.hostOnly();
+    }
+
+    private static boolean isSameCookie(Cookie first, Cookie second) {
+        return first.name().equals(second.name()) &&
+                first.domain().equals(second.domain()) &&
+                first.path().equals(second.path()) &&
+                first.hostOnly() == second.hostOnly();
+    }
+}
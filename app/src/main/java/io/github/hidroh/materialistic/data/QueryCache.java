@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * In-memory LRU cache of Algolia search results, keyed by normalized query and sort order.
+ * As Algolia matches the last query word by prefix, results of a query that extends a cached
+ * one are a subset of cached results. If cached results are exhaustive, i.e. contain all
+ * matching hits, refined queries are answered by filtering them locally instead of
+ * hitting network. Local filtering only considers retrieved attributes (title, URL, author),
+ * so it is stricter than Algolia, which also matches story text and tolerates typos.
+ * Subsequent pages extend cached results, so that paging through results of a broad query
+ * makes them exhaustive.
+ */
+class QueryCache {
+    private final int mMaxEntries;
+    private final Map<String, AlgoliaClient.AlgoliaHits> mEntries;
+    private int mHitCount, mMissCount;
+
+    QueryCache(int maxEntries) {
+        mMaxEntries = maxEntries;
+        mEntries = new LinkedHashMap<String, AlgoliaClient.AlgoliaHits>(maxEntries, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, AlgoliaClient.AlgoliaHits> eldest) {
+                return size() > mMaxEntries;
+            }
+        };
+    }
+
+    /**
+     * Gets cached results for given query, either cached for the same query, or filtered
+     * from exhaustive results of a broader query
+     * @param query         search query
+     * @param sortByTime    true if results are sorted by time, false if by popularity
+     * @return  cached results, or null if not available
+     */
+    @Nullable
+    synchronized AlgoliaClient.AlgoliaHits get(@Nullable String query, boolean sortByTime) {
+        String normalized = normalize(query);
+        AlgoliaClient.AlgoliaHits hits = mEntries.get(makeKey(normalized, sortByTime));
+        if (hits == null) {
+            AlgoliaClient.AlgoliaHits broader = getBroader(normalized, sortByTime);
+            if (broader != null && broader.isExhaustive()) {
+                hits = filter(broader, normalized);
+                mEntries.put(makeKey(normalized, sortByTime), hits);
+            }
+        }
+        if (hits == null) {
+            mMissCount++;
+        } else {
+            mHitCount++;
+        }
+        return hits;
+    }
+
+    /**
+     * Gets possibly incomplete results for given query, filtered from cached results of the
+     * closest broader query, to be shown while waiting for complete results
+     * @param query         search query
+     * @param sortByTime    true if results are sorted by time, false if by popularity
+     * @return  partial results, or null if not available
+     */
+    @Nullable
+    synchronized AlgoliaClient.AlgoliaHits getPartial(@Nullable String query, boolean sortByTime) {
+        String normalized = normalize(query);
+        AlgoliaClient.AlgoliaHits broader = getBroader(normalized, sortByTime);
+        return broader != null ? filter(broader, normalized) : null;
+    }
+
+    /**
+     * Caches results for given query
+     * @param query         search query
+     * @param sortByTime    true if results are sorted by time, false if by popularity
+     * @param hits          results to cache
+     */
+    synchronized void put(@Nullable String query, boolean sortByTime,
+                          @NonNull AlgoliaClient.AlgoliaHits hits) {
+        mEntries.put(makeKey(normalize(query), sortByTime), hits);
+    }
+
+    /**
+     * Appends a subsequent page to cached results for given query, if it directly follows them
+     * @param query         search query
+     * @param sortByTime    true if results are sorted by time, false if by popularity
+     * @param offset        number of hits preceding given page
+     * @param page          page of results to append
+     */
+    synchronized void append(@Nullable String query, boolean sortByTime, int offset,
+                             @NonNull AlgoliaClient.AlgoliaHits page) {
+        String key = makeKey(normalize(query), sortByTime);
+        AlgoliaClient.AlgoliaHits cached = mEntries.get(key);
+        if (cached == null || cached.hits == null || cached.hits.length != offset ||
+                page.hits == null) {
+            return;
+        }
+        AlgoliaClient.AlgoliaHits appended = new AlgoliaClient.AlgoliaHits();
+        appended.hits = Arrays.copyOf(cached.hits, offset + page.hits.length);
+        System.arraycopy(page.hits, 0, appended.hits, offset, page.hits.length);
+        appended.nbHits = page.nbHits;
+        mEntries.put(key, appended);
+    }
+
+    /**
+     * Drops cached results for given query, so that it will be searched again
+     * @param query         search query
+     * @param sortByTime    true if results are sorted by time, false if by popularity
+     */
+    synchronized void remove(@Nullable String query, boolean sortByTime) {
+        mEntries.remove(makeKey(normalize(query), sortByTime));
+    }
+
+    synchronized int hitCount() {
+        return mHitCount;
+    }
+
+    synchronized int missCount() {
+        return mMissCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        int accesses = mHitCount + mMissCount;
+        int hitPercent = accesses != 0 ? (100 * mHitCount / accesses) : 0;
+        return String.format(Locale.US, "QueryCache[maxEntries=%d,hits=%d,misses=%d,hitRate=%d%%]",
+                mMaxEntries, mHitCount, mMissCount, hitPercent);
+    }
+
+    private AlgoliaClient.AlgoliaHits getBroader(String normalized, boolean sortByTime) {
+        // longest cached query that given query extends, most specific results come first
+        for (int end = normalized.length() - 1; end > 0; end--) {
+            AlgoliaClient.AlgoliaHits hits = mEntries.get(makeKey(
+                    normalized.substring(0, end).trim(), sortByTime));
+            if (hits != null) {
+                return hits;
+            }
+        }
+        return null;
+    }
+
+    private static AlgoliaClient.AlgoliaHits filter(AlgoliaClient.AlgoliaHits hits,
+                                                    String normalized) {
+        String[] tokens = normalized.split(" ");
+        ArrayList<AlgoliaClient.Hit> filtered = new ArrayList<>();
+        if (hits.hits != null) {
+            for (AlgoliaClient.Hit hit : hits.hits) {
+                if (matches(hit, tokens)) {
+                    filtered.add(hit);
+                }
+            }
+        }
+        AlgoliaClient.AlgoliaHits result = new AlgoliaClient.AlgoliaHits();
+        result.hits = filtered.toArray(new AlgoliaClient.Hit[filtered.size()]);
+        result.nbHits = hits.isExhaustive() ? filtered.size() : Integer.MAX_VALUE;
+        return result;
+    }
+
+    private static boolean matches(AlgoliaClient.Hit hit, String[] tokens) {
+        StringBuilder text = new StringBuilder();
+        for (String attribute : new String[]{hit.title, hit.url, hit.author}) {
+            if (attribute != null) {
+                text.append(attribute.toLowerCase(Locale.US)).append(' ');
+            }
+        }
+        for (String token : tokens) {
+            if (text.indexOf(token) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String normalize(String query) {
+        return query == null ? "" : query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.US);
+    }
+
+    private static String makeKey(String normalized, boolean sortByTime) {
+        return (sortByTime ? "t:" : "p:") + normalized;
+    }
+}
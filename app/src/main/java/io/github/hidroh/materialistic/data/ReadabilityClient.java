@@ -16,10 +16,7 @@
 
 package io.github.hidroh.materialistic.data;
 
-import android.content.ContentResolver;
-import android.content.ContentValues;
 import android.content.Context;
-import android.database.Cursor;
 import android.os.AsyncTask;
 import android.support.annotation.WorkerThread;
 import android.text.TextUtils;
@@ -47,9 +44,8 @@ public interface ReadabilityClient {
     String parse(String itemId, String url);
 
     class Impl implements ReadabilityClient {
-        private static final CharSequence EMPTY_CONTENT = "<div></div>";
         private final ReadabilityService mReadabilityService;
-        private final ContentResolver mContentResolver;
+        private final ReadabilityStore mReadabilityStore;
 
         interface ReadabilityService {
             String READABILITY_API_URL = "https://" + HOST + "/api/content/v1/";
@@ -67,7 +63,7 @@ public interface ReadabilityClient {
         public Impl(Context context, RestServiceFactory factory) {
             mReadabilityService = factory.create(ReadabilityService.READABILITY_API_URL,
                     ReadabilityService.class);
-            mContentResolver = context.getContentResolver();
+            mReadabilityStore = new ReadabilityStore(context.getContentResolver());
         }
 
         @Override
@@ -89,22 +85,11 @@ public interface ReadabilityClient {
         @WorkerThread
         @Override
         public String parse(String itemId, String url) {
-            Cursor cursor = mContentResolver.query(MaterialisticProvider.URI_READABILITY,
-                    new String[]{MaterialisticProvider.ReadabilityEntry.COLUMN_NAME_CONTENT},
-                    MaterialisticProvider.ReadabilityEntry.COLUMN_NAME_ITEM_ID + " = ?",
-                    new String[]{itemId}, null);
-            String content;
-            if (cursor == null || !cursor.moveToFirst()) {
+            String content = mReadabilityStore.get(itemId);
+            if (content == null) {
                 content = readabilityParse(itemId, url);
-            } else {
-                content = cursor.getString(cursor.getColumnIndexOrThrow(
-                        MaterialisticProvider.ReadabilityEntry.COLUMN_NAME_CONTENT));
-                content = TextUtils.equals(EMPTY_CONTENT, content) ? null : content;
             }
-            if (cursor != null) {
-                cursor.close();
-            }
-            return content;
+            return TextUtils.equals(ReadabilityStore.EMPTY_CONTENT, content) ? null : content;
         }
 
         @WorkerThread
@@ -112,23 +97,13 @@ public interface ReadabilityClient {
             try {
                 Readable readable;
                 if ((readable = mReadabilityService.parse(url).execute().body()) != null) {
-                    cache(itemId, readable.content);
-                    if (!TextUtils.equals(EMPTY_CONTENT, readable.content)) {
-                        return readable.content;
-                    }
+                    mReadabilityStore.put(itemId, readable.content);
+                    return readable.content;
                 }
             } catch (IOException e) {
                 // no op
             }
             return null;
         }
-
-        @WorkerThread
-        private void cache(String itemId, String content) {
-            final ContentValues contentValues = new ContentValues();
-            contentValues.put(MaterialisticProvider.ReadabilityEntry.COLUMN_NAME_ITEM_ID, itemId);
-            contentValues.put(MaterialisticProvider.ReadabilityEntry.COLUMN_NAME_CONTENT, content);
-            mContentResolver.insert(MaterialisticProvider.URI_READABILITY, contentValues);
-        }
     }
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+/**
+ * Persistent store of readability content, backed by {@link MaterialisticProvider#URI_READABILITY}.
+ * Content is stored compressed, see {@link CompressionUtils}, and its last access time is
+ * tracked so that provider can evict least recently read content beyond its size budget.
+ */
+class ReadabilityStore {
+    /**
+     * Marker content stored for articles without readable content, so they are not parsed again
+     */
+    static final String EMPTY_CONTENT = "<div></div>";
+
+    private final ContentResolver mContentResolver;
+
+    ReadabilityStore(ContentResolver contentResolver) {
+        mContentResolver = contentResolver;
+    }
+
+    /**
+     * Gets stored content for given item, marking it as recently accessed
+     * @param itemId    item ID
+     * @return  stored content, {@link #EMPTY_CONTENT} if item has no readable content,
+     * or null if not available
+     */
+    @WorkerThread
+    @Nullable
+    String get(@NonNull String itemId) {
+        Cursor cursor = mContentResolver.query(MaterialisticProvider.URI_READABILITY,
+                new String[]{MaterialisticProvider.ReadabilityEntry.COLUMN_NAME_CONTENT},
+                MaterialisticProvider.ReadabilityEntry.COLUMN_NAME_ITEM_ID + " = ?",
+                new String[]{itemId}, null);
+        if (cursor == null) {
+            return null;
+        }
+        String content = null;
+        if (cursor.moveToFirst()) {
+            byte[] compressed = cursor.getBlob(cursor.getColumnIndexOrThrow(
+                    MaterialisticProvider.ReadabilityEntry.COLUMN_NAME_CONTENT));
+            content = compressed == null ? EMPTY_CONTENT : CompressionUtils.decompress(compressed);
+        }
+        cursor.close();
+        if (content != null) {
+            touch(itemId);
+        }
+        return content;
+    }
+
+    /**
+     * Stores content for given item, replacing any previous version
+     * @param itemId    item ID
+     * @param content   content to store, or null if item has no readable content
+     */
+    @WorkerThread
+    void put(@NonNull String itemId, @Nullable String content) {
+        byte[] compressed = CompressionUtils.compress(content != null ? content : EMPTY_CONTENT);
+        final ContentValues contentValues = new ContentValues();
+        contentValues.put(MaterialisticProvider.ReadabilityEntry.COLUMN_NAME_ITEM_ID, itemId);
+        contentValues.put(MaterialisticProvider.ReadabilityEntry.COLUMN_NAME_CONTENT, compressed);
+        contentValues.put(MaterialisticProvider.ReadabilityEntry.COLUMN_NAME_SIZE,
+                compressed.length);
+        contentValues.put(MaterialisticProvider.ReadabilityEntry.COLUMN_NAME_LAST_ACCESS,
+                System.currentTimeMillis());
+        mContentResolver.insert(MaterialisticProvider.URI_READABILITY, contentValues);
+    }
+
+    private void touch(String itemId) {
+        final ContentValues contentValues = new ContentValues();
+        contentValues.put(MaterialisticProvider.ReadabilityEntry.COLUMN_NAME_LAST_ACCESS,
+                System.currentTimeMillis());
+        mContentResolver.update(MaterialisticProvider.URI_READABILITY, contentValues,
+                MaterialisticProvider.ReadabilityEntry.COLUMN_NAME_ITEM_ID + " = ?",
+                new String[]{itemId});
+    }
+}
@@ -31,6 +31,8 @@ import retrofit2.Retrofit;
 public interface RestServiceFactory {
     String CACHE_CONTROL_FORCE_CACHE = "Cache-Control: only-if-cached, max-stale=" + Integer.MAX_VALUE;
     String CACHE_CONTROL_FORCE_NETWORK = "Cache-Control: no-cache";
+    String CACHE_CONTROL_REVALIDATE = "Cache-Control: max-age=0";
+    String HEADER_ALLOW_NOT_MODIFIED = "X-Allow-Not-Modified";
     String CACHE_CONTROL_MAX_AGE_30M = "Cache-Control: max-age=" + (30 * 60);
     String CACHE_CONTROL_MAX_AGE_24H = "Cache-Control: max-age=" + (24 * 60 * 60);
 
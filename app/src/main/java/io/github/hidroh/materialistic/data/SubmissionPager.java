@@ -0,0 +1,368 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import android.support.annotation.IntDef;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+import android.util.SparseArray;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * Windowed view of a user's submissions, backed by their raw submitted IDs. Items are only
+ * created and hydrated for pages of {@link #PAGE_SIZE} IDs around requested positions, within
+ * {@link #PREFETCH_DISTANCE}, and at most {@link #MAX_PAGES} pages are held at any time.
+ * A page is hydrated as a batch: its items are requested together and published once all of
+ * them have arrived. Items that fail to hydrate are requested again the next time their page
+ * is loaded. An optional filter is applied to items as their pages arrive, so filtered
+ * positions grow as more pages are scanned, in submission order. Scanning does not proceed
+ * past an item that has failed to hydrate until it has been retried successfully.
+ */
+public class SubmissionPager {
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({
+            FILTER_ALL,
+            FILTER_STORIES,
+            FILTER_COMMENTS
+    })
+    public @interface Filter {}
+    public static final int FILTER_ALL = 0;
+    public static final int FILTER_STORIES = 1;
+    public static final int FILTER_COMMENTS = 2;
+    static final int PAGE_SIZE = 20;
+    static final int MAX_PAGES = 6;
+    static final int PREFETCH_DISTANCE = PAGE_SIZE / 2;
+
+    /**
+     * Callback interface for paging events
+     */
+    public interface Callbacks {
+        /**
+         * Fired when filter has changed, with possibly different count
+         */
+        void onReset();
+
+        /**
+         * Fired when a page of items has been hydrated
+         * @param start  position of first hydrated item
+         * @param count  number of positions covered by hydrated items
+         */
+        void onItemsLoaded(int start, int count);
+
+        /**
+         * Fired when newly scanned items have matched current filter
+         * @param start  position of first matched item
+         * @param count  number of matched items
+         */
+        void onItemsInserted(int start, int count);
+    }
+
+    private final ItemManager mItemManager;
+    private final long[] mIds;
+    private final SparseArray<HackerNewsItem[]> mPages = new SparseArray<>();
+    private final SparseArray<PageRequest> mPendingPages = new SparseArray<>();
+    private Callbacks mCallbacks;
+    private @Filter int mFilter = FILTER_ALL;
+    private int[] mMatches = new int[0];
+    private int mMatchCount;
+    private int mScanned;
+    private int mLastPosition;
+
+    public SubmissionPager(@NonNull ItemManager itemManager, @NonNull long[] ids,
+                           @NonNull Callbacks callbacks) {
+        mItemManager = itemManager;
+        mIds = ids;
+        mCallbacks = callbacks;
+    }
+
+    /**
+     * Filters submissions by type. Already hydrated items are filtered immediately, and
+     * remaining ones as they are hydrated. {@link Callbacks#onReset()} is fired upon change.
+     * @param filter    submission filter
+     */
+    public void setFilter(@Filter int filter) {
+        if (filter == mFilter) {
+            return;
+        }
+        mFilter = filter;
+        mMatchCount = 0;
+        mScanned = 0;
+        mLastPosition = 0;
+        if (mFilter != FILTER_ALL) {
+            scan();
+        }
+        if (mCallbacks != null) {
+            mCallbacks.onReset();
+        }
+        scanIfNeeded(true);
+    }
+
+    @Filter
+    public int getFilter() {
+        return mFilter;
+    }
+
+    /**
+     * Gets number of submissions matching current filter so far
+     * @return  number of submissions
+     */
+    public int getCount() {
+        return mFilter == FILTER_ALL ? mIds.length : mMatchCount;
+    }
+
+    /**
+     * Gets ID of submission at given position, which is known without hydration
+     * @param position  submission position
+     * @return  submission ID
+     */
+    public long getItemId(int position) {
+        return mIds[getIndex(position)];
+    }
+
+    /**
+     * Gets submission at given position if it has been hydrated
+     * @param position  submission position
+     * @return  submission, or null if not hydrated
+     * @see #load(int)
+     */
+    @Nullable
+    public Item get(int position) {
+        int index = getIndex(position);
+        if (index < 0) {
+            return null;
+        }
+        HackerNewsItem[] page = mPages.get(index / PAGE_SIZE);
+        return page == null ? null : page[index % PAGE_SIZE];
+    }
+
+    /**
+     * Hydrates page of submission at given position if not yet fully hydrated, as well as
+     * pages within prefetch distance, and scans further submissions if filtered positions are
+     * running out
+     * @param position  submission position
+     */
+    public void load(int position) {
+        int count = getCount();
+        if (position < 0 || position >= count) {
+            return;
+        }
+        mLastPosition = position;
+        loadPageAt(position);
+        loadPageAt(Math.min(position + PREFETCH_DISTANCE, count - 1));
+        loadPageAt(Math.max(position - PREFETCH_DISTANCE, 0));
+        scanIfNeeded(true);
+    }
+
+    /**
+     * Releases hydrated items and drops pending results
+     */
+    public void close() {
+        mCallbacks = null;
+        mPages.clear();
+        mPendingPages.clear();
+    }
+
+    private int getIndex(int position) {
+        if (position < 0 || position >= getCount()) {
+            return -1;
+        }
+        return mFilter == FILTER_ALL ? position : mMatches[position];
+    }
+
+    private void loadPageAt(int position) {
+        loadPage(getIndex(position) / PAGE_SIZE, true);
+    }
+
+    private void scanIfNeeded(boolean retry) {
+        if (mFilter != FILTER_ALL && mScanned < mIds.length &&
+                mMatchCount - mLastPosition <= PREFETCH_DISTANCE) {
+            loadPage(mScanned / PAGE_SIZE, retry);
+        }
+    }
+
+    /**
+     * Requests items of given page that have not been hydrated
+     * @param page  page to load
+     * @param retry true to request again items that have failed to hydrate, false to only
+     *              load page if it has not been requested, e.g. right after a page has
+     *              arrived, so that a persistent failure is not retried in a loop
+     */
+    private void loadPage(int page, boolean retry) {
+        if (mPendingPages.get(page) != null) {
+            return;
+        }
+        HackerNewsItem[] items = mPages.get(page);
+        if (items != null && (!retry || !hasMissing(items))) {
+            return;
+        }
+        int start = page * PAGE_SIZE;
+        PageRequest request = items == null ?
+                new PageRequest(Math.min(PAGE_SIZE, mIds.length - start)) :
+                new PageRequest(items);
+        mPendingPages.put(page, request);
+        for (int i = 0; i < request.items.length; i++) {
+            if (request.items[i] == null) {
+                mItemManager.getItem(String.valueOf(mIds[start + i]), ItemManager.MODE_DEFAULT,
+                        new ItemResponseListener(this, page, request, i));
+            }
+        }
+    }
+
+    private void onItemLoaded(int page, PageRequest request, int offset, @Nullable Item item) {
+        if (mPendingPages.get(page) != request) {
+            return;
+        }
+        if (item != null) {
+            HackerNewsItem submission = new HackerNewsItem(mIds[page * PAGE_SIZE + offset]);
+            submission.populate(item);
+            request.items[offset] = submission;
+        }
+        if (--request.remaining > 0) {
+            return;
+        }
+        mPendingPages.remove(page);
+        mPages.put(page, request.items);
+        if (mFilter != FILTER_ALL && page == mScanned / PAGE_SIZE) {
+            int start = mMatchCount;
+            scan();
+            if (mMatchCount > start && mCallbacks != null) {
+                mCallbacks.onItemsInserted(start, mMatchCount - start);
+            }
+        } else if (mCallbacks != null) {
+            int start = getPosition(page * PAGE_SIZE);
+            int end = getPosition(page * PAGE_SIZE + request.items.length);
+            if (end > start) {
+                mCallbacks.onItemsLoaded(start, end - start);
+            }
+        }
+        evict();
+        scanIfNeeded(false);
+    }
+
+    /**
+     * Applies current filter to consecutive hydrated items from scan position onward
+     */
+    private void scan() {
+        HackerNewsItem[] page;
+        while (mScanned < mIds.length && (page = mPages.get(mScanned / PAGE_SIZE)) != null) {
+            HackerNewsItem item = page[mScanned % PAGE_SIZE];
+            if (item == null) {
+                break; // type unknown until retried
+            }
+            if (matches(item)) {
+                if (mMatchCount == mMatches.length) {
+                    mMatches = Arrays.copyOf(mMatches, Math.max(PAGE_SIZE, mMatchCount * 2));
+                }
+                mMatches[mMatchCount++] = mScanned;
+            }
+            mScanned++;
+        }
+    }
+
+    private boolean matches(@NonNull Item item) {
+        boolean isComment = TextUtils.equals(item.getType(), Item.COMMENT_TYPE);
+        return mFilter == FILTER_COMMENTS ? isComment : !isComment;
+    }
+
+    /**
+     * Gets first position whose submission index is at or after given index
+     */
+    private int getPosition(int index) {
+        if (mFilter == FILTER_ALL) {
+            return index;
+        }
+        int position = Arrays.binarySearch(mMatches, 0, mMatchCount, index);
+        return position >= 0 ? position : -(position + 1);
+    }
+
+    private void evict() {
+        int current = Math.max(getIndex(mLastPosition), 0) / PAGE_SIZE;
+        while (mPages.size() > MAX_PAGES) {
+            int farthest = 0;
+            for (int i = 1; i < mPages.size(); i++) {
+                if (Math.abs(mPages.keyAt(i) - current) >
+                        Math.abs(mPages.keyAt(farthest) - current)) {
+                    farthest = i;
+                }
+            }
+            mPages.removeAt(farthest);
+        }
+    }
+
+    private static boolean hasMissing(HackerNewsItem[] items) {
+        for (HackerNewsItem item : items) {
+            if (item == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class PageRequest {
+        private final HackerNewsItem[] items;
+        private int remaining;
+
+        PageRequest(int size) {
+            items = new HackerNewsItem[size];
+            remaining = size;
+        }
+
+        /**
+         * Creates request for missing items of a hydrated page, which keeps showing its
+         * hydrated items until this request has completed
+         */
+        PageRequest(HackerNewsItem[] hydrated) {
+            items = Arrays.copyOf(hydrated, hydrated.length);
+            for (HackerNewsItem item : items) {
+                if (item == null) {
+                    remaining++;
+                }
+            }
+        }
+    }
+
+    private static class ItemResponseListener implements ResponseListener<Item> {
+        private final WeakReference<SubmissionPager> mPager;
+        private final int mPage;
+        private final PageRequest mRequest;
+        private final int mOffset;
+
+        ItemResponseListener(SubmissionPager pager, int page, PageRequest request, int offset) {
+            mPager = new WeakReference<>(pager);
+            mPage = page;
+            mRequest = request;
+            mOffset = offset;
+        }
+
+        @Override
+        public void onResponse(@Nullable Item response) {
+            if (mPager.get() != null) {
+                mPager.get().onItemLoaded(mPage, mRequest, mOffset, response);
+            }
+        }
+
+        @Override
+        public void onError(String errorMessage) {
+            onResponse(null);
+        }
+    }
+}
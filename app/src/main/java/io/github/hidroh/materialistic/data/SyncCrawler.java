@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Work queue driven crawler that walks item trees breadth first, so that top level comments
+ * are visited before their replies. Crawling is bounded by depth, number of items per root
+ * and number of concurrent network requests, and can be cancelled at any time.
+ * Items that have been crawled before can be queued for refresh instead: refresh tasks bypass
+ * cache and are only dispatched, one at a time, once all other tasks have finished and
+ * {@link Callbacks#shouldRefresh(Task)} still holds.
+ */
+class SyncCrawler {
+
+    private final Callbacks mCallbacks;
+    private final int mMaxDepth;
+    private final int mMaxItems;
+    private final int mMaxConcurrentRequests;
+    private final Queue<Task> mQueue = new ArrayDeque<>();
+    private final Queue<Task> mRefreshQueue = new ArrayDeque<>();
+    private final Map<String, Integer> mVisitedCounts = new HashMap<>();
+    private final Set<Call<HackerNewsItem>> mInFlightCalls = new HashSet<>();
+    private final Queue<Runnable> mDeferredWork = new ConcurrentLinkedQueue<>();
+    private boolean mCancelled;
+
+    /**
+     * Constructs a new crawler
+     * @param callbacks                 callbacks to fetch and process items
+     * @param maxDepth                  maximum depth to descend from root, root being 0
+     * @param maxItems                  maximum number of items to visit per root
+     * @param maxConcurrentRequests     maximum number of concurrent network requests to
+     *                                  items host
+     */
+    SyncCrawler(@NonNull Callbacks callbacks, int maxDepth, int maxItems,
+                int maxConcurrentRequests) {
+        mCallbacks = callbacks;
+        mMaxDepth = maxDepth;
+        mMaxItems = maxItems;
+        mMaxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    /**
+     * Queues given item as a crawling root and starts crawling if possible
+     * @param itemId        root item ID
+     * @param progressId    progress ID to report root item against, or null
+     * @param refresh       true to fetch root item from network, bypassing cache
+     */
+    @WorkerThread
+    void crawl(@NonNull String itemId, @Nullable String progressId, boolean refresh) {
+        synchronized (this) {
+            mCancelled = false;
+            mVisitedCounts.put(itemId, 1);
+            mQueue.add(new Task(itemId, progressId, itemId, 0, refresh));
+            drain();
+        }
+        runDeferredWork();
+    }
+
+    /**
+     * Defers given work until crawler lock has been released, so that work that may block,
+     * e.g. submitting to a saturated stage, does not hold up {@link #cancel()}.
+     * Deferred work is run by the next crawling thread that releases crawler lock.
+     * @param work  work to run
+     */
+    void defer(@NonNull Runnable work) {
+        mDeferredWork.add(work);
+    }
+
+    /**
+     * Cancels crawling, dropping all pending tasks and in-flight requests.
+     * {@link Callbacks#onCancelled(String)} will be fired for every unfinished root.
+     */
+    synchronized void cancel() {
+        if (isIdle()) {
+            return;
+        }
+        mCancelled = true;
+        Set<String> rootIds = new LinkedHashSet<>();
+        for (Task task : mQueue) {
+            rootIds.add(task.rootId);
+        }
+        for (Task task : mRefreshQueue) {
+            rootIds.add(task.rootId);
+        }
+        mQueue.clear();
+        mRefreshQueue.clear();
+        for (Call<HackerNewsItem> call : mInFlightCalls) {
+            call.cancel();
+        }
+        rootIds.addAll(mVisitedCounts.keySet());
+        mVisitedCounts.clear();
+        for (String rootId : rootIds) {
+            mCallbacks.onCancelled(rootId);
+        }
+        mCallbacks.onIdle();
+    }
+
+    synchronized boolean isIdle() {
+        return mQueue.isEmpty() && mRefreshQueue.isEmpty() && mInFlightCalls.isEmpty();
+    }
+
+    private void drain() {
+        while (!mCancelled) {
+            if (mQueue.isEmpty()) {
+                if (!mInFlightCalls.isEmpty() || mRefreshQueue.isEmpty()) {
+                    break;
+                }
+                Task task = mRefreshQueue.poll();
+                if (mCallbacks.shouldRefresh(task)) {
+                    request(task);
+                } else {
+                    mCallbacks.onSkipped(task);
+                }
+                continue;
+            }
+            Task task = mQueue.peek();
+            if (!task.refresh && !task.cacheMissed) {
+                HackerNewsItem cachedItem = mCallbacks.getFromCache(task.itemId);
+                if (cachedItem != null) {
+                    mQueue.poll();
+                    visit(task, cachedItem);
+                    continue;
+                }
+                task.cacheMissed = true;
+            }
+            if (mInFlightCalls.size() >= mMaxConcurrentRequests) {
+                // wait for one of in-flight requests to finish, preserving queue order
+                break;
+            }
+            mQueue.poll();
+            request(task);
+        }
+        if (isIdle()) {
+            mVisitedCounts.clear();
+            mCallbacks.onIdle();
+        }
+    }
+
+    private void request(final Task task) {
+        final Call<HackerNewsItem> call = mCallbacks.getFromNetwork(task);
+        mInFlightCalls.add(call);
+        call.enqueue(new Callback<HackerNewsItem>() {
+            @Override
+            public void onResponse(Call<HackerNewsItem> call, Response<HackerNewsItem> response) {
+                onRequestComplete(call, task, response.body());
+            }
+
+            @Override
+            public void onFailure(Call<HackerNewsItem> call, Throwable t) {
+                onRequestComplete(call, task, null);
+            }
+        });
+    }
+
+    private void onRequestComplete(Call<HackerNewsItem> call, Task task,
+                                   @Nullable HackerNewsItem item) {
+        synchronized (this) {
+            mInFlightCalls.remove(call);
+            visit(task, item);
+            drain();
+        }
+        runDeferredWork();
+    }
+
+    private void runDeferredWork() {
+        Runnable work;
+        while ((work = mDeferredWork.poll()) != null) {
+            work.run();
+        }
+    }
+
+    private void visit(Task task, @Nullable HackerNewsItem item) {
+        if (!mCallbacks.onItem(task, item) || mCancelled) {
+            return;
+        }
+        if (item == null || item.getKids() == null) {
+            return;
+        }
+        boolean maxDepthReached = task.depth >= mMaxDepth;
+        for (long kidId : item.getKids()) {
+            Task kidTask = new Task(String.valueOf(kidId), item.getId(), task.rootId,
+                    task.depth + 1, false);
+            Integer count = mVisitedCounts.get(task.rootId);
+            int visited = count != null ? count : 0;
+            if (maxDepthReached || visited >= mMaxItems) {
+                mCallbacks.onSkipped(kidTask);
+                mCallbacks.onTruncated(task.rootId);
+            } else if (mCallbacks.isRefresh(kidTask)) {
+                mVisitedCounts.put(task.rootId, visited + 1);
+                mRefreshQueue.add(new Task(kidTask.itemId, kidTask.progressId, kidTask.rootId,
+                        kidTask.depth, true));
+            } else {
+                mVisitedCounts.put(task.rootId, visited + 1);
+                mQueue.add(kidTask);
+            }
+        }
+    }
+
+    /**
+     * Callback interface for crawler, all callbacks are fired while holding crawler lock,
+     * on either crawling or network callback thread. Blocking work should be passed to
+     * {@link #defer(Runnable)} instead.
+     */
+    interface Callbacks {
+        /**
+         * Gets item with given ID from cache, blocking
+         * @param itemId    item ID
+         * @return  cached item or null
+         */
+        @WorkerThread
+        @Nullable
+        HackerNewsItem getFromCache(@NonNull String itemId);
+
+        /**
+         * Checks if given task has been crawled before, and should be queued for refresh
+         * rather than crawled cache first
+         * @param task  task to check
+         * @return  true to queue for refresh, false otherwise
+         */
+        boolean isRefresh(@NonNull Task task);
+
+        /**
+         * Checks if given refresh task should still be refreshed, when it is due
+         * @param task  refresh task
+         * @return  true to fetch from network, false to skip
+         */
+        boolean shouldRefresh(@NonNull Task task);
+
+        /**
+         * Creates a network call for given task, upon a cache miss or refresh
+         * @param task  task to be fetched
+         * @return  network call to be enqueued
+         */
+        @NonNull
+        Call<HackerNewsItem> getFromNetwork(@NonNull Task task);
+
+        /**
+         * Fired when an item has been fetched
+         * @param task  task of fetched item
+         * @param item  fetched item, or null if failed
+         * @return  true to crawl item kids, false otherwise
+         */
+        boolean onItem(@NonNull Task task, @Nullable HackerNewsItem item);
+
+        /**
+         * Fired when an item is not crawled as depth or item count limit has been reached
+         * @param task  skipped task
+         */
+        void onSkipped(@NonNull Task task);
+
+        /**
+         * Fired when crawling of a root is cut short as depth or item count limit has been
+         * reached, so that some of its items are not visited. May be fired more than once.
+         * @param rootId    root item ID
+         */
+        void onTruncated(@NonNull String rootId);
+
+        /**
+         * Fired when crawling of a root is cancelled before completion
+         * @param rootId    root item ID
+         */
+        void onCancelled(@NonNull String rootId);
+
+        /**
+         * Fired when crawler has no more pending task, or has been cancelled
+         */
+        void onIdle();
+    }
+
+    static class Task {
+        final String itemId;
+        final String progressId;
+        final String rootId;
+        final int depth;
+        final boolean refresh;
+        private boolean cacheMissed;
+
+        Task(String itemId, String progressId, String rootId, int depth, boolean refresh) {
+            this.itemId = itemId;
+            this.progressId = progressId;
+            this.rootId = rootId;
+            this.depth = depth;
+            this.refresh = refresh;
+        }
+
+        /**
+         * Checks if this task has been, or is to be, fetched from network rather than cache
+         * @return  true if fetched from network, false otherwise
+         */
+        boolean isFromNetwork() {
+            return refresh || cacheMissed;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.os.RemoteException;
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persistent per item sync fingerprints, backed by
+ * {@link MaterialisticProvider#URI_SYNC_FINGERPRINT}. Fingerprints are grouped by the root
+ * item they were synced under, so that a whole tree can be loaded with a single query.
+ * Writes are buffered and committed in batches within a single transaction.
+ */
+class SyncFingerprints {
+    static final int BATCH_SIZE = 50;
+    private static final String[] PROJECTION = {
+            MaterialisticProvider.SyncFingerprintEntry.COLUMN_NAME_ITEM_ID,
+            MaterialisticProvider.SyncFingerprintEntry.COLUMN_NAME_DESCENDANTS,
+            MaterialisticProvider.SyncFingerprintEntry.COLUMN_NAME_KIDS_HASH,
+            MaterialisticProvider.SyncFingerprintEntry.COLUMN_NAME_LAST_SYNC
+    };
+
+    private final ContentResolver mContentResolver;
+    private final ArrayList<ContentProviderOperation> mPendingOperations = new ArrayList<>();
+
+    SyncFingerprints(ContentResolver contentResolver) {
+        mContentResolver = contentResolver;
+    }
+
+    /**
+     * Loads fingerprints of all items previously synced under given root, including root itself
+     * @param rootId    root item ID
+     * @return  map of item ID and fingerprint, empty if root has never been synced
+     */
+    @WorkerThread
+    @NonNull
+    Map<String, Fingerprint> load(@NonNull String rootId) {
+        Map<String, Fingerprint> fingerprints = new HashMap<>();
+        Cursor cursor = mContentResolver.query(MaterialisticProvider.URI_SYNC_FINGERPRINT,
+                PROJECTION,
+                MaterialisticProvider.SyncFingerprintEntry.COLUMN_NAME_ROOT_ID + " = ?",
+                new String[]{rootId}, null);
+        if (cursor == null) {
+            return fingerprints;
+        }
+        while (cursor.moveToNext()) {
+            fingerprints.put(cursor.getString(0),
+                    new Fingerprint(cursor.getInt(1), cursor.getInt(2), cursor.getLong(3)));
+        }
+        cursor.close();
+        return fingerprints;
+    }
+
+    /**
+     * Records fingerprint of given item as of now.
+     * Changes are only committed when a batch is full or upon {@link #flush()}.
+     * @param rootId    root item ID that given item is synced under
+     * @param itemId    synced item ID
+     * @param item      synced item
+     */
+    synchronized void put(@NonNull String rootId, @NonNull String itemId,
+                          @NonNull HackerNewsItem item) {
+        Fingerprint fingerprint = new Fingerprint(item, System.currentTimeMillis());
+        mPendingOperations.add(ContentProviderOperation
+                .newInsert(MaterialisticProvider.URI_SYNC_FINGERPRINT)
+                .withValue(MaterialisticProvider.SyncFingerprintEntry.COLUMN_NAME_ITEM_ID,
+                        itemId)
+                .withValue(MaterialisticProvider.SyncFingerprintEntry.COLUMN_NAME_ROOT_ID,
+                        rootId)
+                .withValue(MaterialisticProvider.SyncFingerprintEntry.COLUMN_NAME_DESCENDANTS,
+                        fingerprint.descendants)
+                .withValue(MaterialisticProvider.SyncFingerprintEntry.COLUMN_NAME_KIDS_HASH,
+                        fingerprint.kidsHash)
+                .withValue(MaterialisticProvider.SyncFingerprintEntry.COLUMN_NAME_LAST_SYNC,
+                        fingerprint.lastSync)
+                .build());
+        if (mPendingOperations.size() >= BATCH_SIZE) {
+            flush();
+        }
+    }
+
+    /**
+     * Removes fingerprints of all items synced under given root, including root itself, so that
+     * it will be synced in full next time.
+     * Changes are only committed when a batch is full or upon {@link #flush()}.
+     * @param rootId    root item ID
+     */
+    synchronized void remove(@NonNull String rootId) {
+        mPendingOperations.add(ContentProviderOperation
+                .newDelete(MaterialisticProvider.URI_SYNC_FINGERPRINT)
+                .withSelection(MaterialisticProvider.SyncFingerprintEntry.COLUMN_NAME_ROOT_ID +
+                        " = ?", new String[]{rootId})
+                .build());
+        if (mPendingOperations.size() >= BATCH_SIZE) {
+            flush();
+        }
+    }
+
+    /**
+     * Commits all pending changes in a single transaction
+     */
+    @WorkerThread
+    synchronized void flush() {
+        if (mPendingOperations.isEmpty()) {
+            return;
+        }
+        try {
+            mContentResolver.applyBatch(MaterialisticProvider.PROVIDER_AUTHORITY,
+                    mPendingOperations);
+        } catch (RemoteException | OperationApplicationException e) {
+            // no op
+        }
+        mPendingOperations.clear();
+    }
+
+    static class Fingerprint {
+        final int descendants;
+        final int kidsHash;
+        final long lastSync;
+
+        Fingerprint(int descendants, int kidsHash, long lastSync) {
+            this.descendants = descendants;
+            this.kidsHash = kidsHash;
+            this.lastSync = lastSync;
+        }
+
+        Fingerprint(@NonNull HackerNewsItem item, long lastSync) {
+            this(item.getDescendants(), Arrays.hashCode(item.getKids()), lastSync);
+        }
+
+        /**
+         * Checks if given item has changed since this fingerprint was taken
+         * @param item  item to check
+         * @return  true if descendant count or kids have changed, false otherwise
+         */
+        boolean hasChanged(@NonNull HackerNewsItem item) {
+            return descendants != item.getDescendants() ||
+                    kidsHash != Arrays.hashCode(item.getKids());
+        }
+    }
+}
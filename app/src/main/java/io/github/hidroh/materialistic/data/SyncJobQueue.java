@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.os.RemoteException;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.StringDef;
+import android.support.annotation.WorkerThread;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persistent queue of pending sync jobs, backed by {@link MaterialisticProvider#URI_SYNC_QUEUE}.
+ * Writes are buffered and committed in batches within a single transaction.
+ * Jobs are leased rather than removed when polled: a leased job is retried with exponential
+ * backoff unless {@link #complete(String, String)} is called for it.
+ */
+class SyncJobQueue {
+
+    @Retention(RetentionPolicy.SOURCE)
+    @StringDef({
+            TYPE_ITEM,
+            TYPE_READABILITY,
+            TYPE_ARTICLE
+    })
+    @interface JobType {}
+    static final String TYPE_ITEM = "item";
+    static final String TYPE_READABILITY = "readability";
+    static final String TYPE_ARTICLE = "article";
+    static final int PRIORITY_LOW = 0;
+    static final int PRIORITY_DEFAULT = 1;
+    static final int PRIORITY_HIGH = 2;
+    static final int BATCH_SIZE = 20;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long BACKOFF_MILLIS = 60 * 1000; // doubled after every attempt
+    private static final String[] PROJECTION = {
+            MaterialisticProvider.SyncQueueEntry.COLUMN_NAME_ITEM_ID,
+            MaterialisticProvider.SyncQueueEntry.COLUMN_NAME_TYPE,
+            MaterialisticProvider.SyncQueueEntry.COLUMN_NAME_URL,
+            MaterialisticProvider.SyncQueueEntry.COLUMN_NAME_PRIORITY,
+            MaterialisticProvider.SyncQueueEntry.COLUMN_NAME_ATTEMPTS
+    };
+    private static final String SELECTION_JOB =
+            MaterialisticProvider.SyncQueueEntry.COLUMN_NAME_ITEM_ID + " = ? AND " +
+            MaterialisticProvider.SyncQueueEntry.COLUMN_NAME_TYPE + " = ?";
+    private static final String SELECTION_DUE =
+            MaterialisticProvider.SyncQueueEntry.COLUMN_NAME_NEXT_ATTEMPT + " <= ?";
+    private static final String SELECTION_EXHAUSTED =
+            MaterialisticProvider.SyncQueueEntry.COLUMN_NAME_ATTEMPTS + " >= ?";
+    private static final String ORDER_DUE =
+            MaterialisticProvider.SyncQueueEntry.COLUMN_NAME_PRIORITY + " DESC, " +
+            MaterialisticProvider.SyncQueueEntry.COLUMN_NAME_NEXT_ATTEMPT + " ASC";
+
+    private final ContentResolver mContentResolver;
+    private final ArrayList<ContentProviderOperation> mPendingOperations = new ArrayList<>();
+
+    SyncJobQueue(ContentResolver contentResolver) {
+        mContentResolver = contentResolver;
+    }
+
+    /**
+     * Queues given job to be due immediately, retaining its attempt count if already queued.
+     * Changes are only committed when a batch is full or upon {@link #flush()}.
+     * @param itemId    item ID
+     * @param type      job type
+     * @param url       URL to sync for {@link #TYPE_READABILITY} or {@link #TYPE_ARTICLE}
+     * @param priority  job priority, jobs of higher priority are polled first
+     */
+    synchronized void add(@NonNull String itemId, @JobType String type, @Nullable String url,
+                          int priority) {
+        mPendingOperations.add(ContentProviderOperation
+                .newInsert(MaterialisticProvider.URI_SYNC_QUEUE)
+                .withValue(MaterialisticProvider.SyncQueueEntry.COLUMN_NAME_ITEM_ID, itemId)
+                .withValue(MaterialisticProvider.SyncQueueEntry.COLUMN_NAME_TYPE, type)
+                .withValue(MaterialisticProvider.SyncQueueEntry.COLUMN_NAME_URL, url)
+                .withValue(MaterialisticProvider.SyncQueueEntry.COLUMN_NAME_PRIORITY, priority)
+                .withValue(MaterialisticProvider.SyncQueueEntry.COLUMN_NAME_NEXT_ATTEMPT, 0)
+                .build());
+        flushIfFull();
+    }
+
+    /**
+     * Marks given job as completed, removing it from queue.
+     * Changes are only committed when a batch is full or upon {@link #flush()}.
+     * @param itemId    item ID
+     * @param type      job type
+     */
+    synchronized void complete(@NonNull String itemId, @JobType String type) {
+        mPendingOperations.add(ContentProviderOperation
+                .newDelete(MaterialisticProvider.URI_SYNC_QUEUE)
+                .withSelection(SELECTION_JOB, new String[]{itemId, type})
+                .build());
+        flushIfFull();
+    }
+
+    /**
+     * Leases a batch of due jobs, ordered by priority. Leased jobs are not due again until
+     * their backoff expires. Jobs that have exhausted their attempts are dropped.
+     * @param limit max number of jobs to lease
+     * @return  list of leased jobs, empty if none is due
+     */
+    @WorkerThread
+    @NonNull
+    synchronized List<Job> lease(int limit) {
+        long now = System.currentTimeMillis();
+        mPendingOperations.add(ContentProviderOperation
+                .newDelete(MaterialisticProvider.URI_SYNC_QUEUE)
+                .withSelection(SELECTION_EXHAUSTED, new String[]{String.valueOf(MAX_ATTEMPTS)})
+                .build());
+        flush();
+        List<Job> jobs = new ArrayList<>();
+        Cursor cursor = mContentResolver.query(MaterialisticProvider.URI_SYNC_QUEUE.buildUpon()
+                        .appendQueryParameter(MaterialisticProvider.QUERY_PARAMETER_LIMIT,
+                                String.valueOf(limit))
+                        .build(),
+                PROJECTION, SELECTION_DUE, new String[]{String.valueOf(now)}, ORDER_DUE);
+        if (cursor == null) {
+            return jobs;
+        }
+        while (cursor.moveToNext()) {
+            //noinspection WrongConstant
+            Job job = new Job(cursor.getString(0), cursor.getString(1), cursor.getString(2),
+                    cursor.getInt(3));
+            int attempts = cursor.getInt(4);
+            mPendingOperations.add(ContentProviderOperation
+                    .newUpdate(MaterialisticProvider.URI_SYNC_QUEUE)
+                    .withSelection(SELECTION_JOB, new String[]{job.itemId, job.type})
+                    .withValue(MaterialisticProvider.SyncQueueEntry.COLUMN_NAME_ATTEMPTS,
+                            attempts + 1)
+                    .withValue(MaterialisticProvider.SyncQueueEntry.COLUMN_NAME_NEXT_ATTEMPT,
+                            now + (BACKOFF_MILLIS << attempts))
+                    .build());
+            jobs.add(job);
+        }
+        cursor.close();
+        flush();
+        return jobs;
+    }
+
+    /**
+     * Commits all pending changes in a single transaction
+     */
+    @WorkerThread
+    synchronized void flush() {
+        if (mPendingOperations.isEmpty()) {
+            return;
+        }
+        try {
+            mContentResolver.applyBatch(MaterialisticProvider.PROVIDER_AUTHORITY,
+                    mPendingOperations);
+        } catch (RemoteException | OperationApplicationException e) {
+            // no op
+        }
+        mPendingOperations.clear();
+    }
+
+    private void flushIfFull() {
+        if (mPendingOperations.size() >= BATCH_SIZE) {
+            flush();
+        }
+    }
+
+    static class Job {
+        final String itemId;
+        final @JobType String type;
+        final String url;
+        final int priority;
+
+        Job(String itemId, @JobType String type, String url, int priority) {
+            this.itemId = itemId;
+            this.type = type;
+            this.url = url;
+            this.priority = priority;
+        }
+    }
+}
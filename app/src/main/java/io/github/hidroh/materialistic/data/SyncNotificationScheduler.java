@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.app.NotificationCompat;
+import android.text.TextUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.github.hidroh.materialistic.BuildConfig;
+import io.github.hidroh.materialistic.ItemActivity;
+import io.github.hidroh.materialistic.R;
+
+/**
+ * Posts sync progress notifications, coalescing updates per progress ID so that at most one
+ * update is posted per {@link #MIN_INTERVAL_MILLIS}, with the latest state. Completion is
+ * always posted immediately. Concurrent syncs are grouped under a single summary notification.
+ */
+class SyncNotificationScheduler {
+    static final long MIN_INTERVAL_MILLIS = 500;
+    static final int SUMMARY_NOTIFICATION_ID = -1;
+    private static final String NOTIFICATION_GROUP_KEY = "group";
+    private static final String HOST_ITEM = "item";
+
+    private final Context mContext;
+    private final NotificationManager mNotificationManager;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, Progress> mProgresses = new LinkedHashMap<>();
+
+    SyncNotificationScheduler(Context context) {
+        mContext = context;
+        mNotificationManager = (NotificationManager) context
+                .getSystemService(Context.NOTIFICATION_SERVICE);
+    }
+
+    /**
+     * Schedules a progress update for given sync, to be posted immediately if no update has
+     * been posted recently, or coalesced with subsequent updates otherwise
+     * @param progressId    sync progress ID, which is also root item ID
+     * @param title         root item title, or null if not yet known
+     * @param max           max progress
+     * @param progress      current progress
+     */
+    synchronized void update(@NonNull String progressId, @Nullable String title,
+                             int max, int progress) {
+        Progress entry = mProgresses.get(progressId);
+        if (entry == null) {
+            entry = new Progress(progressId);
+            mProgresses.put(progressId, entry);
+        }
+        entry.title = title;
+        entry.max = max;
+        entry.progress = progress;
+        if (entry.scheduled) {
+            return; // latest state will be picked up by scheduled update
+        }
+        long delay = entry.lastPosted + MIN_INTERVAL_MILLIS - SystemClock.elapsedRealtime();
+        if (delay <= 0) {
+            post(entry);
+        } else {
+            entry.scheduled = true;
+            mHandler.postDelayed(entry, delay);
+        }
+    }
+
+    /**
+     * Removes progress notification for given sync, dropping any pending update
+     * @param progressId    sync progress ID
+     */
+    synchronized void cancel(@NonNull String progressId) {
+        Progress entry = mProgresses.remove(progressId);
+        if (entry == null) {
+            return;
+        }
+        mHandler.removeCallbacks(entry);
+        mNotificationManager.cancel(Integer.valueOf(progressId));
+        postSummary();
+    }
+
+    private synchronized void postScheduled(Progress entry) {
+        entry.scheduled = false;
+        if (mProgresses.get(entry.progressId) == entry) {
+            post(entry);
+        }
+    }
+
+    private void post(Progress entry) {
+        entry.lastPosted = SystemClock.elapsedRealtime();
+        mNotificationManager.notify(Integer.valueOf(entry.progressId), createBuilder()
+                .setContentTitle(mContext.getString(R.string.download_in_progress))
+                .setContentText(entry.title)
+                .setContentIntent(getItemActivity(entry.progressId))
+                .setProgress(entry.max, entry.progress, false)
+                .setSortKey(entry.progressId)
+                .build());
+        postSummary();
+    }
+
+    private void postSummary() {
+        // a summary replaces its group members on older platforms, only worth it for 2 or more
+        if (mProgresses.size() < 2) {
+            mNotificationManager.cancel(SUMMARY_NOTIFICATION_ID);
+            return;
+        }
+        int max = 0, progress = 0;
+        NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle();
+        for (Progress entry : mProgresses.values()) {
+            max += entry.max;
+            progress += entry.progress;
+            if (!TextUtils.isEmpty(entry.title)) {
+                style.addLine(entry.title);
+            }
+        }
+        String summary = mContext.getResources().getQuantityString(
+                R.plurals.downloads_in_progress, mProgresses.size(), mProgresses.size());
+        mNotificationManager.notify(SUMMARY_NOTIFICATION_ID, createBuilder()
+                .setContentTitle(summary)
+                .setStyle(style.setSummaryText(summary))
+                .setProgress(max, progress, false)
+                .setGroupSummary(true)
+                .build());
+    }
+
+    private NotificationCompat.Builder createBuilder() {
+        return new NotificationCompat.Builder(mContext)
+                .setLargeIcon(BitmapFactory.decodeResource(mContext.getResources(),
+                        R.mipmap.ic_launcher))
+                .setSmallIcon(R.drawable.ic_notification)
+                .setGroup(NOTIFICATION_GROUP_KEY)
+                .setCategory(NotificationCompat.CATEGORY_PROGRESS)
+                .setOnlyAlertOnce(true)
+                .setAutoCancel(true);
+    }
+
+    private PendingIntent getItemActivity(String itemId) {
+        return PendingIntent.getActivity(mContext, 0,
+                new Intent(Intent.ACTION_VIEW)
+                        .setData(new Uri.Builder()
+                                .scheme(BuildConfig.APPLICATION_ID)
+                                .authority(HOST_ITEM)
+                                .path(itemId)
+                                .build())
+                        .putExtra(ItemActivity.EXTRA_CACHE_MODE, ItemManager.MODE_CACHE)
+                        .setFlags(Intent.FLAG_ACTIVITY_NEW_TASK),
+                PendingIntent.FLAG_ONE_SHOT);
+    }
+
+    private class Progress implements Runnable {
+        private final String progressId;
+        private String title;
+        private int max, progress;
+        private long lastPosted = -MIN_INTERVAL_MILLIS; // due immediately
+        private boolean scheduled;
+
+        Progress(String progressId) {
+            this.progressId = progressId;
+        }
+
+        @Override
+        public void run() {
+            postScheduled(this);
+        }
+    }
+}
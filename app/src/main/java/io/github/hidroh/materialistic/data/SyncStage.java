@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A stage of sync pipeline, that runs its tasks on its own bounded pool of background threads.
+ * At most a fixed number of tasks can be pending per stage: once the stage is saturated,
+ * producers are blocked upon submission until a task finishes, so that a slow stage applies
+ * back-pressure to upstream stages instead of buffering an unbounded amount of work.
+ */
+class SyncStage {
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final ThreadPoolExecutor mExecutor;
+    private final Semaphore mPermits;
+    private final Runnable mOnIdle;
+    private int mPending;
+
+    /**
+     * Constructs a new stage
+     * @param name      stage name, used to name worker threads
+     * @param threads   number of worker threads
+     * @param capacity  number of tasks that can be queued while all worker threads are busy
+     * @param onIdle    optional callback to be fired on worker thread when stage becomes idle
+     */
+    SyncStage(@NonNull String name, int threads, int capacity, @Nullable Runnable onIdle) {
+        mExecutor = new ThreadPoolExecutor(threads, threads,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), // bounded by permits
+                r -> new Thread(r, name));
+        mExecutor.allowCoreThreadTimeOut(true);
+        mPermits = new Semaphore(threads + capacity);
+        mOnIdle = onIdle;
+    }
+
+    /**
+     * Submits given task for execution, blocking while stage is saturated
+     * @param task  task to execute
+     */
+    @WorkerThread
+    void submit(@NonNull Runnable task) {
+        mPermits.acquireUninterruptibly();
+        synchronized (this) {
+            mPending++;
+        }
+        mExecutor.execute(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            try {
+                task.run();
+            } finally {
+                mPermits.release();
+                onTaskFinished();
+            }
+        });
+    }
+
+    /**
+     * Blocks until all submitted tasks have finished
+     */
+    @WorkerThread
+    synchronized void awaitIdle() {
+        while (mPending > 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    synchronized boolean isIdle() {
+        return mPending == 0;
+    }
+
+    private void onTaskFinished() {
+        boolean idle;
+        synchronized (this) {
+            idle = --mPending == 0;
+            if (idle) {
+                notifyAll();
+            }
+        }
+        if (idle && mOnIdle != null) {
+            mOnIdle.run();
+        }
+    }
+}
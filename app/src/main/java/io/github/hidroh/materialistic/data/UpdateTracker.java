@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.UiThread;
+import android.support.v4.content.LocalBroadcastManager;
+import android.text.format.DateUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Polls Hacker News updates feed while started, and broadcasts IDs of items that have changed
+ * since last poll, so that displayed items can be refreshed individually instead of
+ * reloading whole lists or threads. Each {@link #start()} should be paired with a
+ * {@link #stop()}, typically from UI lifecycle, so that polling only happens in foreground.
+ * First poll after construction only establishes a baseline.
+ */
+public class UpdateTracker {
+    /**
+     * {@link android.content.Intent#getAction()} for broadcasting changed items
+     */
+    public static final String ACTION_UPDATES = UpdateTracker.class.getName() + ".ACTION_UPDATES";
+    /**
+     * {@link android.os.Bundle} key for {@link #ACTION_UPDATES} that contains {@link ArrayList}
+     * of changed item IDs
+     */
+    public static final String EXTRA_ITEM_IDS = ACTION_UPDATES + ".EXTRA_ITEM_IDS";
+    static final long POLL_INTERVAL_MILLIS = DateUtils.MINUTE_IN_MILLIS;
+    private final HackerNewsClient.RestService mRestService;
+    private final LocalBroadcastManager mBroadcastManager;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mPollTask = this::poll;
+    private Set<String> mLastItemIds;
+    private Call<Updates> mCall;
+    private int mStartCount;
+
+    public UpdateTracker(Context context, RestServiceFactory factory) {
+        mBroadcastManager = LocalBroadcastManager.getInstance(context);
+        mRestService = factory.create(HackerNewsClient.BASE_API_URL,
+                HackerNewsClient.RestService.class);
+    }
+
+    public static IntentFilter makeUpdatesIntentFilter() {
+        return new IntentFilter(ACTION_UPDATES);
+    }
+
+    /**
+     * Gets IDs of changed items from given updates broadcast
+     * @param intent    updates broadcast
+     * @return  changed item IDs
+     */
+    @NonNull
+    public static ArrayList<String> getItemIds(Intent intent) {
+        ArrayList<String> itemIds = intent.getStringArrayListExtra(EXTRA_ITEM_IDS);
+        return itemIds != null ? itemIds : new ArrayList<>();
+    }
+
+    /**
+     * Starts polling immediately if not yet started
+     */
+    @UiThread
+    public void start() {
+        if (mStartCount++ == 0) {
+            poll();
+        }
+    }
+
+    /**
+     * Stops polling once all starts have been balanced
+     */
+    @UiThread
+    public void stop() {
+        if (mStartCount == 0 || --mStartCount > 0) {
+            return;
+        }
+        mHandler.removeCallbacks(mPollTask);
+        if (mCall != null) {
+            mCall.cancel();
+            mCall = null;
+        }
+    }
+
+    private void poll() {
+        mCall = mRestService.updates();
+        mCall.enqueue(new Callback<Updates>() {
+            @Override
+            public void onResponse(Call<Updates> call, Response<Updates> response) {
+                if (call == mCall) {
+                    mCall = null;
+                    onUpdates(response.body());
+                    mHandler.postDelayed(mPollTask, POLL_INTERVAL_MILLIS);
+                }
+            }
+
+            @Override
+            public void onFailure(Call<Updates> call, Throwable t) {
+                if (call == mCall) {
+                    mCall = null;
+                    mHandler.postDelayed(mPollTask, POLL_INTERVAL_MILLIS);
+                }
+            }
+        });
+    }
+
+    private void onUpdates(Updates updates) {
+        if (updates == null || updates.items == null) {
+            return;
+        }
+        Set<String> itemIds = new HashSet<>();
+        for (long itemId : updates.items) {
+            itemIds.add(String.valueOf(itemId));
+        }
+        // feed is a rolling window, only IDs entering it are known to have changed since
+        ArrayList<String> changed = new ArrayList<>();
+        if (mLastItemIds != null) {
+            for (String itemId : itemIds) {
+                if (!mLastItemIds.contains(itemId)) {
+                    changed.add(itemId);
+                }
+            }
+        }
+        mLastItemIds = itemIds;
+        if (!changed.isEmpty()) {
+            mBroadcastManager.sendBroadcast(new Intent(ACTION_UPDATES)
+                    .putStringArrayListExtra(EXTRA_ITEM_IDS, changed));
+        }
+    }
+
+    static class Updates {
+        long[] items;
+        String[] profiles;
+    }
+}
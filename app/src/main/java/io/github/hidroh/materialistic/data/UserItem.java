@@ -38,10 +38,7 @@ class UserItem implements UserManager.User {
     private long created;
     private long karma;
     private String about;
-    private int[] submitted;
-
-    // view state
-    private HackerNewsItem[] submittedItems = new HackerNewsItem[0];
+    private long[] submitted;
 
     private UserItem(Parcel source) {
         id = source.readString();
@@ -49,8 +46,7 @@ class UserItem implements UserManager.User {
         created = source.readLong();
         karma = source.readLong();
         about = source.readString();
-        submitted = source.createIntArray();
-        submittedItems = source.createTypedArray(HackerNewsItem.CREATOR);
+        submitted = source.createLongArray();
     }
 
     @Override
@@ -75,8 +71,8 @@ class UserItem implements UserManager.User {
 
     @NonNull
     @Override
-    public Item[] getItems() {
-        return submittedItems;
+    public long[] getSubmitted() {
+        return submitted != null ? submitted : new long[0];
     }
 
     @Override
@@ -91,15 +87,6 @@ class UserItem implements UserManager.User {
         dest.writeLong(created);
         dest.writeLong(karma);
         dest.writeString(about);
-        dest.writeIntArray(submitted);
-        dest.writeTypedArray(submittedItems, flags);
-    }
-
-    void setSubmittedItems(HackerNewsItem[] submittedItems) {
-        this.submittedItems = submittedItems != null ? submittedItems : new HackerNewsItem[0];
-    }
-
-    int[] getSubmitted() {
-        return submitted;
+        dest.writeLongArray(submitted);
     }
 }
@@ -31,12 +31,15 @@ import android.webkit.WebViewClient;
 import java.io.File;
 import java.util.Map;
 
-import io.github.hidroh.materialistic.AppUtils;
+import io.github.hidroh.materialistic.Application;
+import io.github.hidroh.materialistic.ConnectivityMonitor;
 
 public class CacheableWebView extends WebView {
     private static final String CACHE_PREFIX = "webarchive-";
     private static final String CACHE_EXTENSION = ".mht";
     private ArchiveClient mArchiveClient = new ArchiveClient();
+    private final ConnectivityMonitor.Listener mConnectivityListener =
+            monitor -> setCacheModeInternal();
 
     public CacheableWebView(Context context) {
         this(context, null);
@@ -69,6 +72,19 @@ public class CacheableWebView extends WebView {
         super.loadUrl(getCacheableUrl(url), additionalHttpHeaders);
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        // switch cache mode for subsequent loads as soon as connectivity changes
+        Application.getConnectivityMonitor(getContext()).addListener(mConnectivityListener);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        Application.getConnectivityMonitor(getContext()).removeListener(mConnectivityListener);
+        super.onDetachedFromWindow();
+    }
+
     @Override
     public void setWebChromeClient(WebChromeClient client) {
         if (!(client instanceof ArchiveClient)) {
@@ -96,7 +112,8 @@ public class CacheableWebView extends WebView {
     }
 
     private void setCacheModeInternal() {
-        getSettings().setCacheMode(AppUtils.hasConnection(getContext()) ?
+        boolean connected = Application.getConnectivityMonitor(getContext()).isConnected();
+        getSettings().setCacheMode(connected ?
                 WebSettings.LOAD_CACHE_ELSE_NETWORK : WebSettings.LOAD_CACHE_ONLY);
     }
 
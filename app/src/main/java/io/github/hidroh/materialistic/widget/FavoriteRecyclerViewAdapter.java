@@ -40,7 +40,7 @@ import io.github.hidroh.materialistic.MenuTintDelegate;
 import io.github.hidroh.materialistic.R;
 import io.github.hidroh.materialistic.accounts.UserServices;
 import io.github.hidroh.materialistic.data.Favorite;
-import io.github.hidroh.materialistic.data.FavoriteManager;
+import io.github.hidroh.materialistic.data.FavoritePager;
 import io.github.hidroh.materialistic.data.ItemManager;
 
 public class FavoriteRecyclerViewAdapter extends ListRecyclerViewAdapter
@@ -104,7 +104,7 @@ public class FavoriteRecyclerViewAdapter extends ListRecyclerViewAdapter
     };
     private ActionModeDelegate mActionModeDelegate;
     private MenuTintDelegate mMenuTintDelegate;
-    private FavoriteManager.Cursor mCursor;
+    private FavoritePager mPager;
     private ArrayMap<Integer, String> mSelected = new ArrayMap<>();
     private int mPendingAdd = -1;
 
@@ -147,10 +147,7 @@ public class FavoriteRecyclerViewAdapter extends ListRecyclerViewAdapter
     public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
         super.onDetachedFromRecyclerView(recyclerView);
         mActionModeDelegate = null;
-        if (mCursor != null) {
-            mCursor.close();
-            mCursor = null;
-        }
+        mPager = null;
     }
 
     @Override
@@ -160,12 +157,13 @@ public class FavoriteRecyclerViewAdapter extends ListRecyclerViewAdapter
 
     @Override
     public int getItemCount() {
-        return mCursor == null ? 0 : mCursor.getCount();
+        return mPager == null ? 0 : mPager.getCount();
     }
 
     @Override
     protected void bindItem(final ItemViewHolder holder) {
         final Favorite favorite = getItem(holder.getAdapterPosition());
+        mPager.load(holder.getAdapterPosition()); // prefetch adjacent page if needed
         holder.itemView.setOnLongClickListener(v -> {
             if (mActionModeDelegate.startActionMode(mActionModeCallback)) {
                 toggle(favorite.getId(), holder.getAdapterPosition());
@@ -182,6 +180,13 @@ public class FavoriteRecyclerViewAdapter extends ListRecyclerViewAdapter
         return item != null;
     }
 
+    @Override
+    protected void loadItem(int adapterPosition) {
+        if (mPager != null) {
+            mPager.load(adapterPosition);
+        }
+    }
+
     @Override
     protected void handleItemClick(Favorite item, ItemViewHolder holder) {
         if (!mActionModeDelegate.isInActionMode()) {
@@ -193,10 +198,7 @@ public class FavoriteRecyclerViewAdapter extends ListRecyclerViewAdapter
 
     @Override
     protected Favorite getItem(int position) {
-        if (mCursor == null || !mCursor.moveToPosition(position)) {
-            return null;
-        }
-        return mCursor.getFavorite();
+        return mPager == null ? null : mPager.get(position);
     }
 
     @Override
@@ -209,9 +211,13 @@ public class FavoriteRecyclerViewAdapter extends ListRecyclerViewAdapter
         return ItemManager.MODE_CACHE;
     }
 
-    public void setCursor(FavoriteManager.Cursor cursor) {
-        mCursor = cursor;
-        if (cursor == null) {
+    /**
+     * Sets paged favorites to display, to be called again whenever they have been reloaded
+     * @param pager    paged favorites, or null to clear
+     */
+    public void setPager(FavoritePager pager) {
+        mPager = pager;
+        if (pager == null) {
             notifyDataSetChanged();
             return;
         }
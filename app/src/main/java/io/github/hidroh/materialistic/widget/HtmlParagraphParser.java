@@ -0,0 +1,409 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.widget;
+
+import android.graphics.Typeface;
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.style.LeadingMarginSpan;
+import android.text.style.QuoteSpan;
+import android.text.style.RelativeSizeSpan;
+import android.text.style.StrikethroughSpan;
+import android.text.style.StyleSpan;
+import android.text.style.SubscriptSpan;
+import android.text.style.SuperscriptSpan;
+import android.text.style.TypefaceSpan;
+import android.text.style.URLSpan;
+import android.text.style.UnderlineSpan;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.github.hidroh.materialistic.data.HtmlTokenizer;
+
+/**
+ * Converts readability HTML into a list of styled paragraphs, to be rendered as native text.
+ * Each block element starts a new paragraph, inline elements are converted to spans.
+ * Images, scripts and other embedded content are dropped.
+ */
+public class HtmlParagraphParser implements HtmlTokenizer.Handler {
+    private static final String MONOSPACE = "monospace";
+    private static final String BULLET = "\u2022 ";
+    private static final float[] HEADING_SIZES = {1.5f, 1.4f, 1.25f, 1.15f, 1.1f, 1.05f};
+    private static final float SCRIPT_SIZE = 0.75f;
+    private static final Set<String> BLOCK_TAGS = new HashSet<>(Arrays.asList(
+            "address", "article", "blockquote", "dd", "div", "dl", "dt", "figcaption", "figure",
+            "h1", "h2", "h3", "h4", "h5", "h6", "hr", "li", "main", "ol", "p", "pre", "section",
+            "table", "tr", "ul"));
+    private static final Map<String, Character> ENTITIES = new HashMap<>();
+    static {
+        ENTITIES.put("amp", '&');
+        ENTITIES.put("lt", '<');
+        ENTITIES.put("gt", '>');
+        ENTITIES.put("quot", '"');
+        ENTITIES.put("apos", '\'');
+        ENTITIES.put("nbsp", '\u00A0');
+        ENTITIES.put("ndash", '\u2013');
+        ENTITIES.put("mdash", '\u2014');
+        ENTITIES.put("lsquo", '\u2018');
+        ENTITIES.put("rsquo", '\u2019');
+        ENTITIES.put("ldquo", '\u201C');
+        ENTITIES.put("rdquo", '\u201D');
+        ENTITIES.put("laquo", '\u00AB');
+        ENTITIES.put("raquo", '\u00BB');
+        ENTITIES.put("hellip", '\u2026');
+        ENTITIES.put("middot", '\u00B7');
+        ENTITIES.put("bull", '\u2022');
+        ENTITIES.put("copy", '\u00A9');
+        ENTITIES.put("reg", '\u00AE');
+        ENTITIES.put("trade", '\u2122');
+        ENTITIES.put("deg", '\u00B0');
+        ENTITIES.put("times", '\u00D7');
+        ENTITIES.put("euro", '\u20AC');
+        ENTITIES.put("pound", '\u00A3');
+    }
+
+    private final List<CharSequence> mParagraphs = new ArrayList<>();
+    private final List<OpenSpan> mOpenSpans = new ArrayList<>();
+    private final List<Integer> mListCounters = new ArrayList<>(); // -1 for unordered lists
+    private final int mIndent;
+    private SpannableStringBuilder mBuilder = new SpannableStringBuilder();
+    private int mHeading, mQuoteDepth, mPreDepth;
+    private boolean mRowStarted;
+
+    /**
+     * Parses given HTML into paragraphs
+     * @param html      HTML to parse
+     * @param indent    leading margin in pixels per list level
+     * @return  list of styled paragraphs
+     */
+    @WorkerThread
+    @NonNull
+    public static List<CharSequence> parse(@NonNull String html, int indent) {
+        HtmlParagraphParser parser = new HtmlParagraphParser(indent);
+        try {
+            new HtmlTokenizer(new StringReader(html), parser).tokenize();
+        } catch (IOException e) {
+            // no op, cannot happen for in memory reader
+        }
+        parser.flush();
+        return parser.mParagraphs;
+    }
+
+    private HtmlParagraphParser(int indent) {
+        mIndent = indent;
+    }
+
+    @Override
+    public void onStartTag(@NonNull String name, @NonNull Map<String, String> attributes) {
+        if (BLOCK_TAGS.contains(name)) {
+            flush();
+        }
+        switch (name) {
+            case "h1":
+            case "h2":
+            case "h3":
+            case "h4":
+            case "h5":
+            case "h6":
+                mHeading = name.charAt(1) - '0';
+                break;
+            case "blockquote":
+                mQuoteDepth++;
+                break;
+            case "pre":
+                mPreDepth++;
+                break;
+            case "ul":
+                mListCounters.add(-1);
+                break;
+            case "ol":
+                mListCounters.add(0);
+                break;
+            case "li":
+                startListItem();
+                break;
+            case "tr":
+                mRowStarted = false;
+                break;
+            case "td":
+            case "th":
+                if (mRowStarted) {
+                    mBuilder.append("  ");
+                }
+                mRowStarted = true;
+                if (name.equals("th")) {
+                    mOpenSpans.add(new OpenSpan(name, mBuilder.length(), null));
+                }
+                break;
+            case "br":
+                mBuilder.append('\n');
+                break;
+            case "a":
+            case "b":
+            case "strong":
+            case "i":
+            case "em":
+            case "cite":
+            case "u":
+            case "s":
+            case "strike":
+            case "del":
+            case "code":
+            case "tt":
+            case "kbd":
+            case "sup":
+            case "sub":
+                mOpenSpans.add(new OpenSpan(name, mBuilder.length(), attributes.get("href")));
+                break;
+        }
+    }
+
+    @Override
+    public void onEndTag(@NonNull String name) {
+        if (BLOCK_TAGS.contains(name)) {
+            flush();
+        }
+        switch (name) {
+            case "h1":
+            case "h2":
+            case "h3":
+            case "h4":
+            case "h5":
+            case "h6":
+                mHeading = 0;
+                break;
+            case "blockquote":
+                mQuoteDepth = Math.max(0, mQuoteDepth - 1);
+                break;
+            case "pre":
+                mPreDepth = Math.max(0, mPreDepth - 1);
+                break;
+            case "ul":
+            case "ol":
+                if (!mListCounters.isEmpty()) {
+                    mListCounters.remove(mListCounters.size() - 1);
+                }
+                break;
+            default:
+                for (int i = mOpenSpans.size() - 1; i >= 0; i--) {
+                    if (mOpenSpans.get(i).tag.equals(name)) {
+                        OpenSpan span = mOpenSpans.remove(i);
+                        setSpan(span, mBuilder.length());
+                        break;
+                    }
+                }
+                break;
+        }
+    }
+
+    @Override
+    public void onText(@NonNull String text) {
+        text = decode(text);
+        if (mPreDepth > 0) {
+            mBuilder.append(text);
+            return;
+        }
+        // collapse whitespace
+        boolean space = mBuilder.length() == 0 || isSpace(mBuilder.charAt(mBuilder.length() - 1));
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (isSpace(c)) {
+                if (!space) {
+                    mBuilder.append(' ');
+                    space = true;
+                }
+            } else {
+                mBuilder.append(c);
+                space = false;
+            }
+        }
+    }
+
+    private void startListItem() {
+        if (mListCounters.isEmpty()) {
+            mBuilder.append(BULLET);
+            return;
+        }
+        int last = mListCounters.size() - 1;
+        int counter = mListCounters.get(last);
+        if (counter < 0) {
+            mBuilder.append(BULLET);
+        } else {
+            mListCounters.set(last, ++counter);
+            mBuilder.append(String.valueOf(counter)).append(". ");
+        }
+    }
+
+    /**
+     * Ends current paragraph, styling it based on its enclosing blocks. Spans still open
+     * are carried over to next paragraph.
+     */
+    private void flush() {
+        int end = mBuilder.length();
+        for (OpenSpan span : mOpenSpans) {
+            setSpan(span, end);
+        }
+        trim(mBuilder);
+        if (mBuilder.length() > 0) {
+            int length = mBuilder.length();
+            if (mHeading > 0) {
+                mBuilder.setSpan(new StyleSpan(Typeface.BOLD), 0, length,
+                        Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+                mBuilder.setSpan(new RelativeSizeSpan(HEADING_SIZES[mHeading - 1]), 0, length,
+                        Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+            }
+            if (mPreDepth > 0) {
+                mBuilder.setSpan(new TypefaceSpan(MONOSPACE), 0, length,
+                        Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+            }
+            if (mQuoteDepth > 0) {
+                mBuilder.setSpan(new QuoteSpan(), 0, length, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+            }
+            if (!mListCounters.isEmpty()) {
+                mBuilder.setSpan(new LeadingMarginSpan.Standard(mIndent * mListCounters.size()),
+                        0, length, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+            }
+            mParagraphs.add(mBuilder);
+        }
+        mBuilder = new SpannableStringBuilder();
+        for (OpenSpan span : mOpenSpans) {
+            span.start = 0;
+        }
+    }
+
+    private void setSpan(OpenSpan span, int end) {
+        if (end <= span.start) {
+            return;
+        }
+        for (Object what : createSpans(span)) {
+            mBuilder.setSpan(what, span.start, end, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
+    }
+
+    private static Object[] createSpans(OpenSpan span) {
+        switch (span.tag) {
+            case "a":
+                return span.href == null ? new Object[0] : new Object[]{new URLSpan(span.href)};
+            case "b":
+            case "strong":
+            case "th":
+                return new Object[]{new StyleSpan(Typeface.BOLD)};
+            case "i":
+            case "em":
+            case "cite":
+                return new Object[]{new StyleSpan(Typeface.ITALIC)};
+            case "u":
+                return new Object[]{new UnderlineSpan()};
+            case "s":
+            case "strike":
+            case "del":
+                return new Object[]{new StrikethroughSpan()};
+            case "code":
+            case "tt":
+            case "kbd":
+                return new Object[]{new TypefaceSpan(MONOSPACE)};
+            case "sup":
+                return new Object[]{new SuperscriptSpan(), new RelativeSizeSpan(SCRIPT_SIZE)};
+            case "sub":
+                return new Object[]{new SubscriptSpan(), new RelativeSizeSpan(SCRIPT_SIZE)};
+            default:
+                return new Object[0];
+        }
+    }
+
+    private static void trim(SpannableStringBuilder builder) {
+        int end = builder.length();
+        while (end > 0 && isSpace(builder.charAt(end - 1))) {
+            end--;
+        }
+        builder.delete(end, builder.length());
+        int start = 0;
+        while (start < builder.length() && isSpace(builder.charAt(start))) {
+            start++;
+        }
+        builder.delete(0, start);
+    }
+
+    /**
+     * Decodes numeric and common named character references, leaving unknown ones as is
+     */
+    private static String decode(String text) {
+        int ampersand = text.indexOf('&');
+        if (ampersand < 0) {
+            return text;
+        }
+        StringBuilder decoded = new StringBuilder(text.length());
+        decoded.append(text, 0, ampersand);
+        int i = ampersand;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            int semicolon;
+            if (c != '&' || (semicolon = text.indexOf(';', i)) < 0 || semicolon - i > 10) {
+                decoded.append(c);
+                i++;
+                continue;
+            }
+            String name = text.substring(i + 1, semicolon);
+            int codePoint = -1;
+            if (name.startsWith("#")) {
+                try {
+                    codePoint = name.length() > 1 && (name.charAt(1) == 'x' || name.charAt(1) == 'X') ?
+                            Integer.parseInt(name.substring(2), 16) :
+                            Integer.parseInt(name.substring(1));
+                } catch (NumberFormatException e) {
+                    // no op
+                }
+            } else if (ENTITIES.containsKey(name)) {
+                codePoint = ENTITIES.get(name);
+            }
+            if (codePoint >= 0 && Character.isValidCodePoint(codePoint)) {
+                decoded.appendCodePoint(codePoint);
+                i = semicolon + 1;
+            } else {
+                decoded.append(c);
+                i++;
+            }
+        }
+        return decoded.toString();
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f';
+    }
+
+    private static class OpenSpan {
+        private final String tag;
+        private final String href;
+        private int start;
+
+        OpenSpan(String tag, int start, String href) {
+            this.tag = tag;
+            this.start = start;
+            this.href = href;
+        }
+    }
+}
@@ -25,8 +25,10 @@ import android.support.v4.app.FragmentStatePagerAdapter;
 import android.view.ViewGroup;
 
 import io.github.hidroh.materialistic.ItemFragment;
+import io.github.hidroh.materialistic.Preferences;
 import io.github.hidroh.materialistic.R;
 import io.github.hidroh.materialistic.ReadabilityFragment;
+import io.github.hidroh.materialistic.ReadabilityTextFragment;
 import io.github.hidroh.materialistic.WebFragment;
 import io.github.hidroh.materialistic.data.Item;
 import io.github.hidroh.materialistic.data.WebItem;
@@ -61,6 +63,11 @@ public class ItemPagerAdapter extends FragmentStatePagerAdapter {
         }
         if (position == getCount() - 1) {
             Bundle readabilityArgs = new Bundle();
+            if (Preferences.isReadabilityNative(mContext)) {
+                readabilityArgs.putParcelable(ReadabilityTextFragment.EXTRA_ITEM, mItem);
+                return Fragment.instantiate(mContext,
+                        ReadabilityTextFragment.class.getName(), readabilityArgs);
+            }
             readabilityArgs.putParcelable(ReadabilityFragment.EXTRA_ITEM, mItem);
             return Fragment.instantiate(mContext,
                     ReadabilityFragment.class.getName(), readabilityArgs);
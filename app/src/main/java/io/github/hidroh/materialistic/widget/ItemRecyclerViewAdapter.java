@@ -17,12 +17,14 @@
 package io.github.hidroh.materialistic.widget;
 
 import android.animation.ObjectAnimator;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.res.TypedArray;
 import android.os.Build;
 import android.support.annotation.CallSuper;
 import android.support.annotation.Nullable;
+import android.support.v4.content.LocalBroadcastManager;
 import android.support.v7.widget.AppCompatButton;
 import android.support.v7.widget.RecyclerView;
 import android.text.TextUtils;
@@ -35,6 +37,7 @@ import android.widget.Toast;
 
 import java.lang.ref.WeakReference;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import javax.inject.Inject;
@@ -49,17 +52,25 @@ import io.github.hidroh.materialistic.accounts.UserServices;
 import io.github.hidroh.materialistic.data.Item;
 import io.github.hidroh.materialistic.data.ItemManager;
 import io.github.hidroh.materialistic.data.ResponseListener;
+import io.github.hidroh.materialistic.data.UpdateTracker;
 
 public abstract class ItemRecyclerViewAdapter<VH extends ItemRecyclerViewAdapter.ItemViewHolder>
         extends RecyclerView.Adapter<VH> {
     private static final String PROPERTY_MAX_LINES = "maxLines";
     private static final int DURATION_PER_LINE_MILLIS = 20;
+    private final BroadcastReceiver mUpdatesReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            onItemsUpdated(UpdateTracker.getItemIds(intent));
+        }
+    };
     protected LayoutInflater mLayoutInflater;
     private ItemManager mItemManager;
     @Inject UserServices mUserServices;
     @Inject PopupMenu mPopupMenu;
     @Inject AlertDialogBuilder mAlertDialogBuilder;
     protected Context mContext;
+    private RecyclerView mRecyclerView;
     private int mTertiaryTextColorResId;
     private int mSecondaryTextColorResId;
     private int mCardBackgroundColorResId;
@@ -67,6 +78,7 @@ public abstract class ItemRecyclerViewAdapter<VH extends ItemRecyclerViewAdapter
     private int mContentMaxLines = Integer.MAX_VALUE;
     private String mUsername;
     private final Set<String> mLineCounted = new HashSet<>();
+    private final Set<String> mStaleIds = new HashSet<>();
     private int mCacheMode = ItemManager.MODE_DEFAULT;
     private float mLineHeight = 1.0f;
 
@@ -78,7 +90,10 @@ public abstract class ItemRecyclerViewAdapter<VH extends ItemRecyclerViewAdapter
     @Override
     public void onAttachedToRecyclerView(RecyclerView recyclerView) {
         super.onAttachedToRecyclerView(recyclerView);
+        mRecyclerView = recyclerView;
         mContext = recyclerView.getContext();
+        LocalBroadcastManager.getInstance(mContext)
+                .registerReceiver(mUpdatesReceiver, UpdateTracker.makeUpdatesIntentFilter());
         if (mContext instanceof Injectable) {
             ((Injectable) mContext).inject(this);
         }
@@ -99,17 +114,25 @@ public abstract class ItemRecyclerViewAdapter<VH extends ItemRecyclerViewAdapter
     @Override
     public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
         super.onDetachedFromRecyclerView(recyclerView);
+        LocalBroadcastManager.getInstance(mContext).unregisterReceiver(mUpdatesReceiver);
         mContext = null;
+        mRecyclerView = null;
     }
 
     @Override
     public void onBindViewHolder(final VH holder, int position) {
         final Item item = getItem(position);
         clear(holder);
+        if (item == null) {
+            return;
+        }
         if (item.getLocalRevision() < 0) {
             load(holder.getAdapterPosition(), item);
         } else if (item.getLocalRevision() > 0) {
             bind(holder, item);
+            if (mStaleIds.contains(item.getId())) {
+                refresh(holder.getAdapterPosition(), item); // keep showing stale content
+            }
         }
     }
 
@@ -172,6 +195,33 @@ public abstract class ItemRecyclerViewAdapter<VH extends ItemRecyclerViewAdapter
                 new ItemResponseListener(this, adapterPosition, item));
     }
 
+    /**
+     * Refreshes displayed items that have been updated: visible ones immediately, others
+     * upon being bound
+     * @param itemIds   updated item IDs
+     */
+    private void onItemsUpdated(List<String> itemIds) {
+        Set<String> updated = new HashSet<>(itemIds);
+        for (int position = 0; position < getItemCount(); position++) {
+            Item item = getItem(position);
+            if (item == null || item.getLocalRevision() <= 0 ||
+                    !updated.contains(item.getId())) {
+                continue; // yet to be loaded items will be fresh anyway
+            }
+            if (mRecyclerView.findViewHolderForItemId(item.getLongId()) != null) {
+                refresh(position, item);
+            } else {
+                mStaleIds.add(item.getId());
+            }
+        }
+    }
+
+    private void refresh(int adapterPosition, Item item) {
+        mStaleIds.remove(item.getId());
+        mItemManager.getItem(item.getId(), ItemManager.MODE_NETWORK,
+                new ItemResponseListener(this, adapterPosition, item));
+    }
+
     protected void onItemLoaded(int position, Item item) {
         if (position < getItemCount()) {
             notifyItemChanged(position);
@@ -118,7 +118,8 @@ public abstract class ListRecyclerViewAdapter
 
     @Override
     public final long getItemId(int position) {
-        return getItem(position).getLongId();
+        T item = getItem(position);
+        return item == null ? RecyclerView.NO_ID : item.getLongId();
     }
 
     public final boolean isCardViewEnabled() {
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.widget;
+
+import android.graphics.Typeface;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
+import android.util.TypedValue;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.List;
+
+import io.github.hidroh.materialistic.AppUtils;
+import io.github.hidroh.materialistic.R;
+
+/**
+ * Adapter that renders readability content as a list of native text paragraphs,
+ * see {@link HtmlParagraphParser}
+ */
+public class ReadabilityRecyclerViewAdapter
+        extends RecyclerView.Adapter<ReadabilityRecyclerViewAdapter.ViewHolder> {
+    private final List<CharSequence> mParagraphs;
+    private Typeface mTypeface;
+    private float mTextSize, mLineHeight = 1.0f;
+
+    public ReadabilityRecyclerViewAdapter(@NonNull List<CharSequence> paragraphs) {
+        mParagraphs = paragraphs;
+    }
+
+    /**
+     * Sets text appearance of paragraphs
+     * @param typeface      paragraph typeface, or null to use default
+     * @param textSize      text size in pixels
+     * @param lineHeight    line height multiplier
+     */
+    public void setTextAppearance(@Nullable Typeface typeface, float textSize, float lineHeight) {
+        mTypeface = typeface;
+        mTextSize = textSize;
+        mLineHeight = lineHeight;
+        notifyDataSetChanged();
+    }
+
+    @Override
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        return new ViewHolder(LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.item_readability, parent, false));
+    }
+
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position) {
+        holder.mTextView.setTypeface(mTypeface);
+        if (mTextSize > 0) {
+            holder.mTextView.setTextSize(TypedValue.COMPLEX_UNIT_PX, mTextSize);
+        }
+        holder.mTextView.setLineSpacing(0f, mLineHeight);
+        AppUtils.setTextWithLinks(holder.mTextView, mParagraphs.get(position));
+    }
+
+    @Override
+    public int getItemCount() {
+        return mParagraphs.size();
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView mTextView;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            mTextView = (TextView) itemView;
+        }
+    }
+}
@@ -23,6 +23,8 @@ import android.os.Parcel;
 import android.os.Parcelable;
 import android.support.annotation.NonNull;
 import android.support.v7.widget.RecyclerView;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
 import android.view.View;
 import android.view.ViewGroup;
 
@@ -116,9 +118,46 @@ public class SinglePageItemRecyclerViewAdapter
         int index = mState.list.indexOf(item);
         if (index >= 0 && index < getItemCount()) {
             notifyItemChanged(index);
+            if (isExpanded(item)) { // refreshed, may have new kids
+                mergeKids(item, index + 1);
+            }
         }
     }
 
+    /**
+     * Merges kids that have been added to given thread since it was displayed as minimal
+     * inserts, so that existing comments keep their expansion state and scroll position.
+     * Merged comments are marked as new.
+     * @param story thread root, already populated with its latest kids
+     */
+    public void mergeKids(@NonNull Item story) {
+        mergeKids(story, 0);
+    }
+
+    private void mergeKids(Item item, int start) {
+        int position = start;
+        for (Item kid : item.getKidItems()) {
+            int index = mState.list.indexOf(kid);
+            if (index >= 0) {
+                position = getSubtreeEnd(index);
+            } else {
+                mState.list.add(position, kid);
+                mState.added.add(kid.getId());
+                notifyItemInserted(position);
+                position++;
+            }
+        }
+    }
+
+    private int getSubtreeEnd(int position) {
+        int level = mState.list.get(position).getLevel();
+        int end = position + 1;
+        while (end < mState.list.size() && mState.list.get(end).getLevel() > level) {
+            end++;
+        }
+        return end;
+    }
+
     @Override
     protected void clear(ToggleItemViewHolder holder) {
         super.clear(holder);
@@ -131,11 +170,22 @@ public class SinglePageItemRecyclerViewAdapter
         if (item == null) {
             return;
         }
-        holder.mPostedTextView.setText(item.getDisplayedTime(mContext, false, true));
+        holder.mPostedTextView.setText(decorateAdded(
+                item.getDisplayedTime(mContext, false, true), item));
         bindNavigation(holder, item);
         toggleKids(holder, item);
     }
 
+    private CharSequence decorateAdded(CharSequence text, Item item) {
+        if (!mState.added.contains(item.getId())) {
+            return text;
+        }
+        SpannableStringBuilder sb = new SpannableStringBuilder(text).append(" *");
+        sb.setSpan(new AsteriskSpan(mContext), sb.length() - 1, sb.length(),
+                Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        return sb;
+    }
+
     private void bindNavigation(ToggleItemViewHolder holder, final Item item) {
         if (!mState.expanded.containsKey(item.getParent())) {
             holder.mParent.setVisibility(View.INVISIBLE);
@@ -235,10 +285,12 @@ public class SinglePageItemRecyclerViewAdapter
 
         private ArrayList<Item> list;
         private Bundle expanded;
+        private ArrayList<String> added;
 
         public SavedState(ArrayList<Item> list) {
             this.list = list;
             expanded = new Bundle();
+            added = new ArrayList<>();
         }
 
         @SuppressWarnings("unchecked")
@@ -246,6 +298,7 @@ public class SinglePageItemRecyclerViewAdapter
             list = source.readArrayList(Item.class.getClassLoader());
             expanded = source.readBundle(list.isEmpty() ? null :
                     list.get(0).getClass().getClassLoader());
+            added = source.createStringArrayList();
         }
 
         @Override
@@ -257,6 +310,7 @@ public class SinglePageItemRecyclerViewAdapter
         public void writeToParcel(Parcel dest, int flags) {
             dest.writeList(list);
             dest.writeBundle(expanded);
+            dest.writeStringList(added);
         }
     }
 }
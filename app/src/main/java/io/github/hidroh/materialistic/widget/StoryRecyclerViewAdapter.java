@@ -16,6 +16,7 @@
 
 package io.github.hidroh.materialistic.widget;
 
+import android.content.BroadcastReceiver;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
@@ -25,6 +26,7 @@ import android.os.Bundle;
 import android.os.Handler;
 import android.support.annotation.Nullable;
 import android.support.design.widget.Snackbar;
+import android.support.v4.content.LocalBroadcastManager;
 import android.support.v4.util.LongSparseArray;
 import android.support.v7.widget.RecyclerView;
 import android.text.TextUtils;
@@ -35,6 +37,9 @@ import android.widget.Toast;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -51,6 +56,7 @@ import io.github.hidroh.materialistic.data.Item;
 import io.github.hidroh.materialistic.data.ItemManager;
 import io.github.hidroh.materialistic.data.MaterialisticProvider;
 import io.github.hidroh.materialistic.data.ResponseListener;
+import io.github.hidroh.materialistic.data.UpdateTracker;
 
 public class StoryRecyclerViewAdapter extends
         ListRecyclerViewAdapter<ListRecyclerViewAdapter.ItemViewHolder, Item> {
@@ -64,7 +70,7 @@ public class StoryRecyclerViewAdapter extends
     private final ContentObserver mObserver = new ContentObserver(new Handler()) {
         @Override
         public void onChange(boolean selfChange, Uri uri) {
-            if (FavoriteManager.isCleared(uri)) {
+            if (FavoriteManager.isCleared(uri) || FavoriteManager.isImported(uri)) {
                 mFavoriteRevision++; // invalidate all favorite statuses
                 notifyDataSetChanged();
                 return;
@@ -86,12 +92,19 @@ public class StoryRecyclerViewAdapter extends
             notifyItemChanged(position);
         }
     };
+    private final BroadcastReceiver mUpdatesReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            onItemsUpdated(UpdateTracker.getItemIds(intent));
+        }
+    };
     @Inject @Named(ActivityModule.HN) ItemManager mItemManager;
     private ArrayList<Item> mItems;
     private ArrayList<Item> mUpdated = new ArrayList<>();
     private ArrayList<String> mPromoted = new ArrayList<>();
     private final LongSparseArray<Integer> mItemPositions = new LongSparseArray<>();
     private final LongSparseArray<Integer> mUpdatedPositions = new LongSparseArray<>();
+    private final Set<String> mStaleIds = new HashSet<>();
     private int mFavoriteRevision = 1;
     private String mUsername;
     private boolean mHighlightUpdated = true;
@@ -104,12 +117,16 @@ public class StoryRecyclerViewAdapter extends
         ContentResolver cr = recyclerView.getContext().getContentResolver();
         cr.registerContentObserver(MaterialisticProvider.URI_VIEWED, true, mObserver);
         cr.registerContentObserver(MaterialisticProvider.URI_FAVORITE, true, mObserver);
+        LocalBroadcastManager.getInstance(recyclerView.getContext())
+                .registerReceiver(mUpdatesReceiver, UpdateTracker.makeUpdatesIntentFilter());
     }
 
     @Override
     public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
         super.onDetachedFromRecyclerView(recyclerView);
         recyclerView.getContext().getContentResolver().unregisterContentObserver(mObserver);
+        LocalBroadcastManager.getInstance(recyclerView.getContext())
+                .unregisterReceiver(mUpdatesReceiver);
     }
 
     @Override
@@ -170,6 +187,26 @@ public class StoryRecyclerViewAdapter extends
         notifyDataSetChanged();
     }
 
+    /**
+     * Appends given items, e.g. next page of a paged list, skipping those already listed
+     * @param items    items to append
+     */
+    public void addItems(Item[] items) {
+        if (mItems == null) {
+            return;
+        }
+        int positionStart = mItems.size();
+        for (Item item : items) {
+            if (mItemPositions.get(item.getLongId()) == null) {
+                mItems.add(item);
+                mItemPositions.put(item.getLongId(), mItems.size() - 1);
+            }
+        }
+        if (mShowAll && mItems.size() > positionStart) {
+            notifyItemRangeInserted(positionStart, mItems.size() - positionStart);
+        }
+    }
+
     public void setHighlightUpdated(boolean highlightUpdated) {
         mHighlightUpdated = highlightUpdated;
     }
@@ -197,6 +234,9 @@ public class StoryRecyclerViewAdapter extends
     @Override
     protected void bindItem(final ItemViewHolder holder) {
         final Item story = getItem(holder.getAdapterPosition());
+        if (mStaleIds.contains(story.getId())) {
+            refreshItem(story); // keep showing stale content until refreshed
+        }
         bindItemUpdated(holder, story);
         highlightUserPost(holder, story);
         holder.mStoryView.setViewed(story.isViewed());
@@ -292,6 +332,38 @@ public class StoryRecyclerViewAdapter extends
         }
     }
 
+    /**
+     * Refreshes listed items that have been updated: visible ones immediately, others
+     * upon being bound
+     * @param itemIds   updated item IDs
+     */
+    private void onItemsUpdated(List<String> itemIds) {
+        if (mItems == null) {
+            return;
+        }
+        for (String itemId : itemIds) {
+            Integer position = mItemPositions.get(Long.valueOf(itemId));
+            if (position == null) {
+                continue;
+            }
+            Item item = mItems.get(position);
+            if (item.getLocalRevision() <= 0) {
+                continue; // yet to be loaded, will be fresh anyway
+            }
+            if (mRecyclerView.findViewHolderForItemId(item.getLongId()) != null) {
+                refreshItem(item);
+            } else {
+                mStaleIds.add(itemId);
+            }
+        }
+    }
+
+    private void refreshItem(Item item) {
+        mStaleIds.remove(item.getId());
+        mItemManager.getItem(item.getId(), ItemManager.MODE_NETWORK,
+                new ItemResponseListener(this, item));
+    }
+
     private void onItemLoaded(Item item) {
         Integer position = mShowAll ? mItemPositions.get(item.getLongId()) :
                 mUpdatedPositions.get(item.getLongId());
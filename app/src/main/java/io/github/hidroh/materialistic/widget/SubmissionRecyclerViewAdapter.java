@@ -27,13 +27,14 @@ import io.github.hidroh.materialistic.R;
 import io.github.hidroh.materialistic.ThreadPreviewActivity;
 import io.github.hidroh.materialistic.data.Item;
 import io.github.hidroh.materialistic.data.ItemManager;
+import io.github.hidroh.materialistic.data.SubmissionPager;
 
 public class SubmissionRecyclerViewAdapter extends ItemRecyclerViewAdapter<SubmissionViewHolder> {
-    private final Item[] mItems;
+    private final SubmissionPager mPager;
 
-    public SubmissionRecyclerViewAdapter(ItemManager itemManager, @NonNull Item[] items) {
+    public SubmissionRecyclerViewAdapter(ItemManager itemManager, @NonNull SubmissionPager pager) {
         super(itemManager);
-        mItems = items;
+        mPager = pager;
     }
 
     @Override
@@ -41,14 +42,25 @@ public class SubmissionRecyclerViewAdapter extends ItemRecyclerViewAdapter<Submi
         return new SubmissionViewHolder(mLayoutInflater.inflate(R.layout.item_submission, parent, false));
     }
 
+    @Override
+    public void onBindViewHolder(SubmissionViewHolder holder, int position) {
+        mPager.load(position);
+        super.onBindViewHolder(holder, position);
+    }
+
     @Override
     public int getItemCount() {
-        return mItems.length;
+        return mPager.getCount();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return mPager.getItemId(position);
     }
 
     @Override
     protected Item getItem(int position) {
-        return mItems[position];
+        return mPager.get(position);
     }
 
     @Override
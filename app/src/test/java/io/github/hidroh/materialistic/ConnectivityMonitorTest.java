@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowNetworkInfo;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricGradleTestRunner.class)
+public class ConnectivityMonitorTest {
+    private ConnectivityMonitor monitor;
+    private ConnectivityMonitor.Listener listener = mock(ConnectivityMonitor.Listener.class);
+
+    @Before
+    public void setUp() {
+        setActiveNetwork(ShadowNetworkInfo.newInstance(null,
+                ConnectivityManager.TYPE_WIFI, 0, true, true));
+        monitor = Application.getConnectivityMonitor(RuntimeEnvironment.application);
+        monitor.addListener(listener);
+    }
+
+    @Test
+    public void testInstance() {
+        assertTrue(monitor == Application.getConnectivityMonitor(RuntimeEnvironment.application));
+    }
+
+    @Test
+    public void testWiFiNetwork() {
+        assertTrue(monitor.isConnected());
+        assertTrue(monitor.isOnWiFi());
+        assertFalse(monitor.isMetered());
+    }
+
+    @Test
+    public void testNonWiFiNetwork() {
+        setActiveNetwork(ShadowNetworkInfo.newInstance(null,
+                ConnectivityManager.TYPE_MOBILE, 0, true, true));
+        assertTrue(monitor.isOnWiFi()); // not updated until broadcast
+        sendBroadcast();
+        assertTrue(monitor.isConnected());
+        assertFalse(monitor.isOnWiFi());
+        assertTrue(monitor.isMetered());
+        verify(listener).onConnectivityChanged(monitor);
+    }
+
+    @Test
+    public void testEthernetNetwork() {
+        setActiveNetwork(ShadowNetworkInfo.newInstance(null,
+                ConnectivityManager.TYPE_ETHERNET, 0, true, true));
+        sendBroadcast();
+        assertTrue(monitor.isConnected());
+        assertFalse(monitor.isOnWiFi());
+        assertFalse(monitor.isMetered());
+    }
+
+    @Test
+    public void testNoActiveNetwork() {
+        setActiveNetwork(null);
+        sendBroadcast();
+        assertFalse(monitor.isConnected());
+        assertFalse(monitor.isOnWiFi());
+        assertFalse(monitor.isMetered());
+        verify(listener).onConnectivityChanged(monitor);
+    }
+
+    @Test
+    public void testUnchanged() {
+        sendBroadcast();
+        verify(listener, never()).onConnectivityChanged(any(ConnectivityMonitor.class));
+    }
+
+    @Test
+    public void testRemoveListener() {
+        monitor.removeListener(listener);
+        setActiveNetwork(null);
+        sendBroadcast();
+        verify(listener, never()).onConnectivityChanged(any(ConnectivityMonitor.class));
+    }
+
+    private void setActiveNetwork(NetworkInfo networkInfo) {
+        shadowOf((ConnectivityManager) RuntimeEnvironment.application
+                .getSystemService(Context.CONNECTIVITY_SERVICE))
+                .setActiveNetworkInfo(networkInfo);
+    }
+
+    private void sendBroadcast() {
+        RuntimeEnvironment.application.sendBroadcast(
+                new Intent(ConnectivityManager.CONNECTIVITY_ACTION));
+    }
+}
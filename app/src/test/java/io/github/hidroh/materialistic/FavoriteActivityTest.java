@@ -52,14 +52,12 @@ import org.robolectric.shadows.ShadowToast;
 import org.robolectric.shadows.support.v4.ShadowLocalBroadcastManager;
 import org.robolectric.util.ActivityController;
 
-import java.util.ArrayList;
 import java.util.ConcurrentModificationException;
 import java.util.Set;
 
 import javax.inject.Inject;
 
 import io.github.hidroh.materialistic.accounts.UserServices;
-import io.github.hidroh.materialistic.data.Favorite;
 import io.github.hidroh.materialistic.data.FavoriteManager;
 import io.github.hidroh.materialistic.data.MaterialisticProvider;
 import io.github.hidroh.materialistic.data.TestHnItem;
@@ -270,28 +268,62 @@ public class FavoriteActivityTest {
     }
 
     @Test
-    public void testEmail() {
-        shadowOf(activity).clickMenuItem(R.id.menu_email);
-        verify(favoriteManager).get(any(Context.class), anyString());
+    public void testExport() {
+        shadowOf(activity).clickMenuItem(R.id.menu_export_html);
+        verify(favoriteManager).export(any(Context.class), anyString(),
+                eq(FavoriteManager.FORMAT_HTML));
         AlertDialog progressDialog = ShadowProgressDialog.getLatestAlertDialog();
         assertThat(progressDialog).isShowing();
 
-        ResolveInfo emailResolveInfo = new ResolveInfo();
-        emailResolveInfo.activityInfo = new ActivityInfo();
-        emailResolveInfo.activityInfo.applicationInfo = new ApplicationInfo();
-        emailResolveInfo.activityInfo.applicationInfo.packageName =
-                ListActivity.class.getPackage().getName();
-        emailResolveInfo.activityInfo.name = ListActivity.class.getName();
         RobolectricPackageManager rpm = (RobolectricPackageManager) RuntimeEnvironment.application.getPackageManager();
-        rpm.addResolveInfoForIntent(new Intent(Intent.ACTION_SENDTO, Uri.parse("mailto:")),
-                emailResolveInfo);
+        rpm.addResolveInfoForIntent(new Intent(Intent.ACTION_SEND), createResolveInfo());
         ShadowLocalBroadcastManager manager = shadowOf(LocalBroadcastManager.getInstance(activity));
-        Intent intent = new Intent(FavoriteManager.ACTION_GET);
-        intent.putExtra(FavoriteManager.ACTION_GET_EXTRA_DATA, new ArrayList<Favorite>());
+        Intent intent = new Intent(FavoriteManager.ACTION_EXPORT);
+        intent.putExtra(FavoriteManager.ACTION_EXPORT_EXTRA_DATA,
+                MaterialisticProvider.URI_EXPORT.buildUpon().appendPath("favorites.html").build());
+        intent.putExtra(FavoriteManager.ACTION_EXPORT_EXTRA_TYPE, "text/html");
         manager.getRegisteredBroadcastReceivers().get(0).broadcastReceiver
                 .onReceive(activity, intent);
         assertThat(progressDialog).isNotShowing();
-        assertNotNull(shadowOf(activity).getNextStartedActivity());
+        assertThat(shadowOf(activity).getNextStartedActivity())
+                .hasAction(Intent.ACTION_SEND)
+                .hasType("text/html")
+                .hasFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+    }
+
+    @Test
+    public void testExportJson() {
+        shadowOf(activity).clickMenuItem(R.id.menu_export_json);
+        verify(favoriteManager).export(any(Context.class), anyString(),
+                eq(FavoriteManager.FORMAT_JSON_LINES));
+    }
+
+    @Test
+    public void testImport() {
+        RobolectricPackageManager rpm = (RobolectricPackageManager) RuntimeEnvironment.application.getPackageManager();
+        rpm.addResolveInfoForIntent(new Intent(Intent.ACTION_GET_CONTENT)
+                .addCategory(Intent.CATEGORY_OPENABLE), createResolveInfo());
+        shadowOf(activity).clickMenuItem(R.id.menu_import);
+        Uri uri = Uri.parse("content://export/favorites.jsonl");
+        shadowOf(activity).receiveResult(shadowOf(activity).getNextStartedActivity(),
+                Activity.RESULT_OK, new Intent().setData(uri));
+        verify(favoriteManager).importFrom(any(Context.class), eq(uri));
+        AlertDialog progressDialog = ShadowProgressDialog.getLatestAlertDialog();
+        assertThat(progressDialog).isShowing();
+
+        ShadowLocalBroadcastManager manager = shadowOf(LocalBroadcastManager.getInstance(activity));
+        manager.getRegisteredBroadcastReceivers().get(0).broadcastReceiver
+                .onReceive(activity, new Intent(FavoriteManager.ACTION_IMPORT)
+                        .putExtra(FavoriteManager.ACTION_IMPORT_EXTRA_COUNT, 100)
+                        .putExtra(FavoriteManager.ACTION_IMPORT_EXTRA_DONE, false));
+        assertThat(progressDialog).isShowing();
+        manager.getRegisteredBroadcastReceivers().get(0).broadcastReceiver
+                .onReceive(activity, new Intent(FavoriteManager.ACTION_IMPORT)
+                        .putExtra(FavoriteManager.ACTION_IMPORT_EXTRA_COUNT, 150)
+                        .putExtra(FavoriteManager.ACTION_IMPORT_EXTRA_DONE, true));
+        assertThat(progressDialog).isNotShowing();
+        assertEquals(activity.getResources().getQuantityString(R.plurals.imported, 150, 150),
+                ShadowToast.getTextOfLatestToast());
     }
 
     @Test
@@ -445,7 +477,17 @@ public class FavoriteActivityTest {
         verify(volumeNavigationDelegate).onKeyLongPress(anyInt(), any(KeyEvent.class));
     }
 
-    private void notifyChange(Uri uri) {
+    private ResolveInfo createResolveInfo() {
+        ResolveInfo resolveInfo = new ResolveInfo();
+        resolveInfo.activityInfo = new ActivityInfo();
+        resolveInfo.activityInfo.applicationInfo = new ApplicationInfo();
+        resolveInfo.activityInfo.applicationInfo.packageName =
+                ListActivity.class.getPackage().getName();
+        resolveInfo.activityInfo.name = ListActivity.class.getName();
+        return resolveInfo;
+    }
+
+        private void notifyChange(Uri uri) {
         try {
             resolver.notifyChange(uri, null);
         } catch (ConcurrentModificationException e) {
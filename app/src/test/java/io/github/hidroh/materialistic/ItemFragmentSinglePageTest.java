@@ -26,6 +26,7 @@ import org.robolectric.annotation.Config;
 import org.robolectric.fakes.RoboMenuItem;
 import org.robolectric.internal.ShadowExtractor;
 import org.robolectric.shadows.ShadowNetworkInfo;
+import org.robolectric.shadows.ShadowLooper;
 import org.robolectric.shadows.ShadowPopupMenu;
 import org.robolectric.shadows.ShadowToast;
 import org.robolectric.shadows.support.v4.SupportFragmentTestUtil;
@@ -54,6 +55,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.verify;
 import static org.robolectric.Shadows.shadowOf;
@@ -340,6 +342,28 @@ public class ItemFragmentSinglePageTest {
         assertEquals(3, adapter.getItemCount());
     }
 
+    @Test
+    public void testLiveMergeNewKids() {
+        ShadowLooper.idleMainLooper(ItemFragment.LIVE_INTERVAL_MILLIS);
+        verify(hackerNewsClient).getItem(eq("0"), eq(ItemManager.MODE_NETWORK), listener.capture());
+        listener.getValue().onResponse(new TestItem() {
+            @Override
+            public long[] getKids() {
+                return new long[]{1L, 4L};
+            }
+
+            @Override
+            public int getDescendants() {
+                return 4;
+            }
+        });
+        assertEquals(4, adapter.getItemCount()); // expanded thread retained
+        assertEquals(4L, adapter.getItemId(3)); // inserted after previous top level comment
+        reset(hackerNewsClient);
+        ShadowLooper.idleMainLooper(ItemFragment.LIVE_INTERVAL_MILLIS);
+        verify(hackerNewsClient).getItem(eq("0"), eq(ItemManager.MODE_NETWORK), any());
+    }
+
     @Test
     public void testDefaultDisplayAllLines() {
         assertThat(viewHolder.itemView.findViewById(R.id.more)).isNotVisible();
@@ -25,9 +25,12 @@ import org.robolectric.util.ActivityController;
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import io.github.hidroh.materialistic.data.AlgoliaClient;
+import io.github.hidroh.materialistic.data.ConditionalResponseListener;
 import io.github.hidroh.materialistic.data.HackerNewsClient;
 import io.github.hidroh.materialistic.data.Item;
 import io.github.hidroh.materialistic.data.ItemManager;
+import io.github.hidroh.materialistic.data.PagedItemManager;
 import io.github.hidroh.materialistic.data.ResponseListener;
 import io.github.hidroh.materialistic.data.TestHnItem;
 import io.github.hidroh.materialistic.test.ListActivity;
@@ -39,6 +42,8 @@ import io.github.hidroh.materialistic.test.TestItem;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
 import static org.assertj.android.api.Assertions.assertThat;
 import static org.assertj.android.support.v4.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
@@ -55,13 +60,14 @@ public class ListFragmentTest {
     private ActivityController<ListActivity> controller;
     private ListActivity activity;
     @Inject @Named(ActivityModule.HN) ItemManager itemManager;
+    @Inject @Named(ActivityModule.ALGOLIA) ItemManager algoliaItemManager;
     @Captor ArgumentCaptor<ResponseListener<Item[]>> listener;
 
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
         TestApplication.applicationGraph.inject(this);
-        reset(itemManager);
+        reset(itemManager, algoliaItemManager);
         controller = Robolectric.buildActivity(ListActivity.class)
                         .create().postCreate(null).start().resume().visible();
         activity = controller.get();
@@ -104,6 +110,65 @@ public class ListFragmentTest {
         controller.pause().stop().destroy();
     }
 
+    @Test
+    public void testLoadMore() {
+        Bundle args = new Bundle();
+        args.putString(ListFragment.EXTRA_ITEM_MANAGER, AlgoliaClient.class.getName());
+        args.putString(ListFragment.EXTRA_FILTER, "filter");
+        activity.getSupportFragmentManager()
+                .beginTransaction()
+                .add(android.R.id.list,
+                        Fragment.instantiate(activity, ListFragment.class.getName(), args))
+                .commit();
+        verify(algoliaItemManager).getStories(eq("filter"),
+                eq(ItemManager.MODE_DEFAULT),
+                listener.capture());
+        listener.getValue().onResponse(new Item[]{new TestHnItem(1L)});
+        // first page does not fill the list, should prefetch next page
+        verify((PagedItemManager) algoliaItemManager).getStories(eq("filter"),
+                eq(ItemManager.MODE_DEFAULT),
+                eq(1),
+                listener.capture());
+        listener.getValue().onResponse(new Item[]{new TestHnItem(1L), new TestHnItem(2L)});
+        RecyclerView recyclerView = (RecyclerView) activity.findViewById(R.id.recycler_view);
+        assertEquals(2, recyclerView.getAdapter().getItemCount());
+        controller.pause().stop().destroy();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testLoadMoreInvalidatedByRefresh() {
+        Bundle args = new Bundle();
+        args.putString(ListFragment.EXTRA_ITEM_MANAGER, AlgoliaClient.class.getName());
+        args.putString(ListFragment.EXTRA_FILTER, "filter");
+        activity.getSupportFragmentManager()
+                .beginTransaction()
+                .add(android.R.id.list,
+                        Fragment.instantiate(activity, ListFragment.class.getName(), args))
+                .commit();
+        verify(algoliaItemManager).getStories(eq("filter"),
+                eq(ItemManager.MODE_DEFAULT),
+                listener.capture());
+        listener.getValue().onResponse(new Item[]{new TestHnItem(1L)});
+        ArgumentCaptor<ResponseListener<Item[]>> pageListener = ArgumentCaptor.forClass(
+                (Class<ResponseListener<Item[]>>) (Class) ResponseListener.class);
+        verify((PagedItemManager) algoliaItemManager).getStories(eq("filter"),
+                eq(ItemManager.MODE_DEFAULT),
+                eq(1),
+                pageListener.capture());
+        ShadowSwipeRefreshLayout shadowSwipeRefreshLayout = (ShadowSwipeRefreshLayout)
+                ShadowExtractor.extract(activity.findViewById(R.id.swipe_layout));
+        shadowSwipeRefreshLayout.getOnRefreshListener().onRefresh();
+        verify(algoliaItemManager).getStories(eq("filter"),
+                eq(ItemManager.MODE_NETWORK),
+                listener.capture());
+        listener.getValue().onResponse(new Item[]{new TestHnItem(3L)});
+        pageListener.getValue().onResponse(new Item[]{new TestHnItem(2L)}); // stale page
+        RecyclerView recyclerView = (RecyclerView) activity.findViewById(R.id.recycler_view);
+        assertEquals(1, recyclerView.getAdapter().getItemCount());
+        controller.pause().stop().destroy();
+    }
+
     @Test
     public void testHighlightNewItems() {
         Bundle args = new Bundle();
@@ -241,6 +306,41 @@ public class ListFragmentTest {
         controller.pause().stop().destroy();
     }
 
+    @Test
+    public void testRefreshNotModified() {
+        Bundle args = new Bundle();
+        args.putString(ListFragment.EXTRA_ITEM_MANAGER, HackerNewsClient.class.getName());
+        args.putString(ListFragment.EXTRA_FILTER, ItemManager.TOP_FETCH_MODE);
+        activity.getSupportFragmentManager()
+                .beginTransaction()
+                .add(android.R.id.list,
+                        Fragment.instantiate(activity, ListFragment.class.getName(), args))
+                .commit();
+        verify(itemManager).getStories(anyString(),
+                eq(ItemManager.MODE_DEFAULT),
+                listener.capture());
+        listener.getValue().onResponse(new Item[]{new TestItem() {}});
+        RecyclerView recyclerView = (RecyclerView) activity.findViewById(R.id.recycler_view);
+        RecyclerView.Adapter adapter = recyclerView.getAdapter();
+        reset(itemManager);
+        ShadowSwipeRefreshLayout shadowSwipeRefreshLayout = (ShadowSwipeRefreshLayout)
+                ShadowExtractor.extract(activity.findViewById(R.id.swipe_layout));
+        shadowSwipeRefreshLayout.getOnRefreshListener().onRefresh();
+        verify(itemManager).getStories(anyString(),
+                eq(ItemManager.MODE_NETWORK),
+                listener.capture());
+        assertTrue(listener.getValue() instanceof ConditionalResponseListener);
+        ((ConditionalResponseListener) listener.getValue()).onNotModified();
+        assertSame(adapter, recyclerView.getAdapter());
+        assertEquals(1, adapter.getItemCount());
+        assertThat((SwipeRefreshLayout) activity.findViewById(R.id.swipe_layout))
+                .isNotRefreshing();
+        verify(itemManager, never()).getStories(anyString(),
+                eq(ItemManager.MODE_CACHE),
+                any(ResponseListener.class));
+        controller.pause().stop().destroy();
+    }
+
     @Test
     public void testErrorWhenDetached() {
         Bundle args = new Bundle();
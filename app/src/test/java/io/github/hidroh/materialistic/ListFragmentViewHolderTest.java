@@ -9,6 +9,7 @@ import android.os.Build;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
 import android.support.v4.content.ContextCompat;
+import android.support.v4.content.LocalBroadcastManager;
 import android.support.v4.content.ShadowContentResolverCompatJellybean;
 import android.support.v7.widget.RecyclerView;
 import android.view.View;
@@ -36,6 +37,9 @@ import org.robolectric.shadows.ShadowPopupMenu;
 import org.robolectric.shadows.ShadowToast;
 import org.robolectric.util.ActivityController;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+
 import javax.inject.Inject;
 import javax.inject.Named;
 
@@ -48,6 +52,7 @@ import io.github.hidroh.materialistic.data.MaterialisticProvider;
 import io.github.hidroh.materialistic.data.ResponseListener;
 import io.github.hidroh.materialistic.data.SessionManager;
 import io.github.hidroh.materialistic.data.TestHnItem;
+import io.github.hidroh.materialistic.data.UpdateTracker;
 import io.github.hidroh.materialistic.data.WebItem;
 import io.github.hidroh.materialistic.test.ListActivity;
 import io.github.hidroh.materialistic.test.ShadowAnimation;
@@ -144,6 +149,23 @@ public class ListFragmentViewHolderTest {
         assertViewed();
     }
 
+    @Test
+    public void testStoryUpdated() {
+        verify(itemManager).getItem(anyString(), eq(ItemManager.MODE_DEFAULT), itemListener.capture());
+        itemListener.getValue().onResponse(item);
+        LocalBroadcastManager.getInstance(activity).sendBroadcast(
+                new Intent(UpdateTracker.ACTION_UPDATES)
+                        .putStringArrayListExtra(UpdateTracker.EXTRA_ITEM_IDS,
+                                new ArrayList<>(Arrays.asList("2", "1"))));
+        adapter.makeItemVisible(0);
+        verify(itemManager).getItem(eq("1"), eq(ItemManager.MODE_NETWORK), itemListener.capture());
+        itemListener.getValue().onResponse(item);
+        adapter.makeItemVisible(0);
+        // refreshed only once per update
+        verify(itemManager).getItem(eq("1"), eq(ItemManager.MODE_NETWORK),
+                any(ResponseListener.class));
+    }
+
     @Test
     public void testNewStory() {
         reset(itemManager);
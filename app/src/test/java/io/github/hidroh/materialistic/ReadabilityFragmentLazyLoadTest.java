@@ -1,6 +1,7 @@
 package io.github.hidroh.materialistic;
 
 import android.content.Context;
+import android.content.Intent;
 import android.net.ConnectivityManager;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
@@ -61,6 +62,7 @@ public class ReadabilityFragmentLazyLoadTest {
         fragment = Fragment.instantiate(activity, ReadabilityFragment.class.getName(), args);
         shadowOf((ConnectivityManager) activity.getSystemService(Context.CONNECTIVITY_SERVICE))
                 .setActiveNetworkInfo(null);
+        activity.sendBroadcast(new Intent(ConnectivityManager.CONNECTIVITY_ACTION));
     }
 
     @Test
@@ -106,6 +108,7 @@ public class ReadabilityFragmentLazyLoadTest {
         shadowOf((ConnectivityManager) activity.getSystemService(Context.CONNECTIVITY_SERVICE))
                 .setActiveNetworkInfo(ShadowNetworkInfo.newInstance(null,
                         ConnectivityManager.TYPE_WIFI, 0, true, true));
+        activity.sendBroadcast(new Intent(ConnectivityManager.CONNECTIVITY_ACTION));
         fragment.setUserVisibleHint(true);
         verify(readabilityClient, never()).parse(anyString(), anyString(),
                 any(ReadabilityClient.Callback.class));
@@ -118,6 +121,26 @@ public class ReadabilityFragmentLazyLoadTest {
                 any(ReadabilityClient.Callback.class));
     }
 
+    @Test
+    public void testLoadOnWifiConnected() {
+        ShadowSupportPreferenceManager.getDefaultSharedPreferences(activity)
+                .edit()
+                .putBoolean(activity.getString(R.string.pref_lazy_load), false)
+                .commit();
+        activity.getSupportFragmentManager()
+                .beginTransaction()
+                .replace(R.id.content_frame, fragment, "tag")
+                .commit();
+        verify(readabilityClient, never()).parse(anyString(), anyString(),
+                any(ReadabilityClient.Callback.class));
+        shadowOf((ConnectivityManager) activity.getSystemService(Context.CONNECTIVITY_SERVICE))
+                .setActiveNetworkInfo(ShadowNetworkInfo.newInstance(null,
+                        ConnectivityManager.TYPE_WIFI, 0, true, true));
+        activity.sendBroadcast(new Intent(ConnectivityManager.CONNECTIVITY_ACTION));
+        verify(readabilityClient).parse(anyString(), anyString(),
+                any(ReadabilityClient.Callback.class));
+    }
+
     @After
     public void tearDown() {
         controller.pause().stop().destroy();
@@ -67,6 +67,7 @@ public class ReadabilityFragmentTest {
         shadowOf((ConnectivityManager) activity.getSystemService(Context.CONNECTIVITY_SERVICE))
                 .setActiveNetworkInfo(ShadowNetworkInfo.newInstance(null,
                         ConnectivityManager.TYPE_WIFI, 0, true, true));
+        activity.sendBroadcast(new Intent(ConnectivityManager.CONNECTIVITY_ACTION));
         Bundle args = new Bundle();
         WebItem item = new TestWebItem() {
             @Override
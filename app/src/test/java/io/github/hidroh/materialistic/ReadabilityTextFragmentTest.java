@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.ConnectivityManager;
+import android.os.Bundle;
+import android.support.v4.app.Fragment;
+import android.support.v7.widget.RecyclerView;
+import android.widget.TextView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.fakes.RoboMenuItem;
+import org.robolectric.shadows.ShadowNetworkInfo;
+import org.robolectric.util.ActivityController;
+
+import javax.inject.Inject;
+
+import io.github.hidroh.materialistic.data.ReadabilityClient;
+import io.github.hidroh.materialistic.data.WebItem;
+import io.github.hidroh.materialistic.test.ShadowRecyclerView;
+import io.github.hidroh.materialistic.test.ShadowSupportPreferenceManager;
+import io.github.hidroh.materialistic.test.TestReadabilityActivity;
+import io.github.hidroh.materialistic.test.TestWebItem;
+
+import static org.assertj.android.api.Assertions.assertThat;
+import static org.assertj.android.support.v4.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+import static org.robolectric.Shadows.shadowOf;
+
+@SuppressWarnings("ConstantConditions")
+@Config(shadows = {ShadowRecyclerView.class, ShadowSupportPreferenceManager.class})
+@RunWith(RobolectricGradleTestRunner.class)
+public class ReadabilityTextFragmentTest {
+    private TestReadabilityActivity activity;
+    private ActivityController<TestReadabilityActivity> controller;
+    @Inject ReadabilityClient readabilityClient;
+    @Captor ArgumentCaptor<ReadabilityClient.Callback> callback;
+    private ReadabilityTextFragment fragment;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        TestApplication.applicationGraph.inject(this);
+        reset(readabilityClient);
+        controller = Robolectric.buildActivity(TestReadabilityActivity.class);
+        activity = controller.create().start().resume().visible().get();
+        ShadowSupportPreferenceManager.getDefaultSharedPreferences(activity)
+                .edit()
+                .putBoolean(activity.getString(R.string.pref_lazy_load), false)
+                .apply();
+        shadowOf((ConnectivityManager) activity.getSystemService(Context.CONNECTIVITY_SERVICE))
+                .setActiveNetworkInfo(ShadowNetworkInfo.newInstance(null,
+                        ConnectivityManager.TYPE_WIFI, 0, true, true));
+        activity.sendBroadcast(new Intent(ConnectivityManager.CONNECTIVITY_ACTION));
+        Bundle args = new Bundle();
+        WebItem item = new TestWebItem() {
+            @Override
+            public String getId() {
+                return "1";
+            }
+
+            @Override
+            public String getUrl() {
+                return "http://example.com/article.html";
+            }
+        };
+        args.putParcelable(ReadabilityTextFragment.EXTRA_ITEM, item);
+        fragment = (ReadabilityTextFragment) Fragment.instantiate(activity,
+                ReadabilityTextFragment.class.getName(), args);
+        activity.getSupportFragmentManager()
+                .beginTransaction()
+                .replace(R.id.content_frame, fragment, "tag")
+                .commit();
+    }
+
+    @Test
+    public void testParseAndBind() {
+        assertThat(activity.findViewById(R.id.progress)).isVisible();
+        verify(readabilityClient).parse(eq("1"), eq("http://example.com/article.html"),
+                callback.capture());
+        callback.getValue().onResponse("<div><p>paragraph 1</p><p>paragraph 2</p></div>");
+        RecyclerView recyclerView = (RecyclerView) activity.findViewById(R.id.recycler_view);
+        assertThat(recyclerView.getAdapter().getItemCount()).isEqualTo(2);
+        assertThat(activity.findViewById(R.id.progress)).isNotVisible();
+        assertThat(shadowOf(activity).getOptionsMenu().findItem(R.id.menu_font_options)).isVisible();
+        shadowOf(activity).recreate();
+        assertThat(((RecyclerView) activity.findViewById(R.id.recycler_view))
+                .getAdapter().getItemCount()).isEqualTo(2);
+        controller.pause().stop().destroy();
+    }
+
+    @Test
+    public void testParseFailed() {
+        verify(readabilityClient).parse(eq("1"), eq("http://example.com/article.html"),
+                callback.capture());
+        callback.getValue().onResponse(null);
+        assertThat(activity.findViewById(R.id.empty_readability)).isVisible();
+        assertThat(shadowOf(activity).getOptionsMenu().findItem(R.id.menu_font_options)).isNotVisible();
+        controller.pause().stop().destroy();
+    }
+
+    @Test
+    public void testTextSize() {
+        verify(readabilityClient).parse(eq("1"), eq("http://example.com/article.html"),
+                callback.capture());
+        callback.getValue().onResponse("<div><p>paragraph</p></div>");
+        fragment.onOptionsItemSelected(new RoboMenuItem(R.id.menu_font_options));
+        assertThat(fragment.getFragmentManager())
+                .hasFragmentWithTag(PopupSettingsFragment.class.getName());
+        RecyclerView recyclerView = (RecyclerView) activity.findViewById(R.id.recycler_view);
+        recyclerView.measure(0, 0);
+        recyclerView.layout(0, 0, 100, 10000);
+        float textSize = ((TextView) recyclerView.getChildAt(0)).getTextSize();
+        ShadowSupportPreferenceManager.getDefaultSharedPreferences(activity)
+                .edit()
+                .putString(activity.getString(R.string.pref_readability_text_size), "3")
+                .apply();
+        recyclerView.measure(0, 0);
+        recyclerView.layout(0, 0, 100, 10000);
+        assertThat(((TextView) recyclerView.getChildAt(0)).getTextSize())
+                .isGreaterThan(textSize);
+        controller.pause().stop().destroy();
+    }
+}
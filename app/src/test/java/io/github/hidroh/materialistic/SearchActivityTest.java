@@ -1,15 +1,23 @@
 package io.github.hidroh.materialistic;
 
 import android.app.SearchManager;
+import android.content.Context;
 import android.content.Intent;
+import android.net.ConnectivityManager;
+import android.support.v7.widget.SearchView;
+import android.view.MenuItem;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.robolectric.Robolectric;
 import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowNetworkInfo;
+import org.robolectric.shadows.ShadowLooper;
 import org.robolectric.util.ActivityController;
 
 import javax.inject.Inject;
@@ -28,6 +36,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -39,11 +49,15 @@ public class SearchActivityTest {
     private ActivityController<SearchActivity> controller;
     private SearchActivity activity;
     @Inject @Named(ActivityModule.ALGOLIA) ItemManager itemManager;
+    @Inject @Named(ActivityModule.LOCAL) ItemManager localItemManager;
+    @Inject ActionViewResolver actionViewResolver;
 
     @Before
     public void setUp() {
         TestApplication.applicationGraph.inject(this);
         reset(itemManager);
+        reset(localItemManager);
+        reset(actionViewResolver.getActionView(mock(MenuItem.class)));
         ShadowSearchRecentSuggestions.recentQueries.clear();
         controller = Robolectric.buildActivity(SearchActivity.class);
         activity = controller.get();
@@ -86,6 +100,105 @@ public class SearchActivityTest {
                 any(ResponseListener.class));
     }
 
+    @Test
+    public void testSearchAsYouType() {
+        Intent intent = new Intent();
+        intent.putExtra(SearchManager.QUERY, "filter");
+        controller.withIntent(intent).create().postCreate(null).start().resume().visible();
+        SearchView.OnQueryTextListener listener = getQueryTextListener();
+        listener.onQueryTextChange("a");
+        listener.onQueryTextChange("an");
+        listener.onQueryTextChange("and");
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        verify(itemManager, never()).getStories(eq("an"),
+                eq(ItemManager.MODE_DEFAULT),
+                any(ResponseListener.class));
+        verify(itemManager).getStories(eq("and"),
+                eq(ItemManager.MODE_DEFAULT),
+                any(ResponseListener.class));
+        assertEquals("and", activity.getSupportActionBar().getSubtitle());
+        listener.onQueryTextChange(" ");
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        assertEquals("and", activity.getSupportActionBar().getSubtitle());
+    }
+
+    @Test
+    public void testSearchAsYouTypeWithoutQuery() {
+        controller.create().postCreate(null).start().resume().visible();
+        getQueryTextListener().onQueryTextChange("query");
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        verify(itemManager).getStories(eq("query"),
+                eq(ItemManager.MODE_DEFAULT),
+                any(ResponseListener.class));
+    }
+
+    @Test
+    public void testSubmit() {
+        controller.create().postCreate(null).start().resume().visible();
+        assertTrue(getQueryTextListener().onQueryTextSubmit("query"));
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        assertThat(ShadowSearchRecentSuggestions.recentQueries).contains("query");
+        verify(itemManager).getStories(eq("query"),
+                eq(ItemManager.MODE_DEFAULT),
+                any(ResponseListener.class));
+    }
+
+    @Test
+    public void testSearchOffline() {
+        Intent intent = new Intent();
+        intent.putExtra(SearchManager.QUERY, "filter");
+        controller.withIntent(intent).create().postCreate(null).start().resume().visible();
+        assertFalse(shadowOf(activity).getOptionsMenu()
+                .findItem(R.id.menu_search_offline).isChecked());
+        activity.onOptionsItemSelected(shadowOf(activity).getOptionsMenu()
+                .findItem(R.id.menu_search_offline));
+        verify(localItemManager).getStories(eq("filter"),
+                eq(ItemManager.MODE_DEFAULT),
+                any(ResponseListener.class));
+        activity.onPrepareOptionsMenu(shadowOf(activity).getOptionsMenu());
+        assertTrue(shadowOf(activity).getOptionsMenu()
+                .findItem(R.id.menu_search_offline).isChecked());
+        assertFalse(shadowOf(activity).getOptionsMenu().findItem(R.id.menu_sort).isVisible());
+    }
+
+    @Test
+    public void testConnectivityChanged() {
+        setConnected(true);
+        Intent intent = new Intent();
+        intent.putExtra(SearchManager.QUERY, "filter");
+        controller.withIntent(intent).create().postCreate(null).start().resume().visible();
+        assertFalse(shadowOf(activity).getOptionsMenu()
+                .findItem(R.id.menu_search_offline).isChecked());
+        setConnected(false);
+        verify(localItemManager).getStories(eq("filter"),
+                eq(ItemManager.MODE_DEFAULT),
+                any(ResponseListener.class));
+        activity.onPrepareOptionsMenu(shadowOf(activity).getOptionsMenu());
+        assertTrue(shadowOf(activity).getOptionsMenu()
+                .findItem(R.id.menu_search_offline).isChecked());
+        setConnected(true);
+        activity.onPrepareOptionsMenu(shadowOf(activity).getOptionsMenu());
+        assertFalse(shadowOf(activity).getOptionsMenu()
+                .findItem(R.id.menu_search_offline).isChecked());
+    }
+
+    private void setConnected(boolean connected) {
+        shadowOf((ConnectivityManager) RuntimeEnvironment.application
+                .getSystemService(Context.CONNECTIVITY_SERVICE))
+                .setActiveNetworkInfo(connected ? ShadowNetworkInfo.newInstance(null,
+                        ConnectivityManager.TYPE_WIFI, 0, true, true) : null);
+        RuntimeEnvironment.application.sendBroadcast(
+                new Intent(ConnectivityManager.CONNECTIVITY_ACTION));
+    }
+
+    private SearchView.OnQueryTextListener getQueryTextListener() {
+        ArgumentCaptor<SearchView.OnQueryTextListener> captor =
+                ArgumentCaptor.forClass(SearchView.OnQueryTextListener.class);
+        verify((SearchView) actionViewResolver.getActionView(mock(MenuItem.class)))
+                .setOnQueryTextListener(captor.capture());
+        return captor.getValue();
+    }
+
     @After
     public void tearDown() {
         controller.pause().stop().destroy();
@@ -28,9 +28,11 @@ import io.github.hidroh.materialistic.data.FavoriteManager;
 import io.github.hidroh.materialistic.data.FeedbackClient;
 import io.github.hidroh.materialistic.data.ItemManager;
 import io.github.hidroh.materialistic.data.ItemSyncService;
+import io.github.hidroh.materialistic.data.PagedItemManager;
 import io.github.hidroh.materialistic.data.ReadabilityClient;
 import io.github.hidroh.materialistic.data.RestServiceFactory;
 import io.github.hidroh.materialistic.data.SessionManager;
+import io.github.hidroh.materialistic.data.UpdateTracker;
 import io.github.hidroh.materialistic.data.UserManager;
 import io.github.hidroh.materialistic.test.TestFavoriteActivity;
 import io.github.hidroh.materialistic.test.TestItemActivity;
@@ -77,6 +79,7 @@ import static org.mockito.Mockito.when;
                 ListFragment.class,
                 WebFragment.class,
                 ReadabilityFragment.class,
+                ReadabilityTextFragment.class,
                 ReleaseNotesActivity.class,
                 StoryRecyclerViewAdapter.class,
                 FavoriteRecyclerViewAdapter.class,
@@ -121,8 +124,9 @@ import static org.mockito.Mockito.when;
 )
 public class TestActivityModule {
     private final ItemManager hackerNewsClient = mock(ItemManager.class);
-    private final ItemManager algoliaClient = mock(ItemManager.class);
-    private final ItemManager algoliaPopularClient = mock(ItemManager.class);
+    private final ItemManager algoliaClient = mock(PagedItemManager.class);
+    private final ItemManager algoliaPopularClient = mock(PagedItemManager.class);
+    private final ItemManager localSearchClient = mock(ItemManager.class);
     private final UserManager userManager = mock(UserManager.class);
     private final FavoriteManager favoriteManager = mock(FavoriteManager.class);
     private final SessionManager sessionManager = mock(SessionManager.class);
@@ -133,6 +137,7 @@ public class TestActivityModule {
     private final CustomTabsDelegate customTabsDelegate = mock(CustomTabsDelegate.class);
     private final VolumeNavigationDelegate volumeNavigationDelegate = mock(VolumeNavigationDelegate.class);
     private final RestServiceFactory restServiceFactory = mock(RestServiceFactory.class);
+    private final UpdateTracker updateTracker = mock(UpdateTracker.class);
 
     @Provides @Singleton @Named(ActivityModule.HN)
     public ItemManager provideHackerNewsClient() {
@@ -149,6 +154,11 @@ public class TestActivityModule {
         return algoliaPopularClient;
     }
 
+    @Provides @Singleton @Named(ActivityModule.LOCAL)
+    public ItemManager provideLocalSearchClient() {
+        return localSearchClient;
+    }
+
     @Provides @Singleton
     public FavoriteManager provideFavoriteManager() {
         return favoriteManager;
@@ -179,6 +189,11 @@ public class TestActivityModule {
         return restServiceFactory;
     }
 
+    @Provides @Singleton
+    public UpdateTracker provideUpdateTracker() {
+        return updateTracker;
+    }
+
     @Provides @Singleton
     public ActionViewResolver provideActionViewResolver() {
         ActionViewResolver resolver = mock(ActionViewResolver.class);
@@ -3,7 +3,6 @@ package io.github.hidroh.materialistic;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
-import android.support.annotation.NonNull;
 import android.support.design.widget.AppBarLayout;
 import android.support.design.widget.TabLayout;
 import android.support.v7.widget.RecyclerView;
@@ -74,22 +73,7 @@ public class UserActivityTest {
         when(user.getCreated(any(Context.class))).thenReturn("May 01 2015");
         when(user.getKarma()).thenReturn(2016L);
         when(user.getAbout()).thenReturn("about");
-        when(user.getItems()).thenReturn(new Item[]{
-                new TestHnItem(1L){
-                    @NonNull
-                    @Override
-                    public String getType() {
-                        return COMMENT_TYPE;
-                    }
-                },
-                new TestHnItem(2L) {
-                    @NonNull
-                    @Override
-                    public String getType() {
-                        return STORY_TYPE;
-                    }
-                }
-        });
+        when(user.getSubmitted()).thenReturn(new long[]{1L, 2L});
     }
 
     @Test
@@ -184,10 +168,12 @@ public class UserActivityTest {
         ShadowRecyclerViewAdapter adapter = (ShadowRecyclerViewAdapter)
                 ShadowExtractor.extract(recyclerView.getAdapter());
         adapter.makeItemVisible(0);
-        verify(itemManager).getItem(eq("1"),
-                eq(ItemManager.MODE_DEFAULT),
-                itemCaptor.capture());
-        itemCaptor.getValue().onResponse(new TestHnItem(1L) {
+        hydrate(new TestHnItem(1L) {
+            @Override
+            public String getRawType() {
+                return COMMENT_TYPE;
+            }
+
             @Override
             public String getText() {
                 return "content";
@@ -197,7 +183,7 @@ public class UserActivityTest {
             public String getParent() {
                 return "2";
             }
-        });
+        }, new TestHnItem(2L));
         adapter.makeItemVisible(0);
         RecyclerView.ViewHolder viewHolder = adapter.getViewHolder(0);
         assertThat(viewHolder.itemView.findViewById(R.id.title)).isNotVisible();
@@ -218,10 +204,12 @@ public class UserActivityTest {
         ShadowRecyclerViewAdapter adapter = (ShadowRecyclerViewAdapter)
                 ShadowExtractor.extract(recyclerView.getAdapter());
         adapter.makeItemVisible(1);
-        verify(itemManager).getItem(eq("2"),
-                eq(ItemManager.MODE_DEFAULT),
-                itemCaptor.capture());
-        itemCaptor.getValue().onResponse(new TestHnItem(2L) {
+        hydrate(new TestHnItem(1L), new TestHnItem(2L) {
+            @Override
+            public String getRawType() {
+                return STORY_TYPE;
+            }
+
             @Override
             public String getTitle() {
                 return "title";
@@ -261,20 +249,51 @@ public class UserActivityTest {
         ShadowRecyclerViewAdapter adapter = (ShadowRecyclerViewAdapter)
                 ShadowExtractor.extract(recyclerView.getAdapter());
         adapter.makeItemVisible(0);
-        verify(itemManager).getItem(eq("1"),
-                eq(ItemManager.MODE_DEFAULT),
-                itemCaptor.capture());
-        itemCaptor.getValue().onResponse(new TestHnItem(1L) {
+        hydrate(new TestHnItem(1L) {
             @Override
             public boolean isDeleted() {
                 return true;
             }
-        });
+        }, new TestHnItem(2L));
         adapter.makeItemVisible(0);
         RecyclerView.ViewHolder viewHolder = adapter.getViewHolder(0);
         assertThat(viewHolder.itemView.findViewById(R.id.comment)).isNotVisible();
     }
 
+    @Test
+    public void testFilter() {
+        verify(userManager).getUser(eq("username"), userCaptor.capture());
+        userCaptor.getValue().onResponse(user);
+        TabLayout tabLayout = (TabLayout) activity.findViewById(R.id.tab_layout);
+        RecyclerView.Adapter adapter = ((RecyclerView) activity.findViewById(R.id.recycler_view))
+                .getAdapter();
+        assertEquals(3, tabLayout.getTabCount());
+        tabLayout.getTabAt(2).select();
+        assertEquals(0, adapter.getItemCount());
+        hydrate(new TestHnItem(1L) {
+            @Override
+            public String getRawType() {
+                return COMMENT_TYPE;
+            }
+        }, new TestHnItem(2L) {
+            @Override
+            public String getRawType() {
+                return STORY_TYPE;
+            }
+        });
+        assertEquals(1, adapter.getItemCount());
+        assertEquals(1L, adapter.getItemId(0));
+        tabLayout.getTabAt(1).select();
+        assertEquals(1, adapter.getItemCount());
+        assertEquals(2L, adapter.getItemId(0));
+        tabLayout.getTabAt(0).select();
+        assertEquals(2, adapter.getItemCount());
+        tabLayout.getTabAt(1).select();
+        shadowOf(activity).recreate();
+        assertEquals(1, ((TabLayout) activity.findViewById(R.id.tab_layout))
+                .getSelectedTabPosition());
+    }
+
     @Test
     public void testVolumeNavigation() {
         activity.onKeyDown(KeyEvent.KEYCODE_VOLUME_UP,
@@ -289,6 +308,15 @@ public class UserActivityTest {
         verify(volumeNavigationDelegate).onKeyLongPress(anyInt(), any(KeyEvent.class));
     }
 
+    private void hydrate(Item... items) {
+        for (Item item : items) {
+            verify(itemManager).getItem(eq(item.getId()),
+                    eq(ItemManager.MODE_DEFAULT),
+                    itemCaptor.capture());
+            itemCaptor.getValue().onResponse(item);
+        }
+    }
+
     @After
     public void tearDown() {
         controller.pause().stop().destroy();
@@ -14,30 +14,67 @@ import org.robolectric.shadows.ShadowAccountManager;
 
 import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.util.HashMap;
+import java.util.Map;
 
 import io.github.hidroh.materialistic.BuildConfig;
 import io.github.hidroh.materialistic.Preferences;
 import okhttp3.Call;
 import okhttp3.Callback;
+import okhttp3.FormBody;
+import okhttp3.HttpUrl;
 import okhttp3.MediaType;
 import okhttp3.Protocol;
 import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(RobolectricGradleTestRunner.class)
 public class UserServicesClientTest {
+    private static final String ITEM_PAGE = "<html><body><center><table id=\"hnmain\">" +
+            "<tr><td><span class=\"pagetop\"><a id=\"me\" href=\"user?id=username\">" +
+            "username</a> (1) | <a id=\"logout\" " +
+            "href=\"logout?auth=d6a41c&amp;goto=item%3Fid%3D1\">logout</a></span></td></tr>" +
+            "<tr class='athing' id='1'><td class='votelinks'><center>" +
+            "<a id='up_2' href='vote?id=2&amp;how=up&amp;auth=0c9e17&amp;goto=item%3Fid%3D1'>" +
+            "<div class='votearrow' title='upvote'></div></a>" +
+            "<a id='up_1' href='vote?id=1&amp;how=up&amp;auth=4a5d2e&amp;goto=item%3Fid%3D1'>" +
+            "<div class='votearrow' title='upvote'></div></a></center></td></tr>" +
+            "<tr><td><form method=\"post\" action=\"comment\">" +
+            "<input type=\"hidden\" name=\"parent\" value=\"1\">" +
+            "<input type=\"hidden\" name=\"goto\" value=\"item?id=1\">" +
+            "<input type=\"hidden\" name=\"hmac\" value=\"8b1c7f\">" +
+            "<textarea name=\"text\" rows=\"6\" cols=\"60\"></textarea><br><br>" +
+            "<input type=\"submit\" value=\"add comment\"></form></td></tr>" +
+            "</table></center></body></html>";
+    private static final String ITEM_PAGE_LOGGED_OUT = "<html><body><center>" +
+            "<table id=\"hnmain\"><tr><td><span class=\"pagetop\">" +
+            "<a href=\"login?goto=item%3Fid%3D1\">login</a></span></td></tr>" +
+            "<tr class='athing' id='1'><td class='votelinks'><center>" +
+            "<a id='up_1' href='vote?id=1&amp;how=up&amp;goto=item%3Fid%3D1'>" +
+            "<div class='votearrow' title='upvote'></div></a></center></td></tr>" +
+            "</table></center></body></html>";
+    private static final String ITEM_PAGE_NO_TOKENS = "<html><body><center>" +
+            "<table id=\"hnmain\"><tr><td><span class=\"pagetop\">" +
+            "<a id=\"me\" href=\"user?id=username\">username</a></span></td></tr>" +
+            "<tr class='athing' id='1'><td class='votelinks'><center>" +
+            "<font color=#ff6600>*</font></center></td></tr>" +
+            "</table></center></body></html>";
     private UserServices userServices;
     @Captor ArgumentCaptor<Callback> callbackCaptor;
+    @Captor ArgumentCaptor<Request> requestCaptor;
     private Call call;
+    private Call.Factory callFactory;
     private Response.Builder responseBuilder = createResponseBuilder();
     private Account account;
 
@@ -45,13 +82,20 @@ public class UserServicesClientTest {
     public void setUp() {
         MockitoAnnotations.initMocks(this);
         call = mock(Call.class);
-        Call.Factory callFactory = mock(Call.Factory.class);
+        callFactory = mock(Call.Factory.class);
         when(callFactory.newCall(any(Request.class))).thenReturn(call);
-        userServices = new UserServicesClient(callFactory);
+        userServices = new UserServicesClient(RuntimeEnvironment.application, callFactory);
         Preferences.setUsername(RuntimeEnvironment.application, "username");
         account = new Account("username", BuildConfig.APPLICATION_ID);
         ShadowAccountManager.get(RuntimeEnvironment.application)
                 .addAccountExplicitly(account, "password", null);
+        // start with a session for current user
+        userServices.login("username", "password", false, mock(UserServices.Callback.class));
+        verify(call).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(null, createResponseBuilder()
+                .code(HttpURLConnection.HTTP_MOVED_TEMP).build());
+        reset(call, callFactory);
+        when(callFactory.newCall(any(Request.class))).thenReturn(call);
     }
 
     @Test
@@ -88,8 +132,18 @@ public class UserServicesClientTest {
         UserServices.Callback callback = mock(UserServices.Callback.class);
         userServices.voteUp(RuntimeEnvironment.application, "1", callback);
         verify(call).enqueue(callbackCaptor.capture());
-        callbackCaptor.getValue().onResponse(null, responseBuilder
-                .code(HttpURLConnection.HTTP_MOVED_TEMP).build());
+        callbackCaptor.getValue().onResponse(null, createItemPage(ITEM_PAGE));
+        verify(callFactory, times(2)).newCall(requestCaptor.capture());
+        HttpUrl url = requestCaptor.getValue().url();
+        assertThat(url.encodedPath()).isEqualTo("/vote");
+        assertThat(url.queryParameter("id")).isEqualTo("1");
+        assertThat(url.queryParameter("how")).isEqualTo("up");
+        assertThat(url.queryParameter("auth")).isEqualTo("4a5d2e");
+        verify(call, times(2)).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(null, createResponseBuilder()
+                .code(HttpURLConnection.HTTP_MOVED_TEMP)
+                .header("location", "news")
+                .build());
         verify(callback).onDone(eq(true));
     }
 
@@ -98,11 +152,23 @@ public class UserServicesClientTest {
         UserServices.Callback callback = mock(UserServices.Callback.class);
         userServices.voteUp(RuntimeEnvironment.application, "1", callback);
         verify(call).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(null, createItemPage(ITEM_PAGE));
+        verify(call, times(2)).enqueue(callbackCaptor.capture());
         callbackCaptor.getValue().onResponse(null, responseBuilder
                 .code(HttpURLConnection.HTTP_OK).build());
         verify(callback).onDone(eq(false));
     }
 
+    @Test
+    public void testVoteNoAuth() throws IOException {
+        UserServices.Callback callback = mock(UserServices.Callback.class);
+        userServices.voteUp(RuntimeEnvironment.application, "1", callback);
+        verify(call).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(null, createItemPage(ITEM_PAGE_NO_TOKENS));
+        verify(call).enqueue(any(Callback.class));
+        verify(callback).onDone(eq(false));
+    }
+
     @Test
     public void testVoteError() throws IOException {
         UserServices.Callback callback = mock(UserServices.Callback.class);
@@ -112,6 +178,148 @@ public class UserServicesClientTest {
         verify(callback).onError();
     }
 
+    @Test
+    public void testVoteItemPageError() throws IOException {
+        UserServices.Callback callback = mock(UserServices.Callback.class);
+        userServices.voteUp(RuntimeEnvironment.application, "1", callback);
+        verify(call).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(null, createResponseBuilder()
+                .code(HttpURLConnection.HTTP_UNAVAILABLE)
+                .body(ResponseBody.create(MediaType.parse("text/html"), ""))
+                .build());
+        verify(call).enqueue(any(Callback.class));
+        verify(callback).onError();
+    }
+
+    @Test
+    public void testVoteSessionReused() throws IOException {
+        UserServices.Callback callback = mock(UserServices.Callback.class);
+        userServices.voteUp(RuntimeEnvironment.application, "1", callback);
+        verify(callFactory).newCall(requestCaptor.capture());
+        assertThat(requestCaptor.getValue().url().encodedPath()).isEqualTo("/item");
+        assertThat(requestCaptor.getValue().url().queryParameter("id")).isEqualTo("1");
+        assertThat(requestCaptor.getValue().body()).isNull(); // no credentials
+    }
+
+    @Test
+    public void testVoteLoginFirst() throws IOException {
+        Account another = new Account("another", BuildConfig.APPLICATION_ID);
+        ShadowAccountManager.get(RuntimeEnvironment.application)
+                .addAccountExplicitly(another, "password", null);
+        Preferences.setUsername(RuntimeEnvironment.application, "another");
+        UserServices.Callback callback = mock(UserServices.Callback.class);
+        userServices.voteUp(RuntimeEnvironment.application, "1", callback);
+        verify(callFactory).newCall(requestCaptor.capture());
+        assertThat(requestCaptor.getValue().url().encodedPath()).isEqualTo("/login");
+        verify(call).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(null, responseBuilder
+                .code(HttpURLConnection.HTTP_MOVED_TEMP).build());
+        verify(callFactory, times(2)).newCall(requestCaptor.capture());
+        assertThat(requestCaptor.getValue().url().encodedPath()).isEqualTo("/item");
+        verify(call, times(2)).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(null, createItemPage(ITEM_PAGE));
+        verify(callFactory, times(3)).newCall(requestCaptor.capture());
+        assertThat(requestCaptor.getValue().url().encodedPath()).isEqualTo("/vote");
+        verify(call, times(3)).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(null, createResponseBuilder()
+                .code(HttpURLConnection.HTTP_MOVED_TEMP).build());
+        verify(callback).onDone(eq(true));
+        // session is reused for subsequent votes
+        userServices.voteUp(RuntimeEnvironment.application, "2", callback);
+        verify(callFactory, times(4)).newCall(requestCaptor.capture());
+        assertThat(requestCaptor.getValue().url().encodedPath()).isEqualTo("/item");
+    }
+
+    @Test
+    public void testVoteLoginFirstFailed() throws IOException {
+        Account another = new Account("another", BuildConfig.APPLICATION_ID);
+        ShadowAccountManager.get(RuntimeEnvironment.application)
+                .addAccountExplicitly(another, "password", null);
+        Preferences.setUsername(RuntimeEnvironment.application, "another");
+        UserServices.Callback callback = mock(UserServices.Callback.class);
+        userServices.voteUp(RuntimeEnvironment.application, "1", callback);
+        verify(call).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(null, responseBuilder
+                .code(HttpURLConnection.HTTP_OK).build());
+        verify(call).enqueue(any(Callback.class));
+        verify(callback).onDone(eq(false));
+    }
+
+    @Test
+    public void testVoteSessionExpired() throws IOException {
+        UserServices.Callback callback = mock(UserServices.Callback.class);
+        userServices.voteUp(RuntimeEnvironment.application, "1", callback);
+        verify(call).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(null, createLoginRedirect());
+        verify(callFactory, times(2)).newCall(requestCaptor.capture());
+        assertThat(requestCaptor.getValue().url().encodedPath()).isEqualTo("/login");
+        verify(call, times(2)).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(null, createResponseBuilder()
+                .code(HttpURLConnection.HTTP_MOVED_TEMP).build());
+        verify(callFactory, times(3)).newCall(requestCaptor.capture());
+        assertThat(requestCaptor.getValue().url().encodedPath()).isEqualTo("/item");
+        verify(call, times(3)).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(null, createItemPage(ITEM_PAGE));
+        verify(callFactory, times(4)).newCall(requestCaptor.capture());
+        assertThat(requestCaptor.getValue().url().encodedPath()).isEqualTo("/vote");
+        verify(call, times(4)).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(null, createResponseBuilder()
+                .code(HttpURLConnection.HTTP_MOVED_TEMP).build());
+        verify(callback).onDone(eq(true));
+    }
+
+    @Test
+    public void testVoteItemPageLoggedOut() throws IOException {
+        UserServices.Callback callback = mock(UserServices.Callback.class);
+        userServices.voteUp(RuntimeEnvironment.application, "1", callback);
+        verify(call).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(null, createItemPage(ITEM_PAGE_LOGGED_OUT));
+        verify(callFactory, times(2)).newCall(requestCaptor.capture());
+        assertThat(requestCaptor.getValue().url().encodedPath()).isEqualTo("/login");
+        FormBody body = (FormBody) requestCaptor.getValue().body();
+        assertThat(body.value(0)).isEqualTo("username");
+        assertThat(body.value(1)).isEqualTo("password");
+        verify(call, times(2)).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(null, createResponseBuilder()
+                .code(HttpURLConnection.HTTP_MOVED_TEMP).build());
+        verify(callFactory, times(3)).newCall(requestCaptor.capture());
+        assertThat(requestCaptor.getValue().url().encodedPath()).isEqualTo("/item");
+        verify(call, times(3)).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(null, createItemPage(ITEM_PAGE));
+        verify(callFactory, times(4)).newCall(requestCaptor.capture());
+        assertThat(requestCaptor.getValue().url().queryParameter("auth")).isEqualTo("4a5d2e");
+    }
+
+    @Test
+    public void testVoteItemPageLoggedOutAfterLogin() throws IOException {
+        UserServices.Callback callback = mock(UserServices.Callback.class);
+        userServices.voteUp(RuntimeEnvironment.application, "1", callback);
+        verify(call).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(null, createItemPage(ITEM_PAGE_LOGGED_OUT));
+        verify(call, times(2)).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(null, createResponseBuilder()
+                .code(HttpURLConnection.HTTP_MOVED_TEMP).build());
+        verify(call, times(3)).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(null, createItemPage(ITEM_PAGE_LOGGED_OUT));
+        verify(call, times(3)).enqueue(any(Callback.class)); // login attempted only once
+        verify(callback).onDone(eq(false));
+    }
+
+    @Test
+    public void testCommentSessionExpiredAfterLogin() throws IOException {
+        UserServices.Callback callback = mock(UserServices.Callback.class);
+        userServices.reply(RuntimeEnvironment.application, "1", "reply", callback);
+        verify(call).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(null, createLoginRedirect());
+        verify(call, times(2)).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(null, createResponseBuilder()
+                .code(HttpURLConnection.HTTP_MOVED_TEMP).build());
+        verify(call, times(3)).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(null, createLoginRedirect());
+        verify(call, times(3)).enqueue(any(Callback.class));
+        verify(callback).onDone(eq(false));
+    }
+
     @Test
     public void testVoteNoMatchingAccount() throws IOException {
         Preferences.setUsername(RuntimeEnvironment.application, "another");
@@ -126,11 +334,39 @@ public class UserServicesClientTest {
         UserServices.Callback callback = mock(UserServices.Callback.class);
         userServices.reply(RuntimeEnvironment.application, "1", "reply", callback);
         verify(call).enqueue(callbackCaptor.capture());
-        callbackCaptor.getValue().onResponse(null, responseBuilder
-                .code(HttpURLConnection.HTTP_MOVED_TEMP).build());
+        callbackCaptor.getValue().onResponse(null, createItemPage(ITEM_PAGE));
+        verify(callFactory, times(2)).newCall(requestCaptor.capture());
+        assertThat(requestCaptor.getValue().url().encodedPath()).isEqualTo("/comment");
+        FormBody body = (FormBody) requestCaptor.getValue().body();
+        Map<String, String> params = new HashMap<>();
+        for (int i = 0; i < body.size(); i++) {
+            params.put(body.name(i), body.value(i));
+        }
+        assertThat(params)
+                .containsEntry("parent", "1")
+                .containsEntry("goto", "item?id=1")
+                .containsEntry("hmac", "8b1c7f")
+                .containsEntry("text", "reply")
+                .doesNotContainKey("acct")
+                .doesNotContainKey("pw");
+        verify(call, times(2)).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(null, createResponseBuilder()
+                .code(HttpURLConnection.HTTP_MOVED_TEMP)
+                .header("location", "item?id=1")
+                .build());
         verify(callback).onDone(eq(true));
     }
 
+    @Test
+    public void testCommentNoHmac() throws IOException {
+        UserServices.Callback callback = mock(UserServices.Callback.class);
+        userServices.reply(RuntimeEnvironment.application, "1", "reply", callback);
+        verify(call).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(null, createItemPage(ITEM_PAGE_NO_TOKENS));
+        verify(call).enqueue(any(Callback.class));
+        verify(callback).onDone(eq(false));
+    }
+
     @Test
     public void testCommentNotLoggedIn() throws IOException {
         Preferences.setUsername(RuntimeEnvironment.application, null);
@@ -278,6 +514,21 @@ public class UserServicesClientTest {
         verify(callback).onError();
     }
 
+    private Response createItemPage(String html) {
+        return createResponseBuilder()
+                .code(HttpURLConnection.HTTP_OK)
+                .body(ResponseBody.create(MediaType.parse("text/html"), html))
+                .build();
+    }
+
+    private Response createLoginRedirect() {
+        return createResponseBuilder()
+                .code(HttpURLConnection.HTTP_MOVED_TEMP)
+                .header("location", "login?goto=news")
+                .body(ResponseBody.create(MediaType.parse("text/html"), ""))
+                .build();
+    }
+
     private Response.Builder createResponseBuilder() {
         return new Response.Builder()
                 .protocol(Protocol.HTTP_2)
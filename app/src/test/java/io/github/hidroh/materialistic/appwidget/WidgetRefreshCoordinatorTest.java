@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.appwidget;
+
+import android.app.AlarmManager;
+import android.appwidget.AppWidgetManager;
+import android.content.Context;
+import android.content.Intent;
+import android.net.ConnectivityManager;
+import android.os.BatteryManager;
+import android.text.format.DateUtils;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowAlarmManager;
+import org.robolectric.shadows.ShadowNetworkInfo;
+
+import io.github.hidroh.materialistic.R;
+import io.github.hidroh.materialistic.data.ConditionalResponseListener;
+import io.github.hidroh.materialistic.data.Item;
+import io.github.hidroh.materialistic.data.ItemManager;
+import io.github.hidroh.materialistic.data.ResponseListener;
+import io.github.hidroh.materialistic.data.TestHnItem;
+import io.github.hidroh.materialistic.test.ShadowSupportPreferenceManager;
+
+import static android.content.Context.MODE_PRIVATE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.robolectric.Shadows.shadowOf;
+
+@Config(shadows = ShadowSupportPreferenceManager.class)
+@RunWith(RobolectricGradleTestRunner.class)
+public class WidgetRefreshCoordinatorTest {
+    private WidgetRefreshCoordinator coordinator;
+    private ShadowAlarmManager alarmManager;
+    private AppWidgetManager widgetManager;
+    private ItemManager itemManager = mock(ItemManager.class);
+    @Captor ArgumentCaptor<ResponseListener<Item[]>> listener;
+    private int appWidgetId;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        coordinator = new WidgetRefreshCoordinator(RuntimeEnvironment.application);
+        alarmManager = shadowOf((AlarmManager) RuntimeEnvironment.application
+                .getSystemService(Context.ALARM_SERVICE));
+        widgetManager = AppWidgetManager.getInstance(RuntimeEnvironment.application);
+        appWidgetId = shadowOf(widgetManager).createWidget(WidgetProvider.class, R.layout.appwidget);
+    }
+
+    @Test
+    public void testSchedulePerSection() {
+        int sameSectionId = shadowOf(widgetManager).createWidget(WidgetProvider.class,
+                R.layout.appwidget);
+        int otherSectionId = shadowOf(widgetManager).createWidget(WidgetProvider.class,
+                R.layout.appwidget);
+        setSection(otherSectionId, R.string.pref_widget_section_value_best);
+        WidgetHelper widgetHelper = new WidgetHelper(RuntimeEnvironment.application);
+        widgetHelper.configure(appWidgetId);
+        widgetHelper.configure(sameSectionId);
+        assertThat(alarmManager.getScheduledAlarms()).hasSize(1);
+        widgetHelper.configure(otherSectionId);
+        assertThat(alarmManager.getScheduledAlarms()).hasSize(2);
+        widgetHelper.remove(otherSectionId);
+        assertThat(alarmManager.getScheduledAlarms()).hasSize(1);
+        assertThat(getIntent(alarmManager.getNextScheduledAlarm())
+                .getStringExtra(WidgetProvider.EXTRA_FETCH_MODE))
+                .isEqualTo(ItemManager.TOP_FETCH_MODE);
+    }
+
+    @Test
+    public void testScheduleShortestFrequency() {
+        int otherId = shadowOf(widgetManager).createWidget(WidgetProvider.class,
+                R.layout.appwidget);
+        RuntimeEnvironment.application.getSharedPreferences(WidgetHelper.getConfigName(otherId),
+                MODE_PRIVATE)
+                .edit()
+                .putString(RuntimeEnvironment.application.getString(R.string.pref_widget_frequency), "1")
+                .apply();
+        coordinator.schedule(ItemManager.TOP_FETCH_MODE);
+        assertNextRefreshIn(DateUtils.HOUR_IN_MILLIS);
+    }
+
+    @Test
+    public void testBackoffUntilChanged() {
+        Item[] stories = new Item[]{new TestHnItem(1L), new TestHnItem(2L)};
+        refresh().onResponse(stories);
+        assertNextRefreshIn(6 * DateUtils.HOUR_IN_MILLIS);
+        refresh().onResponse(stories);
+        assertNextRefreshIn(12 * DateUtils.HOUR_IN_MILLIS);
+        ((ConditionalResponseListener<Item[]>) refresh()).onNotModified();
+        assertNextRefreshIn(24 * DateUtils.HOUR_IN_MILLIS);
+        ((ConditionalResponseListener<Item[]>) refresh()).onNotModified();
+        ((ConditionalResponseListener<Item[]>) refresh()).onNotModified();
+        assertNextRefreshIn(6 * DateUtils.HOUR_IN_MILLIS << WidgetRefreshCoordinator.MAX_BACKOFF);
+        refresh().onResponse(new Item[]{new TestHnItem(2L), new TestHnItem(1L)});
+        assertNextRefreshIn(6 * DateUtils.HOUR_IN_MILLIS);
+        refresh().onError(null);
+        assertNextRefreshIn(6 * DateUtils.HOUR_IN_MILLIS);
+    }
+
+    @Test
+    public void testOfferChangedStories() {
+        Item[] stories = new Item[]{new TestHnItem(1L)};
+        refresh().onResponse(stories);
+        assertThat(SharedStories.getInstance().getOffered(ItemManager.TOP_FETCH_MODE))
+                .isSameAs(stories);
+    }
+
+    @Test
+    public void testSkipLowBattery() {
+        RuntimeEnvironment.application.sendStickyBroadcast(new Intent(Intent.ACTION_BATTERY_CHANGED)
+                .putExtra(BatteryManager.EXTRA_PLUGGED, 0)
+                .putExtra(BatteryManager.EXTRA_LEVEL, WidgetRefreshCoordinator.LOW_BATTERY_PERCENT)
+                .putExtra(BatteryManager.EXTRA_SCALE, 100));
+        coordinator.refresh(ItemManager.TOP_FETCH_MODE, itemManager, null);
+        verify(itemManager, never()).getStories(anyString(), anyInt(), any(ResponseListener.class));
+        assertNextRefreshIn(6 * DateUtils.HOUR_IN_MILLIS);
+        ShadowSupportPreferenceManager.getDefaultSharedPreferences(RuntimeEnvironment.application)
+                .edit()
+                .putBoolean(RuntimeEnvironment.application.getString(R.string.pref_widget_battery_saver), false)
+                .commit();
+        coordinator.refresh(ItemManager.TOP_FETCH_MODE, itemManager, null);
+        verify(itemManager).getStories(anyString(), anyInt(), any(ResponseListener.class));
+    }
+
+    @Test
+    public void testSkipMeteredNetwork() {
+        ShadowSupportPreferenceManager.getDefaultSharedPreferences(RuntimeEnvironment.application)
+                .edit()
+                .putBoolean(RuntimeEnvironment.application.getString(R.string.pref_widget_unmetered_only), true)
+                .commit();
+        shadowOf((ConnectivityManager) RuntimeEnvironment.application
+                .getSystemService(Context.CONNECTIVITY_SERVICE))
+                .setActiveNetworkInfo(ShadowNetworkInfo.newInstance(null,
+                        ConnectivityManager.TYPE_MOBILE, 0, true, true));
+        RuntimeEnvironment.application.sendBroadcast(
+                new Intent(ConnectivityManager.CONNECTIVITY_ACTION));
+        coordinator.refresh(ItemManager.TOP_FETCH_MODE, itemManager, null);
+        verify(itemManager, never()).getStories(anyString(), anyInt(), any(ResponseListener.class));
+        shadowOf((ConnectivityManager) RuntimeEnvironment.application
+                .getSystemService(Context.CONNECTIVITY_SERVICE))
+                .setActiveNetworkInfo(ShadowNetworkInfo.newInstance(null,
+                        ConnectivityManager.TYPE_WIFI, 0, true, true));
+        RuntimeEnvironment.application.sendBroadcast(
+                new Intent(ConnectivityManager.CONNECTIVITY_ACTION));
+        coordinator.refresh(ItemManager.TOP_FETCH_MODE, itemManager, null);
+        verify(itemManager).getStories(anyString(), anyInt(), any(ResponseListener.class));
+    }
+
+    @Test
+    public void testRefreshSectionWithoutWidgets() {
+        coordinator.refresh(ItemManager.BEST_FETCH_MODE, itemManager, null);
+        verify(itemManager, never()).getStories(anyString(), anyInt(), any(ResponseListener.class));
+        assertThat(alarmManager.getScheduledAlarms()).isEmpty();
+    }
+
+    private ResponseListener<Item[]> refresh() {
+        ItemManager itemManager = mock(ItemManager.class);
+        coordinator.refresh(ItemManager.TOP_FETCH_MODE, itemManager, null);
+        verify(itemManager).getStories(eq(ItemManager.TOP_FETCH_MODE),
+                eq(ItemManager.MODE_NETWORK), listener.capture());
+        return listener.getValue();
+    }
+
+    private void assertNextRefreshIn(long intervalMillis) {
+        long now = System.currentTimeMillis();
+        ShadowAlarmManager.ScheduledAlarm alarm = alarmManager.getNextScheduledAlarm();
+        assertThat(alarm).isNotNull();
+        assertThat(alarm.triggerAtTime).isBetween(now + intervalMillis - DateUtils.MINUTE_IN_MILLIS,
+                now + intervalMillis);
+    }
+
+    private void setSection(int appWidgetId, int sectionValue) {
+        RuntimeEnvironment.application.getSharedPreferences(WidgetHelper.getConfigName(appWidgetId),
+                MODE_PRIVATE)
+                .edit()
+                .putString(RuntimeEnvironment.application.getString(R.string.pref_widget_section),
+                        RuntimeEnvironment.application.getString(sectionValue))
+                .apply();
+    }
+
+    private Intent getIntent(ShadowAlarmManager.ScheduledAlarm alarm) {
+        return shadowOf(alarm.operation).getSavedIntent();
+    }
+}
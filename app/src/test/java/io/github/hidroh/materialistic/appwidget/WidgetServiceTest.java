@@ -39,6 +39,7 @@ import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -47,12 +48,14 @@ import static org.mockito.Mockito.when;
 public class WidgetServiceTest {
     private RemoteViewsService.RemoteViewsFactory viewFactory;
     private ItemManager itemManager = mock(ItemManager.class);
+    private SharedStories sharedStories;
 
     @Before
     public void setUp() {
         reset(itemManager);
+        sharedStories = new SharedStories();
         viewFactory = new WidgetService.ListRemoteViewsFactory(RuntimeEnvironment.application,
-                itemManager, ItemManager.TOP_FETCH_MODE, false);
+                itemManager, ItemManager.TOP_FETCH_MODE, false, sharedStories);
         viewFactory.onCreate();
     }
 
@@ -79,20 +82,93 @@ public class WidgetServiceTest {
             }
         });
         viewFactory.onDataSetChanged();
-        verify(itemManager).getStories(anyString(), anyInt());
+        verify(itemManager).getStories(anyString(), eq(ItemManager.MODE_NETWORK));
+        verify(itemManager).getItem(eq("1"), eq(ItemManager.MODE_NETWORK));
         assertThat(viewFactory.hasStableIds()).isTrue();
         assertThat(viewFactory.getCount()).isEqualTo(1);
         assertThat(viewFactory.getLoadingView()).isNotNull();
         assertThat(viewFactory.getViewTypeCount()).isEqualTo(1);
         assertThat(viewFactory.getItemId(0)).isEqualTo(1L);
         assertThat(viewFactory.getViewAt(0)).isNotNull();
-        verify(itemManager).getItem(eq("1"), anyInt());
+        verify(itemManager).getItem(anyString(), anyInt()); // no I/O when binding
     }
 
     @Test
-    public void testEmpty() {
+    public void testAdapterMaxItems() {
+        Item[] stories = new Item[WidgetService.ListRemoteViewsFactory.MAX_ITEMS + 1];
+        for (int i = 0; i < stories.length; i++) {
+            stories[i] = new TestHnItem(i + 1);
+        }
+        when(itemManager.getStories(anyString(), anyInt())).thenReturn(stories);
+        when(itemManager.getItem(anyString(), anyInt())).thenReturn(new TestHnItem(1L));
+        viewFactory.onDataSetChanged();
+        assertThat(viewFactory.getCount()).isEqualTo(WidgetService.ListRemoteViewsFactory.MAX_ITEMS);
+        verify(itemManager, times(WidgetService.ListRemoteViewsFactory.MAX_ITEMS))
+                .getItem(anyString(), eq(ItemManager.MODE_NETWORK));
+        verify(itemManager, never()).getItem(eq(String.valueOf(stories.length)), anyInt());
+    }
+
+    @Test
+    public void testAdapterOffline() {
+        when(itemManager.getStories(anyString(), eq(ItemManager.MODE_NETWORK)))
+                .thenReturn(new Item[0]);
+        when(itemManager.getStories(anyString(), eq(ItemManager.MODE_CACHE)))
+                .thenReturn(new Item[]{new TestHnItem(1L), new TestHnItem(2L)});
+        when(itemManager.getItem(eq("1"), eq(ItemManager.MODE_CACHE)))
+                .thenReturn(new TestHnItem(1L));
+        viewFactory.onDataSetChanged();
+        verify(itemManager).getItem(eq("1"), eq(ItemManager.MODE_NETWORK));
+        verify(itemManager).getItem(eq("1"), eq(ItemManager.MODE_CACHE));
+        verify(itemManager).getItem(eq("2"), eq(ItemManager.MODE_CACHE));
+        assertThat(viewFactory.getCount()).isEqualTo(2);
+        assertThat(viewFactory.getViewAt(0)).isNotNull();
+        assertThat(viewFactory.getViewAt(1)).isNotNull(); // not available, left blank
+        verify(itemManager, times(4)).getItem(anyString(), anyInt());
+    }
+
+    @Test
+    public void testAdapterFailedKeepsRows() {
+        when(itemManager.getStories(anyString(), anyInt()))
+                .thenReturn(new Item[]{new TestHnItem(1L)})
+                .thenReturn(null);
+        viewFactory.onDataSetChanged();
+        sharedStories.invalidate(ItemManager.TOP_FETCH_MODE);
+        viewFactory.onDataSetChanged();
+        verify(itemManager, times(2)).getStories(anyString(), eq(ItemManager.MODE_NETWORK));
+        assertThat(viewFactory.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testAdapterSharedFetch() {
+        when(itemManager.getStories(anyString(), anyInt())).thenReturn(new Item[]{new TestHnItem(1L)});
+        when(itemManager.getItem(anyString(), anyInt())).thenReturn(new TestHnItem(1L));
         viewFactory.onDataSetChanged();
+        RemoteViewsService.RemoteViewsFactory sameSection = new WidgetService.ListRemoteViewsFactory(
+                RuntimeEnvironment.application, itemManager, ItemManager.TOP_FETCH_MODE, true,
+                sharedStories);
+        sameSection.onCreate();
+        sameSection.onDataSetChanged();
+        sameSection.onDestroy();
+        assertThat(sameSection.getCount()).isEqualTo(1);
         verify(itemManager).getStories(anyString(), anyInt());
+        verify(itemManager).getItem(anyString(), anyInt());
+    }
+
+    @Test
+    public void testAdapterOfferedStories() {
+        sharedStories.offer(ItemManager.TOP_FETCH_MODE, new Item[]{new TestHnItem(1L)});
+        when(itemManager.getItem(anyString(), anyInt())).thenReturn(new TestHnItem(1L));
+        viewFactory.onDataSetChanged();
+        verify(itemManager, never()).getStories(anyString(), anyInt());
+        verify(itemManager).getItem(eq("1"), eq(ItemManager.MODE_NETWORK));
+        assertThat(viewFactory.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testEmpty() {
+        viewFactory.onDataSetChanged();
+        verify(itemManager).getStories(anyString(), eq(ItemManager.MODE_NETWORK));
+        verify(itemManager).getStories(anyString(), eq(ItemManager.MODE_CACHE));
         assertThat(viewFactory.getCount()).isEqualTo(0);
         assertThat(viewFactory.getItemId(0)).isEqualTo(0L);
         assertThat(viewFactory.getViewAt(0)).isNotNull();
@@ -1,5 +1,7 @@
 package io.github.hidroh.materialistic.data;
 
+import android.content.ContentValues;
+
 import com.google.gson.GsonBuilder;
 
 import org.junit.Before;
@@ -10,6 +12,9 @@ import org.mockito.Captor;
 import org.mockito.MockitoAnnotations;
 import org.robolectric.RobolectricGradleTestRunner;
 import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.IOException;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -23,11 +28,13 @@ import retrofit2.Response;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -54,8 +61,12 @@ public class AlgoliaClientTest {
         itemListener = mock(ResponseListener.class);
         storiesListener = mock(ResponseListener.class);
         call = mock(Call.class);
-        when(TestRestServiceFactory.algoliaRestService.search(anyString())).thenReturn(call);
-        when(TestRestServiceFactory.algoliaRestService.searchByDate(anyString())).thenReturn(call);
+        when(TestRestServiceFactory.algoliaRestService
+                .search(anyString(), anyInt(), anyInt()))
+                .thenReturn(call);
+        when(TestRestServiceFactory.algoliaRestService
+                .searchByDate(anyString(), anyInt(), anyInt()))
+                .thenReturn(call);
     }
 
     @Test
@@ -67,14 +78,16 @@ public class AlgoliaClientTest {
     @Test
     public void testGetStoriesNoListener() {
         client.getStories("filter", ItemManager.MODE_DEFAULT, null);
-        verify(TestRestServiceFactory.algoliaRestService, never()).searchByDate(eq("filter"));
+        verify(TestRestServiceFactory.algoliaRestService, never())
+                .searchByDate(eq("filter"), eq(0), eq(AlgoliaClient.FIRST_PAGE_SIZE));
         verify(call, never()).enqueue(any(Callback.class));
     }
 
     @Test
     public void testGetStoriesSuccess() {
         client.getStories("filter", ItemManager.MODE_DEFAULT, storiesListener);
-        verify(TestRestServiceFactory.algoliaRestService).searchByDate(eq("filter"));
+        verify(TestRestServiceFactory.algoliaRestService)
+                .searchByDate(eq("filter"), eq(0), eq(AlgoliaClient.FIRST_PAGE_SIZE));
         verify(call).enqueue(getStoriesCallback.capture());
         AlgoliaClient.AlgoliaHits hits = new GsonBuilder().create().fromJson(
                 "{\"hits\":[{\"objectID\":\"1\"}]}",
@@ -88,14 +101,16 @@ public class AlgoliaClientTest {
     public void testGetStoriesSuccessSortByPopularity() {
         client.sSortByTime = false;
         client.getStories("filter", ItemManager.MODE_DEFAULT, storiesListener);
-        verify(TestRestServiceFactory.algoliaRestService).search(eq("filter"));
+        verify(TestRestServiceFactory.algoliaRestService)
+                .search(eq("filter"), eq(0), eq(AlgoliaClient.FIRST_PAGE_SIZE));
         verify(call).enqueue(any(Callback.class));
     }
 
     @Test
     public void testGetStoriesEmpty() {
         client.getStories("filter", ItemManager.MODE_DEFAULT, storiesListener);
-        verify(TestRestServiceFactory.algoliaRestService).searchByDate(eq("filter"));
+        verify(TestRestServiceFactory.algoliaRestService)
+                .searchByDate(eq("filter"), eq(0), eq(AlgoliaClient.FIRST_PAGE_SIZE));
         verify(call).enqueue(getStoriesCallback.capture());
         AlgoliaClient.AlgoliaHits hits = new GsonBuilder().create().fromJson("{\"hits\":[]}",
                 AlgoliaClient.AlgoliaHits.class);
@@ -107,7 +122,8 @@ public class AlgoliaClientTest {
     @Test
     public void testGetStoriesFailure() {
         client.getStories("filter", ItemManager.MODE_DEFAULT, storiesListener);
-        verify(TestRestServiceFactory.algoliaRestService).searchByDate(eq("filter"));
+        verify(TestRestServiceFactory.algoliaRestService)
+                .searchByDate(eq("filter"), eq(0), eq(AlgoliaClient.FIRST_PAGE_SIZE));
         verify(call).enqueue(getStoriesCallback.capture());
         getStoriesCallback.getValue().onFailure(null, new Throwable("message"));
         verify(storiesListener).onError(eq("message"));
@@ -116,12 +132,177 @@ public class AlgoliaClientTest {
     @Test
     public void testGetStoriesFailureNoMessage() {
         client.getStories("filter", ItemManager.MODE_DEFAULT, storiesListener);
-        verify(TestRestServiceFactory.algoliaRestService).searchByDate(eq("filter"));
+        verify(TestRestServiceFactory.algoliaRestService)
+                .searchByDate(eq("filter"), eq(0), eq(AlgoliaClient.FIRST_PAGE_SIZE));
         verify(call).enqueue(getStoriesCallback.capture());
         getStoriesCallback.getValue().onFailure(null, null);
         verify(storiesListener).onError(eq(""));
     }
 
+    @Test
+    public void testGetStoriesFromCache() {
+        client.getStories("filter", ItemManager.MODE_DEFAULT, storiesListener);
+        verify(call).enqueue(getStoriesCallback.capture());
+        getStoriesCallback.getValue().onResponse(null, Response.success(createHits(
+                "{\"nbHits\":1,\"hits\":[{\"objectID\":\"1\"}]}")));
+        client.getStories("filter", ItemManager.MODE_DEFAULT, storiesListener);
+        verify(TestRestServiceFactory.algoliaRestService)
+                .searchByDate(eq("filter"), eq(0), eq(AlgoliaClient.FIRST_PAGE_SIZE));
+        verify(storiesListener, times(2)).onResponse(getStoriesResponse.capture());
+        assertThat(getStoriesResponse.getValue()).hasSize(1);
+        client.getStories("filter", ItemManager.MODE_NETWORK, storiesListener);
+        verify(TestRestServiceFactory.algoliaRestService, times(2))
+                .searchByDate(eq("filter"), eq(0), eq(AlgoliaClient.FIRST_PAGE_SIZE));
+    }
+
+    @Test
+    public void testGetStoriesRefinedFromCache() {
+        client.getStories("an", ItemManager.MODE_DEFAULT, storiesListener);
+        verify(call).enqueue(getStoriesCallback.capture());
+        getStoriesCallback.getValue().onResponse(null, Response.success(createHits(
+                "{\"nbHits\":2,\"hits\":[" +
+                        "{\"objectID\":\"1\",\"title\":\"Android\"}," +
+                        "{\"objectID\":\"2\",\"title\":\"Angular\"}]}")));
+        client.getStories("android", ItemManager.MODE_DEFAULT, storiesListener);
+        verify(TestRestServiceFactory.algoliaRestService, never())
+                .searchByDate(eq("android"), eq(0), eq(AlgoliaClient.FIRST_PAGE_SIZE));
+        verify(storiesListener, times(2)).onResponse(getStoriesResponse.capture());
+        assertThat(getStoriesResponse.getValue()).hasSize(1);
+        assertThat(getStoriesResponse.getValue()[0].getId()).isEqualTo("1");
+    }
+
+    @Test
+    public void testGetStoriesPartialWithinLatencyBudget() {
+        client.getStories("an", ItemManager.MODE_DEFAULT, storiesListener);
+        verify(call).enqueue(getStoriesCallback.capture());
+        getStoriesCallback.getValue().onResponse(null, Response.success(createHits(
+                "{\"nbHits\":1000,\"hits\":[" +
+                        "{\"objectID\":\"1\",\"title\":\"Android\"}," +
+                        "{\"objectID\":\"2\",\"title\":\"Angular\"}]}")));
+        client.getStories("android", ItemManager.MODE_DEFAULT, storiesListener);
+        verify(TestRestServiceFactory.algoliaRestService)
+                .searchByDate(eq("android"), eq(0), eq(AlgoliaClient.FIRST_PAGE_SIZE));
+        verify(call, times(2)).enqueue(getStoriesCallback.capture());
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks(); // latency budget exceeded
+        verify(storiesListener, times(2)).onResponse(getStoriesResponse.capture());
+        assertThat(getStoriesResponse.getValue()).hasSize(1);
+        getStoriesCallback.getValue().onResponse(null, Response.success(createHits(
+                "{\"nbHits\":2,\"hits\":[{\"objectID\":\"1\"},{\"objectID\":\"3\"}]}")));
+        verify(storiesListener, times(3)).onResponse(getStoriesResponse.capture());
+        assertThat(getStoriesResponse.getValue()).hasSize(2);
+    }
+
+    @Test
+    public void testGetStoriesCancelSuperseded() {
+        client.getStories("a", ItemManager.MODE_DEFAULT, storiesListener);
+        verify(call).enqueue(getStoriesCallback.capture());
+        client.getStories("ab", ItemManager.MODE_DEFAULT, storiesListener);
+        verify(call).cancel();
+        when(call.isCanceled()).thenReturn(true);
+        getStoriesCallback.getValue().onFailure(call, new IOException("Canceled"));
+        verify(storiesListener, never()).onError(anyString());
+    }
+
+    @Test
+    public void testGetStoriesDropSuperseded() {
+        Call newCall = mock(Call.class);
+        when(TestRestServiceFactory.algoliaRestService
+                .searchByDate(eq("ab"), anyInt(), anyInt()))
+                .thenReturn(newCall);
+        client.getStories("a", ItemManager.MODE_DEFAULT, storiesListener);
+        verify(call).enqueue(getStoriesCallback.capture());
+        Callback<AlgoliaClient.AlgoliaHits> staleCallback = getStoriesCallback.getValue();
+        client.getStories("ab", ItemManager.MODE_DEFAULT, storiesListener);
+        verify(newCall).enqueue(getStoriesCallback.capture());
+        // stale response arrives despite cancellation, e.g. already in delivery
+        staleCallback.onResponse(call, Response.success(createHits(
+                "{\"nbHits\":1,\"hits\":[{\"objectID\":\"1\"}]}")));
+        verify(storiesListener, never()).onResponse(any(Item[].class));
+        getStoriesCallback.getValue().onResponse(newCall, Response.success(createHits(
+                "{\"nbHits\":2,\"hits\":[{\"objectID\":\"2\"},{\"objectID\":\"3\"}]}")));
+        verify(storiesListener).onResponse(getStoriesResponse.capture());
+        assertThat(getStoriesResponse.getValue()).hasSize(2);
+        // stale response has not been cached
+        client.getStories("a", ItemManager.MODE_DEFAULT, storiesListener);
+        verify(TestRestServiceFactory.algoliaRestService, times(2))
+                .searchByDate(eq("a"), eq(0), eq(AlgoliaClient.FIRST_PAGE_SIZE));
+    }
+
+    @Test
+    public void testGetStoriesHydrated() {
+        ContentValues cv = new ContentValues();
+        cv.put(MaterialisticProvider.ViewedEntry.COLUMN_NAME_ITEM_ID, "1");
+        RuntimeEnvironment.application.getContentResolver()
+                .insert(MaterialisticProvider.URI_VIEWED, cv);
+        client.getStories("filter", ItemManager.MODE_DEFAULT, storiesListener);
+        verify(call).enqueue(getStoriesCallback.capture());
+        getStoriesCallback.getValue().onResponse(null, Response.success(createHits(
+                "{\"nbHits\":2,\"hits\":[" +
+                        "{\"objectID\":\"1\",\"title\":\"title\",\"url\":\"http://example.com\"," +
+                        "\"author\":\"author\",\"points\":10,\"num_comments\":2," +
+                        "\"created_at_i\":1234567890}," +
+                        "{\"objectID\":\"2\",\"title\":\"Ask HN\",\"story_text\":\"text\"}]}")));
+        verify(storiesListener).onResponse(getStoriesResponse.capture());
+        Item[] stories = getStoriesResponse.getValue();
+        assertThat(stories).hasSize(2);
+        assertThat(stories[0].getLocalRevision()).isGreaterThan(0); // no need to fetch
+        assertThat(stories[0].getTitle()).isEqualTo("title");
+        assertThat(stories[0].getUrl()).isEqualTo("http://example.com");
+        assertThat(stories[0].getBy()).isEqualTo("author");
+        assertThat(stories[0].getScore()).isEqualTo(10);
+        assertThat(stories[0].getKidCount()).isEqualTo(2);
+        assertThat(stories[0].getTime()).isEqualTo(1234567890L);
+        assertThat(stories[0].getRank()).isEqualTo(1);
+        assertThat(stories[0].isViewed()).isTrue();
+        assertThat(stories[0].isFavorite()).isFalse();
+        assertThat(stories[1].getText()).isEqualTo("text");
+        assertThat(stories[1].isViewed()).isFalse();
+        verify(hackerNewsClient, never())
+                .getItem(anyString(), anyInt(), any(ResponseListener.class));
+    }
+
+    @Test
+    public void testGetStoriesPage() {
+        client.getStories("filter", ItemManager.MODE_DEFAULT, 20, storiesListener);
+        verify(TestRestServiceFactory.algoliaRestService)
+                .searchByDate(eq("filter"), eq(20), eq(AlgoliaClient.PAGE_SIZE));
+        verify(call).enqueue(getStoriesCallback.capture());
+        getStoriesCallback.getValue().onResponse(null, Response.success(createHits(
+                "{\"nbHits\":21,\"hits\":[{\"objectID\":\"1\"}]}")));
+        verify(storiesListener).onResponse(getStoriesResponse.capture());
+        assertThat(getStoriesResponse.getValue()).hasSize(1);
+        assertThat(getStoriesResponse.getValue()[0].getRank()).isEqualTo(21);
+        // new search supersedes page in flight
+        client.getStories("filter", ItemManager.MODE_DEFAULT, 20, storiesListener);
+        client.getStories("query", ItemManager.MODE_DEFAULT, storiesListener);
+        verify(call).cancel();
+    }
+
+    @Test
+    public void testGetStoriesPageFirstPagePending() {
+        client.getStories("an", ItemManager.MODE_DEFAULT, storiesListener);
+        verify(call).enqueue(getStoriesCallback.capture());
+        getStoriesCallback.getValue().onResponse(null, Response.success(createHits(
+                "{\"nbHits\":1000,\"hits\":[{\"objectID\":\"1\",\"title\":\"Android\"}]}")));
+        client.getStories("android", ItemManager.MODE_DEFAULT, storiesListener);
+        verify(call, times(2)).enqueue(getStoriesCallback.capture());
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks(); // partial hits delivered
+        // page after partial hits is not requested, to be loaded again after first page
+        client.getStories("android", ItemManager.MODE_DEFAULT, 1, storiesListener);
+        verify(TestRestServiceFactory.algoliaRestService, never())
+                .searchByDate(eq("android"), eq(1), eq(AlgoliaClient.PAGE_SIZE));
+        verify(storiesListener).onError(anyString());
+        getStoriesCallback.getValue().onResponse(null, Response.success(createHits(
+                "{\"nbHits\":30,\"hits\":[{\"objectID\":\"1\"},{\"objectID\":\"3\"}]}")));
+        client.getStories("android", ItemManager.MODE_DEFAULT, 2, storiesListener);
+        verify(TestRestServiceFactory.algoliaRestService)
+                .searchByDate(eq("android"), eq(2), eq(AlgoliaClient.PAGE_SIZE));
+    }
+
+    private AlgoliaClient.AlgoliaHits createHits(String json) {
+        return new GsonBuilder().create().fromJson(json, AlgoliaClient.AlgoliaHits.class);
+    }
+
     @Module(
             injects = AlgoliaClientTest.class,
             overrides = true
@@ -1,11 +1,18 @@
 package io.github.hidroh.materialistic.data;
 
+import android.text.format.DateUtils;
+
+import com.google.gson.GsonBuilder;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.MockitoAnnotations;
 import org.robolectric.RuntimeEnvironment;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 
@@ -16,14 +23,24 @@ import dagger.Module;
 import dagger.ObjectGraph;
 import dagger.Provides;
 import io.github.hidroh.materialistic.test.ParameterizedRobolectricGradleTestRunner;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.Callback;
+import retrofit2.Response;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.contains;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Matchers.startsWith;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -34,6 +51,7 @@ public class AlgoliaPopularClientTest {
     private ItemManager hackerNewsClient = mock(ItemManager.class);
     private AlgoliaPopularClient client;
     private Call call;
+    @Captor ArgumentCaptor<Callback<AlgoliaClient.AlgoliaHits>> callback;
 
     public AlgoliaPopularClientTest(String range) {
         this.range = range;
@@ -57,7 +75,8 @@ public class AlgoliaPopularClientTest {
         client = new AlgoliaPopularClient(RuntimeEnvironment.application, factory);
         client.mHackerNewsClient = hackerNewsClient;
         call = mock(Call.class);
-        when(TestRestServiceFactory.algoliaRestService.searchByMinTimestamp(anyString()))
+        when(TestRestServiceFactory.algoliaRestService
+                .searchByMinTimestamp(anyString(), anyInt(), anyInt(), any(String.class)))
                 .thenReturn(call);
     }
 
@@ -65,10 +84,83 @@ public class AlgoliaPopularClientTest {
     public void testGetStories() {
         client.getStories(range, ItemManager.MODE_DEFAULT, mock(ResponseListener.class));
         verify(TestRestServiceFactory.algoliaRestService)
-                .searchByMinTimestamp(contains("created_at_i>"));
+                .searchByMinTimestamp(contains("created_at_i>"), eq(0),
+                        eq(AlgoliaClient.FIRST_PAGE_SIZE), eq("only-if-cached"));
         verify(call).enqueue(any(Callback.class));
     }
 
+    @Test
+    public void testGetStoriesNetwork() {
+        client.getStories(range, ItemManager.MODE_NETWORK, mock(ResponseListener.class));
+        verify(TestRestServiceFactory.algoliaRestService)
+                .searchByMinTimestamp(contains("created_at_i>"), eq(0),
+                        eq(AlgoliaClient.FIRST_PAGE_SIZE), eq("max-age=0"));
+    }
+
+    @Test
+    public void testLowerBoundQuantised() {
+        long startOfDay = 1466121600000L; // 2016-06-17T00:00:00Z
+        long lowerBound = AlgoliaPopularClient.getLowerBound(range, startOfDay);
+        assertThat(lowerBound * 1000).isLessThanOrEqualTo(startOfDay);
+        // stable within the shortest bucket, rolled over after the longest
+        assertThat(AlgoliaPopularClient.getLowerBound(range,
+                startOfDay + DateUtils.HOUR_IN_MILLIS - 1))
+                .isEqualTo(lowerBound);
+        assertThat(AlgoliaPopularClient.getLowerBound(range,
+                startOfDay + DateUtils.DAY_IN_MILLIS))
+                .isGreaterThan(lowerBound);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testGetStoriesBucketRolledOver() {
+        ResponseListener<Item[]> listener = mock(ResponseListener.class);
+        client.getStories(range, ItemManager.MODE_DEFAULT, listener);
+        // current bucket not in cache
+        verify(call).enqueue(callback.capture());
+        callback.getValue().onResponse(call, createUnsatisfiableResponse());
+        verify(TestRestServiceFactory.algoliaRestService, times(2))
+                .searchByMinTimestamp(anyString(), eq(0), eq(AlgoliaClient.FIRST_PAGE_SIZE),
+                        startsWith("only-if-cached, max-stale"));
+        verify(call, times(2)).enqueue(callback.capture());
+        callback.getValue().onResponse(call, createUnsatisfiableResponse());
+        // previous bucket in cache, served while refreshing
+        verify(call, times(3)).enqueue(callback.capture());
+        callback.getValue().onResponse(call, Response.success(createHits("1")));
+        verify(listener).onResponse(any(Item[].class));
+        verify(TestRestServiceFactory.algoliaRestService)
+                .searchByMinTimestamp(anyString(), eq(0), eq(AlgoliaClient.FIRST_PAGE_SIZE),
+                        (String) isNull());
+        verify(call, times(4)).enqueue(callback.capture());
+        callback.getValue().onResponse(call, Response.success(createHits("2")));
+        verify(listener, times(2)).onResponse(any(Item[].class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testGetStoriesRefreshFailedAfterStale() {
+        ResponseListener<Item[]> listener = mock(ResponseListener.class);
+        client.getStories(range, ItemManager.MODE_DEFAULT, listener);
+        verify(call).enqueue(callback.capture());
+        callback.getValue().onResponse(call, createUnsatisfiableResponse());
+        verify(call, times(2)).enqueue(callback.capture());
+        callback.getValue().onResponse(call, Response.success(createHits("1"))); // stale
+        verify(call, times(3)).enqueue(callback.capture());
+        callback.getValue().onFailure(call, new IOException());
+        verify(listener).onResponse(any(Item[].class));
+        verify(listener, never()).onError(anyString());
+    }
+
+    private Response<AlgoliaClient.AlgoliaHits> createUnsatisfiableResponse() {
+        return Response.error(504, ResponseBody.create(MediaType.parse("text/plain"), ""));
+    }
+
+    private AlgoliaClient.AlgoliaHits createHits(String objectId) {
+        return new GsonBuilder().create().fromJson(
+                "{\"hits\":[{\"objectID\":\"" + objectId + "\"}]}",
+                AlgoliaClient.AlgoliaHits.class);
+    }
+
     @Module(
             injects = AlgoliaPopularClientTest.class,
             overrides = true
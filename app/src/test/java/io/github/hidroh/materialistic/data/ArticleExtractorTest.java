@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ArticleExtractorTest {
+    private static final String BASE_URL = "http://example.com/docs/guide/page.html";
+
+    @Test
+    public void testBlog() throws IOException {
+        String content = extract("blog.html");
+        assertThat(content)
+                .startsWith("<div>")
+                .contains("For the better part of three years")
+                .contains("<h2>The new design</h2>")
+                .contains("<pre><code>cache/")
+                .contains("<li>Median lookup latency dropped from 8ms to 3ms.</li>")
+                .contains("<a href=\"http://example.com/code/build-cache\">source code</a>")
+                .doesNotContain("Popular posts")
+                .doesNotContain("Subscribe")
+                .doesNotContain("Tweet")
+                .doesNotContain("Related posts")
+                .doesNotContain("Great write up")
+                .doesNotContain("All rights reserved")
+                .doesNotContain("dataLayer")
+                .doesNotContain("font-family");
+    }
+
+    @Test
+    public void testNews() throws IOException {
+        String content = extract("news.html");
+        assertThat(content)
+                .contains("<h1>City council approves new bike lanes downtown</h1>")
+                .contains("<img src=\"http://example.com/docs/guide/images/bike-lane.jpg\"" +
+                        " alt=\"A cyclist rides along Main Street\">")
+                .contains("<p>The city council voted 7-2")
+                .contains("trips &amp; stop more often.")
+                .contains("April &mdash; weather permitting")
+                .doesNotContain("Advertisement")
+                .doesNotContain("Most popular")
+                .doesNotContain("Weather</a>")
+                .doesNotContain("not a div")
+                .doesNotContain("Contact us");
+    }
+
+    @Test
+    public void testDocs() throws IOException {
+        String content = extract("docs.html");
+        assertThat(content)
+                .contains("<h1>Connection pooling</h1>")
+                .contains("<pre>ConnectionPool pool = new ConnectionPool(10, 2, TimeUnit.MINUTES);")
+                .contains("<td>keepAliveDuration</td>")
+                .contains("<a href=\"http://example.com/docs/guide/timeouts.html#dispatcher\">")
+                .doesNotContain("Installation")
+                .doesNotContain("docgen");
+    }
+
+    @Test
+    public void testNoArticle() throws IOException {
+        assertThat(extract("listing.html")).isNull();
+        assertThat(ArticleExtractor.extract(new StringReader(""), null)).isNull();
+    }
+
+    @Test
+    public void testMalformed() throws IOException {
+        StringBuilder html = new StringBuilder("<div><div><p>");
+        for (int i = 0; i < 1000; i++) {
+            html.append("<div><b>unclosed, deeply nested paragraph text that keeps going ");
+        }
+        assertThat(ArticleExtractor.extract(new StringReader(html.toString()), null))
+                .contains("deeply nested paragraph");
+    }
+
+    private String extract(String fileName) throws IOException {
+        return ArticleExtractor.extract(new StringReader(read(fileName)), BASE_URL);
+    }
+
+    private String read(String fileName) throws IOException {
+        InputStream in = getClass().getClassLoader().getResourceAsStream("readability/" + fileName);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toString("UTF-8");
+    }
+}
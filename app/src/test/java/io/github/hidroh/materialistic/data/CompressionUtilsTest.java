@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CompressionUtilsTest {
+    @Test
+    public void testRoundTrip() {
+        StringBuilder html = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            html.append("<p>paragraph ").append(i).append(" é中</p>");
+        }
+        byte[] compressed = CompressionUtils.compress(html.toString());
+        assertThat(compressed.length).isLessThan(html.length());
+        assertThat(CompressionUtils.decompress(compressed)).isEqualTo(html.toString());
+    }
+
+    @Test
+    public void testEmpty() {
+        assertThat(CompressionUtils.decompress(CompressionUtils.compress(""))).isEmpty();
+    }
+
+    @Test
+    public void testCorrupted() {
+        assertThat(CompressionUtils.decompress(new byte[]{1, 2, 3})).isNull();
+    }
+}
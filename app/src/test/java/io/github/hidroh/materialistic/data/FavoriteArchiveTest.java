@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricGradleTestRunner.class)
+public class FavoriteArchiveTest {
+    private final Favorite[] favorites = new Favorite[]{
+            new Favorite("1", "http://example.com/?a=1&b=\"2\"", "<Show HN> \"quoted\" & more", 1234000L),
+            new Favorite("2", "https://news.ycombinator.com/item?id=2", "Ask HN: \u00e9t\u00e9?", 5678000L)
+    };
+
+    @Test
+    public void testRoundTripJsonLines() throws IOException {
+        assertRoundTrip(FavoriteArchive.FORMAT_JSON_LINES);
+    }
+
+    @Test
+    public void testRoundTripHtml() throws IOException {
+        assertRoundTrip(FavoriteArchive.FORMAT_HTML);
+    }
+
+    @Test
+    public void testReadBrowserBookmarks() throws IOException {
+        FavoriteArchive.Reader reader = new FavoriteArchive.Reader(new ByteArrayInputStream((
+                "<DL><p>\n" +
+                "<DT><H3>Folder</H3>\n" +
+                "<DT><a href=\"https://news.ycombinator.com/item?id=3\" add_date=\"1\">HN</a>\n" +
+                "<DT><A HREF=\"http://example.com\">Not an item</A>\n" +
+                "{\"id\":\"abc\"}\n" +
+                "{malformed\n" +
+                "</DL><p>\n").getBytes("UTF-8")));
+        Favorite favorite = reader.read();
+        assertEquals("3", favorite.getId());
+        assertEquals("HN", favorite.getDisplayedTitle());
+        assertEquals(1000L, favorite.getTime());
+        assertNull(reader.read());
+        reader.close();
+    }
+
+    private void assertRoundTrip(int format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FavoriteArchive.Writer writer = new FavoriteArchive.Writer(out, format);
+        for (Favorite favorite : favorites) {
+            writer.write(favorite);
+        }
+        writer.close();
+        FavoriteArchive.Reader reader = new FavoriteArchive.Reader(
+                new ByteArrayInputStream(out.toByteArray()));
+        for (Favorite expected : favorites) {
+            Favorite actual = reader.read();
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getUrl(), actual.getUrl());
+            assertEquals(expected.getDisplayedTitle(), actual.getDisplayedTitle());
+            assertEquals(expected.getTime(), actual.getTime());
+        }
+        assertNull(reader.read());
+        reader.close();
+    }
+}
@@ -4,7 +4,9 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
 import android.content.ShadowAsyncQueryHandler;
+import android.database.Cursor;
 import android.net.ConnectivityManager;
+import android.net.Uri;
 import android.os.Parcel;
 import android.support.v4.content.LocalBroadcastManager;
 
@@ -18,7 +20,13 @@ import org.robolectric.shadows.ShadowContentResolver;
 import org.robolectric.shadows.ShadowNetworkInfo;
 import org.robolectric.shadows.support.v4.ShadowLocalBroadcastManager;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import io.github.hidroh.materialistic.Application;
@@ -62,27 +70,117 @@ public class FavoriteManagerTest {
         cv.put("itemid", "2");
         cv.put("title", "ask HN");
         cv.put("url", "http://example.com");
-        cv.put("time", String.valueOf(System.currentTimeMillis()));
+        cv.put("time", "1234000");
         resolver.insert(MaterialisticProvider.URI_FAVORITE, cv);
         manager = new FavoriteManager();
     }
 
     @Test
-    public void testGetNoQuery() {
-        manager.get(RuntimeEnvironment.application, null);
+    public void testExportNoQuery() throws IOException {
+        manager.export(RuntimeEnvironment.application, null, FavoriteManager.FORMAT_JSON_LINES);
         Intent actual = getBroadcastIntent();
-        assertThat(actual).hasAction(FavoriteManager.ACTION_GET);
-        assertThat(actual.getParcelableArrayListExtra(FavoriteManager.ACTION_GET_EXTRA_DATA))
-                .hasSize(2);
+        assertThat(actual).hasAction(FavoriteManager.ACTION_EXPORT);
+        assertEquals(MaterialisticProvider.URI_EXPORT.buildUpon()
+                        .appendPath("favorites.jsonl").build(),
+                actual.getParcelableExtra(FavoriteManager.ACTION_EXPORT_EXTRA_DATA));
+        assertThat(readExport("favorites.jsonl")).hasSize(2);
+    }
+
+    @Test
+    public void testExportEmpty() throws IOException {
+        manager.export(RuntimeEnvironment.application, "blah", FavoriteManager.FORMAT_JSON_LINES);
+        assertThat(getBroadcastIntent()).hasAction(FavoriteManager.ACTION_EXPORT);
+        assertThat(readExport("favorites.jsonl")).isEmpty();
+    }
+
+    @Test
+    public void testExportQuery() throws IOException {
+        manager.export(RuntimeEnvironment.application, "as", FavoriteManager.FORMAT_JSON_LINES);
+        assertThat(readExport("favorites.jsonl")).hasSize(1);
+    }
+
+    @Test
+    public void testExportQueryNoWords() throws IOException {
+        manager.export(RuntimeEnvironment.application, "*\"", FavoriteManager.FORMAT_JSON_LINES);
+        assertThat(readExport("favorites.jsonl")).isEmpty();
+    }
+
+    @Test
+    public void testExportHtml() throws IOException {
+        manager.export(RuntimeEnvironment.application, null, FavoriteManager.FORMAT_HTML);
+        assertEquals("text/html", getBroadcastIntent()
+                .getStringExtra(FavoriteManager.ACTION_EXPORT_EXTRA_TYPE));
+        assertThat(readExport("favorites.html"))
+                .contains("</DL><p>")
+                .contains("    <DT><A HREF=\"http://example.com\" ADD_DATE=\"1234\" ITEM_ID=\"2\">ask HN</A>");
     }
 
     @Test
-    public void testGetEmpty() {
-        manager.get(RuntimeEnvironment.application, "blah");
+    public void testImport() {
+        Uri uri = Uri.parse("content://import/favorites");
+        resolver.registerInputStream(uri, new ByteArrayInputStream((
+                "{\"id\":\"3\",\"url\":\"http://example.com\",\"title\":\"title\",\"time\":1}\n" +
+                "<DT><A HREF=\"https://news.ycombinator.com/item?id=4\">Ask HN</A>\n" +
+                "<DT><A HREF=\"http://example.com\">not an item</A>\n" +
+                "{\"id\":\"1\",\"title\":\"title\"}\n").getBytes()));
+        manager.importFrom(RuntimeEnvironment.application, uri);
         Intent actual = getBroadcastIntent();
-        assertThat(actual).hasAction(FavoriteManager.ACTION_GET);
-        assertThat(actual.getParcelableArrayListExtra(FavoriteManager.ACTION_GET_EXTRA_DATA))
-                .isEmpty();
+        assertThat(actual).hasAction(FavoriteManager.ACTION_IMPORT);
+        assertEquals(3, actual.getIntExtra(FavoriteManager.ACTION_IMPORT_EXTRA_COUNT, 0));
+        assertTrue(actual.getBooleanExtra(FavoriteManager.ACTION_IMPORT_EXTRA_DONE, false));
+        Cursor cursor = resolver.query(MaterialisticProvider.URI_FAVORITE, null, null, null, null);
+        assertNotNull(cursor);
+        assertEquals(4, cursor.getCount()); // existing favorite replaced
+        cursor.close();
+        assertThat(resolver.getNotifiedUris()).isNotEmpty();
+    }
+
+    @Test
+    public void testImportExisting() {
+        Uri uri = Uri.parse("content://import/favorites");
+        resolver.registerInputStream(uri, new ByteArrayInputStream((
+                "{\"id\":\"1\",\"title\":\"new title\"}\n" +
+                "{\"id\":\"2\",\"title\":\"ask HN\"}\n" +
+                "{\"id\":\"3\",\"title\":\"title\"}\n").getBytes()));
+        manager.importFrom(RuntimeEnvironment.application, uri);
+        assertEquals(3, getBroadcastIntent().getIntExtra(FavoriteManager.ACTION_IMPORT_EXTRA_COUNT, 0));
+        Cursor cursor = resolver.query(MaterialisticProvider.URI_FAVORITE, null,
+                "itemid = ?", new String[]{"1"}, null);
+        assertNotNull(cursor);
+        assertTrue(cursor.moveToFirst());
+        assertEquals("new title", cursor.getString(cursor.getColumnIndex("title")));
+        cursor.close();
+        cursor = resolver.query(MaterialisticProvider.URI_FAVORITE, null, null, null, null);
+        assertNotNull(cursor);
+        assertEquals(3, cursor.getCount());
+        cursor.close();
+    }
+
+    @Test
+    public void testImportBatches() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < FavoriteManager.IMPORT_BATCH_SIZE + 1; i++) {
+            sb.append("{\"id\":\"").append(100 + i).append("\"}\n");
+        }
+        Uri uri = Uri.parse("content://import/favorites");
+        resolver.registerInputStream(uri, new ByteArrayInputStream(sb.toString().getBytes()));
+        manager.importFrom(RuntimeEnvironment.application, uri);
+        List<Intent> intents = shadowOf(LocalBroadcastManager.getInstance(RuntimeEnvironment.application))
+                .getSentBroadcastIntents();
+        assertThat(intents).hasSize(2);
+        assertEquals(FavoriteManager.IMPORT_BATCH_SIZE,
+                intents.get(0).getIntExtra(FavoriteManager.ACTION_IMPORT_EXTRA_COUNT, 0));
+        assertEquals(FavoriteManager.IMPORT_BATCH_SIZE + 1,
+                intents.get(1).getIntExtra(FavoriteManager.ACTION_IMPORT_EXTRA_COUNT, 0));
+    }
+
+    @Test
+    public void testImportNoFavorites() {
+        Uri uri = Uri.parse("content://import/favorites");
+        resolver.registerInputStream(uri, new ByteArrayInputStream("blah".getBytes()));
+        manager.importFrom(RuntimeEnvironment.application, uri);
+        assertEquals(0, getBroadcastIntent().getIntExtra(FavoriteManager.ACTION_IMPORT_EXTRA_COUNT, -1));
+        assertThat(resolver.getNotifiedUris()).isEmpty();
     }
 
     @Test
@@ -208,6 +306,18 @@ public class FavoriteManagerTest {
         assertThat(Favorite.CREATOR.newArray(1)).hasSize(1);
     }
 
+    private List<String> readExport(String fileName) throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader(MaterialisticProvider
+                .getExportFile(RuntimeEnvironment.application, fileName)));
+        List<String> lines = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lines.add(line);
+        }
+        reader.close();
+        return lines;
+    }
+
     private Intent getBroadcastIntent() {
         ShadowLocalBroadcastManager broadcastManager = shadowOf(LocalBroadcastManager.getInstance(RuntimeEnvironment.application));
         return broadcastManager.getSentBroadcastIntents().get(0);
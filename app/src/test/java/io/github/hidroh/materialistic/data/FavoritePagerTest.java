@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.ShadowAsyncQueryHandler;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@Config(shadows = ShadowAsyncQueryHandler.class)
+@RunWith(RobolectricGradleTestRunner.class)
+public class FavoritePagerTest {
+    private static final int COUNT = 250;
+    private ContentResolver resolver;
+    private FavoritePager pager;
+    private FavoritePager.Callbacks callbacks;
+
+    @Before
+    public void setUp() {
+        resolver = RuntimeEnvironment.application.getContentResolver();
+        for (int i = 0; i < COUNT; i++) {
+            ContentValues cv = new ContentValues();
+            cv.put("itemid", String.valueOf(i));
+            cv.put("title", "title " + i);
+            cv.put("url", "http://example.com");
+            cv.put("time", String.valueOf(1400000000000L + i));
+            resolver.insert(MaterialisticProvider.URI_FAVORITE, cv);
+        }
+        callbacks = mock(FavoritePager.Callbacks.class);
+        pager = new FavoritePager(resolver, callbacks);
+    }
+
+    @Test
+    public void testFirstPage() {
+        pager.setQuery(null);
+        verify(callbacks).onReset();
+        assertEquals(COUNT, pager.getCount());
+        assertEquals("249", pager.get(0).getId()); // most recent first
+        assertEquals("200", pager.get(FavoritePager.PAGE_SIZE - 1).getId());
+        assertNull(pager.get(FavoritePager.PAGE_SIZE));
+    }
+
+    @Test
+    public void testLoadNextPages() {
+        pager.setQuery(null);
+        for (int page = 1; page * FavoritePager.PAGE_SIZE < COUNT; page++) {
+            pager.load(page * FavoritePager.PAGE_SIZE + 20);
+            verify(callbacks).onPageLoaded(page * FavoritePager.PAGE_SIZE,
+                    FavoritePager.PAGE_SIZE);
+        }
+        assertEquals("0", pager.get(COUNT - 1).getId());
+        assertEquals("150", pager.get(99).getId());
+        assertNull(pager.get(0)); // farthest page evicted
+        pager.load(0);
+        assertEquals("249", pager.get(0).getId());
+    }
+
+    @Test
+    public void testLoadJump() {
+        pager.setQuery(null);
+        pager.load(160);
+        verify(callbacks).onPageLoaded(150, FavoritePager.PAGE_SIZE);
+        verify(callbacks).onPageLoaded(100, FavoritePager.PAGE_SIZE); // prefetched
+        assertEquals("89", pager.get(160).getId());
+    }
+
+    @Test
+    public void testReload() {
+        pager.setQuery(null);
+        pager.load(160);
+        resolver.delete(MaterialisticProvider.URI_FAVORITE, "itemid = ?", new String[]{"249"});
+        pager.reload();
+        verify(callbacks, times(2)).onReset();
+        assertEquals(COUNT - 1, pager.getCount());
+        assertEquals("88", pager.get(160).getId()); // last requested page kept loaded
+        assertNull(pager.get(0));
+    }
+
+    @Test
+    public void testQuery() {
+        pager.setQuery("title");
+        assertEquals(COUNT, pager.getCount());
+        pager.setQuery("blah");
+        verify(callbacks, times(2)).onReset();
+        assertEquals(0, pager.getCount());
+        assertNull(pager.get(0));
+    }
+
+    @Test
+    public void testClose() {
+        pager.setQuery(null);
+        assertNotNull(pager.get(0));
+        pager.close();
+        assertNull(pager.get(0));
+        pager.reload();
+        verify(callbacks).onReset();
+    }
+}
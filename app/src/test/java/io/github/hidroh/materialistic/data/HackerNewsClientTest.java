@@ -12,6 +12,9 @@ import org.robolectric.RobolectricGradleTestRunner;
 import org.robolectric.RuntimeEnvironment;
 
 import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -19,6 +22,10 @@ import javax.inject.Singleton;
 import dagger.Module;
 import dagger.ObjectGraph;
 import dagger.Provides;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
@@ -57,7 +64,7 @@ public class HackerNewsClientTest {
         reset(sessionManager);
         reset(favoriteManager);
         client = new HackerNewsClient(RuntimeEnvironment.application, factory, sessionManager,
-                favoriteManager);
+                favoriteManager, Runnable::run);
         itemListener = mock(ResponseListener.class);
         storiesListener = mock(ResponseListener.class);
         userListener = mock(ResponseListener.class);
@@ -70,11 +77,11 @@ public class HackerNewsClientTest {
         when(TestRestServiceFactory.hnRestService.jobStories()).thenReturn(call);
         when(TestRestServiceFactory.hnRestService.newStories()).thenReturn(call);
         when(TestRestServiceFactory.hnRestService.showStories()).thenReturn(call);
-        when(TestRestServiceFactory.hnRestService.networkAskStories()).thenReturn(call);
-        when(TestRestServiceFactory.hnRestService.networkTopStories()).thenReturn(call);
-        when(TestRestServiceFactory.hnRestService.networkJobStories()).thenReturn(call);
-        when(TestRestServiceFactory.hnRestService.networkNewStories()).thenReturn(call);
-        when(TestRestServiceFactory.hnRestService.networkShowStories()).thenReturn(call);
+        when(TestRestServiceFactory.hnRestService.networkAskStories(anyString())).thenReturn(call);
+        when(TestRestServiceFactory.hnRestService.networkTopStories(anyString())).thenReturn(call);
+        when(TestRestServiceFactory.hnRestService.networkJobStories(anyString())).thenReturn(call);
+        when(TestRestServiceFactory.hnRestService.networkNewStories(anyString())).thenReturn(call);
+        when(TestRestServiceFactory.hnRestService.networkShowStories(anyString())).thenReturn(call);
         when(TestRestServiceFactory.hnRestService.user(anyString())).thenReturn(call);
     }
 
@@ -100,6 +107,20 @@ public class HackerNewsClientTest {
         verify(itemListener).onResponse(eq(hnItem));
     }
 
+    @Test
+    public void testGetItemStoreLookupExecutor() {
+        List<Runnable> lookups = new ArrayList<>();
+        client = new HackerNewsClient(RuntimeEnvironment.application, factory, sessionManager,
+                favoriteManager, lookups::add);
+        client.getItem("1", ItemManager.MODE_DEFAULT, itemListener);
+        client.getItem("2", ItemManager.MODE_DEFAULT, itemListener);
+        assertThat(lookups).hasSize(2);
+        verify(TestRestServiceFactory.hnRestService, never()).item(anyString());
+        lookups.get(1).run();
+        verify(TestRestServiceFactory.hnRestService).item(eq("2"));
+        verify(TestRestServiceFactory.hnRestService, never()).item(eq("1"));
+    }
+
     @Test
     public void testGetItemForceNetwork() {
         client.getItem("1", ItemManager.MODE_NETWORK, itemListener);
@@ -122,6 +143,40 @@ public class HackerNewsClientTest {
         verify(itemListener).onResponse(eq(hnItem));
     }
 
+    @Test
+    public void testGetItemForceCacheItemStore() {
+        ItemStore itemStore = new ItemStore(RuntimeEnvironment.application.getContentResolver());
+        itemStore.put("1", new TestHnItem(1L) {
+            @Override
+            public String getTitle() {
+                return "title";
+            }
+        });
+        itemStore.flush();
+        client.getItem("1", ItemManager.MODE_CACHE, itemListener);
+        verify(TestRestServiceFactory.hnRestService, never()).cachedItem(anyString());
+        verify(sessionManager).isViewed(any(ContentResolver.class), eq("1"),
+                sessionCallback.capture());
+        sessionCallback.getValue().onCheckViewedComplete(false);
+        verify(favoriteManager).check(any(ContentResolver.class), eq("1"),
+                favoriteCallback.capture());
+        favoriteCallback.getValue().onCheckComplete(false);
+        ArgumentCaptor<Item> itemCaptor = ArgumentCaptor.forClass(Item.class);
+        verify(itemListener).onResponse(itemCaptor.capture());
+        assertThat(itemCaptor.getValue().getId()).isEqualTo("1");
+        assertThat(itemCaptor.getValue().getTitle()).isEqualTo("title");
+    }
+
+    @Test
+    public void testGetItemCacheResponseNotStored() {
+        client.getItem("1", ItemManager.MODE_DEFAULT, itemListener);
+        verify(call).enqueue(callbackCaptor.capture());
+        // served from OkHttp cache, without network response
+        callbackCaptor.getValue().onResponse(call, Response.success(new TestHnItem(1L)));
+        assertThat(new ItemStore(RuntimeEnvironment.application.getContentResolver()).get("1"))
+                .isNull();
+    }
+
     @Test
     public void testGetItemForceCacheUnsatisfiable() throws IOException {
         when(call.execute()).thenThrow(IOException.class);
@@ -218,19 +273,37 @@ public class HackerNewsClientTest {
     @Test
     public void testGetStoriesForceNetwork() {
         client.getStories(ItemManager.TOP_FETCH_MODE, ItemManager.MODE_NETWORK, storiesListener);
-        verify(TestRestServiceFactory.hnRestService).networkTopStories();
+        verify(TestRestServiceFactory.hnRestService).networkTopStories((String) isNull());
 
         client.getStories(ItemManager.NEW_FETCH_MODE, ItemManager.MODE_NETWORK, storiesListener);
-        verify(TestRestServiceFactory.hnRestService).networkNewStories();
+        verify(TestRestServiceFactory.hnRestService).networkNewStories((String) isNull());
 
         client.getStories(ItemManager.ASK_FETCH_MODE, ItemManager.MODE_NETWORK, storiesListener);
-        verify(TestRestServiceFactory.hnRestService).networkAskStories();
+        verify(TestRestServiceFactory.hnRestService).networkAskStories((String) isNull());
 
         client.getStories(ItemManager.JOBS_FETCH_MODE, ItemManager.MODE_NETWORK, storiesListener);
-        verify(TestRestServiceFactory.hnRestService).networkJobStories();
+        verify(TestRestServiceFactory.hnRestService).networkJobStories((String) isNull());
 
         client.getStories(ItemManager.SHOW_FETCH_MODE, ItemManager.MODE_NETWORK, storiesListener);
-        verify(TestRestServiceFactory.hnRestService).networkShowStories();
+        verify(TestRestServiceFactory.hnRestService).networkShowStories((String) isNull());
+    }
+
+    @Test
+    public void testGetStoriesNotModified() {
+        ConditionalResponseListener<Item[]> listener = mock(ConditionalResponseListener.class);
+        client.getStories(ItemManager.TOP_FETCH_MODE, ItemManager.MODE_NETWORK, listener);
+        verify(TestRestServiceFactory.hnRestService).networkTopStories(eq("true"));
+        verify(call).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(null, Response.error(
+                ResponseBody.create(MediaType.parse("application/json"), ""),
+                new okhttp3.Response.Builder()
+                        .code(HttpURLConnection.HTTP_NOT_MODIFIED)
+                        .message("Not Modified")
+                        .protocol(Protocol.HTTP_1_1)
+                        .request(new Request.Builder().url("http://localhost/").build())
+                        .build()));
+        verify(listener).onNotModified();
+        verify(listener, never()).onResponse(any(Item[].class));
     }
 
     @Test
@@ -372,6 +372,30 @@ public class HackerNewsItemTest {
         assertEquals(2, item.getKidItems()[1].getRank());
     }
 
+    @Test
+    public void testRepopulateRetainsKidItems() {
+        item.populate(new TestItem() {
+            @Override
+            public long[] getKids() {
+                return new long[]{1l, 2l};
+            }
+        });
+        Item kid = item.getKidItems()[1];
+        kid.setCollapsed(true);
+        item.populate(new TestItem() {
+            @Override
+            public long[] getKids() {
+                return new long[]{3l, 2l, 1l};
+            }
+        });
+        assertThat(item.getKidItems()).hasSize(3);
+        assertEquals("3", item.getKidItems()[0].getId());
+        assertEquals(-1, item.getKidItems()[0].getLocalRevision());
+        assertThat(item.getKidItems()[1]).isSameAs(kid);
+        assertTrue(item.getKidItems()[1].isCollapsed());
+        assertEquals(2, item.getKidItems()[1].getRank());
+    }
+
     @Test
     public void testIsShareable() {
         assertTrue(item.isStoryType());
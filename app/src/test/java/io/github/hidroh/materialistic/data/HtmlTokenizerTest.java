@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import android.support.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HtmlTokenizerTest {
+    @Test
+    public void testTags() throws IOException {
+        assertThat(tokenize("<P class=\"a\" ID=b data-x='1 2' hidden>Text<br/></p>"))
+                .containsExactly("<p class=a data-x=1 2 hidden= id=b>", "Text", "<br>", "</p>");
+    }
+
+    @Test
+    public void testCommentsAndDeclarations() throws IOException {
+        assertThat(tokenize("<!DOCTYPE html><!-- <p>a</p> -- --><?xml version=\"1.0\"?><p>b</p>"))
+                .containsExactly("<p>", "b", "</p>");
+    }
+
+    @Test
+    public void testRawText() throws IOException {
+        assertThat(tokenize("<script>if (a<b) { x = \"</div>\"; }</SCRIPT ><p>c</p>"))
+                .containsExactly("<script>", "</script>", "<p>", "c", "</p>");
+    }
+
+    @Test
+    public void testStrayMarkup() throws IOException {
+        assertThat(tokenize("a < b &amp; c <3<p"))
+                .containsExactly("a < b &amp; c <3", "<p>");
+    }
+
+    @Test
+    public void testChunkBoundary() throws IOException {
+        StringBuilder html = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            html.append("<span title=\"").append(i).append("\">").append(i).append("</span>");
+        }
+        List<String> tokens = tokenize(html.toString());
+        assertThat(tokens).hasSize(6000);
+        assertThat(tokens.get(5997)).isEqualTo("<span title=1999>");
+    }
+
+    private List<String> tokenize(String html) throws IOException {
+        List<String> tokens = new ArrayList<>();
+        new HtmlTokenizer(new StringReader(html), new HtmlTokenizer.Handler() {
+            @Override
+            public void onStartTag(@NonNull String name, @NonNull Map<String, String> attributes) {
+                StringBuilder token = new StringBuilder("<").append(name);
+                List<String> names = new ArrayList<>(attributes.keySet());
+                Collections.sort(names);
+                for (String attribute : names) {
+                    token.append(' ').append(attribute).append('=')
+                            .append(attributes.get(attribute));
+                }
+                tokens.add(token.append('>').toString());
+            }
+
+            @Override
+            public void onEndTag(@NonNull String name) {
+                tokens.add("</" + name + ">");
+            }
+
+            @Override
+            public void onText(@NonNull String text) {
+                tokens.add(text);
+            }
+        }).tokenize();
+        return tokens;
+    }
+}
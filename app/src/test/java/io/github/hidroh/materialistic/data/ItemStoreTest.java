@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import android.content.ContentValues;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricGradleTestRunner.class)
+public class ItemStoreTest {
+    private ItemStore itemStore;
+
+    @Before
+    public void setUp() {
+        itemStore = new ItemStore(RuntimeEnvironment.application.getContentResolver());
+    }
+
+    @Test
+    public void testPutGet() {
+        itemStore.put("1", new HackerNewsItem(1L, "story", "author", 1234L, "text",
+                "http://example.com", "title", 10, 2, 0L, new long[]{2L, 3L}, false, false));
+        assertThat(itemStore.get("1")).isNull(); // not yet flushed
+        itemStore.flush();
+        HackerNewsItem item = itemStore.get("1");
+        assertThat(item).isNotNull();
+        assertThat(item.getId()).isEqualTo("1");
+        assertThat(item.getRawType()).isEqualTo("story");
+        assertThat(item.getBy()).isEqualTo("author");
+        assertThat(item.getTime()).isEqualTo(1234L);
+        assertThat(item.getRawUrl()).isEqualTo("http://example.com");
+        assertThat(item.getTitle()).isEqualTo("title");
+        assertThat(item.getScore()).isEqualTo(10);
+        assertThat(item.getDescendants()).isEqualTo(2);
+        assertThat(item.getKids()).containsExactly(2L, 3L);
+    }
+
+    @Test
+    public void testPutReplace() {
+        itemStore.put("1", new HackerNewsItem(1L, "story", "author", 1234L, null, null,
+                "title", 10, 0, 0L, null, false, false));
+        itemStore.put("1", new HackerNewsItem(1L, "story", "author", 1234L, null, null,
+                "title", 20, 1, 0L, new long[]{2L}, false, false));
+        itemStore.flush();
+        HackerNewsItem item = itemStore.get("1");
+        assertThat(item.getScore()).isEqualTo(20);
+        assertThat(item.getKids()).containsExactly(2L);
+    }
+
+    @Test
+    public void testPutExisting() {
+        itemStore.put("1", new HackerNewsItem(1L, "story", "author", 1234L, null, null,
+                "title", 10, 0, 0L, null, false, false));
+        itemStore.flush();
+        itemStore.put("1", new HackerNewsItem(1L, "story", "author", 1234L, null, null,
+                "title", 20, 1, 0L, new long[]{2L}, false, false));
+        itemStore.put("2", new HackerNewsItem(2L, "comment", "author", 1234L, "text", null,
+                null, 0, 0, 1L, null, false, false));
+        itemStore.flush();
+        assertThat(itemStore.get("1").getScore()).isEqualTo(20);
+        assertThat(itemStore.get("2")).isNotNull();
+    }
+
+    @Test
+    public void testGetMaxAge() {
+        itemStore.put("1", new HackerNewsItem(1L, "story", "author", 1234L, null, null,
+                "title", 10, 0, 0L, null, false, false));
+        itemStore.flush();
+        assertThat(itemStore.get("1", 60 * 1000)).isNotNull();
+        ContentValues cv = new ContentValues();
+        cv.put(MaterialisticProvider.ItemEntry.COLUMN_NAME_LAST_MODIFIED,
+                System.currentTimeMillis() - 2 * 60 * 1000);
+        RuntimeEnvironment.application.getContentResolver()
+                .update(MaterialisticProvider.URI_ITEM, cv, null, null);
+        assertThat(itemStore.get("1", 60 * 1000)).isNull();
+        assertThat(itemStore.get("1")).isNotNull();
+    }
+
+    @Test
+    public void testPutUnchanged() {
+        itemStore.put("1", new HackerNewsItem(1L, "story", "author", 1234L, null, null,
+                "title", 10, 0, 0L, new long[]{2L}, false, false));
+        itemStore.flush();
+        ContentValues cv = new ContentValues();
+        cv.put(MaterialisticProvider.ItemEntry.COLUMN_NAME_LAST_MODIFIED,
+                System.currentTimeMillis() - 2 * 60 * 1000);
+        RuntimeEnvironment.application.getContentResolver()
+                .update(MaterialisticProvider.URI_ITEM, cv, null, null);
+        itemStore.put("1", new HackerNewsItem(1L, "story", "author", 1234L, null, null,
+                "title", 10, 0, 0L, new long[]{2L}, false, false));
+        itemStore.flush();
+        assertThat(itemStore.get("1", 60 * 1000)).isNull();
+        itemStore.put("1", new HackerNewsItem(1L, "story", "author", 1234L, null, null,
+                "title", 20, 0, 0L, new long[]{2L}, false, false));
+        itemStore.flush();
+        assertThat(itemStore.get("1", 60 * 1000).getScore()).isEqualTo(20);
+    }
+
+    @Test
+    public void testEncodeKids() {
+        long[] kids = {12046521L, 12046344L, 12046872L, 1L, Long.MAX_VALUE, 0L};
+        byte[] encoded = ItemStore.encodeKids(kids);
+        assertThat(ItemStore.decodeKids(encoded)).containsExactly(kids);
+        assertThat(ItemStore.encodeKids(new long[]{12046521L, 12046344L}).length)
+                .isLessThan(8);
+        assertThat(ItemStore.decodeKids(ItemStore.encodeKids(new long[0]))).isEmpty();
+        assertThat(ItemStore.encodeKids(null)).isNull();
+        assertThat(ItemStore.decodeKids(null)).isNull();
+    }
+
+    @Test
+    public void testContains() {
+        itemStore.put("1", new HackerNewsItem(1L, "story", "author", 1234L, null, null,
+                "title", 10, 0, 0L, null, false, false));
+        assertThat(itemStore.contains("1")).isFalse(); // not yet flushed
+        itemStore.flush();
+        assertThat(itemStore.contains("1")).isTrue();
+        assertThat(itemStore.contains("2")).isFalse();
+    }
+
+    @Test
+    public void testGetMissing() {
+        assertThat(itemStore.get("1")).isNull();
+    }
+}
@@ -18,9 +18,11 @@ package io.github.hidroh.materialistic.data;
 
 import android.accounts.Account;
 import android.app.NotificationManager;
+import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
+import android.database.Cursor;
 import android.net.ConnectivityManager;
 import android.os.Bundle;
 
@@ -37,11 +39,14 @@ import org.robolectric.annotation.Config;
 import org.robolectric.shadows.ShadowContentResolver;
 import org.robolectric.shadows.ShadowNetworkInfo;
 import org.robolectric.shadows.ShadowNotification;
+import org.robolectric.shadows.ShadowLooper;
 import org.robolectric.shadows.ShadowNotificationManager;
 import org.robolectric.shadows.support.v4.ShadowLocalBroadcastManager;
 import org.robolectric.util.ServiceController;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import io.github.hidroh.materialistic.Application;
 import io.github.hidroh.materialistic.R;
@@ -85,10 +90,13 @@ public class ItemSyncAdapterTest {
         serviceController = Robolectric.buildService(ItemSyncService.class);
         service = serviceController.attach().create().get();
         setNetworkType(ConnectivityManager.TYPE_WIFI);
+        service.sendBroadcast(new Intent(ConnectivityManager.CONNECTIVITY_ACTION));
         ShadowSupportPreferenceManager.getDefaultSharedPreferences(service)
                 .edit()
                 .putBoolean(service.getString(R.string.pref_saved_item_sync), true)
                 .putBoolean(service.getString(R.string.pref_offline_comments), true)
+                // web views never finish loading here, do not leave article tasks behind
+                .putBoolean(service.getString(R.string.pref_offline_article), false)
                 .apply();
         adapter = new ItemSyncAdapter(service, new TestRestServiceFactory(), readabilityClient);
         syncPreferences = service.getSharedPreferences(
@@ -118,7 +126,7 @@ public class ItemSyncAdapterTest {
         // cache hit, should not try network or defer
         verify(TestRestServiceFactory.hnRestService).cachedItem(anyString());
         verify(TestRestServiceFactory.hnRestService, never()).networkItem(anyString());
-        assertThat(syncPreferences.getAll()).isEmpty();
+        assertThat(getQueuedItemIds()).isEmpty();
     }
 
     @Test
@@ -132,7 +140,7 @@ public class ItemSyncAdapterTest {
         adapter.onPerformSync(mock(Account.class), getLastSyncExtras(), null, null, null);
 
         // should defer
-        assertThat(syncPreferences.getAll()).isNotEmpty();
+        assertThat(getQueuedItemIds()).containsExactly("1");
     }
 
     @Test
@@ -154,7 +162,7 @@ public class ItemSyncAdapterTest {
         // should try cache, then network
         verify(TestRestServiceFactory.hnRestService).cachedItem(anyString());
         verify(TestRestServiceFactory.hnRestService).networkItem(anyString());
-        assertThat(syncPreferences.getAll()).isEmpty();
+        assertThat(getQueuedItemIds()).isEmpty();
     }
 
     @Test
@@ -170,7 +178,7 @@ public class ItemSyncAdapterTest {
         // should try cache before network
         verify(TestRestServiceFactory.hnRestService).cachedItem(anyString());
         verify(TestRestServiceFactory.hnRestService).networkItem(anyString());
-        assertThat(syncPreferences.getAll()).isEmpty();
+        assertThat(getQueuedItemIds()).isEmpty();
 
         // on network response should try children
         verify(call).enqueue(callbackCapture.capture());
@@ -210,6 +218,129 @@ public class ItemSyncAdapterTest {
         ItemSyncAdapter.initSync(service, null);
         adapter.onPerformSync(mock(Account.class), getLastSyncExtras(), null, null, null);
         verify(TestRestServiceFactory.hnRestService, times(2)).cachedItem(anyString());
+        assertThat(syncPreferences.getAll()).isEmpty();
+    }
+
+    @Test
+    public void testSyncDeferredQueue() throws IOException {
+        Call<HackerNewsItem> call = mock(Call.class);
+        when(call.execute()).thenReturn(Response.success((HackerNewsItem) new TestHnItem(1L)));
+        when(TestRestServiceFactory.hnRestService.cachedItem(anyString())).thenReturn(call);
+
+        ContentValues cv = new ContentValues();
+        cv.put(MaterialisticProvider.SyncQueueEntry.COLUMN_NAME_ITEM_ID, "1");
+        cv.put(MaterialisticProvider.SyncQueueEntry.COLUMN_NAME_TYPE, SyncJobQueue.TYPE_ITEM);
+        service.getContentResolver().insert(MaterialisticProvider.URI_SYNC_QUEUE, cv);
+        ItemSyncAdapter.initSync(service, null);
+        adapter.onPerformSync(mock(Account.class), getLastSyncExtras(), null, null, null);
+        verify(TestRestServiceFactory.hnRestService).cachedItem(eq("1"));
+        assertThat(getQueuedItemIds()).isEmpty();
+    }
+
+    @Test
+    public void testSyncDeferredQueueBackoff() throws IOException {
+        Call<HackerNewsItem> call = mock(Call.class);
+        when(call.execute()).thenThrow(IOException.class);
+        when(TestRestServiceFactory.hnRestService.cachedItem(anyString())).thenReturn(call);
+        when(TestRestServiceFactory.hnRestService.networkItem(anyString())).thenReturn(call);
+
+        ContentValues cv = new ContentValues();
+        cv.put(MaterialisticProvider.SyncQueueEntry.COLUMN_NAME_ITEM_ID, "1");
+        cv.put(MaterialisticProvider.SyncQueueEntry.COLUMN_NAME_TYPE, SyncJobQueue.TYPE_ITEM);
+        service.getContentResolver().insert(MaterialisticProvider.URI_SYNC_QUEUE, cv);
+        ItemSyncAdapter.initSync(service, null);
+        adapter.onPerformSync(mock(Account.class), getLastSyncExtras(), null, null, null);
+        verify(call).enqueue(callbackCapture.capture());
+        callbackCapture.getValue().onFailure(null, null);
+        // failed job should be kept for retry, but not due again immediately
+        assertThat(getQueuedItemIds()).containsExactly("1");
+        reset(TestRestServiceFactory.hnRestService);
+        adapter.onPerformSync(mock(Account.class), getLastSyncExtras(), null, null, null);
+        verify(TestRestServiceFactory.hnRestService, never()).cachedItem(anyString());
+    }
+
+    @Test
+    public void testSyncIncremental() throws IOException {
+        HackerNewsItem story = new TestHnItem(1L) {
+            @Override
+            public long[] getKids() {
+                return new long[]{2L};
+            }
+        };
+        Call<HackerNewsItem> storyCall = mock(Call.class);
+        when(storyCall.execute()).thenReturn(Response.success(story));
+        Call<HackerNewsItem> commentCall = mock(Call.class);
+        when(commentCall.execute()).thenReturn(Response.success(
+                (HackerNewsItem) new TestHnItem(2L)));
+        when(TestRestServiceFactory.hnRestService.cachedItem(eq("1"))).thenReturn(storyCall);
+        when(TestRestServiceFactory.hnRestService.cachedItem(eq("2"))).thenReturn(commentCall);
+        ItemSyncAdapter.initSync(service, "1");
+        adapter.onPerformSync(mock(Account.class), getLastSyncExtras(), null, null, null);
+        verify(TestRestServiceFactory.hnRestService).cachedItem(eq("2"));
+
+        // root should be refreshed from network, unchanged subtree should not be refetched
+        reset(TestRestServiceFactory.hnRestService);
+        Call<HackerNewsItem> refreshCall = mock(Call.class);
+        when(TestRestServiceFactory.hnRestService.networkItem(eq("1"))).thenReturn(refreshCall);
+        adapter.onPerformSync(mock(Account.class), getLastSyncExtras(), null, null, null);
+        verify(refreshCall).enqueue(callbackCapture.capture());
+        callbackCapture.getValue().onResponse(null, Response.success(story));
+        verify(TestRestServiceFactory.hnRestService, never()).cachedItem(anyString());
+        verify(TestRestServiceFactory.hnRestService, never()).networkItem(eq("2"));
+    }
+
+    @Test
+    public void testSyncIncrementalEvicted() throws IOException {
+        HackerNewsItem story = new TestHnItem(1L) {
+            @Override
+            public long[] getKids() {
+                return new long[]{2L};
+            }
+        };
+        Call<HackerNewsItem> storyCall = mock(Call.class);
+        when(storyCall.execute()).thenReturn(Response.success(story));
+        Call<HackerNewsItem> commentCall = mock(Call.class);
+        when(commentCall.execute()).thenReturn(Response.success(
+                (HackerNewsItem) new TestHnItem(2L)));
+        when(TestRestServiceFactory.hnRestService.cachedItem(eq("1"))).thenReturn(storyCall);
+        when(TestRestServiceFactory.hnRestService.cachedItem(eq("2"))).thenReturn(commentCall);
+        ItemSyncAdapter.initSync(service, "1");
+        adapter.onPerformSync(mock(Account.class), getLastSyncExtras(), null, null, null);
+        service.getContentResolver().delete(MaterialisticProvider.URI_ITEM,
+                MaterialisticProvider.ItemEntry.COLUMN_NAME_ITEM_ID + " = ?",
+                new String[]{"2"});
+
+        // known but evicted kid should be crawled again
+        reset(TestRestServiceFactory.hnRestService);
+        Call<HackerNewsItem> refreshCall = mock(Call.class);
+        when(TestRestServiceFactory.hnRestService.networkItem(eq("1"))).thenReturn(refreshCall);
+        when(TestRestServiceFactory.hnRestService.cachedItem(eq("2"))).thenReturn(commentCall);
+        adapter.onPerformSync(mock(Account.class), getLastSyncExtras(), null, null, null);
+        verify(refreshCall).enqueue(callbackCapture.capture());
+        callbackCapture.getValue().onResponse(null, Response.success(story));
+        verify(TestRestServiceFactory.hnRestService).cachedItem(eq("2"));
+    }
+
+    @Test
+    public void testSyncTruncated() throws IOException {
+        // thread deeper than max depth
+        for (long id = 1; id <= 12; id++) {
+            final long kidId = id + 1;
+            Call<HackerNewsItem> call = mock(Call.class);
+            when(call.execute()).thenReturn(Response.success((HackerNewsItem) new TestHnItem(id) {
+                @Override
+                public long[] getKids() {
+                    return new long[]{kidId};
+                }
+            }));
+            when(TestRestServiceFactory.hnRestService.cachedItem(eq(String.valueOf(id))))
+                    .thenReturn(call);
+        }
+        ItemSyncAdapter.initSync(service, "1");
+        adapter.onPerformSync(mock(Account.class), getLastSyncExtras(), null, null, null);
+        verify(TestRestServiceFactory.hnRestService).cachedItem(eq("11"));
+        verify(TestRestServiceFactory.hnRestService, never()).cachedItem(eq("12"));
+        assertThat(new SyncFingerprints(service.getContentResolver()).load("1")).isEmpty();
     }
 
     @Test
@@ -389,6 +520,8 @@ public class ItemSyncAdapterTest {
         ItemSyncAdapter.initSync(service, "1");
         adapter.onPerformSync(mock(Account.class), getLastSyncExtras(), null, null, null);
 
+        // progress updates are coalesced
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
         ShadowNotificationManager notificationManager = shadowOf((NotificationManager) service
                 .getSystemService(Context.NOTIFICATION_SERVICE));
         ShadowNotification.Progress progress = shadowOf(notificationManager.getNotification(1))
@@ -401,6 +534,35 @@ public class ItemSyncAdapterTest {
         assertThat(notificationManager.getAllNotifications()).isEmpty();
     }
 
+    @Test
+    public void testConnectionChangeWhileSyncing() throws IOException {
+        Call<HackerNewsItem> call = mock(Call.class);
+        when(call.execute()).thenReturn(Response.success((HackerNewsItem) new TestHnItem(1L) {
+            @Override
+            public long[] getKids() {
+                return new long[]{2L};
+            }
+        }));
+        when(TestRestServiceFactory.hnRestService.cachedItem(eq("1"))).thenReturn(call);
+        Call<HackerNewsItem> kidCall = mock(Call.class);
+        when(kidCall.execute()).thenThrow(IOException.class);
+        when(TestRestServiceFactory.hnRestService.cachedItem(eq("2"))).thenReturn(kidCall);
+        when(TestRestServiceFactory.hnRestService.networkItem(eq("2"))).thenReturn(kidCall);
+
+        ItemSyncAdapter.initSync(service, "1");
+        adapter.onPerformSync(mock(Account.class), getLastSyncExtras(), null, null, null);
+        verify(kidCall).enqueue(callbackCapture.capture());
+        assertThat(getQueuedItemIds()).isEmpty();
+
+        // moving to mobile data should stop syncing comments, to be resumed later
+        setNetworkType(ConnectivityManager.TYPE_MOBILE);
+        service.sendBroadcast(new Intent(ConnectivityManager.CONNECTIVITY_ACTION));
+        verify(kidCall).cancel();
+        assertThat(getQueuedItemIds()).containsExactly("1");
+        // partially crawled root is not considered synced
+        assertThat(new SyncFingerprints(service.getContentResolver()).load("1")).isEmpty();
+    }
+
     @Test
     public void testBindService() {
         assertNotNull(service.onBind(null));
@@ -436,6 +598,19 @@ public class ItemSyncAdapterTest {
                 .setActiveNetworkInfo(ShadowNetworkInfo.newInstance(null, type, 0, true, true));
     }
 
+    private List<String> getQueuedItemIds() {
+        List<String> itemIds = new ArrayList<>();
+        Cursor cursor = service.getContentResolver().query(MaterialisticProvider.URI_SYNC_QUEUE,
+                new String[]{MaterialisticProvider.SyncQueueEntry.COLUMN_NAME_ITEM_ID},
+                null, null, null);
+        assertNotNull(cursor);
+        while (cursor.moveToNext()) {
+            itemIds.add(cursor.getString(0));
+        }
+        cursor.close();
+        return itemIds;
+    }
+
     private Bundle getLastSyncExtras() {
         return ShadowContentResolver.getStatus(Application.createSyncAccount(),
                 MaterialisticProvider.PROVIDER_AUTHORITY).syncExtras;
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.IOException;
+
+import okhttp3.Call;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricGradleTestRunner.class)
+public class LocalReadabilityClientTest {
+    private static final String URL = "http://example.com/article.html";
+    private static final String ARTICLE = "<html><body><div id=\"nav\"><a href=\"/\">Home</a></div>" +
+            "<div class=\"content\"><p>Lorem ipsum dolor sit amet, consectetur adipiscing elit, " +
+            "sed do eiusmod tempor incididunt ut labore et dolore magna aliqua. Ut enim ad minim " +
+            "veniam, quis nostrud exercitation ullamco laboris nisi ut aliquip ex ea commodo " +
+            "consequat. Duis aute irure dolor in reprehenderit in voluptate velit esse cillum " +
+            "dolore eu fugiat nulla pariatur.</p></div></body></html>";
+    private Call.Factory callFactory;
+    private Call call;
+    private ReadabilityClient client;
+    private ReadabilityClient.Callback callback;
+
+    @Before
+    public void setUp() {
+        callFactory = mock(Call.Factory.class);
+        call = mock(Call.class);
+        when(callFactory.newCall(any(Request.class))).thenReturn(call);
+        callback = mock(ReadabilityClient.Callback.class);
+        client = new LocalReadabilityClient(RuntimeEnvironment.application, callFactory,
+                Runnable::run);
+    }
+
+    @Test
+    public void testExtract() throws IOException {
+        when(call.execute()).thenReturn(createResponse(URL, 200, "text/html", ARTICLE));
+        client.parse("1", URL, callback);
+        verify(callback).onResponse(eq("<div><div><p>Lorem ipsum dolor sit amet, consectetur " +
+                "adipiscing elit, sed do eiusmod tempor incididunt ut labore et dolore magna " +
+                "aliqua. Ut enim ad minim veniam, quis nostrud exercitation ullamco laboris nisi " +
+                "ut aliquip ex ea commodo consequat. Duis aute irure dolor in reprehenderit in " +
+                "voluptate velit esse cillum dolore eu fugiat nulla pariatur.</p></div></div>"));
+        assertThat(client.parse("1", URL)).contains("Lorem ipsum"); // from store
+        verify(call).execute();
+    }
+
+    @Test
+    public void testRedirect() throws IOException {
+        String redirectUrl = "https://example.com/article.html";
+        when(call.execute())
+                .thenReturn(createResponse(URL, 301, "text/html", "")
+                        .newBuilder().header("Location", redirectUrl).build())
+                .thenReturn(createResponse(redirectUrl, 200, "text/html", ARTICLE));
+        assertThat(client.parse("1", URL)).contains("Lorem ipsum");
+        verify(callFactory, times(2)).newCall(any(Request.class));
+    }
+
+    @Test
+    public void testRedirectLoop() throws IOException {
+        when(call.execute()).thenReturn(createResponse(URL, 302, "text/html", "")
+                .newBuilder().header("Location", URL).build());
+        assertThat(client.parse("1", URL)).isNull();
+        when(call.execute()).thenReturn(createResponse(URL, 200, "text/html", ARTICLE));
+        assertThat(client.parse("1", URL)).contains("Lorem ipsum"); // failure is not stored
+    }
+
+    @Test
+    public void testRedirectNoLocation() throws IOException {
+        when(call.execute())
+                .thenReturn(createResponse(URL, 301, "text/html", ""))
+                .thenReturn(createResponse(URL, 200, "text/html", ARTICLE));
+        assertThat(client.parse("1", URL)).isNull();
+        assertThat(client.parse("1", URL)).contains("Lorem ipsum"); // failure is not stored
+        verify(call, times(2)).execute();
+    }
+
+    @Test
+    public void testNotHtml() throws IOException {
+        when(call.execute()).thenReturn(createResponse(URL, 200, "application/pdf", ARTICLE));
+        assertThat(client.parse("1", URL)).isNull();
+        assertThat(client.parse("1", URL)).isNull();
+        verify(call).execute(); // no readable content is stored
+    }
+
+    @Test
+    public void testServerError() throws IOException {
+        when(call.execute()).thenReturn(createResponse(URL, 503, "text/html", ""));
+        assertThat(client.parse("1", URL)).isNull();
+        assertThat(client.parse("1", URL)).isNull();
+        verify(call, times(2)).execute(); // failures are not stored
+    }
+
+    @Test
+    public void testRateLimited() throws IOException {
+        when(call.execute())
+                .thenReturn(createResponse(URL, 429, "text/html", ""))
+                .thenReturn(createResponse(URL, 200, "text/html", ARTICLE));
+        assertThat(client.parse("1", URL)).isNull();
+        assertThat(client.parse("1", URL)).contains("Lorem ipsum"); // failure is not stored
+        verify(call, times(2)).execute();
+    }
+
+    @Test
+    public void testNotFound() throws IOException {
+        when(call.execute()).thenReturn(createResponse(URL, 404, "text/html", ""));
+        assertThat(client.parse("1", URL)).isNull();
+        assertThat(client.parse("1", URL)).isNull();
+        verify(call).execute(); // no readable content is stored
+    }
+
+    @Test
+    public void testErrorNotStored() throws IOException {
+        when(call.execute())
+                .thenThrow(IOException.class)
+                .thenReturn(createResponse(URL, 200, "text/html", ARTICLE));
+        assertThat(client.parse("1", URL)).isNull();
+        assertThat(client.parse("1", URL)).contains("Lorem ipsum");
+    }
+
+    @Test
+    public void testError() throws IOException {
+        when(call.execute()).thenThrow(IOException.class);
+        client.parse("1", URL, callback);
+        verify(callback).onResponse((String) isNull());
+    }
+
+    private Response createResponse(String url, int code, String contentType, String body) {
+        return new Response.Builder()
+                .request(new Request.Builder().url(url).build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .body(ResponseBody.create(MediaType.parse(contentType), body))
+                .build();
+    }
+}
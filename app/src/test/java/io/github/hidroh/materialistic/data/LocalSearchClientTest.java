@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import android.content.ContentValues;
+import android.content.ShadowAsyncQueryHandler;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+@SuppressWarnings("unchecked")
+@Config(shadows = ShadowAsyncQueryHandler.class)
+@RunWith(RobolectricGradleTestRunner.class)
+public class LocalSearchClientTest {
+    private LocalSearchClient client;
+    private ResponseListener<Item[]> listener;
+    @Captor ArgumentCaptor<Item[]> stories;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        ItemStore itemStore = new ItemStore(RuntimeEnvironment.application.getContentResolver());
+        itemStore.put("1", new HackerNewsItem(1L, "story", "author", 1234L, null, null,
+                "Android Studio", 10, 1, 0L, new long[]{2L}, false, false));
+        itemStore.put("2", new HackerNewsItem(2L, "comment", "author", 1234L, "Kotlin is great",
+                null, null, 0, -1, 1L, null, false, false));
+        itemStore.put("3", new HackerNewsItem(3L, "comment", "author", 1234L, "Kotlin",
+                null, null, 0, -1, 99L, null, false, false)); // story not stored
+        itemStore.flush();
+        ContentValues cv = new ContentValues();
+        cv.put("itemid", "4");
+        cv.put("title", "Kotlin tips");
+        cv.put("url", "http://example.com");
+        cv.put("time", String.valueOf(System.currentTimeMillis()));
+        RuntimeEnvironment.application.getContentResolver()
+                .insert(MaterialisticProvider.URI_FAVORITE, cv);
+        new ReadabilityStore(RuntimeEnvironment.application.getContentResolver())
+                .put("5", "<p>kotlin</p><p>kotlin</p>");
+        client = new LocalSearchClient(RuntimeEnvironment.application);
+        client.mHackerNewsClient = mock(ItemManager.class);
+        listener = mock(ResponseListener.class);
+    }
+
+    @Test
+    public void testBuildMatchQuery() {
+        assertEquals("kotlin* is*", MaterialisticProvider.buildMatchQuery(" kotlin -is\""));
+        assertNull(MaterialisticProvider.buildMatchQuery("*\" "));
+        assertNull(MaterialisticProvider.buildMatchQuery(null));
+    }
+
+    @Test
+    public void testGetStories() {
+        client.getStories("kot", ItemManager.MODE_DEFAULT, listener);
+        verify(listener).onResponse(stories.capture());
+        assertThat(stories.getValue()).hasSize(3);
+        assertEquals("4", stories.getValue()[0].getId()); // title matches rank higher
+        assertEquals(1, stories.getValue()[0].getRank());
+        assertThat(new String[]{stories.getValue()[1].getId(), stories.getValue()[2].getId()})
+                .containsOnly("1", "5"); // comment counted towards its story
+    }
+
+    @Test
+    public void testGetStoriesNoWords() {
+        client.getStories("*", ItemManager.MODE_DEFAULT, listener);
+        verify(listener).onResponse(stories.capture());
+        assertThat(stories.getValue()).isEmpty();
+    }
+
+    @Test
+    public void testUnindexed() {
+        RuntimeEnvironment.application.getContentResolver()
+                .delete(MaterialisticProvider.URI_FAVORITE, null, null);
+        RuntimeEnvironment.application.getContentResolver()
+                .delete(MaterialisticProvider.URI_READABILITY, null, null);
+        client.getStories("kotlin", ItemManager.MODE_DEFAULT, listener);
+        verify(listener).onResponse(stories.capture());
+        assertThat(stories.getValue()).hasSize(1);
+        assertEquals("1", stories.getValue()[0].getId());
+    }
+
+    @Test
+    public void testCorruptedReadability() {
+        ContentValues cv = new ContentValues();
+        cv.put("itemid", "5");
+        cv.put("content", new byte[]{1, 2, 3});
+        RuntimeEnvironment.application.getContentResolver()
+                .insert(MaterialisticProvider.URI_READABILITY, cv);
+        client.getStories("kotlin", ItemManager.MODE_DEFAULT, listener);
+        verify(listener).onResponse(stories.capture());
+        assertThat(stories.getValue()).hasSize(2);
+        assertThat(new String[]{stories.getValue()[0].getId(), stories.getValue()[1].getId()})
+                .containsOnly("1", "4");
+    }
+
+    @Test
+    public void testGetItem() {
+        client.getItem("1", ItemManager.MODE_DEFAULT, mock(ResponseListener.class));
+        verify(client.mHackerNewsClient).getItem(eq("1"), eq(ItemManager.MODE_CACHE),
+                any(ResponseListener.class));
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Collections;
+import java.util.List;
+
+import okhttp3.Cookie;
+import okhttp3.HttpUrl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricGradleTestRunner.class)
+public class PersistentCookieJarTest {
+    private static final HttpUrl LOGIN_URL = HttpUrl.parse("https://news.ycombinator.com/login");
+    private PersistentCookieJar cookieJar;
+
+    @Before
+    public void setUp() {
+        cookieJar = new PersistentCookieJar(RuntimeEnvironment.application);
+    }
+
+    @Test
+    public void testLoadForOtherPaths() {
+        save("user=username&token; Path=/; Max-Age=3600");
+        assertThat(getNames("https://news.ycombinator.com/vote")).containsExactly("user");
+        assertThat(getNames("https://news.ycombinator.com/")).containsExactly("user");
+        assertThat(getNames("https://example.com/")).isEmpty();
+    }
+
+    @Test
+    public void testLoadForSubdomains() {
+        save("user=username&token; Domain=ycombinator.com; Path=/; Max-Age=3600");
+        save("host=value; Path=/; Max-Age=3600");
+        assertThat(getNames("https://ycombinator.com/")).containsExactly("user");
+        assertThat(getNames("https://news.ycombinator.com/item"))
+                .containsOnly("user", "host");
+    }
+
+    @Test
+    public void testLoadForPath() {
+        save("scoped=value; Path=/login; Max-Age=3600");
+        assertThat(getNames("https://news.ycombinator.com/login")).containsExactly("scoped");
+        assertThat(getNames("https://news.ycombinator.com/vote")).isEmpty();
+    }
+
+    @Test
+    public void testReplace() {
+        save("user=old; Path=/; Max-Age=3600");
+        save("user=new; Path=/; Max-Age=3600");
+        List<Cookie> cookies = cookieJar.loadForRequest(LOGIN_URL);
+        assertThat(cookies).hasSize(1);
+        assertThat(cookies.get(0).value()).isEqualTo("new");
+        assertThat(new PersistentCookieJar(RuntimeEnvironment.application)
+                .loadForRequest(LOGIN_URL).get(0).value()).isEqualTo("new");
+    }
+
+    @Test
+    public void testExpire() {
+        save("user=username&token; Path=/; Max-Age=3600");
+        save("user=; Path=/; Max-Age=0");
+        assertThat(getNames("https://news.ycombinator.com/")).isEmpty();
+        assertThat(new PersistentCookieJar(RuntimeEnvironment.application)
+                .loadForRequest(LOGIN_URL)).isEmpty();
+    }
+
+    @Test
+    public void testPersistence() {
+        save("user=username&token; Path=/; Max-Age=3600");
+        save("session=value; Path=/");
+        assertThat(getNames("https://news.ycombinator.com/")).containsOnly("user", "session");
+        List<Cookie> cookies = new PersistentCookieJar(RuntimeEnvironment.application)
+                .loadForRequest(HttpUrl.parse("https://news.ycombinator.com/vote"));
+        assertThat(cookies).hasSize(1);
+        assertThat(cookies.get(0).name()).isEqualTo("user");
+        assertThat(cookies.get(0).value()).isEqualTo("username&token");
+    }
+
+    @Test
+    public void testOtherHostNotPersisted() {
+        HttpUrl url = HttpUrl.parse("https://example.com/");
+        cookieJar.saveFromResponse(url, Collections.singletonList(
+                Cookie.parse(url, "tracker=value; Path=/; Max-Age=3600")));
+        assertThat(getNames("https://example.com/")).containsExactly("tracker");
+        assertThat(new PersistentCookieJar(RuntimeEnvironment.application)
+                .loadForRequest(url)).isEmpty();
+    }
+
+    @Test
+    public void testPruneExpired() {
+        SharedPreferences preferences = RuntimeEnvironment.application
+                .getSharedPreferences("Cookies", Context.MODE_PRIVATE);
+        preferences.edit()
+                .putString("news.ycombinator.com\t/\tuser\ttrue",
+                        "user=username&token; expires=Thu, 01 Jan 1970 00:00:01 GMT; path=/")
+                .apply();
+        assertThat(new PersistentCookieJar(RuntimeEnvironment.application)
+                .loadForRequest(LOGIN_URL)).isEmpty();
+        assertThat(preferences.getAll()).isEmpty();
+    }
+
+    private void save(String setCookie) {
+        cookieJar.saveFromResponse(LOGIN_URL,
+                Collections.singletonList(Cookie.parse(LOGIN_URL, setCookie)));
+    }
+
+    private String[] getNames(String url) {
+        List<Cookie> cookies = cookieJar.loadForRequest(HttpUrl.parse(url));
+        String[] names = new String[cookies.size()];
+        for (int i = 0; i < cookies.size(); i++) {
+            names[i] = cookies.get(i).name();
+        }
+        return names;
+    }
+}
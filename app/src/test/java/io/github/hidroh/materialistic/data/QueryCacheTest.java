@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class QueryCacheTest {
+    private QueryCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new QueryCache(2);
+    }
+
+    @Test
+    public void testExactHit() {
+        AlgoliaClient.AlgoliaHits hits = createHits(Integer.MAX_VALUE, "Android");
+        cache.put("android", true, hits);
+        assertThat(cache.get(" Android ", true)).isSameAs(hits);
+        assertThat(cache.get("android", false)).isNull();
+        assertThat(cache.hitCount()).isEqualTo(1);
+        assertThat(cache.missCount()).isEqualTo(1);
+        assertThat(cache.toString()).contains("hitRate=50%");
+    }
+
+    @Test
+    public void testRefineExhaustive() {
+        cache.put("an", true, createHits(3, "Android", "Angular", "iOS"));
+        AlgoliaClient.AlgoliaHits refined = cache.get("andr", true);
+        assertThat(refined.hits).hasSize(1);
+        assertThat(refined.hits[0].title).isEqualTo("Android");
+        assertThat(refined.isExhaustive()).isTrue();
+        assertThat(cache.get("an  ios", true).hits).isEmpty();
+        assertThat(cache.hitCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testRefineNotExhaustive() {
+        cache.put("an", true, createHits(100, "Android", "Angular", "iOS"));
+        assertThat(cache.get("andr", true)).isNull();
+        AlgoliaClient.AlgoliaHits partial = cache.getPartial("andr", true);
+        assertThat(partial.hits).hasSize(1);
+        assertThat(partial.isExhaustive()).isFalse();
+        assertThat(cache.getPartial("ios", true)).isNull();
+    }
+
+    @Test
+    public void testAppendPage() {
+        cache.put("an", true, createHits(3, "Android", "Angular"));
+        assertThat(cache.get("andr", true)).isNull();
+        cache.append("an", true, 1, createHits(3, "iOS")); // does not follow cached hits
+        assertThat(cache.get("an", true).hits).hasSize(2);
+        cache.append("an", true, 2, createHits(3, "Android Studio"));
+        assertThat(cache.get("an", true).hits).hasSize(3);
+        assertThat(cache.get("andr", true).hits).hasSize(2);
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        cache.put("a", true, createHits(Integer.MAX_VALUE));
+        cache.put("b", true, createHits(Integer.MAX_VALUE));
+        cache.get("a", true);
+        cache.put("c", true, createHits(Integer.MAX_VALUE));
+        assertThat(cache.get("a", true)).isNotNull();
+        assertThat(cache.get("b", true)).isNull();
+        assertThat(cache.get("c", true)).isNotNull();
+    }
+
+    @Test
+    public void testRemove() {
+        cache.put("a", true, createHits(Integer.MAX_VALUE));
+        cache.remove("a", true);
+        assertThat(cache.get("a", true)).isNull();
+    }
+
+    private AlgoliaClient.AlgoliaHits createHits(int nbHits, String... titles) {
+        AlgoliaClient.AlgoliaHits hits = new AlgoliaClient.AlgoliaHits();
+        hits.nbHits = nbHits;
+        hits.hits = new AlgoliaClient.Hit[titles.length];
+        for (int i = 0; i < titles.length; i++) {
+            hits.hits[i] = new AlgoliaClient.Hit();
+            hits.hits[i].objectID = String.valueOf(i + 1);
+            hits.hits[i].title = titles[i];
+        }
+        return hits;
+    }
+}
@@ -1,6 +1,7 @@
 package io.github.hidroh.materialistic.data;
 
 import android.content.ContentValues;
+import android.database.Cursor;
 
 import com.google.gson.GsonBuilder;
 
@@ -26,6 +27,7 @@ import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isNull;
@@ -93,7 +95,7 @@ public class ReadabilityClientTest {
     public void testCachedContent() throws IOException {
         ContentValues cv = new ContentValues();
         cv.put("itemid", "1");
-        cv.put("content", "<div>content</div>");
+        cv.put("content", CompressionUtils.compress("<div>content</div>"));
         resolver.insert(MaterialisticProvider.URI_READABILITY, cv);
         client.parse("1", "http://example.com/article.html", callback);
         verify(TestRestServiceFactory.readabilityService, never()).parse(anyString());
@@ -105,7 +107,7 @@ public class ReadabilityClientTest {
     public void testEmptyCachedContent() throws IOException {
         ContentValues cv = new ContentValues();
         cv.put("itemid", "1");
-        cv.put("content", "<div></div>");
+        cv.put("content", CompressionUtils.compress("<div></div>"));
         resolver.insert(MaterialisticProvider.URI_READABILITY, cv);
         client.parse("1", "http://example.com/article.html", callback);
         verify(TestRestServiceFactory.readabilityService, never()).parse(anyString());
@@ -113,6 +115,45 @@ public class ReadabilityClientTest {
         verify(callback).onResponse((String) isNull());
     }
 
+    @Test
+    public void testCacheCompressed() throws IOException {
+        ReadabilityClient.Impl.Readable readable = new GsonBuilder().create()
+                .fromJson("{\"content\":\"<div>content</div>\"}", ReadabilityClient.Impl.Readable.class);
+        when(call.execute()).thenReturn(Response.success(readable));
+        client.parse("1", "http://example.com/article.html");
+        Cursor cursor = resolver.query(MaterialisticProvider.URI_READABILITY, null,
+                "itemid = ?", new String[]{"1"}, null);
+        assertThat(cursor.moveToFirst()).isTrue();
+        byte[] content = cursor.getBlob(cursor.getColumnIndex("content"));
+        assertThat(CompressionUtils.decompress(content)).isEqualTo("<div>content</div>");
+        assertThat(cursor.getLong(cursor.getColumnIndex("size"))).isEqualTo(content.length);
+        assertThat(cursor.getLong(cursor.getColumnIndex("last_access"))).isGreaterThan(0);
+        cursor.close();
+    }
+
+    @Test
+    public void testEvictLeastRecentlyAccessed() {
+        ContentValues favorite = new ContentValues();
+        favorite.put("itemid", "1");
+        resolver.insert(MaterialisticProvider.URI_FAVORITE, favorite);
+        byte[] content = new byte[1024 * 1024];
+        for (int i = 1; i <= 3; i++) {
+            ContentValues cv = new ContentValues();
+            cv.put("itemid", String.valueOf(i));
+            cv.put("content", content);
+            cv.put("size", content.length);
+            cv.put("last_access", i);
+            resolver.insert(MaterialisticProvider.URI_READABILITY, cv);
+        }
+        // over budget, least recently accessed unpinned entry evicted
+        assertThat(resolver.query(MaterialisticProvider.URI_READABILITY, null,
+                "itemid = ?", new String[]{"1"}, null).getCount()).isEqualTo(1);
+        assertThat(resolver.query(MaterialisticProvider.URI_READABILITY, null,
+                "itemid = ?", new String[]{"2"}, null).getCount()).isEqualTo(0);
+        assertThat(resolver.query(MaterialisticProvider.URI_READABILITY, null,
+                "itemid = ?", new String[]{"3"}, null).getCount()).isEqualTo(1);
+    }
+
     @Module(
             injects = ReadabilityClientTest.class,
             overrides = true
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricGradleTestRunner.class)
+public class ReadabilityStoreTest {
+    private ContentResolver contentResolver;
+    private ReadabilityStore readabilityStore;
+
+    @Before
+    public void setUp() {
+        contentResolver = RuntimeEnvironment.application.getContentResolver();
+        readabilityStore = new ReadabilityStore(contentResolver);
+    }
+
+    @Test
+    public void testPutGet() {
+        readabilityStore.put("1", "<div>content</div>");
+        readabilityStore.put("2", null);
+        assertThat(readabilityStore.get("1")).isEqualTo("<div>content</div>");
+        assertThat(readabilityStore.get("2")).isEqualTo(ReadabilityStore.EMPTY_CONTENT);
+        assertThat(readabilityStore.get("3")).isNull();
+    }
+
+    @Test
+    public void testTruncate() {
+        insert("1", MaterialisticProvider.READABILITY_MAX_BYTES / 2 + 1, 1L);
+        insert("2", MaterialisticProvider.READABILITY_MAX_BYTES / 2, 2L);
+        insert("3", MaterialisticProvider.READABILITY_MAX_BYTES / 2, 3L);
+        assertThat(readabilityStore.get("1")).isNull();
+        assertThat(readabilityStore.get("2")).isNotNull();
+        assertThat(readabilityStore.get("3")).isNotNull();
+    }
+
+    @Test
+    public void testTruncatePinnedOverBudget() {
+        ContentValues favorite = new ContentValues();
+        favorite.put(MaterialisticProvider.FavoriteEntry.COLUMN_NAME_ITEM_ID, "1");
+        contentResolver.insert(MaterialisticProvider.URI_FAVORITE, favorite);
+        insert("1", MaterialisticProvider.READABILITY_MAX_BYTES + 1, 1L);
+        readabilityStore.put("2", "<div>content</div>");
+        readabilityStore.put("3", "<div>content</div>");
+        assertThat(readabilityStore.get("1")).isNotNull();
+        assertThat(readabilityStore.get("2")).isNotNull();
+        assertThat(readabilityStore.get("3")).isNotNull();
+    }
+
+    @Test
+    public void testTruncateKeepInserted() {
+        insert("1", 1L, 1L);
+        insert("2", MaterialisticProvider.READABILITY_MAX_BYTES + 1, 2L);
+        assertThat(readabilityStore.get("1")).isNull();
+        assertThat(readabilityStore.get("2")).isNotNull();
+    }
+
+    private void insert(String itemId, long size, long lastAccess) {
+        ContentValues cv = new ContentValues();
+        cv.put(MaterialisticProvider.ReadabilityEntry.COLUMN_NAME_ITEM_ID, itemId);
+        cv.put(MaterialisticProvider.ReadabilityEntry.COLUMN_NAME_CONTENT,
+                CompressionUtils.compress("<div>content</div>"));
+        cv.put(MaterialisticProvider.ReadabilityEntry.COLUMN_NAME_SIZE, size);
+        cv.put(MaterialisticProvider.ReadabilityEntry.COLUMN_NAME_LAST_ACCESS, lastAccess);
+        contentResolver.insert(MaterialisticProvider.URI_READABILITY, cv);
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(RobolectricGradleTestRunner.class)
+public class SubmissionPagerTest {
+    private static final int COUNT = 200;
+    private TestItemManager itemManager;
+    private SubmissionPager pager;
+    private SubmissionPager.Callbacks callbacks;
+
+    @Before
+    public void setUp() {
+        long[] ids = new long[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            ids[i] = i;
+        }
+        itemManager = new TestItemManager();
+        callbacks = mock(SubmissionPager.Callbacks.class);
+        pager = new SubmissionPager(itemManager, ids, callbacks);
+    }
+
+    @Test
+    public void testLoadWindow() {
+        assertEquals(COUNT, pager.getCount());
+        assertEquals(50L, pager.getItemId(50));
+        assertNull(pager.get(0));
+        pager.load(0);
+        assertEquals(SubmissionPager.PAGE_SIZE, itemManager.requested.size());
+        itemManager.respond();
+        verify(callbacks).onItemsLoaded(0, SubmissionPager.PAGE_SIZE);
+        assertEquals("0", pager.get(0).getId());
+        assertNull(pager.get(SubmissionPager.PAGE_SIZE));
+        pager.load(SubmissionPager.PAGE_SIZE - SubmissionPager.PREFETCH_DISTANCE);
+        assertEquals(SubmissionPager.PAGE_SIZE, itemManager.requested.size()); // prefetched
+        itemManager.respond();
+        verify(callbacks).onItemsLoaded(SubmissionPager.PAGE_SIZE, SubmissionPager.PAGE_SIZE);
+        assertNotNull(pager.get(SubmissionPager.PAGE_SIZE));
+    }
+
+    @Test
+    public void testLoadBatch() {
+        pager.load(0);
+        ResponseListener<Item> last = itemManager.listeners.remove(SubmissionPager.PAGE_SIZE - 1);
+        itemManager.requested.remove(SubmissionPager.PAGE_SIZE - 1);
+        itemManager.respond();
+        verify(callbacks, never()).onItemsLoaded(anyInt(), anyInt());
+        assertNull(pager.get(0));
+        last.onError(null);
+        verify(callbacks).onItemsLoaded(0, SubmissionPager.PAGE_SIZE);
+        assertNotNull(pager.get(0));
+        assertNull(pager.get(SubmissionPager.PAGE_SIZE - 1)); // failed
+    }
+
+    @Test
+    public void testLoadRetryFailed() {
+        pager.load(0);
+        itemManager.listeners.remove(1).onError(null);
+        itemManager.requested.remove(1);
+        itemManager.respond();
+        verify(callbacks).onItemsLoaded(0, SubmissionPager.PAGE_SIZE);
+        assertNull(pager.get(1)); // failed
+        pager.load(1);
+        assertEquals(1, itemManager.requested.size()); // only failed item is requested again
+        assertEquals("1", itemManager.requested.get(0));
+        assertNotNull(pager.get(0)); // hydrated items still shown while retrying
+        itemManager.respond();
+        verify(callbacks, times(2)).onItemsLoaded(0, SubmissionPager.PAGE_SIZE);
+        assertEquals("1", pager.get(1).getId());
+        pager.load(1);
+        assertEquals(0, itemManager.requested.size());
+    }
+
+    @Test
+    public void testFilterRetryFailed() {
+        pager.setFilter(SubmissionPager.FILTER_COMMENTS);
+        itemManager.listeners.remove(4).onError(null); // 5th item, 3rd comment
+        itemManager.requested.remove(4);
+        itemManager.respond();
+        verify(callbacks).onItemsInserted(0, 2); // not scanned past failed item
+        assertEquals(2, pager.getCount());
+        assertEquals(0, itemManager.requested.size()); // not retried right away
+        pager.load(1);
+        assertEquals(1, itemManager.requested.size());
+        assertEquals("4", itemManager.requested.get(0));
+        itemManager.respond();
+        verify(callbacks).onItemsInserted(2, SubmissionPager.PAGE_SIZE / 2 - 2);
+        assertEquals(4L, pager.getItemId(2));
+    }
+
+    @Test
+    public void testEvict() {
+        for (int position = 0; position < COUNT; position += SubmissionPager.PAGE_SIZE / 4) {
+            pager.load(position);
+            itemManager.respond();
+        }
+        assertNotNull(pager.get(COUNT - 1));
+        assertNull(pager.get(0)); // farthest page evicted
+        pager.load(0);
+        assertEquals(SubmissionPager.PAGE_SIZE, itemManager.requested.size());
+    }
+
+    @Test
+    public void testFilter() {
+        pager.setFilter(SubmissionPager.FILTER_COMMENTS);
+        verify(callbacks).onReset();
+        assertEquals(0, pager.getCount());
+        itemManager.respond(); // scans until prefetch distance is covered
+        verify(callbacks).onItemsInserted(0, SubmissionPager.PAGE_SIZE / 2);
+        itemManager.respond();
+        verify(callbacks).onItemsInserted(SubmissionPager.PAGE_SIZE / 2,
+                SubmissionPager.PAGE_SIZE / 2);
+        assertEquals(0, itemManager.requested.size());
+        assertEquals(SubmissionPager.PAGE_SIZE, pager.getCount());
+        assertEquals(2L, pager.getItemId(1));
+        assertEquals(Item.COMMENT_TYPE, pager.get(1).getType());
+        pager.load(pager.getCount() - 1);
+        itemManager.respond();
+        assertEquals(SubmissionPager.PAGE_SIZE * 3 / 2, pager.getCount());
+
+        pager.setFilter(SubmissionPager.FILTER_STORIES); // already hydrated pages
+        assertEquals(SubmissionPager.PAGE_SIZE * 3 / 2, pager.getCount());
+        assertEquals(1L, pager.getItemId(0));
+        assertEquals(0, itemManager.requested.size());
+
+        pager.setFilter(SubmissionPager.FILTER_ALL);
+        assertEquals(COUNT, pager.getCount());
+        assertEquals(0L, pager.getItemId(0));
+    }
+
+    @Test
+    public void testClose() {
+        pager.load(0);
+        pager.close();
+        itemManager.respond();
+        verify(callbacks, never()).onItemsLoaded(anyInt(), anyInt());
+        assertNull(pager.get(0));
+    }
+
+    private static class TestItemManager implements ItemManager {
+        private final List<String> requested = new ArrayList<>();
+        private final List<ResponseListener<Item>> listeners = new ArrayList<>();
+
+        @Override
+        public void getStories(String filter, @CacheMode int cacheMode,
+                               ResponseListener<Item[]> listener) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void getItem(String itemId, @CacheMode int cacheMode,
+                            ResponseListener<Item> listener) {
+            requested.add(itemId);
+            listeners.add(listener);
+        }
+
+        @Override
+        public Item[] getStories(String filter, @CacheMode int cacheMode) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Item getItem(String itemId, @CacheMode int cacheMode) {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Responds to pending requests, with comments for even IDs and stories for odd IDs
+         */
+        void respond() {
+            List<String> ids = new ArrayList<>(requested);
+            List<ResponseListener<Item>> pending = new ArrayList<>(listeners);
+            requested.clear();
+            listeners.clear();
+            for (int i = 0; i < ids.size(); i++) {
+                final long id = Long.parseLong(ids.get(i));
+                pending.get(i).onResponse(new TestHnItem(id) {
+                    @Override
+                    public String getRawType() {
+                        return id % 2 == 0 ? COMMENT_TYPE : STORY_TYPE;
+                    }
+                });
+            }
+        }
+    }
+}
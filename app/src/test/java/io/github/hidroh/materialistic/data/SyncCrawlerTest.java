@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricGradleTestRunner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+@SuppressWarnings("unchecked")
+@RunWith(RobolectricGradleTestRunner.class)
+public class SyncCrawlerTest {
+    private final Map<String, HackerNewsItem> cache = new HashMap<>();
+    private final Map<String, Call<HackerNewsItem>> calls = new HashMap<>();
+    private final List<String> visited = new ArrayList<>();
+    private final List<String> skipped = new ArrayList<>();
+    private final List<String> cancelled = new ArrayList<>();
+    private final Set<String> truncated = new HashSet<>();
+    private final Set<String> known = new HashSet<>();
+    private final List<Boolean> deferredLocks = new ArrayList<>();
+    private SyncCrawler crawler;
+    private int refreshBudget;
+    private int idleCount;
+    private @Captor ArgumentCaptor<Callback<HackerNewsItem>> callbackCaptor;
+    private final SyncCrawler.Callbacks callbacks = new SyncCrawler.Callbacks() {
+        @Override
+        public HackerNewsItem getFromCache(String itemId) {
+            return cache.get(itemId);
+        }
+
+        @Override
+        public boolean isRefresh(SyncCrawler.Task task) {
+            return known.contains(task.itemId);
+        }
+
+        @Override
+        public boolean shouldRefresh(SyncCrawler.Task task) {
+            return refreshBudget-- > 0;
+        }
+
+        @Override
+        public Call<HackerNewsItem> getFromNetwork(SyncCrawler.Task task) {
+            Call<HackerNewsItem> call = mock(Call.class);
+            calls.put(task.itemId, call);
+            return call;
+        }
+
+        @Override
+        public boolean onItem(SyncCrawler.Task task, HackerNewsItem item) {
+            visited.add(task.itemId);
+            if (crawler != null) {
+                crawler.defer(() -> deferredLocks.add(Thread.holdsLock(crawler)));
+            }
+            return true;
+        }
+
+        @Override
+        public void onSkipped(SyncCrawler.Task task) {
+            skipped.add(task.itemId);
+        }
+
+        @Override
+        public void onTruncated(String rootId) {
+            truncated.add(rootId);
+        }
+
+        @Override
+        public void onCancelled(String rootId) {
+            cancelled.add(rootId);
+        }
+
+        @Override
+        public void onIdle() {
+            idleCount++;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        cache.put("1", createItem(1L, 2L, 3L));
+        cache.put("2", createItem(2L, 4L));
+        cache.put("3", createItem(3L));
+        cache.put("4", createItem(4L, 5L));
+        cache.put("5", createItem(5L));
+    }
+
+    @Test
+    public void testBreadthFirst() {
+        SyncCrawler crawler = new SyncCrawler(callbacks, 10, 100, 1);
+        crawler.crawl("1", "1", false);
+        assertThat(visited).containsExactly("1", "2", "3", "4", "5");
+        assertThat(skipped).isEmpty();
+        assertThat(truncated).isEmpty();
+        assertThat(crawler.isIdle()).isTrue();
+        assertThat(idleCount).isEqualTo(1);
+    }
+
+    @Test
+    public void testMaxDepth() {
+        SyncCrawler crawler = new SyncCrawler(callbacks, 1, 100, 1);
+        crawler.crawl("1", "1", false);
+        assertThat(visited).containsExactly("1", "2", "3");
+        assertThat(skipped).containsExactly("4");
+        assertThat(truncated).containsExactly("1");
+    }
+
+    @Test
+    public void testMaxItems() {
+        SyncCrawler crawler = new SyncCrawler(callbacks, 10, 2, 1);
+        crawler.crawl("1", "1", false);
+        assertThat(visited).containsExactly("1", "2");
+        assertThat(skipped).containsExactly("3", "4");
+        assertThat(truncated).containsExactly("1");
+    }
+
+    @Test
+    public void testMaxConcurrentRequests() {
+        cache.remove("2");
+        cache.remove("3");
+        SyncCrawler crawler = new SyncCrawler(callbacks, 10, 100, 1);
+        crawler.crawl("1", "1", false);
+        assertThat(calls).containsOnlyKeys("2");
+        assertThat(crawler.isIdle()).isFalse();
+
+        verify(calls.get("2")).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(null, Response.success(createItem(2L)));
+        assertThat(calls).containsOnlyKeys("2", "3");
+
+        verify(calls.get("3")).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onFailure(null, null);
+        assertThat(visited).containsExactly("1", "2", "3");
+        assertThat(crawler.isIdle()).isTrue();
+    }
+
+    @Test
+    public void testCancel() {
+        cache.remove("2");
+        SyncCrawler crawler = new SyncCrawler(callbacks, 10, 100, 1);
+        crawler.crawl("1", "1", false);
+        crawler.cancel();
+        verify(calls.get("2")).cancel();
+        assertThat(cancelled).containsExactly("1");
+
+        verify(calls.get("2")).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onFailure(null, null);
+        assertThat(visited).containsExactly("1", "3", "2");
+        assertThat(crawler.isIdle()).isTrue();
+    }
+
+    @Test
+    public void testDeferredWork() {
+        cache.remove("2");
+        crawler = new SyncCrawler(callbacks, 10, 100, 1);
+        crawler.crawl("1", "1", false);
+        assertThat(deferredLocks).containsExactly(false, false);
+
+        verify(calls.get("2")).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(null, Response.success(createItem(2L)));
+        assertThat(visited).containsExactly("1", "3", "2");
+        assertThat(deferredLocks).containsExactly(false, false, false);
+    }
+
+    @Test
+    public void testRefresh() {
+        known.add("2");
+        known.add("3");
+        refreshBudget = 1;
+        cache.put("6", createItem(6L));
+        SyncCrawler crawler = new SyncCrawler(callbacks, 10, 100, 4);
+        crawler.crawl("1", "1", true);
+        assertThat(calls).containsOnlyKeys("1");
+
+        verify(calls.get("1")).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(null, Response.success(createItem(1L, 2L, 3L, 6L)));
+        assertThat(visited).containsExactly("1", "6");
+        assertThat(calls).containsOnlyKeys("1", "2");
+
+        verify(calls.get("2")).enqueue(callbackCaptor.capture());
+        callbackCaptor.getValue().onResponse(null, Response.success(createItem(2L, 4L)));
+        assertThat(visited).containsExactly("1", "6", "2", "4", "5");
+        assertThat(skipped).containsExactly("3");
+        assertThat(truncated).isEmpty(); // skipped refresh is not truncation
+        assertThat(calls).containsOnlyKeys("1", "2");
+        assertThat(crawler.isIdle()).isTrue();
+        assertThat(idleCount).isEqualTo(1);
+    }
+
+    private HackerNewsItem createItem(long id, long... kids) {
+        return new TestHnItem(id) {
+            @Override
+            public long[] getKids() {
+                return kids.length > 0 ? kids : null;
+            }
+        };
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricGradleTestRunner.class)
+public class SyncFingerprintsTest {
+    private SyncFingerprints fingerprints;
+
+    @Before
+    public void setUp() {
+        fingerprints = new SyncFingerprints(RuntimeEnvironment.application.getContentResolver());
+    }
+
+    @Test
+    public void testPutLoad() {
+        HackerNewsItem item = createItem(1L, 2, new long[]{2L});
+        fingerprints.put("1", "1", item);
+        fingerprints.put("1", "2", createItem(2L, 1, new long[]{3L}));
+        fingerprints.put("4", "4", createItem(4L, 0, null));
+        fingerprints.flush();
+        Map<String, SyncFingerprints.Fingerprint> loaded = fingerprints.load("1");
+        assertThat(loaded).containsOnlyKeys("1", "2");
+        assertThat(loaded.get("1").hasChanged(item)).isFalse();
+        assertThat(loaded.get("1").hasChanged(createItem(1L, 3, new long[]{2L, 5L}))).isTrue();
+    }
+
+    @Test
+    public void testRePut() {
+        fingerprints.put("1", "1", createItem(1L, 1, new long[]{2L}));
+        fingerprints.flush();
+        HackerNewsItem changed = createItem(1L, 2, new long[]{2L, 3L});
+        fingerprints.put("1", "1", changed);
+        fingerprints.put("1", "3", createItem(3L, 0, null));
+        fingerprints.flush();
+        Map<String, SyncFingerprints.Fingerprint> loaded = fingerprints.load("1");
+        assertThat(loaded).containsOnlyKeys("1", "3");
+        assertThat(loaded.get("1").hasChanged(changed)).isFalse();
+    }
+
+    @Test
+    public void testRemove() {
+        fingerprints.put("1", "1", createItem(1L, 1, new long[]{2L}));
+        fingerprints.put("1", "2", createItem(2L, 0, null));
+        fingerprints.put("3", "3", createItem(3L, 0, null));
+        fingerprints.flush();
+        fingerprints.put("1", "4", createItem(4L, 0, null));
+        fingerprints.remove("1");
+        fingerprints.flush();
+        assertThat(fingerprints.load("1")).isEmpty();
+        assertThat(fingerprints.load("3")).containsOnlyKeys("3");
+    }
+
+    private HackerNewsItem createItem(long id, int descendants, long[] kids) {
+        return new HackerNewsItem(id, "story", "author", 1234L, null, null, "title", 10,
+                descendants, 0L, kids, false, false);
+    }
+}
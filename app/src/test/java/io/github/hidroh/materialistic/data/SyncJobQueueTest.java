@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricGradleTestRunner.class)
+public class SyncJobQueueTest {
+    private SyncJobQueue queue;
+
+    @Before
+    public void setUp() {
+        queue = new SyncJobQueue(RuntimeEnvironment.application.getContentResolver());
+    }
+
+    @Test
+    public void testAddLease() {
+        queue.add("1", SyncJobQueue.TYPE_ITEM, null, SyncJobQueue.PRIORITY_LOW);
+        queue.add("2", SyncJobQueue.TYPE_ITEM, null, SyncJobQueue.PRIORITY_HIGH);
+        queue.flush();
+        List<SyncJobQueue.Job> jobs = queue.lease(10);
+        assertThat(jobs).hasSize(2);
+        assertThat(jobs.get(0).itemId).isEqualTo("2");
+        assertThat(jobs.get(1).itemId).isEqualTo("1");
+        assertThat(queue.lease(10)).isEmpty(); // leased jobs are not due until backoff
+    }
+
+    @Test
+    public void testFlushExistingJob() {
+        queue.add("1", SyncJobQueue.TYPE_ITEM, null, SyncJobQueue.PRIORITY_DEFAULT);
+        queue.add("2", SyncJobQueue.TYPE_ITEM, null, SyncJobQueue.PRIORITY_DEFAULT);
+        queue.flush();
+        assertThat(queue.lease(10)).hasSize(2);
+        // re-queuing an existing job should not abort other changes in the same batch
+        queue.add("1", SyncJobQueue.TYPE_ITEM, null, SyncJobQueue.PRIORITY_DEFAULT);
+        queue.complete("2", SyncJobQueue.TYPE_ITEM);
+        queue.flush();
+        List<SyncJobQueue.Job> jobs = queue.lease(10);
+        assertThat(jobs).hasSize(1);
+        assertThat(jobs.get(0).itemId).isEqualTo("1");
+    }
+}
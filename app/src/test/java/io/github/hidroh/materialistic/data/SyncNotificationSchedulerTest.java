@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import android.app.NotificationManager;
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.shadows.ShadowNotification;
+import org.robolectric.shadows.ShadowNotificationManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricGradleTestRunner.class)
+public class SyncNotificationSchedulerTest {
+    private SyncNotificationScheduler scheduler;
+    private ShadowNotificationManager notificationManager;
+
+    @Before
+    public void setUp() {
+        scheduler = new SyncNotificationScheduler(RuntimeEnvironment.application);
+        notificationManager = shadowOf((NotificationManager) RuntimeEnvironment.application
+                .getSystemService(Context.NOTIFICATION_SERVICE));
+    }
+
+    @Test
+    public void testCoalesce() {
+        scheduler.update("1", "title", 10, 1);
+        assertThat(getProgress("1").progress).isEqualTo(1);
+
+        // subsequent updates within interval should only post latest state, once due
+        scheduler.update("1", "title", 10, 2);
+        scheduler.update("1", "title", 10, 3);
+        assertThat(getProgress("1").progress).isEqualTo(1);
+        ShadowLooper.idleMainLooper(SyncNotificationScheduler.MIN_INTERVAL_MILLIS);
+        assertThat(getProgress("1").progress).isEqualTo(3);
+    }
+
+    @Test
+    public void testCancel() {
+        scheduler.update("1", "title", 10, 1);
+        scheduler.update("1", "title", 10, 2);
+        scheduler.cancel("1");
+        ShadowLooper.idleMainLooper(SyncNotificationScheduler.MIN_INTERVAL_MILLIS);
+        assertThat(notificationManager.getAllNotifications()).isEmpty();
+    }
+
+    @Test
+    public void testSummary() {
+        scheduler.update("1", "title 1", 10, 1);
+        assertThat(notificationManager.getNotification(
+                SyncNotificationScheduler.SUMMARY_NOTIFICATION_ID)).isNull();
+
+        scheduler.update("2", "title 2", 5, 2);
+        ShadowNotification.Progress progress = shadowOf(notificationManager.getNotification(
+                SyncNotificationScheduler.SUMMARY_NOTIFICATION_ID)).getProgress();
+        assertThat(progress.max).isEqualTo(15);
+        assertThat(progress.progress).isEqualTo(3);
+
+        scheduler.cancel("2");
+        assertThat(notificationManager.getNotification(
+                SyncNotificationScheduler.SUMMARY_NOTIFICATION_ID)).isNull();
+    }
+
+    private ShadowNotification.Progress getProgress(String progressId) {
+        return shadowOf(notificationManager.getNotification(Integer.valueOf(progressId)))
+                .getProgress();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricGradleTestRunner.class)
+public class SyncStageTest {
+    @Test
+    public void testAwaitIdle() {
+        AtomicInteger finished = new AtomicInteger();
+        AtomicInteger idleCount = new AtomicInteger();
+        SyncStage stage = new SyncStage("test", 2, 2, idleCount::incrementAndGet);
+        for (int i = 0; i < 4; i++) {
+            stage.submit(finished::incrementAndGet);
+        }
+        stage.awaitIdle();
+        assertThat(finished.get()).isEqualTo(4);
+        assertThat(stage.isIdle()).isTrue();
+        assertThat(idleCount.get()).isGreaterThan(0);
+    }
+
+    @Test
+    public void testBackPressure() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch submitted = new CountDownLatch(1);
+        SyncStage stage = new SyncStage("test", 1, 1, null);
+        Runnable blockingTask = () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                // no op
+            }
+        };
+        stage.submit(blockingTask); // running
+        stage.submit(blockingTask); // queued
+        new Thread(() -> {
+            stage.submit(blockingTask); // saturated, should block until a task finishes
+            submitted.countDown();
+        }).start();
+        assertThat(submitted.await(200, TimeUnit.MILLISECONDS)).isFalse();
+        release.countDown();
+        assertThat(submitted.await(1, TimeUnit.SECONDS)).isTrue();
+        stage.awaitIdle();
+        assertThat(stage.isIdle()).isTrue();
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.data;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.support.v4.content.LocalBroadcastManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricGradleTestRunner.class)
+public class UpdateTrackerTest {
+    private final List<String> updatedIds = new ArrayList<>();
+    private final BroadcastReceiver receiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            updatedIds.addAll(UpdateTracker.getItemIds(intent));
+        }
+    };
+    private HackerNewsClient.RestService restService;
+    private Call<UpdateTracker.Updates> call;
+    private UpdateTracker tracker;
+    @Captor ArgumentCaptor<Callback<UpdateTracker.Updates>> callback;
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        restService = mock(HackerNewsClient.RestService.class);
+        call = mock(Call.class);
+        when(restService.updates()).thenReturn(call);
+        RestServiceFactory factory = mock(RestServiceFactory.class);
+        when(factory.create(anyString(), eq(HackerNewsClient.RestService.class)))
+                .thenReturn(restService);
+        tracker = new UpdateTracker(RuntimeEnvironment.application, factory);
+        LocalBroadcastManager.getInstance(RuntimeEnvironment.application)
+                .registerReceiver(receiver, UpdateTracker.makeUpdatesIntentFilter());
+    }
+
+    @Test
+    public void testBroadcastNewlyUpdated() {
+        tracker.start();
+        verify(call).enqueue(callback.capture());
+        callback.getValue().onResponse(call, Response.success(createUpdates(1L, 2L)));
+        assertThat(updatedIds).isEmpty(); // baseline
+
+        ShadowLooper.idleMainLooper(UpdateTracker.POLL_INTERVAL_MILLIS);
+        verify(call, times(2)).enqueue(callback.capture());
+        callback.getValue().onResponse(call, Response.success(createUpdates(2L, 3L, 4L)));
+        assertThat(updatedIds).containsOnly("3", "4");
+    }
+
+    @Test
+    public void testPollAfterFailure() {
+        tracker.start();
+        verify(call).enqueue(callback.capture());
+        callback.getValue().onFailure(call, null);
+        ShadowLooper.idleMainLooper(UpdateTracker.POLL_INTERVAL_MILLIS);
+        verify(restService, times(2)).updates();
+    }
+
+    @Test
+    public void testStop() {
+        tracker.start();
+        tracker.start();
+        tracker.stop();
+        verify(restService).updates(); // polling only once regardless of start count
+        verify(call, never()).cancel();
+        tracker.stop();
+        verify(call).cancel();
+        verify(call).enqueue(callback.capture());
+        callback.getValue().onResponse(call, Response.success(createUpdates(1L)));
+        ShadowLooper.idleMainLooper(UpdateTracker.POLL_INTERVAL_MILLIS);
+        verify(restService).updates();
+    }
+
+    @After
+    public void tearDown() {
+        LocalBroadcastManager.getInstance(RuntimeEnvironment.application)
+                .unregisterReceiver(receiver);
+    }
+
+    private UpdateTracker.Updates createUpdates(long... itemIds) {
+        UpdateTracker.Updates updates = new UpdateTracker.Updates();
+        updates.items = itemIds;
+        return updates;
+    }
+}
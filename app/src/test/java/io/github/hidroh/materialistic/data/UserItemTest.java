@@ -22,12 +22,7 @@ public class UserItemTest {
         parcel.writeLong(2);
         parcel.writeLong(3);
         parcel.writeString("about");
-        parcel.writeIntArray(new int[]{1, 2, 3});
-        parcel.writeTypedArray(new HackerNewsItem[]{
-                new HackerNewsItem(1L),
-                new HackerNewsItem(2L),
-                new HackerNewsItem(3L),
-        }, 0);
+        parcel.writeLongArray(new long[]{1, 2, 3});
         parcel.setDataPosition(0);
 
         UserItem actualRead = UserItem.CREATOR.createFromParcel(parcel);
@@ -35,7 +30,7 @@ public class UserItemTest {
         assertNotNull(actualRead.getCreated(RuntimeEnvironment.application));
         assertEquals(3, actualRead.getKarma());
         assertEquals("about", actualRead.getAbout());
-        assertThat(actualRead.getItems()).hasSize(3);
+        assertThat(actualRead.getSubmitted()).containsExactly(1, 2, 3);
         assertEquals(0, actualRead.describeContents());
 
         assertThat(UserItem.CREATOR.newArray(1)).hasSize(1);
@@ -48,7 +43,6 @@ public class UserItemTest {
         assertEquals(2, actualWrite.readLong());
         assertEquals(3, actualWrite.readLong());
         assertEquals("about", actualWrite.readString());
-        assertThat(actualWrite.createIntArray()).hasSize(3);
-        assertThat(actualWrite.createTypedArray(HackerNewsItem.CREATOR)).hasSize(3);
+        assertThat(actualWrite.createLongArray()).containsExactly(1, 2, 3);
     }
 }
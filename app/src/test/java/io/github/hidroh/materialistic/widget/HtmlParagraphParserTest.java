@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2016 Ha Duy Trung
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.hidroh.materialistic.widget;
+
+import android.graphics.Typeface;
+import android.text.Spanned;
+import android.text.style.LeadingMarginSpan;
+import android.text.style.QuoteSpan;
+import android.text.style.RelativeSizeSpan;
+import android.text.style.StyleSpan;
+import android.text.style.TypefaceSpan;
+import android.text.style.URLSpan;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricGradleTestRunner.class)
+public class HtmlParagraphParserTest {
+    @Test
+    public void testParagraphs() {
+        List<CharSequence> paragraphs = HtmlParagraphParser.parse("<div><h2>Title</h2>" +
+                "<p>First\n   paragraph &amp; more</p><div>Second <b>bold</b></div>" +
+                "<p>  </p><img src=\"image.png\"></div>", 10);
+        assertThat(paragraphs).hasSize(3);
+        assertThat(paragraphs.get(0).toString()).isEqualTo("Title");
+        Spanned title = (Spanned) paragraphs.get(0);
+        assertThat(title.getSpans(0, title.length(), RelativeSizeSpan.class)).hasSize(1);
+        assertThat(paragraphs.get(1).toString()).isEqualTo("First paragraph & more");
+        assertThat(paragraphs.get(2).toString()).isEqualTo("Second bold");
+        Spanned second = (Spanned) paragraphs.get(2);
+        StyleSpan[] bold = second.getSpans(0, second.length(), StyleSpan.class);
+        assertThat(bold).hasSize(1);
+        assertThat(bold[0].getStyle()).isEqualTo(Typeface.BOLD);
+        assertThat(second.getSpanStart(bold[0])).isEqualTo(7);
+        assertThat(second.getSpanEnd(bold[0])).isEqualTo(11);
+    }
+
+    @Test
+    public void testLinks() {
+        List<CharSequence> paragraphs = HtmlParagraphParser.parse(
+                "<p>See <a href=\"http://example.com\">example</a>.</p>", 10);
+        Spanned paragraph = (Spanned) paragraphs.get(0);
+        URLSpan[] links = paragraph.getSpans(0, paragraph.length(), URLSpan.class);
+        assertThat(links).hasSize(1);
+        assertThat(links[0].getURL()).isEqualTo("http://example.com");
+        assertThat(paragraph.subSequence(paragraph.getSpanStart(links[0]),
+                paragraph.getSpanEnd(links[0])).toString()).isEqualTo("example");
+    }
+
+    @Test
+    public void testBlocks() {
+        List<CharSequence> paragraphs = HtmlParagraphParser.parse(
+                "<blockquote><p>quote</p></blockquote>" +
+                "<pre>line 1\n  line 2</pre>" +
+                "<ol><li>one</li><li>two</li></ol><ul><li>item</ul>", 10);
+        assertThat(paragraphs).hasSize(5);
+        Spanned quote = (Spanned) paragraphs.get(0);
+        assertThat(quote.getSpans(0, quote.length(), QuoteSpan.class)).hasSize(1);
+        Spanned pre = (Spanned) paragraphs.get(1);
+        assertThat(pre.toString()).isEqualTo("line 1\n  line 2");
+        assertThat(pre.getSpans(0, pre.length(), TypefaceSpan.class)).hasSize(1);
+        assertThat(paragraphs.get(2).toString()).isEqualTo("1. one");
+        assertThat(paragraphs.get(3).toString()).isEqualTo("2. two");
+        assertThat(paragraphs.get(4).toString()).isEqualTo("\u2022 item");
+        Spanned item = (Spanned) paragraphs.get(4);
+        LeadingMarginSpan[] margins = item.getSpans(0, item.length(), LeadingMarginSpan.class);
+        assertThat(margins).hasSize(1);
+        assertThat(margins[0].getLeadingMargin(true)).isEqualTo(10);
+    }
+
+    @Test
+    public void testSpanAcrossParagraphs() {
+        List<CharSequence> paragraphs = HtmlParagraphParser.parse(
+                "<i>start<p>middle</p>end</i>", 10);
+        assertThat(paragraphs).hasSize(3);
+        for (CharSequence paragraph : paragraphs) {
+            Spanned spanned = (Spanned) paragraph;
+            assertThat(spanned.getSpans(0, spanned.length(), StyleSpan.class)).hasSize(1);
+        }
+    }
+
+    @Test
+    public void testEntities() {
+        assertThat(HtmlParagraphParser.parse("<p>&lt;a&gt; &#65;&#x42; &mdash; &unknown; & done</p>", 10)
+                .get(0).toString())
+                .isEqualTo("<a> AB \u2014 &unknown; & done");
+    }
+}